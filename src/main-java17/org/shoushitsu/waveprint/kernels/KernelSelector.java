@@ -0,0 +1,27 @@
+package org.shoushitsu.waveprint.kernels;
+
+/**
+ * Chooses the kernels for this JVM. This is the Java 17 version from the
+ * multi-release jar: it uses {@link VectorKernels} if the vector API module
+ * was added to the JVM, and the scalar kernels otherwise.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+final class KernelSelector {
+
+	private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+	private KernelSelector() {
+	}
+
+	static NumericKernels select() {
+		if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+			try {
+				return new VectorKernels();
+			} catch (LinkageError e) {
+				// the module's API changed; fall through to the scalar kernels
+			}
+		}
+		return new ScalarKernels();
+	}
+}
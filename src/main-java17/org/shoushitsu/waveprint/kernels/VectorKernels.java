@@ -0,0 +1,302 @@
+package org.shoushitsu.waveprint.kernels;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels built on the vector API, for JVMs that have it. Each kernel runs
+ * the vector loop over as many elements as fill whole vectors of the
+ * preferred size, and leaves the rest to {@link ScalarKernels}.
+ * <p/>
+ * The operations are the same as in the scalar kernels, in the same order,
+ * so the results are identical.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+class VectorKernels extends ScalarKernels {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	private static final int LANES = SPECIES.length();
+
+	/** Gathers the first elements of pairs: 0, 2, 4... */
+	private static final int[] EVEN = new int[LANES];
+
+	/** Gathers the second elements of pairs: 1, 3, 5... */
+	private static final int[] ODD = new int[LANES];
+
+	private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	private static final int FLOAT_LANES = FLOAT_SPECIES.length();
+
+	private static final int[] FLOAT_EVEN = new int[FLOAT_LANES];
+
+	private static final int[] FLOAT_ODD = new int[FLOAT_LANES];
+
+	/**
+	 * Haar steps of fewer pairs, in vectors, than this are left to the
+	 * scalar kernel. The gathers of pairs only pay off over longer runs;
+	 * over rows of a spectrogram, a few vectors long at most, they made the
+	 * wavelet transforms about twice as slow.
+	 */
+	private static final int MIN_HAAR_STEP_VECTORS = 4;
+
+	static {
+		for (int i = 0; i < LANES; i++) {
+			EVEN[i] = 2 * i;
+			ODD[i] = 2 * i + 1;
+		}
+		for (int i = 0; i < FLOAT_LANES; i++) {
+			FLOAT_EVEN[i] = 2 * i;
+			FLOAT_ODD[i] = 2 * i + 1;
+		}
+	}
+
+	@Override
+	public void radix2Butterflies(
+			final double[] reE, final double[] imE,
+			final double[] reO, final double[] imO,
+			final int from, final int to,
+			final double reT, final double imT
+	) {
+		final int vectorTo = from + SPECIES.loopBound(to - from);
+		for (int f = from; f < vectorTo; f += LANES) {
+			final DoubleVector reEk = DoubleVector.fromArray(SPECIES, reE, f);
+			final DoubleVector imEk = DoubleVector.fromArray(SPECIES, imE, f);
+			final DoubleVector reOk = DoubleVector.fromArray(SPECIES, reO, f);
+			final DoubleVector imOk = DoubleVector.fromArray(SPECIES, imO, f);
+
+			final DoubleVector reTOk = reOk.mul(reT).sub(imOk.mul(imT));
+			final DoubleVector imTOk = reOk.mul(imT).add(imOk.mul(reT));
+
+			reEk.add(reTOk).intoArray(reE, f);
+			imEk.add(imTOk).intoArray(imE, f);
+			reEk.sub(reTOk).intoArray(reO, f);
+			imEk.sub(imTOk).intoArray(imO, f);
+		}
+		super.radix2Butterflies(reE, imE, reO, imO, vectorTo, to, reT, imT);
+	}
+
+	@Override
+	public void radix4Butterflies(
+			final double[] re0, final double[] im0,
+			final double[] re1, final double[] im1,
+			final double[] re2, final double[] im2,
+			final double[] re3, final double[] im3,
+			final int from, final int to
+	) {
+		final int vectorTo = from + SPECIES.loopBound(to - from);
+		for (int f = from; f < vectorTo; f += LANES) {
+			final DoubleVector re0f = DoubleVector.fromArray(SPECIES, re0, f);
+			final DoubleVector im0f = DoubleVector.fromArray(SPECIES, im0, f);
+			final DoubleVector re1f = DoubleVector.fromArray(SPECIES, re1, f);
+			final DoubleVector im1f = DoubleVector.fromArray(SPECIES, im1, f);
+			final DoubleVector re2f = DoubleVector.fromArray(SPECIES, re2, f);
+			final DoubleVector im2f = DoubleVector.fromArray(SPECIES, im2, f);
+			final DoubleVector re3f = DoubleVector.fromArray(SPECIES, re3, f);
+			final DoubleVector im3f = DoubleVector.fromArray(SPECIES, im3, f);
+
+			final DoubleVector reSum01 = re0f.add(re1f);
+			final DoubleVector imSum01 = im0f.add(im1f);
+			final DoubleVector reDiff01 = re0f.sub(re1f);
+			final DoubleVector imDiff01 = im0f.sub(im1f);
+			final DoubleVector reSum23 = re2f.add(re3f);
+			final DoubleVector imSum23 = im2f.add(im3f);
+			final DoubleVector reDiff23 = re2f.sub(re3f);
+			final DoubleVector imDiff23 = im2f.sub(im3f);
+
+			reSum01.add(reSum23).intoArray(re0, f);
+			imSum01.add(imSum23).intoArray(im0, f);
+			reDiff01.add(imDiff23).intoArray(re1, f);
+			imDiff01.sub(reDiff23).intoArray(im1, f);
+			reSum01.sub(reSum23).intoArray(re2, f);
+			imSum01.sub(imSum23).intoArray(im2, f);
+			reDiff01.sub(imDiff23).intoArray(re3, f);
+			imDiff01.add(reDiff23).intoArray(im3, f);
+		}
+		super.radix4Butterflies(re0, im0, re1, im1, re2, im2, re3, im3, vectorTo, to);
+	}
+
+	@Override
+	public void radix4Butterflies(
+			final double[] re0, final double[] im0,
+			final double[] re1, final double[] im1,
+			final double[] re2, final double[] im2,
+			final double[] re3, final double[] im3,
+			final int from, final int to,
+			final double reW1, final double imW1,
+			final double reW2, final double imW2,
+			final double reW3, final double imW3
+	) {
+		final int vectorTo = from + SPECIES.loopBound(to - from);
+		for (int f = from; f < vectorTo; f += LANES) {
+			final DoubleVector re0f = DoubleVector.fromArray(SPECIES, re0, f);
+			final DoubleVector im0f = DoubleVector.fromArray(SPECIES, im0, f);
+			final DoubleVector re1In = DoubleVector.fromArray(SPECIES, re1, f);
+			final DoubleVector im1In = DoubleVector.fromArray(SPECIES, im1, f);
+			final DoubleVector re2In = DoubleVector.fromArray(SPECIES, re2, f);
+			final DoubleVector im2In = DoubleVector.fromArray(SPECIES, im2, f);
+			final DoubleVector re3In = DoubleVector.fromArray(SPECIES, re3, f);
+			final DoubleVector im3In = DoubleVector.fromArray(SPECIES, im3, f);
+			final DoubleVector re1f = re1In.mul(reW2).sub(im1In.mul(imW2));
+			final DoubleVector im1f = re1In.mul(imW2).add(im1In.mul(reW2));
+			final DoubleVector re2f = re2In.mul(reW1).sub(im2In.mul(imW1));
+			final DoubleVector im2f = re2In.mul(imW1).add(im2In.mul(reW1));
+			final DoubleVector re3f = re3In.mul(reW3).sub(im3In.mul(imW3));
+			final DoubleVector im3f = re3In.mul(imW3).add(im3In.mul(reW3));
+
+			final DoubleVector reSum01 = re0f.add(re1f);
+			final DoubleVector imSum01 = im0f.add(im1f);
+			final DoubleVector reDiff01 = re0f.sub(re1f);
+			final DoubleVector imDiff01 = im0f.sub(im1f);
+			final DoubleVector reSum23 = re2f.add(re3f);
+			final DoubleVector imSum23 = im2f.add(im3f);
+			final DoubleVector reDiff23 = re2f.sub(re3f);
+			final DoubleVector imDiff23 = im2f.sub(im3f);
+
+			reSum01.add(reSum23).intoArray(re0, f);
+			imSum01.add(imSum23).intoArray(im0, f);
+			reDiff01.add(imDiff23).intoArray(re1, f);
+			imDiff01.sub(reDiff23).intoArray(im1, f);
+			reSum01.sub(reSum23).intoArray(re2, f);
+			imSum01.sub(imSum23).intoArray(im2, f);
+			reDiff01.sub(imDiff23).intoArray(re3, f);
+			imDiff01.add(reDiff23).intoArray(im3, f);
+		}
+		super.radix4Butterflies(
+				re0, im0, re1, im1, re2, im2, re3, im3,
+				vectorTo, to,
+				reW1, imW1, reW2, imW2, reW3, imW3
+		);
+	}
+
+	@Override
+	public void amplitudes(
+			final double[] re, final int reOffset,
+			final double[] im, final int imOffset,
+			final double[] out, final int outOffset,
+			final int length
+	) {
+		final int vectorLength = SPECIES.loopBound(length);
+		for (int i = 0; i < vectorLength; i += LANES) {
+			final DoubleVector reAmp = DoubleVector.fromArray(SPECIES, re, reOffset + i);
+			final DoubleVector imAmp = DoubleVector.fromArray(SPECIES, im, imOffset + i);
+			reAmp.mul(reAmp).add(imAmp.mul(imAmp))
+					.lanewise(VectorOperators.SQRT)
+					.intoArray(out, outOffset + i);
+		}
+		super.amplitudes(
+				re, reOffset + vectorLength,
+				im, imOffset + vectorLength,
+				out, outOffset + vectorLength,
+				length - vectorLength
+		);
+	}
+
+	@Override
+	public void haarStep(
+			final double[] data,
+			final int offset,
+			final int from,
+			final int to,
+			final double[] details
+	) {
+		// the vector of averages at i is written after reading the pairs
+		// from i on, so the order is still safe
+		if (to - from < MIN_HAAR_STEP_VECTORS * LANES) {
+			super.haarStep(data, offset, from, to, details);
+			return;
+		}
+		final int vectorTo = from + SPECIES.loopBound(to - from);
+		for (int i = from; i < vectorTo; i += LANES) {
+			final DoubleVector first = DoubleVector.fromArray(SPECIES, data, offset + 2 * i, EVEN, 0);
+			final DoubleVector second = DoubleVector.fromArray(SPECIES, data, offset + 2 * i, ODD, 0);
+			final DoubleVector average = first.add(second).mul(0.5);
+			average.intoArray(data, offset + i);
+			average.sub(second).intoArray(details, i);
+		}
+		super.haarStep(data, offset, vectorTo, to, details);
+	}
+
+	@Override
+	public void haarStep(
+			final float[] data,
+			final int offset,
+			final int from,
+			final int to,
+			final float[] details
+	) {
+		if (to - from < MIN_HAAR_STEP_VECTORS * FLOAT_LANES) {
+			super.haarStep(data, offset, from, to, details);
+			return;
+		}
+		final int vectorTo = from + FLOAT_SPECIES.loopBound(to - from);
+		for (int i = from; i < vectorTo; i += FLOAT_LANES) {
+			final FloatVector first =
+					FloatVector.fromArray(FLOAT_SPECIES, data, offset + 2 * i, FLOAT_EVEN, 0);
+			final FloatVector second =
+					FloatVector.fromArray(FLOAT_SPECIES, data, offset + 2 * i, FLOAT_ODD, 0);
+			final FloatVector average = first.add(second).mul(0.5f);
+			average.intoArray(data, offset + i);
+			average.sub(second).intoArray(details, i);
+		}
+		super.haarStep(data, offset, vectorTo, to, details);
+	}
+
+	@Override
+	public void haarPairs(
+			final double[] data,
+			final int firstOffset,
+			final int secondOffset,
+			final int averageOffset,
+			final double[] details,
+			final int detailsOffset,
+			final int length
+	) {
+		final int vectorLength = SPECIES.loopBound(length);
+		for (int i = 0; i < vectorLength; i += LANES) {
+			final DoubleVector first = DoubleVector.fromArray(SPECIES, data, firstOffset + i);
+			final DoubleVector second = DoubleVector.fromArray(SPECIES, data, secondOffset + i);
+			final DoubleVector average = first.add(second).mul(0.5);
+			average.intoArray(data, averageOffset + i);
+			average.sub(second).intoArray(details, detailsOffset + i);
+		}
+		super.haarPairs(
+				data, firstOffset + vectorLength, secondOffset + vectorLength, averageOffset + vectorLength,
+				details, detailsOffset + vectorLength,
+				length - vectorLength
+		);
+	}
+
+	@Override
+	public void haarPairs(
+			final float[] data,
+			final int firstOffset,
+			final int secondOffset,
+			final int averageOffset,
+			final float[] details,
+			final int detailsOffset,
+			final int length
+	) {
+		final int vectorLength = FLOAT_SPECIES.loopBound(length);
+		for (int i = 0; i < vectorLength; i += FLOAT_LANES) {
+			final FloatVector first = FloatVector.fromArray(FLOAT_SPECIES, data, firstOffset + i);
+			final FloatVector second = FloatVector.fromArray(FLOAT_SPECIES, data, secondOffset + i);
+			final FloatVector average = first.add(second).mul(0.5f);
+			average.intoArray(data, averageOffset + i);
+			average.sub(second).intoArray(details, detailsOffset + i);
+		}
+		super.haarPairs(
+				data, firstOffset + vectorLength, secondOffset + vectorLength, averageOffset + vectorLength,
+				details, detailsOffset + vectorLength,
+				length - vectorLength
+		);
+	}
+
+	@Override
+	public String toString() {
+		return "vector (" + SPECIES + ")";
+	}
+}
@@ -0,0 +1,137 @@
+package org.shoushitsu.waveprint;
+
+import org.junit.Test;
+import org.shoushitsu.waveprint.spectrogram.FloatSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.LogarithmicFrequencySplitter;
+import org.shoushitsu.waveprint.spectrogram.SimpleFftSpectrogramBuilder;
+import org.shoushitsu.waveprint.spectrogram.SlidingSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.Spectrogram;
+import org.shoushitsu.waveprint.spectrogram.SpectrogramBuilder;
+import org.shoushitsu.waveprint.wavelet.HVStandardWaveletTransform;
+import org.shoushitsu.waveprint.wavelet.WaveletTransform;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures how often the single precision pipeline picks other top wavelets
+ * than the double precision one does, on the example configuration.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class FloatPrecisionTest {
+
+	private static final long[] SEEDS = {1, 2, 3, 4};
+
+	private static final int SECONDS = 10;
+
+	/**
+	 * Share of windows whose top wavelets may differ at all. None of them do
+	 * on this corpus; a difference would be a swap at the boundary of the
+	 * top, where the values are nearly equal.
+	 */
+	private static final double MAX_MISMATCHED_WINDOWS = 0.05;
+
+	/** Share of the top wavelets of a window kept, on average. */
+	private static final double MIN_MEAN_OVERLAP = 0.999;
+
+	@Test
+	public void topWaveletsMostlyAgree() {
+		final SpectrogramBuilder builder = newSpectrogramBuilder();
+		final WaveletTransform transform = new HVStandardWaveletTransform();
+		final TopWaveletSelector selector = new TopWaveletSelector(WaveprintTest.TOP_WAVELETS);
+		final Spectrogram spectrogram =
+				new Spectrogram(builder.getFrameCount(), builder.getBinCount());
+		final FloatSpectrogram floatSpectrogram =
+				new FloatSpectrogram(builder.getFrameCount(), builder.getBinCount());
+
+		int windows = 0;
+		int mismatched = 0;
+		long overlap = 0;
+		for (final long seed : SEEDS) {
+			final short[] samples =
+					WaveprintTest.randomSamples(WaveprintTest.SAMPLE_RATE * SECONDS, seed);
+			final SlidingSpectrogram spectrograms = new SlidingSpectrogram(builder);
+			final int maxStart = samples.length - builder.getSpectrogramLengthInSamples();
+			for (int start = 0; start <= maxStart; start += WaveprintTest.PROBE_STEP) {
+				spectrograms.getSpectrogram(samples, start, start, spectrogram);
+				spectrograms.getSpectrogram(samples, start, start, floatSpectrogram);
+				transform.transform(spectrogram, 7, 5);
+				transform.transform(floatSpectrogram, 7, 5);
+				final int shared = countShared(selector.apply(spectrogram), selector.apply(floatSpectrogram));
+				windows++;
+				overlap += shared;
+				if (shared != WaveprintTest.TOP_WAVELETS) {
+					mismatched++;
+				}
+			}
+		}
+
+		final double mismatchRate = (double) mismatched / windows;
+		final double meanOverlap = (double) overlap / windows / WaveprintTest.TOP_WAVELETS;
+		assertTrue("mismatched windows: " + mismatchRate, mismatchRate <= MAX_MISMATCHED_WINDOWS);
+		assertTrue("mean overlap: " + meanOverlap, meanOverlap >= MIN_MEAN_OVERLAP);
+	}
+
+	@Test
+	public void doublePrecisionIsTheDefault() {
+		final short[] samples = WaveprintTest.randomSamples(WaveprintTest.SAMPLE_RATE * 3, 5);
+		final Waveprint defaultWaveprint = WaveprintTest.newWaveprint(WaveprintTest.PROBE_STEP);
+		final Waveprint doubleWaveprint = newWaveprint(FingerprintPrecision.DOUBLE);
+		WaveprintTest.assertFingerprintsEqual(
+				defaultWaveprint.fingerprint(samples),
+				doubleWaveprint.fingerprint(samples)
+		);
+	}
+
+	@Test
+	public void floatFingerprintsHaveTheSameShape() {
+		final short[] samples = WaveprintTest.randomSamples(WaveprintTest.SAMPLE_RATE * 3, 6);
+		final List<int[]> expected = newWaveprint(FingerprintPrecision.DOUBLE)
+				.fingerprint(samples);
+		final List<int[]> actual = newWaveprint(FingerprintPrecision.FLOAT)
+				.fingerprint(samples);
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).length, actual.get(i).length);
+		}
+	}
+
+	private static int countShared(final int[] expected, final int[] actual) {
+		final int[] sorted = actual.clone();
+		Arrays.sort(sorted);
+		int shared = 0;
+		for (final int index : expected) {
+			if (Arrays.binarySearch(sorted, index) >= 0) {
+				shared++;
+			}
+		}
+		return shared;
+	}
+
+	private static SpectrogramBuilder newSpectrogramBuilder() {
+		return new SimpleFftSpectrogramBuilder(
+				WaveprintTest.SPECTROGRAM_LENGTH,
+				WaveprintTest.FRAME_LENGTH_LOG2,
+				WaveprintTest.FRAME_STEP,
+				new LogarithmicFrequencySplitter.Factory(
+						WaveprintTest.SAMPLE_RATE, WaveprintTest.SPECTROGRAM_WIDTH, 318, 2000
+				)
+		);
+	}
+
+	private static Waveprint newWaveprint(final FingerprintPrecision precision) {
+		return new Waveprint(
+				newSpectrogramBuilder(),
+				new HVStandardWaveletTransform(),
+				new TopWaveletSelector(WaveprintTest.TOP_WAVELETS),
+				new PermutationMinHasher(WaveprintTest.randomPermutations()),
+				WaveprintTest.PROBE_STEP,
+				WaveprintTest.PROBE_STEP,
+				precision
+		);
+	}
+}
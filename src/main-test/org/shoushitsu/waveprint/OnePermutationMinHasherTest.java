@@ -0,0 +1,108 @@
+package org.shoushitsu.waveprint;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link OnePermutationMinHasher} fills every bucket
+ * consistently and estimates set similarity as well as independent
+ * permutations do, for sets as large as the top wavelets and for sparse
+ * ones that leave most buckets empty.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class OnePermutationMinHasherTest {
+
+	private static final int HASH_LENGTH = 80;
+	private static final int POSITION_COUNT = 128 * 32;
+	private static final int PAIRS = 300;
+
+	private final Random myRandom = new Random(17);
+	private final MinHasher myHasher = new OnePermutationMinHasher(HASH_LENGTH, POSITION_COUNT, 2013);
+
+	@Test
+	public void everyBucketHasAFirstPosition() {
+		final int[] all = new int[POSITION_COUNT];
+		for (int i = 0; i < POSITION_COUNT; i++) {
+			all[i] = i;
+		}
+		assertArrayEquals(new int[HASH_LENGTH], myHasher.hash(all));
+	}
+
+	@Test
+	public void valuesFitStoredFingerprints() {
+		for (final int setLength : new int[]{1, 2, 30, 200}) {
+			for (final int value : myHasher.hash(SeededMinHasherTest.randomSet(myRandom, setLength))) {
+				assertTrue("value " + value, value >= 0 && value < 255);
+			}
+		}
+	}
+
+	@Test
+	public void orderDoesNotMatter() {
+		final int[] set = SeededMinHasherTest.randomSet(myRandom, 30);
+		final int[] reversed = new int[set.length];
+		for (int i = 0; i < set.length; i++) {
+			reversed[i] = set[set.length - 1 - i];
+		}
+		assertArrayEquals(myHasher.hash(set), myHasher.hash(reversed));
+	}
+
+	@Test
+	public void intoBuffer() {
+		final int[] set = SeededMinHasherTest.randomSet(myRandom, 50);
+		final int[] hash = new int[HASH_LENGTH + 4];
+		Arrays.fill(hash, -1);
+		myHasher.hash(set, 0, set.length, hash, 2);
+		assertEquals(-1, hash[0]);
+		assertEquals(-1, hash[1]);
+		assertArrayEquals(myHasher.hash(set), Arrays.copyOfRange(hash, 2, 2 + HASH_LENGTH));
+		assertEquals(-1, hash[HASH_LENGTH + 2]);
+		assertEquals(-1, hash[HASH_LENGTH + 3]);
+	}
+
+	@Test
+	public void similarityOfTopWavelets() {
+		checkSimilarity(200);
+	}
+
+	@Test
+	public void similarityOfSparseSets() {
+		checkSimilarity(30);
+	}
+
+	private void checkSimilarity(final int setLength) {
+		final MinHasher classic = new SeededMinHasher(HASH_LENGTH, POSITION_COUNT, 2013);
+		for (final double fraction : new double[]{0.1, 0.35, 0.65, 0.95}) {
+			final int shared = (int) (setLength * fraction);
+			final double similarity = (double) shared / (2 * setLength - shared);
+			double error = 0;
+			double bias = 0;
+			double classicError = 0;
+			for (int pair = 0; pair < PAIRS; pair++) {
+				final int[] union = SeededMinHasherTest.randomSet(myRandom, 2 * setLength - shared);
+				final int[] a = Arrays.copyOfRange(union, 0, setLength);
+				final int[] b = Arrays.copyOfRange(union, setLength - shared, union.length);
+				final double estimate = SeededMinHasherTest.estimate(myHasher, a, b);
+				error += Math.abs(estimate - similarity);
+				bias += estimate - similarity;
+				classicError += Math.abs(SeededMinHasherTest.estimate(classic, a, b) - similarity);
+			}
+			error /= PAIRS;
+			bias /= PAIRS;
+			classicError /= PAIRS;
+			final String message = String.format(
+					"%d bits, similarity %.3f: error %.4f, bias %.4f; classic error %.4f",
+					setLength, similarity, error, bias, classicError
+			);
+			assertEquals(message, 0, bias, 0.01);
+			assertTrue(message, error < classicError * 1.25);
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package org.shoushitsu.waveprint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class PcmCacheTest {
+
+	private Path myDirectory;
+
+	@Before
+	public void setUp() throws IOException {
+		myDirectory = Files.createTempDirectory("waveprint-pcm-cache");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(myDirectory)) {
+			for (final Path file : stream) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(myDirectory);
+	}
+
+	@Test
+	public void storedTrackIsReadBack() throws Exception {
+		final PcmCache cache = new PcmCache(myDirectory, 1 << 20);
+		final short[] samples = samples(100000, 3);
+
+		assertNull(cache.open("track", 5520, Long.MAX_VALUE));
+		final short[] decoded;
+		try (final SampleSource source = cache.store(
+				"track", 5520, new SampleRingBufferTest.ChunkedSource(samples, 999))) {
+			decoded = SampleExtractor.readAll(source);
+		}
+		assertArrayEquals(samples, decoded);
+
+		try (final SampleSource cached = cache.open("track", 5520, Long.MAX_VALUE)) {
+			assertNotNull(cached);
+			assertArrayEquals(samples, SampleExtractor.readAll(cached));
+		}
+		try (final SampleSource cached = cache.open("track", 5520, 10)) {
+			assertNotNull(cached);
+			assertEquals(10, SampleExtractor.readAll(cached).length);
+		}
+		assertNull(cache.open("track", 44100, Long.MAX_VALUE));
+
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void partiallyReadTrackIsNotStored() throws Exception {
+		final PcmCache cache = new PcmCache(myDirectory, 1 << 20);
+		try (final SampleSource source = cache.store(
+				"track", 5520, new ArraySampleSource(samples(1000, 1)))) {
+			source.read(new short[10], 0, 10);
+		}
+		assertNull(cache.open("track", 5520, Long.MAX_VALUE));
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(myDirectory)) {
+			assertFalse("temporary files are left", stream.iterator().hasNext());
+		}
+	}
+
+	@Test
+	public void leastRecentlyUsedTracksAreEvicted() throws Exception {
+		// room for two tracks of 1000 samples with their headers
+		final PcmCache cache = new PcmCache(myDirectory, 4100);
+		store(cache, "first");
+		store(cache, "second");
+		setUsageTime("first", 1000);
+		setUsageTime("second", 2000);
+
+		// using the first track makes the second one the oldest
+		cache.open("first", 5520, Long.MAX_VALUE).close();
+		store(cache, "third");
+
+		assertNotNull(cache.open("first", 5520, Long.MAX_VALUE));
+		assertNull(cache.open("second", 5520, Long.MAX_VALUE));
+		assertNotNull(cache.open("third", 5520, Long.MAX_VALUE));
+	}
+
+	@Test
+	public void usageSurvivesRestart() throws Exception {
+		store(new PcmCache(myDirectory, 1 << 20), "first");
+		store(new PcmCache(myDirectory, 1 << 20), "second");
+		setUsageTime("first", 2000);
+		setUsageTime("second", 1000);
+
+		// the second track is the oldest, and doesn't fit the smaller bound
+		final PcmCache cache = new PcmCache(myDirectory, 3000);
+		assertNull(cache.open("second", 5520, Long.MAX_VALUE));
+		assertNotNull(cache.open("first", 5520, Long.MAX_VALUE));
+	}
+
+	@Test
+	public void staleTemporaryFilesAreDeleted() throws Exception {
+		final Path stale = Files.createTempFile(myDirectory, "track", ".tmp");
+		Files.write(stale, new byte[100]);
+		new PcmCache(myDirectory, 1 << 20);
+		assertFalse("stale temporary file is left", Files.exists(stale));
+	}
+
+	@Test
+	public void keyDependsOnContentsAndRate() throws Exception {
+		final PcmCache cache = new PcmCache(myDirectory, 1 << 20);
+		final Path file = Files.createTempFile("waveprint-test", ".bin");
+		try {
+			Files.write(file, new byte[]{1, 2, 3});
+			final String key = cache.getKey(file, 5520);
+			assertEquals(key, cache.getKey(file, 5520));
+			assertFalse(key.equals(cache.getKey(file, 11025)));
+			Files.write(file, new byte[]{1, 2, 4});
+			assertFalse(key.equals(cache.getKey(file, 5520)));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static void store(final PcmCache cache, final String key) throws Exception {
+		try (final SampleSource source = cache.store(key, 5520, new ArraySampleSource(samples(1000, 2)))) {
+			SampleExtractor.readAll(source);
+		}
+	}
+
+	private void setUsageTime(final String key, final long time) throws IOException {
+		Files.setLastModifiedTime(myDirectory.resolve(key + ".pcm"), FileTime.fromMillis(time));
+	}
+
+	private static short[] samples(final int length, final int multiplier) {
+		final short[] samples = new short[length];
+		for (int i = 0; i < length; i++) {
+			samples[i] = (short) (i * multiplier);
+		}
+		return samples;
+	}
+}
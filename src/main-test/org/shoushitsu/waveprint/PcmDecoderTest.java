@@ -0,0 +1,73 @@
+package org.shoushitsu.waveprint;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class PcmDecoderTest {
+
+	@Test
+	public void littleEndian() throws IOException {
+		final byte[] bytes = {0x01, 0x00, (byte) 0xff, (byte) 0xff, 0x00, (byte) 0x80, (byte) 0xff, 0x7f};
+		assertArrayEquals(
+				new short[]{1, -1, -32768, 32767},
+				PcmDecoder.decode(new ByteArrayInputStream(bytes), ByteOrder.LITTLE_ENDIAN, 4)
+		);
+	}
+
+	@Test
+	public void bigEndian() throws IOException {
+		final byte[] bytes = {0x00, 0x01, (byte) 0x80, 0x00};
+		assertArrayEquals(
+				new short[]{1, -32768},
+				PcmDecoder.decode(new ByteArrayInputStream(bytes), ByteOrder.BIG_ENDIAN, 0)
+		);
+	}
+
+	@Test
+	public void oddTrailingByte() throws IOException {
+		final byte[] bytes = {0x02, 0x00, 0x03};
+		assertArrayEquals(
+				new short[]{2},
+				PcmDecoder.decode(new ByteArrayInputStream(bytes), ByteOrder.LITTLE_ENDIAN, 0)
+		);
+	}
+
+	@Test
+	public void shortReadsAndWrongSizeHint() throws IOException {
+		final byte[] bytes = new byte[PcmDecoder.BLOCK_SIZE * 3 + 6];
+		new Random(42).nextBytes(bytes);
+		final short[] expected = new short[bytes.length / 2];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = (short) ((bytes[i * 2] & 0xff) | (bytes[i * 2 + 1] << 8));
+		}
+
+		// the stream returns odd amounts of bytes, so samples straddle reads
+		final InputStream stuttering = new ByteArrayInputStream(bytes) {
+			private int myCall;
+
+			@Override
+			public synchronized int read(final byte[] b, final int off, final int len) {
+				myCall++;
+				return super.read(b, off, Math.min(len, (myCall % 2 == 0) ? 1 : 4097));
+			}
+		};
+		assertArrayEquals(
+				expected,
+				PcmDecoder.decode(stuttering, ByteOrder.LITTLE_ENDIAN, 10)
+		);
+		assertArrayEquals(
+				expected,
+				PcmDecoder.decode(new ByteArrayInputStream(bytes), ByteOrder.LITTLE_ENDIAN, expected.length * 2)
+		);
+	}
+}
@@ -0,0 +1,103 @@
+package org.shoushitsu.waveprint;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Checks {@link PermutationMinHasher} against applying the permutations one
+ * by one.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class PermutationMinHasherTest {
+
+	private static final int SET_LENGTH = 200;
+
+	private final List<Permutation> myPermutations = WaveprintTest.randomPermutations();
+	private final MinHasher myHasher = new PermutationMinHasher(myPermutations);
+	private final Random myRandom = new Random(5);
+
+	@Test
+	public void sameAsPermuting() {
+		for (int i = 0; i < 50; i++) {
+			final int[] bitPositions = randomSet(1 + myRandom.nextInt(SET_LENGTH));
+			assertArrayEquals(expectedHash(bitPositions), myHasher.hash(bitPositions));
+		}
+	}
+
+	@Test
+	public void intoBuffer() {
+		final int[] bitPositions = randomSet(SET_LENGTH + 10);
+		final int[] hash = new int[myHasher.getHashLength() + 7];
+		Arrays.fill(hash, -1);
+		myHasher.hash(bitPositions, 10, SET_LENGTH, hash, 3);
+
+		final int[] expected = new int[hash.length];
+		Arrays.fill(expected, -1);
+		System.arraycopy(
+				expectedHash(Arrays.copyOfRange(bitPositions, 10, 10 + SET_LENGTH)), 0,
+				expected, 3,
+				myHasher.getHashLength()
+		);
+		assertArrayEquals(expected, hash);
+	}
+
+	@Test
+	public void batch() {
+		final int setCount = 37;
+		final int[] bitPositions = randomSet(SET_LENGTH * setCount);
+		final int hashLength = myHasher.getHashLength();
+		final int[] hashes = new int[hashLength * setCount];
+		myHasher.hashAll(bitPositions, SET_LENGTH, setCount, hashes);
+		for (int i = 0; i < setCount; i++) {
+			assertArrayEquals(
+					expectedHash(Arrays.copyOfRange(bitPositions, i * SET_LENGTH, (i + 1) * SET_LENGTH)),
+					Arrays.copyOfRange(hashes, i * hashLength, (i + 1) * hashLength)
+			);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void batchTooShort() {
+		myHasher.hashAll(new int[SET_LENGTH], SET_LENGTH, 2, new int[myHasher.getHashLength() * 2]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptySet() {
+		myHasher.hash(new int[0]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void permutationsOfDifferentLengths() {
+		new PermutationMinHasher(Arrays.asList(
+				Permutation.fromIntArray(new int[]{0, 1}),
+				Permutation.fromIntArray(new int[]{2, 0, 1})
+		));
+	}
+
+	private int[] randomSet(final int length) {
+		final int[] bitPositions = new int[length];
+		for (int i = 0; i < length; i++) {
+			bitPositions[i] = myRandom.nextInt(myHasher.getPositionCount());
+		}
+		return bitPositions;
+	}
+
+	private int[] expectedHash(final int[] bitPositions) {
+		final int[] hash = new int[myPermutations.size()];
+		for (int j = 0; j < hash.length; j++) {
+			final int[] permuted = myPermutations.get(j).apply(bitPositions);
+			int min = permuted[0];
+			for (final int position : permuted) {
+				min = Math.min(min, position);
+			}
+			hash[j] = min;
+		}
+		return hash;
+	}
+}
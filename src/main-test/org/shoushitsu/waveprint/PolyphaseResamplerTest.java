@@ -0,0 +1,105 @@
+package org.shoushitsu.waveprint;
+
+import msyu.util.collect.IntArrayBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class PolyphaseResamplerTest {
+
+	private static final double AMPLITUDE = 10000;
+
+	/** 0.5% of full scale. */
+	private static final double TOLERANCE = 0.005 * Short.MAX_VALUE;
+
+	@Test
+	public void supportedRates() {
+		assertTrue(PolyphaseResampler.isSupported(44100, 5520));
+		assertTrue(PolyphaseResampler.isSupported(8000, 5520));
+		assertFalse(PolyphaseResampler.isSupported(44100, 5521));
+		assertFalse(PolyphaseResampler.isSupported(0, 5520));
+	}
+
+	@Test
+	public void downsampledToneInPassBand() {
+		checkTone(44100, 5520, 440);
+		checkTone(48000, 5520, 2000);
+		checkTone(22050, 5520, 2200);
+	}
+
+	@Test
+	public void upsampledTone() {
+		checkTone(8000, 5520, 1000);
+		checkTone(5000, 5520, 1900);
+	}
+
+	@Test
+	public void toneAboveOutputNyquistIsSuppressed() {
+		final int[] output = resample(sine(44100, 4000, 44100), 44100, 5520, 1000);
+		double peak = 0;
+		for (int i = 200; i < output.length - 200; i++) {
+			peak = Math.max(peak, Math.abs(output[i]));
+		}
+		// at least 50 dB down
+		assertTrue("peak " + peak, peak < AMPLITUDE / 316);
+	}
+
+	@Test
+	public void outputLengthDoesNotDependOnBlockSize() {
+		final double[] input = sine(44100, 440, 12345);
+		final int expectedLength = (int) Math.ceil(12345.0 * 5520 / 44100);
+		assertEquals(expectedLength, resample(input, 44100, 5520, 1).length);
+		assertEquals(expectedLength, resample(input, 44100, 5520, 777).length);
+		assertEquals(expectedLength, resample(input, 44100, 5520, 100000).length);
+	}
+
+	private static void checkTone(final int inputRate, final int outputRate, final double frequency) {
+		final int[] output = resample(sine(inputRate, frequency, inputRate), inputRate, outputRate, 4096);
+		final double[] expected = sine(outputRate, frequency, output.length);
+		// skip the edges where the filter sees the implicit silence
+		for (int i = 100; i < output.length - 100; i++) {
+			assertEquals(
+					"sample " + i + " of " + frequency + " Hz, " + inputRate + " -> " + outputRate,
+					expected[i],
+					output[i],
+					TOLERANCE
+			);
+		}
+	}
+
+	private static double[] sine(final int rate, final double frequency, final int length) {
+		final double[] samples = new double[length];
+		for (int i = 0; i < length; i++) {
+			samples[i] = AMPLITUDE * Math.sin(2 * Math.PI * frequency * i / rate);
+		}
+		return samples;
+	}
+
+	private static int[] resample(
+			final double[] input,
+			final int inputRate,
+			final int outputRate,
+			final int blockSize
+	) {
+		final PolyphaseResampler resampler = new PolyphaseResampler(inputRate, outputRate);
+		final IntArrayBuilder builder = new IntArrayBuilder();
+		final short[] output = new short[resampler.getMaxOutputLength(blockSize)];
+		for (int start = 0; start < input.length; start += blockSize) {
+			final int length = Math.min(blockSize, input.length - start);
+			final int produced = resampler.process(input, start, length, output);
+			for (int i = 0; i < produced; i++) {
+				builder.append(output[i]);
+			}
+		}
+		final int produced = resampler.flush(output);
+		for (int i = 0; i < produced; i++) {
+			builder.append(output[i]);
+		}
+		return builder.toIntArray();
+	}
+}
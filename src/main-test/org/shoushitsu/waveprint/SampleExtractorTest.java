@@ -0,0 +1,62 @@
+package org.shoushitsu.waveprint;
+
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class SampleExtractorTest {
+
+	@Test
+	public void stereoWavIsDecodedDirectly() throws Exception {
+		final int inputRate = 44100;
+		final int frames = inputRate * 2;
+		// left and right channels are in antiphase around a common tone
+		final ByteBuffer pcm = ByteBuffer.allocate(frames * 4).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < frames; i++) {
+			final double tone = 8000 * Math.sin(2 * Math.PI * 300 * i / inputRate);
+			final double noise = 3000 * Math.sin(2 * Math.PI * 1234 * i / inputRate);
+			pcm.putShort((short) Math.round(tone + noise));
+			pcm.putShort((short) Math.round(tone - noise));
+		}
+		final Path wav = Files.createTempFile("waveprint-test", ".wav");
+		try {
+			AudioSystem.write(
+					new AudioInputStream(
+							new ByteArrayInputStream(pcm.array()),
+							new AudioFormat(inputRate, 16, 2, true, false),
+							frames
+					),
+					AudioFileFormat.Type.WAVE,
+					wav.toFile()
+			);
+
+			final short[] samples = new SampleExtractor(5520, true).extract(wav);
+			assertEquals(5520 * 2, samples.length);
+			for (int i = 100; i < samples.length - 100; i++) {
+				assertEquals(
+						"sample " + i,
+						8000 * Math.sin(2 * Math.PI * 300 * i / 5520),
+						samples[i],
+						0.005 * Short.MAX_VALUE
+				);
+			}
+
+			assertEquals(5520, new SampleExtractor(5520, true).extract(wav, 1).length);
+		} finally {
+			Files.delete(wav);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package org.shoushitsu.waveprint;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class SampleRingBufferTest {
+
+	@Test
+	public void windowsMatchTheArray() throws Exception {
+		final short[] samples = new short[1000];
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] = (short) (i * 7 - 500);
+		}
+		final int windowLength = 100;
+		final int step = 30;
+
+		final SampleRingBuffer buffer = new SampleRingBuffer(windowLength, step);
+		final SampleSource source = new ChunkedSource(samples, 13);
+		int windows = 0;
+		if (buffer.fill(source)) {
+			do {
+				final int start = windows * step;
+				assertEquals(start, buffer.getWindowPosition());
+				final int offset = buffer.getWindowOffset();
+				assertArrayEquals(
+						"window at " + start,
+						Arrays.copyOfRange(samples, start, start + windowLength),
+						Arrays.copyOfRange(buffer.getArray(), offset, offset + windowLength)
+				);
+				windows++;
+			} while (buffer.advance(source));
+		}
+		assertEquals((samples.length - windowLength) / step + 1, windows);
+	}
+
+	@Test
+	public void sourceShorterThanWindow() throws Exception {
+		final SampleRingBuffer buffer = new SampleRingBuffer(100, 10);
+		assertFalse(buffer.fill(new ArraySampleSource(new short[99])));
+	}
+
+	/**
+	 * Returns at most a fixed amount of samples per read.
+	 */
+	static class ChunkedSource extends ArraySampleSource {
+
+		private final int myChunk;
+
+		ChunkedSource(@Nonnull final short[] samples, final int chunk) {
+			super(samples);
+			myChunk = chunk;
+		}
+
+		@Override
+		public int read(@Nonnull final short[] buffer, final int offset, final int length) {
+			return super.read(buffer, offset, Math.min(length, myChunk));
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package org.shoushitsu.waveprint;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link SeededMinHasher} is reproducible and estimates set
+ * similarity as well as stored random permutations do.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class SeededMinHasherTest {
+
+	private static final int HASH_LENGTH = 80;
+	private static final int POSITION_COUNT = 128 * 32;
+	private static final int SET_LENGTH = 200;
+	private static final int PAIRS = 300;
+
+	private final Random myRandom = new Random(11);
+
+	@Test
+	public void sameSeedSameSignatures() {
+		final MinHasher first = new SeededMinHasher(HASH_LENGTH, POSITION_COUNT, 42);
+		final MinHasher second = new SeededMinHasher(HASH_LENGTH, POSITION_COUNT, 42);
+		final MinHasher other = new SeededMinHasher(HASH_LENGTH, POSITION_COUNT, 43);
+		final int[] set = randomSet(myRandom, SET_LENGTH);
+		assertArrayEquals(first.hash(set), second.hash(set));
+		assertFalse(Arrays.equals(first.hash(set), other.hash(set)));
+	}
+
+	@Test
+	public void functionsArePermutations() {
+		final MinHasher hasher = new SeededMinHasher(HASH_LENGTH, POSITION_COUNT, -7);
+		final boolean[][] seen = new boolean[HASH_LENGTH][POSITION_COUNT];
+		for (int position = 0; position < POSITION_COUNT; position++) {
+			final int[] hash = hasher.hash(new int[]{position});
+			for (int j = 0; j < HASH_LENGTH; j++) {
+				assertFalse("function " + j + ", value " + hash[j], seen[j][hash[j]]);
+				seen[j][hash[j]] = true;
+			}
+		}
+	}
+
+	/**
+	 * Estimates the Jaccard similarity of pairs of sets with a known one,
+	 * with the seeded hasher and with random permutations, and compares the
+	 * errors of the estimates.
+	 */
+	@Test
+	public void similarityAsGoodAsPermutations() {
+		final MinHasher seeded = new SeededMinHasher(HASH_LENGTH, POSITION_COUNT, 2013);
+		final MinHasher permuted = new PermutationMinHasher(WaveprintTest.randomPermutations());
+		for (final int shared : new int[]{20, 70, 130, 190}) {
+			final double similarity = (double) shared / (2 * SET_LENGTH - shared);
+			double seededError = 0;
+			double seededBias = 0;
+			double permutedError = 0;
+			double permutedBias = 0;
+			for (int pair = 0; pair < PAIRS; pair++) {
+				final int[] union = randomSet(myRandom, 2 * SET_LENGTH - shared);
+				final int[] a = Arrays.copyOfRange(union, 0, SET_LENGTH);
+				final int[] b = Arrays.copyOfRange(union, SET_LENGTH - shared, union.length);
+
+				final double seededEstimate = estimate(seeded, a, b);
+				seededError += Math.abs(seededEstimate - similarity);
+				seededBias += seededEstimate - similarity;
+				final double permutedEstimate = estimate(permuted, a, b);
+				permutedError += Math.abs(permutedEstimate - similarity);
+				permutedBias += permutedEstimate - similarity;
+			}
+			seededError /= PAIRS;
+			seededBias /= PAIRS;
+			permutedError /= PAIRS;
+			permutedBias /= PAIRS;
+			final String message = String.format(
+					"similarity %.3f: seeded error %.4f, bias %.4f; permuted error %.4f, bias %.4f",
+					similarity, seededError, seededBias, permutedError, permutedBias
+			);
+			assertEquals(message, 0, seededBias, 0.01);
+			assertTrue(message, seededError < permutedError * 1.15);
+		}
+	}
+
+	static double estimate(final MinHasher hasher, final int[] a, final int[] b) {
+		final int[] hashA = hasher.hash(a);
+		final int[] hashB = hasher.hash(b);
+		int equal = 0;
+		for (int j = 0; j < hashA.length; j++) {
+			if (hashA[j] == hashB[j]) {
+				equal++;
+			}
+		}
+		return (double) equal / hashA.length;
+	}
+
+	/**
+	 * Picks distinct random positions, in random order.
+	 */
+	static int[] randomSet(final Random random, final int length) {
+		final int[] positions = new int[POSITION_COUNT];
+		for (int i = 0; i < POSITION_COUNT; i++) {
+			positions[i] = i;
+		}
+		for (int i = 0; i < length; i++) {
+			final int k = i + random.nextInt(POSITION_COUNT - i);
+			final int tmp = positions[i];
+			positions[i] = positions[k];
+			positions[k] = tmp;
+		}
+		return Arrays.copyOf(positions, length);
+	}
+}
@@ -0,0 +1,132 @@
+package org.shoushitsu.waveprint;
+
+import msyu.util.collect.Pair;
+import msyu.util.java.Comparators;
+import org.junit.Test;
+import org.shoushitsu.waveprint.spectrogram.FloatSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.Spectrogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class TopWaveletSelectorTest {
+
+	private static final int ROWS = 128;
+	private static final int COLS = 32;
+
+	private static final int[] COUNTS = {0, 1, 7, 200, 1000, ROWS * COLS};
+
+	@Test
+	public void sameAsSorting() {
+		final Random random = new Random(5);
+		for (int n = 0; n < 20; n++) {
+			final Spectrogram decomposition = randomDecomposition(random, n % 2 == 0);
+			final FloatSpectrogram floatDecomposition = FloatSpectrogram.copyOf(decomposition);
+			for (final int count : COUNTS) {
+				final TopWaveletSelector selector = new TopWaveletSelector(count);
+				assertArrayEquals(
+						"double, " + n + ", top " + count,
+						sortDouble(decomposition.getData(), count),
+						selector.apply(decomposition)
+				);
+				assertArrayEquals(
+						"float, " + n + ", top " + count,
+						sortFloat(floatDecomposition.getData(), count),
+						selector.apply(floatDecomposition)
+				);
+				assertArrayEquals(
+						"double[][], " + n + ", top " + count,
+						sortDouble(decomposition.getData(), count),
+						selector.apply(decomposition.toArray())
+				);
+			}
+		}
+	}
+
+	@Test
+	public void specialValues() {
+		final Spectrogram decomposition = new Spectrogram(2, 4);
+		final double[] data = decomposition.getData();
+		data[0] = -0.0;
+		data[1] = 0.0;
+		data[2] = Double.NaN;
+		data[3] = Double.NEGATIVE_INFINITY;
+		data[4] = -1;
+		data[5] = 1;
+		data[6] = Double.MIN_VALUE;
+		data[7] = Double.NaN;
+		for (int count = 0; count <= data.length; count++) {
+			assertArrayEquals(
+					"top " + count,
+					sortDouble(data, count),
+					new TopWaveletSelector(count).apply(decomposition)
+			);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void tooFewCoefficients() {
+		new TopWaveletSelector(9).apply(new Spectrogram(2, 4));
+	}
+
+	/**
+	 * Random coefficients; coarse ones are few distinct values, so there
+	 * are lots of ties to break.
+	 */
+	private static Spectrogram randomDecomposition(final Random random, final boolean coarse) {
+		final Spectrogram decomposition = new Spectrogram(ROWS, COLS);
+		final double[] data = decomposition.getData();
+		for (int i = 0; i < data.length; i++) {
+			data[i] = coarse ? random.nextInt(41) - 20 : random.nextGaussian() * 1000;
+		}
+		return decomposition;
+	}
+
+	/**
+	 * What the selector used to do: sort all coefficients.
+	 */
+	private static int[] sortDouble(final double[] coefficients, final int count) {
+		final List<Pair<Double, Integer>> pairs = new ArrayList<>(coefficients.length);
+		for (int i = 0; i < coefficients.length; i++) {
+			pairs.add(Pair.of(Math.abs(coefficients[i]), i));
+		}
+		Collections.sort(
+				pairs,
+				Pair.lexComparator(
+						Collections.reverseOrder(Comparators.naturalFor(Double.class)),
+						Comparators.naturalFor(Integer.class)
+				)
+		);
+		final int[] result = new int[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = pairs.get(i).getSecond();
+		}
+		return result;
+	}
+
+	private static int[] sortFloat(final float[] coefficients, final int count) {
+		final List<Pair<Float, Integer>> pairs = new ArrayList<>(coefficients.length);
+		for (int i = 0; i < coefficients.length; i++) {
+			pairs.add(Pair.of(Math.abs(coefficients[i]), i));
+		}
+		Collections.sort(
+				pairs,
+				Pair.lexComparator(
+						Collections.reverseOrder(Comparators.naturalFor(Float.class)),
+						Comparators.naturalFor(Integer.class)
+				)
+		);
+		final int[] result = new int[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = pairs.get(i).getSecond();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,163 @@
+package org.shoushitsu.waveprint;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.shoushitsu.waveprint.db.hsqldb.FileBasedDatabase;
+import org.shoushitsu.waveprint.db.hsqldb.TestDatabases;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Adds tracks to a new database and finds them, all through one engine.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class WaveprintEngineTest {
+
+	private static final int SAMPLE_RATE = 5520;
+
+	@Rule
+	public final TemporaryFolder myFolder = new TemporaryFolder();
+
+	private String myDatabase;
+
+	@Before
+	public void setUp() throws Exception {
+		final Properties props = new Properties();
+		props.setProperty("sample-rate", String.valueOf(SAMPLE_RATE));
+		props.setProperty("fingerprint.step.db", "5120");
+		props.setProperty("fingerprint.step.probe", "256");
+		props.setProperty("spectrogram.length", "128");
+		props.setProperty("spectrogram.frame.length-l2", "11");
+		props.setProperty("spectrogram.frame.step", "64");
+		props.setProperty("spectrogram.width", "32");
+		props.setProperty("spectrogram.frequency.lowest", "318");
+		props.setProperty("spectrogram.frequency.highest", "2000");
+		props.setProperty("wavelets.top", "200");
+		props.setProperty("minhash.length", "80");
+		props.setProperty("minhash.family", WaveprintConfig.MINHASH_FAMILY_SEEDED);
+		props.setProperty("minhash.seed", "2013");
+		props.setProperty("lsh.bin.count", "20");
+		props.setProperty("lsh.vote.threshold", "12");
+		myDatabase = TestDatabases.create(myFolder, props);
+	}
+
+	@Test
+	public void addAndFind() throws Exception {
+		final List<Path> tracks = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			tracks.add(writeWav("track" + i, melody(20, i)));
+		}
+		try (final FileBasedDatabase db = new FileBasedDatabase(myDatabase)) {
+			final WaveprintEngine engine = newEngine(db);
+			for (final Path track : tracks) {
+				engine.addTrack(track);
+			}
+			for (int i = 0; i < tracks.size(); i++) {
+				final List<Long> matches = engine.find(tracks.get(i), 10, 1);
+				assertEquals("track " + i, Long.valueOf(i + 1), matches.get(0));
+			}
+		}
+	}
+
+	@Test
+	public void fingerprintFromSeveralThreads() throws Exception {
+		final Path track = writeWav("track", melody(20, 7));
+		try (final FileBasedDatabase db = new FileBasedDatabase(myDatabase)) {
+			final WaveprintEngine engine = newEngine(db);
+			final List<int[]> expected = engine.fingerprint(track);
+			final List<List<int[]>> actual = new ArrayList<>();
+			final List<Thread> threads = new ArrayList<>();
+			final List<Throwable> failures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				final Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							final List<int[]> fingerprints = engine.fingerprint(track);
+							synchronized (actual) {
+								actual.add(fingerprints);
+							}
+						} catch (Throwable e) {
+							synchronized (failures) {
+								failures.add(e);
+							}
+						}
+					}
+				});
+				threads.add(thread);
+				thread.start();
+			}
+			for (final Thread thread : threads) {
+				thread.join();
+			}
+			assertEquals(failures.toString(), 0, failures.size());
+			for (final List<int[]> fingerprints : actual) {
+				assertEquals(expected.size(), fingerprints.size());
+				for (int i = 0; i < expected.size(); i++) {
+					assertArrayEquals("fingerprint " + i, expected.get(i), fingerprints.get(i));
+				}
+			}
+		}
+	}
+
+	/** The tracks are PCM WAV, which doesn't need the converter. */
+	private static WaveprintEngine newEngine(final FileBasedDatabase db) throws Exception {
+		return new WaveprintEngine(db, null, true);
+	}
+
+	/**
+	 * A track of random notes in the spectrogram's frequency range, with
+	 * some noise, so that different seeds give tracks that sound different.
+	 */
+	private static short[] melody(final int seconds, final long seed) {
+		final Random random = new Random(seed);
+		final short[] samples = new short[SAMPLE_RATE * seconds];
+		final int noteLength = SAMPLE_RATE / 4;
+		double frequency = 0;
+		for (int i = 0; i < samples.length; i++) {
+			if (i % noteLength == 0) {
+				frequency = 400 + random.nextInt(1400);
+			}
+			samples[i] = (short) (8000 * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE) +
+					1000 * random.nextGaussian());
+		}
+		return samples;
+	}
+
+	private Path writeWav(final String name, final short[] samples) throws IOException {
+		final ByteBuffer pcm = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+		for (final short sample : samples) {
+			pcm.putShort(sample);
+		}
+		final File wav = new File(myFolder.getRoot(), name + ".wav");
+		AudioSystem.write(
+				new AudioInputStream(
+						new ByteArrayInputStream(pcm.array()),
+						new AudioFormat(SAMPLE_RATE, 16, 1, true, false),
+						samples.length
+				),
+				AudioFileFormat.Type.WAVE,
+				wav
+		);
+		return wav.toPath();
+	}
+}
@@ -0,0 +1,107 @@
+package org.shoushitsu.waveprint;
+
+import org.junit.Test;
+import org.shoushitsu.waveprint.spectrogram.LogarithmicFrequencySplitter;
+import org.shoushitsu.waveprint.spectrogram.SimpleFftSpectrogramBuilder;
+import org.shoushitsu.waveprint.wavelet.HVStandardWaveletTransform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class WaveprintTest {
+
+	// the example configuration
+	static final int SAMPLE_RATE = 5520;
+	static final int DB_STEP = 5120;
+	static final int PROBE_STEP = 256;
+	static final int SPECTROGRAM_LENGTH = 128;
+	static final int FRAME_LENGTH_LOG2 = 11;
+	static final int FRAME_STEP = 64;
+	static final int SPECTROGRAM_WIDTH = 32;
+	static final int TOP_WAVELETS = 200;
+	static final int MINHASH_LENGTH = 80;
+
+	@Test
+	public void sourceAndArrayGiveSameFingerprints() throws Exception {
+		final short[] samples = randomSamples(SAMPLE_RATE * 5, 1);
+		final Waveprint waveprint = newWaveprint(DB_STEP);
+
+		final List<int[]> fromArray = waveprint.fingerprint(samples);
+		final List<int[]> fromSource = waveprint.fingerprint(
+				new SampleRingBufferTest.ChunkedSource(samples, 1000)
+		);
+		assertFingerprintsEqual(fromArray, fromSource);
+		assertEquals(
+				(samples.length - (FRAME_STEP * (SPECTROGRAM_LENGTH - 1) + (1 << FRAME_LENGTH_LOG2))) / DB_STEP + 1,
+				fromArray.size()
+		);
+	}
+
+	@Test
+	public void intSamplesGiveSameFingerprints() {
+		final short[] samples = randomSamples(SAMPLE_RATE * 3, 2);
+		final Waveprint waveprint = newWaveprint(PROBE_STEP);
+		assertFingerprintsEqual(
+				waveprint.fingerprint(samples),
+				waveprint.fingerprint(Samples.toInts(samples))
+		);
+	}
+
+	static void assertFingerprintsEqual(final List<int[]> expected, final List<int[]> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertArrayEquals("fingerprint " + i, expected.get(i), actual.get(i));
+		}
+	}
+
+	public static short[] randomSamples(final int length, final long seed) {
+		final Random random = new Random(seed);
+		final short[] samples = new short[length];
+		for (int i = 0; i < length; i++) {
+			samples[i] = (short) (8000 * Math.sin(i * 0.3) + 4000 * random.nextGaussian());
+		}
+		return samples;
+	}
+
+	static List<Permutation> randomPermutations() {
+		final List<Permutation> permutations = new ArrayList<>(MINHASH_LENGTH);
+		final Random random = new Random(0);
+		for (int i = 0; i < MINHASH_LENGTH; i++) {
+			final int[] permutation = new int[SPECTROGRAM_LENGTH * SPECTROGRAM_WIDTH];
+			for (int j = 0; j < permutation.length; j++) {
+				permutation[j] = j;
+			}
+			for (int j = permutation.length; j > 1; j--) {
+				final int k = random.nextInt(j);
+				final int tmp = permutation[j - 1];
+				permutation[j - 1] = permutation[k];
+				permutation[k] = tmp;
+			}
+			permutations.add(Permutation.fromIntArray(permutation));
+		}
+		return permutations;
+	}
+
+	static Waveprint newWaveprint(final int step) {
+		return new Waveprint(
+				new SimpleFftSpectrogramBuilder(
+						SPECTROGRAM_LENGTH,
+						FRAME_LENGTH_LOG2,
+						FRAME_STEP,
+						new LogarithmicFrequencySplitter.Factory(SAMPLE_RATE, SPECTROGRAM_WIDTH, 318, 2000)
+				),
+				new HVStandardWaveletTransform(),
+				new TopWaveletSelector(TOP_WAVELETS),
+				new PermutationMinHasher(randomPermutations()),
+				step,
+				step
+		);
+	}
+}
@@ -0,0 +1,189 @@
+package org.shoushitsu.waveprint.db.hsqldb;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.shoushitsu.waveprint.Permutation;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stores permutations, reads them back and converts the layout of older
+ * databases.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class FileBasedDatabaseSetupTest {
+
+	private static final int COUNT = 6;
+	private static final int LENGTH = 8 * 4;
+
+	@Rule
+	public final TemporaryFolder myFolder = new TemporaryFolder();
+
+	private String myDatabase;
+
+	private FileBasedDatabaseSetup mySetup;
+
+	private List<Permutation> myPermutations;
+
+	@Before
+	public void setUp() throws Exception {
+		final Properties props = new Properties();
+		props.setProperty("spectrogram.length", "8");
+		props.setProperty("spectrogram.width", "4");
+		props.setProperty("minhash.length", String.valueOf(COUNT));
+		props.setProperty("lsh.bin.count", "2");
+		myDatabase = TestDatabases.create(myFolder, props);
+		mySetup = new FileBasedDatabaseSetup(myDatabase);
+		myPermutations = new ArrayList<>();
+		for (int i = 0; i < COUNT; i++) {
+			myPermutations.add(Permutation.newRandom(LENGTH));
+		}
+	}
+
+	@Test
+	public void storeAndRead() throws Exception {
+		mySetup.storePermutations(myPermutations);
+		assertPermutations();
+		assertFalse(mySetup.migratePermutations());
+	}
+
+	@Test
+	public void readAndMigrateLegacyLayout() throws Exception {
+		storeLegacy();
+		assertPermutations();
+		assertTrue(mySetup.migratePermutations());
+		assertPermutations();
+		assertFalse(mySetup.migratePermutations());
+	}
+
+	@Test
+	public void resumeMigrationThatFailedWhileStaging() throws Exception {
+		storeLegacy();
+		storeInterrupted(PermutationBlobs.STAGING_TABLE, COUNT / 2);
+		assertResumesMigration();
+	}
+
+	@Test
+	public void resumeMigrationThatFailedBeforeDroppingLegacyLayout() throws Exception {
+		storeLegacy();
+		storeInterrupted(PermutationBlobs.TABLE, COUNT);
+		assertResumesMigration();
+	}
+
+	@Test
+	public void resumeMigrationThatLeftEmptyTable() throws Exception {
+		storeLegacy();
+		storeInterrupted(PermutationBlobs.TABLE, 0);
+		assertResumesMigration();
+	}
+
+	@Test
+	public void migrateBesideTablesWithSimilarNames() throws Exception {
+		storeLegacy();
+		// "_" matches any character in the patterns of the metadata queries
+		storeInterrupted(PermutationBlobs.TABLE.replace('_', 'x'), COUNT);
+		storeInterrupted(PermutationBlobs.STAGING_TABLE.replace('_', 'x'), COUNT);
+		assertResumesMigration();
+	}
+
+	private void assertResumesMigration() throws Exception {
+		assertPermutations();
+		assertTrue(mySetup.migratePermutations());
+		assertPermutations();
+		assertFalse(mySetup.migratePermutations());
+	}
+
+	private void assertPermutations() throws Exception {
+		try (final FileBasedDatabase db = new FileBasedDatabase(myDatabase)) {
+			final List<Permutation> actual = db.readPermutations();
+			assertEquals(COUNT, actual.size());
+			for (int i = 0; i < COUNT; i++) {
+				for (int j = 0; j < LENGTH; j++) {
+					assertEquals(
+							"permutation " + i + ", element " + j,
+							myPermutations.get(i).apply(j),
+							actual.get(i).apply(j)
+					);
+				}
+			}
+		}
+	}
+
+	/** Replaces the permutation table with the one-row-per-element one. */
+	private void storeLegacy() throws Exception {
+		try (final Connection connection = DriverManager.getConnection(
+				"jdbc:hsqldb:file:" + myDatabase, "SA", ""
+		)) {
+			try (final Statement statement = connection.createStatement()) {
+				statement.execute("drop table " + PermutationBlobs.TABLE);
+				statement.execute(
+						"create table " + PermutationBlobs.LEGACY_TABLE + " (" +
+								"num integer not null, " +
+								"index integer not null, " +
+								"value integer not null" +
+						")"
+				);
+			}
+			try (final PreparedStatement insert = connection.prepareStatement(
+					"insert into " + PermutationBlobs.LEGACY_TABLE + " (num, index, value) values (?, ?, ?)"
+			)) {
+				for (int i = 0; i < COUNT; i++) {
+					for (int j = 0; j < LENGTH; j++) {
+						insert.setInt(1, i);
+						insert.setInt(2, j);
+						insert.setInt(3, myPermutations.get(i).apply(j));
+						insert.addBatch();
+					}
+				}
+				insert.executeBatch();
+			}
+			try (final Statement statement = connection.createStatement()) {
+				statement.execute("shutdown");
+			}
+		}
+	}
+
+	/**
+	 * Creates a table of the binary layout with the first few permutations,
+	 * as a migration that failed partway leaves it.
+	 */
+	private void storeInterrupted(final String table, final int count) throws Exception {
+		try (final Connection connection = DriverManager.getConnection(
+				"jdbc:hsqldb:file:" + myDatabase, "SA", ""
+		)) {
+			try (final Statement statement = connection.createStatement()) {
+				statement.execute(
+						"create table " + table + " (" +
+								"num integer primary key, " +
+								"value varbinary(" + PermutationBlobs.getSize(LENGTH) + ")" +
+						")"
+				);
+			}
+			try (final PreparedStatement insert = connection.prepareStatement(
+					"insert into " + table + " (num, value) values (?, ?)"
+			)) {
+				for (int i = 0; i < count; i++) {
+					insert.setInt(1, i);
+					insert.setBytes(2, PermutationBlobs.toBytes(myPermutations.get(i)));
+					insert.executeUpdate();
+				}
+			}
+			try (final Statement statement = connection.createStatement()) {
+				statement.execute("shutdown");
+			}
+		}
+	}
+}
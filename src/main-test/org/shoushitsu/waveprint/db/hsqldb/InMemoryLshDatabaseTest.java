@@ -0,0 +1,89 @@
+package org.shoushitsu.waveprint.db.hsqldb;
+
+import msyu.util.collect.Pair;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks that {@link InMemoryLshDatabase} finds the same fingerprints, with
+ * the same similarities, as the queries of {@link FileBasedDatabase}, both
+ * for loaded tracks and for added ones.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class InMemoryLshDatabaseTest {
+
+	private static final int TRACKS = 20;
+	private static final int FINGERPRINTS_PER_TRACK = 30;
+
+	private final Random myRandom = new Random(5);
+
+	@Rule
+	public final TemporaryFolder myFolder = new TemporaryFolder();
+
+	private String myDatabase;
+
+	private List<List<int[]>> myTracks;
+
+	@Before
+	public void setUp() throws Exception {
+		myDatabase = TestDatabases.create(myFolder, TestDatabases.getLshSettings());
+		myTracks = TestDatabases.randomTracks(myRandom, TRACKS, FINGERPRINTS_PER_TRACK);
+	}
+
+	@Test
+	public void loadedTracks() throws Exception {
+		try (final FileBasedDatabase db = new FileBasedDatabase(myDatabase)) {
+			for (int i = 0; i < TRACKS; i++) {
+				db.addTrack("track" + i, myTracks.get(i));
+			}
+		}
+		final List<int[]> probes = TestDatabases.getProbes(myRandom, myTracks);
+		final List<Map<Long, Pair<Long, Integer>>> expected;
+		try (final FileBasedDatabase db = new FileBasedDatabase(myDatabase)) {
+			expected = db.getLshMatches(probes);
+		}
+		try (final InMemoryLshDatabase db =
+					 new InMemoryLshDatabase(new FileBasedDatabase(myDatabase))) {
+			assertEquals(TRACKS * FINGERPRINTS_PER_TRACK, db.getFingerprintCount());
+			assertMatches(expected, db.getLshMatches(probes));
+		}
+	}
+
+	@Test
+	public void addedTracks() throws Exception {
+		final List<int[]> probes = TestDatabases.getProbes(myRandom, myTracks);
+		final List<Map<Long, Pair<Long, Integer>>> actual;
+		try (final InMemoryLshDatabase db =
+					 new InMemoryLshDatabase(new FileBasedDatabase(myDatabase))) {
+			assertEquals(0, db.getFingerprintCount());
+			for (int i = 0; i < TRACKS; i++) {
+				db.addTrack("track" + i, myTracks.get(i));
+			}
+			actual = db.getLshMatches(probes);
+		}
+		try (final FileBasedDatabase db = new FileBasedDatabase(myDatabase)) {
+			assertMatches(db.getLshMatches(probes), actual);
+		}
+	}
+
+	private static void assertMatches(
+			final List<Map<Long, Pair<Long, Integer>>> expected,
+			final List<Map<Long, Pair<Long, Integer>>> actual
+	) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertFalse("probe " + i + " matched nothing", expected.get(i).isEmpty());
+			assertEquals("probe " + i, expected.get(i), actual.get(i));
+		}
+	}
+}
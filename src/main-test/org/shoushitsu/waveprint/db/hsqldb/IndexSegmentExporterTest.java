@@ -0,0 +1,149 @@
+package org.shoushitsu.waveprint.db.hsqldb;
+
+import msyu.util.collect.Pair;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.shoushitsu.waveprint.Permutation;
+import org.shoushitsu.waveprint.WaveprintConfig;
+import org.shoushitsu.waveprint.db.NoDataException;
+import org.shoushitsu.waveprint.db.segment.IndexSegment;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Exports a database into an {@link IndexSegment} and checks that the
+ * segment answers like the database.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class IndexSegmentExporterTest {
+
+	private static final int PERMUTATION_LENGTH = 8 * 4;
+	private static final int TRACKS = 20;
+	private static final int FINGERPRINTS_PER_TRACK = 30;
+
+	private final Random myRandom = new Random(11);
+
+	@Rule
+	public final TemporaryFolder myFolder = new TemporaryFolder();
+
+	private String myDatabase;
+
+	private List<List<int[]>> myTracks;
+
+	@Before
+	public void setUp() throws Exception {
+		myDatabase = TestDatabases.create(myFolder, TestDatabases.getLshSettings());
+		myTracks = TestDatabases.randomTracks(myRandom, TRACKS, FINGERPRINTS_PER_TRACK);
+	}
+
+	@Test
+	public void sameAsDatabase() throws Exception {
+		final List<Permutation> permutations = storePermutations();
+		final List<int[]> probes = TestDatabases.getProbes(myRandom, myTracks);
+		final List<Map<Long, Pair<Long, Integer>>> expected;
+		final Properties settings;
+		try (final FileBasedDatabase db = new FileBasedDatabase(myDatabase)) {
+			for (int i = 0; i < TRACKS; i++) {
+				db.addTrack("track " + i + " \u266a", myTracks.get(i));
+			}
+			expected = db.getLshMatches(probes);
+			settings = db.readSettings();
+			IndexSegmentExporter.export(db, getSegment());
+		}
+
+		try (final IndexSegment segment = new IndexSegment(getSegment())) {
+			assertEquals(TRACKS, segment.getTrackCount());
+			assertEquals(TRACKS * FINGERPRINTS_PER_TRACK, segment.getFingerprintCount());
+			assertEquals(settings, segment.readSettings());
+			final List<Permutation> actualPermutations = segment.readPermutations();
+			assertEquals(permutations.size(), actualPermutations.size());
+			for (int i = 0; i < permutations.size(); i++) {
+				for (int j = 0; j < PERMUTATION_LENGTH; j++) {
+					assertEquals(permutations.get(i).apply(j), actualPermutations.get(i).apply(j));
+				}
+			}
+			assertEquals("track 0 \u266a", segment.getTrackName(1));
+			assertEquals("track 19 \u266a", segment.getTrackName(TRACKS));
+			assertNull(segment.getTrackName(TRACKS + 1));
+
+			final List<Map<Long, Pair<Long, Integer>>> actual = segment.getLshMatches(probes);
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertFalse("probe " + i + " matched nothing", expected.get(i).isEmpty());
+				assertEquals("probe " + i, expected.get(i), actual.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void emptyDatabase() throws Exception {
+		storePermutations();
+		try (final FileBasedDatabase db = new FileBasedDatabase(myDatabase)) {
+			IndexSegmentExporter.export(db, getSegment());
+		}
+		try (final IndexSegment segment = new IndexSegment(getSegment())) {
+			assertEquals(0, segment.getFingerprintCount());
+			assertEquals(
+					Collections.<Map<Long, Pair<Long, Integer>>>singletonList(
+							Collections.<Long, Pair<Long, Integer>>emptyMap()),
+					segment.getLshMatches(Collections.singletonList(TestDatabases.randomFingerprint(myRandom)))
+			);
+		}
+	}
+
+	@Test(expected = NoDataException.class)
+	public void missingPermutations() throws Exception {
+		try (final FileBasedDatabase db = new FileBasedDatabase(myDatabase)) {
+			IndexSegmentExporter.export(db, getSegment());
+		}
+	}
+
+	@Test
+	public void seededFamilyHasNoPermutations() throws Exception {
+		final Properties props = TestDatabases.getLshSettings();
+		props.setProperty("minhash.family", WaveprintConfig.MINHASH_FAMILY_SEEDED);
+		props.setProperty("minhash.seed", "2013");
+		final String database = new File(myFolder.getRoot(), "seeded").getPath();
+		new FileBasedDatabaseSetup(database).setUp(new WaveprintConfig(props));
+		try (final FileBasedDatabase db = new FileBasedDatabase(database)) {
+			IndexSegmentExporter.export(db, getSegment());
+		}
+		try (final IndexSegment segment = new IndexSegment(getSegment())) {
+			assertEquals(0, segment.getFingerprintCount());
+			try {
+				segment.readPermutations();
+				fail("The segment has permutations");
+			} catch (NoDataException expected) {
+				// the seeded family has none
+			}
+		}
+	}
+
+	private List<Permutation> storePermutations() throws Exception {
+		final List<Permutation> permutations = new ArrayList<>();
+		for (int i = 0; i < TestDatabases.FINGERPRINT_LENGTH; i++) {
+			permutations.add(Permutation.newRandom(PERMUTATION_LENGTH));
+		}
+		new FileBasedDatabaseSetup(myDatabase).storePermutations(permutations);
+		return permutations;
+	}
+
+	private Path getSegment() {
+		return new File(myFolder.getRoot(), "index.segment").toPath();
+	}
+}
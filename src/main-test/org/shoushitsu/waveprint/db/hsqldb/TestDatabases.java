@@ -0,0 +1,135 @@
+package org.shoushitsu.waveprint.db.hsqldb;
+
+import org.junit.rules.TemporaryFolder;
+import org.shoushitsu.waveprint.WaveprintConfig;
+import org.shoushitsu.waveprint.db.DataAccessException;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Creates {@link FileBasedDatabase}s for tests in a {@link TemporaryFolder},
+ * which deletes them after each test.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public final class TestDatabases {
+
+	/** The length of the fingerprints of {@link #getLshSettings()}. */
+	static final int FINGERPRINT_LENGTH = 80;
+
+	private TestDatabases() {}
+
+	/**
+	 * Get the path of the database in a test's folder.
+	 *
+	 * @param folder    the test's folder.
+	 *
+	 * @return the path, as the database classes take it.
+	 */
+	@Nonnull
+	public static String getPath(@Nonnull final TemporaryFolder folder) {
+		return new File(folder.getRoot(), "db").getPath();
+	}
+
+	/**
+	 * Sets up a new database in a test's folder.
+	 *
+	 * @param folder      the test's folder.
+	 * @param settings    the database's settings.
+	 *
+	 * @return the path of the database.
+	 *
+	 * @throws DataAccessException if the database can't be set up.
+	 */
+	@Nonnull
+	public static String create(@Nonnull final TemporaryFolder folder, @Nonnull final Properties settings)
+			throws DataAccessException {
+		final String database = getPath(folder);
+		new FileBasedDatabaseSetup(database).setUp(new WaveprintConfig(settings));
+		return database;
+	}
+
+	/**
+	 * Settings for the tests of LSH queries: fingerprints of
+	 * {@value #FINGERPRINT_LENGTH} elements in 20 bins, and 12 votes to
+	 * match.
+	 *
+	 * @return new settings.
+	 */
+	@Nonnull
+	static Properties getLshSettings() {
+		final Properties props = new Properties();
+		props.setProperty("spectrogram.length", "8");
+		props.setProperty("spectrogram.width", "4");
+		props.setProperty("minhash.length", String.valueOf(FINGERPRINT_LENGTH));
+		props.setProperty("lsh.bin.count", "20");
+		props.setProperty("lsh.vote.threshold", "12");
+		return props;
+	}
+
+	/**
+	 * Makes tracks of random fingerprints for {@link #getLshSettings()}.
+	 *
+	 * @param random                the source of the fingerprints.
+	 * @param trackCount            the amount of tracks.
+	 * @param fingerprintsPerTrack  the amount of fingerprints in a track.
+	 *
+	 * @return the fingerprints of each track.
+	 */
+	@Nonnull
+	static List<List<int[]>> randomTracks(
+			@Nonnull final Random random,
+			final int trackCount,
+			final int fingerprintsPerTrack
+	) {
+		final List<List<int[]>> tracks = new ArrayList<>();
+		for (int i = 0; i < trackCount; i++) {
+			final List<int[]> fingerprints = new ArrayList<>();
+			for (int j = 0; j < fingerprintsPerTrack; j++) {
+				fingerprints.add(randomFingerprint(random));
+			}
+			tracks.add(fingerprints);
+		}
+		return tracks;
+	}
+
+	/** Mostly small values, like minima, and a few above the stored range. */
+	@Nonnull
+	static int[] randomFingerprint(@Nonnull final Random random) {
+		final int[] fingerprint = new int[FINGERPRINT_LENGTH];
+		for (int i = 0; i < FINGERPRINT_LENGTH; i++) {
+			fingerprint[i] = random.nextInt(10) == 0 ? 200 + random.nextInt(200) : random.nextInt(40);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Copies of some of the fingerprints of {@link #randomTracks}, with a
+	 * few elements changed, so that most bins still match.
+	 *
+	 * @param random    the source of the changes.
+	 * @param tracks    the fingerprints of each track.
+	 *
+	 * @return the probes.
+	 */
+	@Nonnull
+	static List<int[]> getProbes(@Nonnull final Random random, @Nonnull final List<List<int[]>> tracks) {
+		final List<int[]> probes = new ArrayList<>();
+		for (int i = 0; i < tracks.size(); i += 3) {
+			final List<int[]> fingerprints = tracks.get(i);
+			for (int j = 0; j < fingerprints.size(); j += 7) {
+				final int[] probe = fingerprints.get(j).clone();
+				for (int k = 0; k < 4; k++) {
+					probe[random.nextInt(FINGERPRINT_LENGTH)] = random.nextInt(300);
+				}
+				probes.add(probe);
+			}
+		}
+		return probes;
+	}
+}
@@ -0,0 +1,131 @@
+package org.shoushitsu.waveprint.db.segment;
+
+import msyu.util.collect.Pair;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.shoushitsu.waveprint.Permutation;
+import org.shoushitsu.waveprint.db.DataAccessException;
+import org.shoushitsu.waveprint.db.LshValues;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the limits on the sizes of index segments with mappings much
+ * smaller than the real ones.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class IndexSegmentTest {
+
+	private static final int FINGERPRINT_LENGTH = 64;
+	private static final int BIN_COUNT = FINGERPRINT_LENGTH / LshValues.BIN_LENGTH;
+	private static final int FINGERPRINTS = 10;
+
+	/** Fits every section but the fingerprints, three of which fit. */
+	private static final int MAX_MAPPING_SIZE = 200;
+
+	@Rule
+	public final TemporaryFolder myFolder = new TemporaryFolder();
+
+	@Test
+	public void fingerprintsInChunks() throws Exception {
+		final IndexSegmentWriter writer = newWriter(SegmentFormat.MAX_MAPPING_SIZE);
+		writer.addTrack(1, "track");
+		for (int i = 0; i < FINGERPRINTS; i++) {
+			writer.addFingerprint(i + 1, 1, toBytes(getFingerprint(i)));
+		}
+		for (int bin = 0; bin < BIN_COUNT; bin++) {
+			for (int i = 0; i < FINGERPRINTS; i++) {
+				writer.addLshEntry(bin, LshValues.get(getFingerprint(i), bin), i + 1);
+			}
+		}
+		writer.write(getSegment());
+
+		final List<int[]> probes = new ArrayList<>();
+		final List<Map<Long, Pair<Long, Integer>>> expected = new ArrayList<>();
+		for (int i = 0; i < FINGERPRINTS; i++) {
+			probes.add(getFingerprint(i));
+			expected.add(Collections.singletonMap((long) i + 1, Pair.of(1L, FINGERPRINT_LENGTH)));
+		}
+		try (final IndexSegment segment = new IndexSegment(getSegment(), MAX_MAPPING_SIZE)) {
+			assertEquals(expected, segment.getLshMatches(probes));
+		}
+		try (final IndexSegment segment = new IndexSegment(getSegment())) {
+			assertEquals(expected, segment.getLshMatches(probes));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void tooManyFingerprints() {
+		final IndexSegmentWriter writer = newWriter(MAX_MAPPING_SIZE);
+		final int maxCount = SegmentFormat.getMaxFingerprintCount(MAX_MAPPING_SIZE);
+		for (int i = 0; i <= maxCount; i++) {
+			writer.addFingerprint(i + 1, 1, toBytes(getFingerprint(i)));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void writeSectionTooLarge() throws Exception {
+		final IndexSegmentWriter writer = newWriter(MAX_MAPPING_SIZE);
+		writer.addTrack(1, getLongName());
+		writer.write(getSegment());
+	}
+
+	@Test(expected = DataAccessException.class)
+	public void readSectionTooLarge() throws Exception {
+		final IndexSegmentWriter writer = newWriter(SegmentFormat.MAX_MAPPING_SIZE);
+		writer.addTrack(1, getLongName());
+		writer.write(getSegment());
+		new IndexSegment(getSegment(), MAX_MAPPING_SIZE);
+	}
+
+	private static IndexSegmentWriter newWriter(final int maxMappingSize) {
+		final Properties settings = new Properties();
+		settings.setProperty("lsh.vote.threshold", "2");
+		return new IndexSegmentWriter(
+				settings,
+				Collections.<Permutation>emptyList(),
+				FINGERPRINT_LENGTH,
+				BIN_COUNT,
+				maxMappingSize
+		);
+	}
+
+	/** Distinct in every bin, and ascending with {@code i}. */
+	private static int[] getFingerprint(final int i) {
+		final int[] fingerprint = new int[FINGERPRINT_LENGTH];
+		for (int j = 0; j < FINGERPRINT_LENGTH; j++) {
+			fingerprint[j] = i + j;
+		}
+		return fingerprint;
+	}
+
+	private static byte[] toBytes(final int[] fingerprint) {
+		final byte[] bytes = new byte[fingerprint.length];
+		for (int i = 0; i < fingerprint.length; i++) {
+			bytes[i] = (byte) fingerprint[i];
+		}
+		return bytes;
+	}
+
+	private static String getLongName() {
+		final char[] name = new char[MAX_MAPPING_SIZE + 1];
+		Arrays.fill(name, 'a');
+		return new String(name);
+	}
+
+	private Path getSegment() {
+		return new File(myFolder.getRoot(), "index.segment").toPath();
+	}
+}
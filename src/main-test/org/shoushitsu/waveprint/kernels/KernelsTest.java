@@ -0,0 +1,240 @@
+package org.shoushitsu.waveprint.kernels;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the kernels chosen for this JVM compute exactly what the
+ * scalar ones do. Run from the multi-release jar with the vector API module
+ * added to check the vector kernels.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class KernelsTest {
+
+	/** Long enough for the Haar steps of whole rows to use vectors. */
+	private static final int LENGTH = 301;
+
+	/** Ranges that cover whole vectors, tails and nothing at all. */
+	private static final int[][] RANGES = {{0, LENGTH}, {0, 32}, {3, 40}, {5, 6}, {7, 7}};
+
+	private final NumericKernels myExpected = new ScalarKernels();
+	private final NumericKernels myActual = Kernels.get();
+	private final Random myRandom = new Random(13);
+
+	@Test
+	public void radix2Butterflies() {
+		for (final int[] range : RANGES) {
+			final double[][] expected = randomRows(4);
+			final double[][] actual = copy(expected);
+			final double reT = myRandom.nextGaussian();
+			final double imT = myRandom.nextGaussian();
+			myExpected.radix2Butterflies(
+					expected[0], expected[1], expected[2], expected[3], range[0], range[1], reT, imT
+			);
+			myActual.radix2Butterflies(
+					actual[0], actual[1], actual[2], actual[3], range[0], range[1], reT, imT
+			);
+			assertSame(expected, actual);
+		}
+	}
+
+	@Test
+	public void radix4ButterfliesWithoutTwiddles() {
+		for (final int[] range : RANGES) {
+			final double[][] expected = randomRows(8);
+			final double[][] actual = copy(expected);
+			myExpected.radix4Butterflies(
+					expected[0], expected[1], expected[2], expected[3],
+					expected[4], expected[5], expected[6], expected[7],
+					range[0], range[1]
+			);
+			myActual.radix4Butterflies(
+					actual[0], actual[1], actual[2], actual[3],
+					actual[4], actual[5], actual[6], actual[7],
+					range[0], range[1]
+			);
+			assertSame(expected, actual);
+		}
+	}
+
+	@Test
+	public void radix4Butterflies() {
+		for (final int[] range : RANGES) {
+			final double[][] expected = randomRows(8);
+			final double[][] actual = copy(expected);
+			final double[] w = new double[6];
+			for (int i = 0; i < w.length; i++) {
+				w[i] = myRandom.nextGaussian();
+			}
+			myExpected.radix4Butterflies(
+					expected[0], expected[1], expected[2], expected[3],
+					expected[4], expected[5], expected[6], expected[7],
+					range[0], range[1],
+					w[0], w[1], w[2], w[3], w[4], w[5]
+			);
+			myActual.radix4Butterflies(
+					actual[0], actual[1], actual[2], actual[3],
+					actual[4], actual[5], actual[6], actual[7],
+					range[0], range[1],
+					w[0], w[1], w[2], w[3], w[4], w[5]
+			);
+			assertSame(expected, actual);
+		}
+	}
+
+	@Test
+	public void amplitudes() {
+		for (final int[] range : RANGES) {
+			final int length = range[1] - range[0];
+			final double[][] expected = randomRows(2);
+			final double[][] actual = copy(expected);
+			final double[] expectedOut = new double[LENGTH + 1];
+			final double[] actualOut = new double[LENGTH + 1];
+			myExpected.amplitudes(expected[0], range[0], expected[1], 0, expectedOut, 1, length);
+			myActual.amplitudes(actual[0], range[0], actual[1], 0, actualOut, 1, length);
+			assertSame(new double[][]{expectedOut}, new double[][]{actualOut});
+
+			// in place
+			myExpected.amplitudes(expected[0], range[0], expected[1], 0, expected[0], range[0], length);
+			myActual.amplitudes(actual[0], range[0], actual[1], 0, actual[0], range[0], length);
+			assertSame(expected, actual);
+		}
+	}
+
+	@Test
+	public void haarStep() {
+		for (final int[] range : RANGES) {
+			final double[][] expected = randomRows(2);
+			final double[][] actual = copy(expected);
+			// the data holds pairs of elements, so only half of it is pairs
+			final int from = range[0] / 2;
+			final int to = range[1] / 2;
+			myExpected.haarStep(expected[0], 0, from, to, expected[1]);
+			myActual.haarStep(actual[0], 0, from, to, actual[1]);
+			assertSame(expected, actual);
+
+			// a part of the array, as a row of a flat spectrogram
+			myExpected.haarStep(expected[0], 3, from / 2, to / 2, expected[1]);
+			myActual.haarStep(actual[0], 3, from / 2, to / 2, actual[1]);
+			assertSame(expected, actual);
+		}
+	}
+
+	@Test
+	public void floatHaarStep() {
+		for (final int[] range : RANGES) {
+			final float[][] expected = toFloat(randomRows(2));
+			final float[][] actual = copy(expected);
+			final int from = range[0] / 2;
+			final int to = range[1] / 2;
+			myExpected.haarStep(expected[0], 0, from, to, expected[1]);
+			myActual.haarStep(actual[0], 0, from, to, actual[1]);
+			assertSame(expected, actual);
+
+			myExpected.haarStep(expected[0], 3, from / 2, to / 2, expected[1]);
+			myActual.haarStep(actual[0], 3, from / 2, to / 2, actual[1]);
+			assertSame(expected, actual);
+		}
+	}
+
+	@Test
+	public void haarPairs() {
+		for (final int[] range : RANGES) {
+			final int length = (range[1] - range[0]) / 2;
+			final double[][] expected = randomRows(2);
+			final double[][] actual = copy(expected);
+			// two rows of a flat image, averages over the first one
+			myExpected.haarPairs(expected[0], range[0], range[0] + length, range[0], expected[1], 1, length);
+			myActual.haarPairs(actual[0], range[0], range[0] + length, range[0], actual[1], 1, length);
+			assertSame(expected, actual);
+
+			// averages into another part
+			final int third = (range[1] - range[0]) / 3;
+			myExpected.haarPairs(
+					expected[0], range[0] + third, range[0] + 2 * third, range[0], expected[1], 0, third
+			);
+			myActual.haarPairs(
+					actual[0], range[0] + third, range[0] + 2 * third, range[0], actual[1], 0, third
+			);
+			assertSame(expected, actual);
+
+			final float[][] expectedFloat = toFloat(expected);
+			final float[][] actualFloat = copy(expectedFloat);
+			myExpected.haarPairs(expectedFloat[0], range[0], range[0] + length, range[0], expectedFloat[1], 1, length);
+			myActual.haarPairs(actualFloat[0], range[0], range[0] + length, range[0], actualFloat[1], 1, length);
+			assertSame(expectedFloat, actualFloat);
+		}
+	}
+
+	private double[][] randomRows(final int count) {
+		final double[][] rows = new double[count][LENGTH];
+		for (final double[] row : rows) {
+			for (int i = 0; i < LENGTH; i++) {
+				row[i] = myRandom.nextGaussian() * 1000;
+			}
+		}
+		// signed zeros are where reordered operations would show
+		rows[0][1] = -0.0;
+		rows[count - 1][2] = -0.0;
+		return rows;
+	}
+
+	private static double[][] copy(final double[][] rows) {
+		final double[][] result = new double[rows.length][];
+		for (int i = 0; i < rows.length; i++) {
+			result[i] = rows[i].clone();
+		}
+		return result;
+	}
+
+	private static float[][] toFloat(final double[][] rows) {
+		final float[][] result = new float[rows.length][];
+		for (int i = 0; i < rows.length; i++) {
+			result[i] = new float[rows[i].length];
+			for (int j = 0; j < rows[i].length; j++) {
+				result[i][j] = (float) rows[i][j];
+			}
+		}
+		return result;
+	}
+
+	private static float[][] copy(final float[][] rows) {
+		final float[][] result = new float[rows.length][];
+		for (int i = 0; i < rows.length; i++) {
+			result[i] = rows[i].clone();
+		}
+		return result;
+	}
+
+	/**
+	 * Compares bit patterns, as {@code assertArrayEquals} doesn't tell
+	 * signed zeros apart.
+	 */
+	private void assertSame(final double[][] expected, final double[][] actual) {
+		for (int row = 0; row < expected.length; row++) {
+			for (int i = 0; i < expected[row].length; i++) {
+				assertEquals(
+						myActual + ", row " + row + ", element " + i,
+						Double.doubleToRawLongBits(expected[row][i]),
+						Double.doubleToRawLongBits(actual[row][i])
+				);
+			}
+		}
+	}
+
+	private void assertSame(final float[][] expected, final float[][] actual) {
+		for (int row = 0; row < expected.length; row++) {
+			for (int i = 0; i < expected[row].length; i++) {
+				assertEquals(
+						myActual + ", row " + row + ", element " + i,
+						Float.floatToRawIntBits(expected[row][i]),
+						Float.floatToRawIntBits(actual[row][i])
+				);
+			}
+		}
+	}
+}
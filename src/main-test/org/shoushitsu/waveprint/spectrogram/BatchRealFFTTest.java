@@ -0,0 +1,89 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class BatchRealFFTTest {
+
+	@Test
+	public void sameAsFrameByFrame() {
+		final Random random = new Random(3);
+		for (final ComplexFFTAlgorithm algorithm : ComplexFFTAlgorithm.values()) {
+			for (int lengthLog2 = 1; lengthLog2 <= 11; lengthLog2++) {
+				for (final int batchSize : new int[]{1, 3, 16}) {
+					final int length = 1 << lengthLog2;
+					final double[][] expected = new double[batchSize][length];
+					final double[][] interleaved = new double[length][batchSize];
+					for (int f = 0; f < batchSize; f++) {
+						for (int n = 0; n < length; n++) {
+							expected[f][n] = random.nextInt(1 << 16) - (1 << 15);
+							interleaved[n][f] = expected[f][n];
+						}
+						new RealFFT(lengthLog2, algorithm).transform(expected[f]);
+					}
+
+					new BatchRealFFT(lengthLog2, batchSize, algorithm).transform(interleaved);
+
+					for (int f = 0; f < batchSize; f++) {
+						final double[] actual = new double[length];
+						for (int n = 0; n < length; n++) {
+							actual[n] = interleaved[n][f];
+						}
+						assertArrayEquals(
+								algorithm + ", length " + length + ", batch " + batchSize + ", frame " + f,
+								expected[f],
+								actual,
+								0
+						);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void partialBatch() {
+		final Random random = new Random(4);
+		final int lengthLog2 = 8;
+		final int length = 1 << lengthLog2;
+		final int batchSize = 16;
+		for (final ComplexFFTAlgorithm algorithm : ComplexFFTAlgorithm.values()) {
+			final BatchRealFFT fft = new BatchRealFFT(lengthLog2, batchSize, algorithm);
+			for (final int count : new int[]{0, 1, 5, batchSize}) {
+				final double[][] expected = new double[batchSize][length];
+				final double[][] interleaved = new double[length][batchSize];
+				for (int f = 0; f < batchSize; f++) {
+					for (int n = 0; n < length; n++) {
+						expected[f][n] = random.nextInt(1 << 16) - (1 << 15);
+						interleaved[n][f] = expected[f][n];
+					}
+					// frames past the count stay as they are
+					if (f < count) {
+						new RealFFT(lengthLog2, algorithm).transform(expected[f]);
+					}
+				}
+
+				fft.transform(interleaved, count);
+
+				for (int f = 0; f < batchSize; f++) {
+					final double[] actual = new double[length];
+					for (int n = 0; n < length; n++) {
+						actual[n] = interleaved[n][f];
+					}
+					assertArrayEquals(
+							algorithm + ", count " + count + ", frame " + f,
+							expected[f],
+							actual,
+							0
+					);
+				}
+			}
+		}
+	}
+}
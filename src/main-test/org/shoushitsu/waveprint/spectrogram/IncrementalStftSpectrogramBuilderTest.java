@@ -0,0 +1,105 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class IncrementalStftSpectrogramBuilderTest {
+
+	// the example configuration
+	private static final int LENGTH = 128;
+	private static final int FRAME_LENGTH_LOG2 = 11;
+	private static final int STEP = 64;
+	private static final FrequencySplitterFactory SPLITTER =
+			new LogarithmicFrequencySplitter.Factory(5520, 32, 318, 2000);
+
+	/** Largest bin error allowed, relative to the largest bin of the frame. */
+	private static final double MAX_RELATIVE_ERROR = 1e-9;
+
+	@Test
+	public void closeToFullFft() {
+		final short[] samples = randomSamples(STEP * 2000 + (1 << FRAME_LENGTH_LOG2));
+		final SpectrogramBuilder expected = new SimpleFftSpectrogramBuilder(
+				LENGTH, FRAME_LENGTH_LOG2, STEP, SPLITTER);
+		final SpectrogramBuilder incremental = new IncrementalStftSpectrogramBuilder(
+				LENGTH, FRAME_LENGTH_LOG2, STEP, SPLITTER);
+		final double maxError = maxRelativeError(samples, expected, incremental, 2000);
+		assertTrue("error " + maxError, maxError < MAX_RELATIVE_ERROR);
+	}
+
+	@Test
+	public void driftWithoutResync() {
+		// rounding errors of the updates accumulate, but slowly
+		final short[] samples = randomSamples(STEP * 2000 + (1 << FRAME_LENGTH_LOG2));
+		final SpectrogramBuilder expected = new SimpleFftSpectrogramBuilder(
+				LENGTH, FRAME_LENGTH_LOG2, STEP, SPLITTER);
+		final SpectrogramBuilder incremental = new IncrementalStftSpectrogramBuilder(
+				LENGTH, FRAME_LENGTH_LOG2, STEP, Integer.MAX_VALUE, SPLITTER);
+		final double maxError = maxRelativeError(samples, expected, incremental, 2000);
+		assertTrue("error " + maxError, maxError < MAX_RELATIVE_ERROR);
+	}
+
+	@Test
+	public void sameSpectrogramsInSlidingWindows() {
+		final short[] samples = randomSamples(30000);
+		final SpectrogramBuilder expected = new SimpleFftSpectrogramBuilder(
+				LENGTH, FRAME_LENGTH_LOG2, STEP, SPLITTER);
+		final SpectrogramBuilder incremental = new IncrementalStftSpectrogramBuilder(
+				LENGTH, FRAME_LENGTH_LOG2, STEP, SPLITTER);
+		final SlidingSpectrogram sliding = new SlidingSpectrogram(incremental);
+		final int maxStart = samples.length - expected.getSpectrogramLengthInSamples();
+		for (int start = 0; start <= maxStart; start += 256) {
+			final double[][] expectedSg = expected.getSpectrogram(samples, start);
+			final double[][] actualSg = sliding.getSpectrogram(samples, start, start);
+			for (int i = 0; i < LENGTH; i++) {
+				assertArrayEquals(expectedSg[i], actualSg[i], maxBin(expectedSg[i]) * MAX_RELATIVE_ERROR);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void stepMustBePowerOfTwo() {
+		new IncrementalStftSpectrogramBuilder(LENGTH, FRAME_LENGTH_LOG2, 48, SPLITTER);
+	}
+
+	private static double maxRelativeError(
+			final short[] samples,
+			final SpectrogramBuilder expected,
+			final SpectrogramBuilder actual,
+			final int frames
+	) {
+		double maxError = 0;
+		for (int frame = 0; frame < frames; frame++) {
+			final double[] expectedBins = expected.getFrame(samples, frame * STEP);
+			final double[] actualBins = actual.getFrame(samples, frame * STEP);
+			final double scale = maxBin(expectedBins);
+			for (int i = 0; i < expectedBins.length; i++) {
+				maxError = Math.max(maxError, Math.abs(expectedBins[i] - actualBins[i]) / scale);
+			}
+		}
+		return maxError;
+	}
+
+	private static double maxBin(final double[] bins) {
+		double max = 0;
+		for (final double bin : bins) {
+			max = Math.max(max, bin);
+		}
+		return max;
+	}
+
+	private static short[] randomSamples(final int length) {
+		final Random random = new Random(length);
+		final short[] samples = new short[length];
+		for (int i = 0; i < length; i++) {
+			samples[i] = (short) (10000 * Math.sin(i * 0.05) + 3000 * random.nextGaussian());
+		}
+		return samples;
+	}
+}
@@ -0,0 +1,63 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class Radix4ComplexFFTTest extends AbstractComplexFFTTest {
+
+	@Override
+	protected ComplexFFT getFftForFlatLine() {
+		return new Radix4ComplexFFT(2);
+	}
+
+	@Override
+	protected ComplexFFT getFftForSimplePeriod() {
+		return new Radix4ComplexFFT(2);
+	}
+
+	@Override
+	protected ComplexFFT getFftForShiftedSimplePeriod() {
+		return new Radix4ComplexFFT(2);
+	}
+
+	@Override
+	protected ComplexFFT getFftForSimplePlusShiftedSimple() {
+		return new Radix4ComplexFFT(2);
+	}
+
+	@Override
+	protected ComplexFFT getFftFor1000() {
+		return new Radix4ComplexFFT(2);
+	}
+
+	@Override
+	protected ComplexFFT getFftFor10000000() {
+		return new Radix4ComplexFFT(3);
+	}
+
+	@Test
+	public void sameAsRadix2() {
+		final Random random = new Random(11);
+		for (int lengthLog2 = 0; lengthLog2 <= 12; lengthLog2++) {
+			final int length = 1 << lengthLog2;
+			final double[] re = new double[length];
+			final double[] im = new double[length];
+			for (int i = 0; i < length; i++) {
+				re[i] = random.nextInt(1 << 16) - (1 << 15);
+				im[i] = random.nextInt(1 << 16) - (1 << 15);
+			}
+			final double[] expectedRe = re.clone();
+			final double[] expectedIm = im.clone();
+			new SimpleComplexFFT(lengthLog2).transform(expectedRe, expectedIm);
+			new Radix4ComplexFFT(lengthLog2).transform(re, im);
+			assertArrayEquals("re, length " + length, expectedRe, re, 1e-9);
+			assertArrayEquals("im, length " + length, expectedIm, im, 1e-9);
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class RealFFTTest {
+
+	private static final double EPS = 1e-12;
+
+	@Test
+	public void sameAsFullComplexTransform() {
+		final Random random = new Random(7);
+		for (int lengthLog2 = 1; lengthLog2 <= 12; lengthLog2++) {
+			final int length = 1 << lengthLog2;
+			final double[] data = new double[length];
+			for (int i = 0; i < length; i++) {
+				data[i] = random.nextInt(1 << 16) - (1 << 15);
+			}
+			final double[] expected = transformAsComplex(data.clone(), lengthLog2);
+			final double[] actual = data.clone();
+			new RealFFT(lengthLog2).transform(actual);
+			assertArrayEquals("length " + length, expected, actual, EPS * (1 << 15));
+		}
+	}
+
+	@Test
+	public void cosineAndSine() {
+		final int length = 16;
+		final double[] data = new double[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = 3 * Math.cos(2 * Math.PI * 2 * i / length) +
+					5 * Math.sin(2 * Math.PI * 3 * i / length) + 1;
+		}
+		new RealFFT(4).transform(data);
+		final double[] expected = new double[length];
+		expected[0] = 1;
+		expected[2] = 3;
+		expected[8 + 3] = 5;
+		assertArrayEquals(expected, data, EPS);
+	}
+
+	/**
+	 * The way {@link RealFFT} used to work: a full-length complex transform
+	 * with zero imaginary parts.
+	 */
+	private static double[] transformAsComplex(final double[] re, final int lengthLog2) {
+		final int lengthDiv2 = 1 << (lengthLog2 - 1);
+		final double[] im = new double[re.length];
+		new SimpleComplexFFT(lengthLog2).transform(re, im);
+		re[0] += re[lengthDiv2];
+		re[lengthDiv2] = 0;
+		for (int i = 1; i < lengthDiv2; i++) {
+			re[i] *= 2;
+			re[lengthDiv2 + i] = -2.0 * im[i];
+		}
+		return re;
+	}
+}
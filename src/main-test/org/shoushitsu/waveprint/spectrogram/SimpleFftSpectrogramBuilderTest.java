@@ -0,0 +1,61 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.shoushitsu.waveprint.WaveprintTest.randomSamples;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class SimpleFftSpectrogramBuilderTest {
+
+	// a small configuration, shared by the tests of the stages that use a builder
+	public static final int LENGTH = 16;
+	public static final int FRAME_LENGTH_LOG2 = 8;
+	public static final int STEP = 32;
+	public static final int WIDTH = 8;
+
+	@Test
+	public void batchedFramesSameAsSingle() {
+		final short[] samples = randomSamples(20000, 1);
+		for (final ComplexFFTAlgorithm algorithm : ComplexFFTAlgorithm.values()) {
+			final SpectrogramBuilder builder = newBuilder(algorithm);
+			// not a multiple of the batch size
+			final int frameCount = AbstractFftSpectrogramBuilder.BATCH_SIZE * 3 + 5;
+			final double[][] frames = new double[frameCount][builder.getBinCount()];
+			builder.getFrames(samples, 7, frameCount, frames);
+			for (int i = 0; i < frameCount; i++) {
+				assertArrayEquals(
+						algorithm + ", frame " + i,
+						builder.getFrame(samples, 7 + i * STEP),
+						frames[i],
+						0
+				);
+			}
+		}
+	}
+
+	@Test
+	public void spectrogramSameAsFrames() {
+		final short[] samples = randomSamples(5000, 2);
+		final SpectrogramBuilder builder = newBuilder(ComplexFFTAlgorithm.RADIX4);
+		final double[][] spectrogram = builder.getSpectrogram(samples, 100);
+		for (int i = 0; i < LENGTH; i++) {
+			assertArrayEquals(builder.getFrame(samples, 100 + i * STEP), spectrogram[i], 0);
+		}
+	}
+
+	public static SpectrogramBuilder newBuilder() {
+		return new SimpleFftSpectrogramBuilder(LENGTH, FRAME_LENGTH_LOG2, STEP, newSplitterFactory());
+	}
+
+	public static SpectrogramBuilder newBuilder(final ComplexFFTAlgorithm algorithm) {
+		return new SimpleFftSpectrogramBuilder(
+				LENGTH, FRAME_LENGTH_LOG2, STEP, algorithm, newSplitterFactory());
+	}
+
+	public static FrequencySplitterFactory newSplitterFactory() {
+		return new LogarithmicFrequencySplitter.Factory(5520, WIDTH, 318, 2000);
+	}
+}
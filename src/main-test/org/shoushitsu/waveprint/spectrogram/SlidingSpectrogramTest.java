@@ -0,0 +1,136 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.shoushitsu.waveprint.WaveprintTest.randomSamples;
+import static org.shoushitsu.waveprint.spectrogram.SimpleFftSpectrogramBuilderTest.FRAME_LENGTH_LOG2;
+import static org.shoushitsu.waveprint.spectrogram.SimpleFftSpectrogramBuilderTest.LENGTH;
+import static org.shoushitsu.waveprint.spectrogram.SimpleFftSpectrogramBuilderTest.STEP;
+import static org.shoushitsu.waveprint.spectrogram.SimpleFftSpectrogramBuilderTest.newBuilder;
+import static org.shoushitsu.waveprint.spectrogram.SimpleFftSpectrogramBuilderTest.newSplitterFactory;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class SlidingSpectrogramTest {
+
+	@Test
+	public void sameAsBuilder() {
+		// aligned steps share frames, unaligned ones don't, neither may break
+		for (final int windowStep : new int[]{STEP, STEP * 4, STEP * 5 + 7, STEP * 100}) {
+			final short[] samples = randomSamples(20000, 1);
+			final SpectrogramBuilder builder = newBuilder();
+			final SlidingSpectrogram sliding = new SlidingSpectrogram(builder);
+			final int maxStart = samples.length - builder.getSpectrogramLengthInSamples();
+			for (int start = 0; start <= maxStart; start += windowStep) {
+				final double[][] expected = builder.getSpectrogram(samples, start);
+				final double[][] actual = sliding.getSpectrogram(samples, start, start);
+				for (int i = 0; i < LENGTH; i++) {
+					assertArrayEquals(
+							"step " + windowStep + ", window " + start + ", frame " + i,
+							expected[i],
+							actual[i],
+							0
+					);
+				}
+				// later stages modify spectrograms; that must not leak into the cache
+				for (final double[] frame : actual) {
+					frame[0] = Double.NaN;
+				}
+			}
+		}
+	}
+
+	@Test
+	public void reusedSpectrogram() {
+		final short[] samples = randomSamples(20000, 1);
+		final SpectrogramBuilder builder = newBuilder();
+		final SlidingSpectrogram sliding = new SlidingSpectrogram(builder);
+		final double[][] spectrogram = new double[LENGTH][builder.getBinCount()];
+		final int maxStart = samples.length - builder.getSpectrogramLengthInSamples();
+		for (int start = 0; start <= maxStart; start += STEP * 3) {
+			final double[][] expected = builder.getSpectrogram(samples, start);
+			assertSame(spectrogram, sliding.getSpectrogram(samples, start, start, spectrogram));
+			for (int i = 0; i < LENGTH; i++) {
+				assertArrayEquals("window " + start + ", frame " + i, expected[i], spectrogram[i], 0);
+			}
+			// as the wavelet transform would
+			for (final double[] frame : spectrogram) {
+				frame[0] = Double.NaN;
+			}
+		}
+	}
+
+	@Test
+	public void flatSpectrogram() {
+		final short[] samples = randomSamples(20000, 1);
+		final SpectrogramBuilder[] builders = {
+				newBuilder(),
+				new IncrementalStftSpectrogramBuilder(
+						LENGTH,
+						FRAME_LENGTH_LOG2,
+						STEP,
+						newSplitterFactory()
+				)
+		};
+		// the incremental builder's rounding depends on the order of frames
+		final double[] deltas = {0, 1e-6};
+		for (int b = 0; b < builders.length; b++) {
+			final SpectrogramBuilder builder = builders[b];
+			final SlidingSpectrogram sliding = new SlidingSpectrogram(builder);
+			final Spectrogram fromBuilder = new Spectrogram(LENGTH, builder.getBinCount());
+			final Spectrogram fromSliding = new Spectrogram(LENGTH, builder.getBinCount());
+			final int maxStart = samples.length - builder.getSpectrogramLengthInSamples();
+			for (int start = 0; start <= maxStart; start += STEP * 5) {
+				final double[][] expected = builder.getSpectrogram(samples, start);
+				builder.getSpectrogram(samples, start, fromBuilder);
+				assertSame(fromSliding, sliding.getSpectrogram(samples, start, start, fromSliding));
+				for (int i = 0; i < LENGTH; i++) {
+					final String message = builder.getClass().getSimpleName() + ", window " + start + ", frame " + i;
+					final double[] actualFrame = new double[builder.getBinCount()];
+					System.arraycopy(fromBuilder.getData(), fromBuilder.getOffset(i), actualFrame, 0, actualFrame.length);
+					assertArrayEquals(message, expected[i], actualFrame, deltas[b]);
+					assertArrayEquals(message, expected[i], fromSliding.toArray()[i], deltas[b]);
+				}
+				// as the wavelet transform would
+				fromSliding.set(0, 0, Double.NaN);
+			}
+		}
+	}
+
+	@Test
+	public void framesAreComputedOnce() {
+		final short[] samples = randomSamples(20000, 1);
+		final SpectrogramBuilder builder = newBuilder();
+		final SlidingSpectrogram sliding = new SlidingSpectrogram(builder);
+		final int maxStart = samples.length - builder.getSpectrogramLengthInSamples();
+		int windows = 0;
+		for (int start = 0; start <= maxStart; start += STEP * 4) {
+			sliding.getSpectrogram(samples, start, start);
+			windows++;
+		}
+		assertEquals(LENGTH + (windows - 1) * 4, sliding.getComputedFrames());
+	}
+
+	@Test
+	public void windowMovesInTheArray() {
+		// the window's offset in the array and its position in the track differ,
+		// as they do in a ring buffer
+		final short[] samples = randomSamples(5000, 2);
+		final SpectrogramBuilder builder = newBuilder();
+		final SlidingSpectrogram sliding = new SlidingSpectrogram(builder);
+		final short[] copy = new short[samples.length + 1000];
+		for (int position = 0; position <= 2 * STEP; position += STEP) {
+			final int offset = 1000 - position * 3;
+			System.arraycopy(samples, 0, copy, offset, samples.length - 1000);
+			final double[][] expected = builder.getSpectrogram(samples, position);
+			final double[][] actual = sliding.getSpectrogram(copy, offset + position, position);
+			for (int i = 0; i < LENGTH; i++) {
+				assertArrayEquals(expected[i], actual[i], 0);
+			}
+		}
+	}
+}
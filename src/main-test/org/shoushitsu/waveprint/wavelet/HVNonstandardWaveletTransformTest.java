@@ -5,7 +5,7 @@ package org.shoushitsu.waveprint.wavelet;
  */
 public class HVNonstandardWaveletTransformTest extends WaveletTransformTest {
 
-	protected HVNonstandardWaveletTransformTest() {
-		super(new HVNonstandardWaveletTransform());
+	public HVNonstandardWaveletTransformTest() {
+		super(new HVNonstandardWaveletTransform(), false);
 	}
 }
@@ -5,7 +5,7 @@ package org.shoushitsu.waveprint.wavelet;
  */
 public class HVStandardWaveletTransformTest extends WaveletTransformTest {
 
-	protected HVStandardWaveletTransformTest() {
-		super(new HVStandardWaveletTransform());
+	public HVStandardWaveletTransformTest() {
+		super(new HVStandardWaveletTransform(), true);
 	}
 }
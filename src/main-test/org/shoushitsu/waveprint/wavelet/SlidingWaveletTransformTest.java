@@ -0,0 +1,104 @@
+package org.shoushitsu.waveprint.wavelet;
+
+import org.junit.Test;
+import org.shoushitsu.waveprint.spectrogram.FloatSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.SlidingSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.Spectrogram;
+import org.shoushitsu.waveprint.spectrogram.SpectrogramBuilder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.shoushitsu.waveprint.WaveprintTest.randomSamples;
+import static org.shoushitsu.waveprint.spectrogram.SimpleFftSpectrogramBuilderTest.LENGTH;
+import static org.shoushitsu.waveprint.spectrogram.SimpleFftSpectrogramBuilderTest.STEP;
+import static org.shoushitsu.waveprint.spectrogram.SimpleFftSpectrogramBuilderTest.WIDTH;
+import static org.shoushitsu.waveprint.spectrogram.SimpleFftSpectrogramBuilderTest.newBuilder;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class SlidingWaveletTransformTest {
+
+	@Test
+	public void sameAsTransformingSpectrograms() {
+		final short[] samples = randomSamples(20000, 1);
+		final SpectrogramBuilder builder = newBuilder();
+		final SeparableWaveletTransform transform = new HVStandardWaveletTransform();
+		// the whole spectrogram, and a corner that leaves frames as they are
+		for (final int[] logs : new int[][]{{4, 3}, {3, 2}}) {
+			// aligned steps share rows, unaligned ones don't, and going back
+			// shares nothing; neither may break
+			for (final int windowStep : new int[]{STEP, STEP * 5 + 7, -STEP * 3}) {
+				final SlidingSpectrogram spectrograms = new SlidingSpectrogram(builder);
+				final SlidingWaveletTransform wavelets =
+						new SlidingWaveletTransform(builder, transform, logs[0], logs[1]);
+				final Spectrogram expected = new Spectrogram(LENGTH, WIDTH);
+				final Spectrogram actual = new Spectrogram(LENGTH, WIDTH);
+				final FloatSpectrogram expectedFloat = new FloatSpectrogram(LENGTH, WIDTH);
+				final FloatSpectrogram actualFloat = new FloatSpectrogram(LENGTH, WIDTH);
+				final int maxStart = samples.length - builder.getSpectrogramLengthInSamples();
+				for (int i = 0; i < 100; i++) {
+					final int start = (windowStep > 0) ? i * windowStep : maxStart + i * windowStep;
+					if (start < 0 || start > maxStart) {
+						break;
+					}
+					spectrograms.getSpectrogram(samples, start, start, expected);
+					transform.transform(expected, logs[0], logs[1]);
+					assertSame(actual, wavelets.transform(samples, start, start, actual));
+
+					spectrograms.getSpectrogram(samples, start, start, expectedFloat);
+					transform.transform(expectedFloat, logs[0], logs[1]);
+					assertSame(actualFloat, wavelets.transform(samples, start, start, actualFloat));
+
+					final String message = "corner " + logs[0] + " x " + logs[1]
+							+ ", step " + windowStep + ", window " + start;
+					assertIdentical(message, expected, actual, expectedFloat, actualFloat);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void rowsAreTransformedOnce() {
+		final short[] samples = randomSamples(20000, 1);
+		final SpectrogramBuilder builder = newBuilder();
+		final SlidingWaveletTransform wavelets =
+				new SlidingWaveletTransform(builder, new HVStandardWaveletTransform(), 4, 3);
+		final Spectrogram image = new Spectrogram(LENGTH, WIDTH);
+		final int windows = 20;
+		for (int i = 0; i < windows; i++) {
+			wavelets.transform(samples, i * STEP * 2, i * STEP * 2, image);
+		}
+		// every window after the first brings two new frames
+		assertEquals(LENGTH + (windows - 1) * 2, wavelets.getTransformedRows());
+		assertEquals(LENGTH + (windows - 1) * 2, wavelets.getComputedFrames());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void cornerMustFit() {
+		new SlidingWaveletTransform(newBuilder(), new HVStandardWaveletTransform(), 5, 3);
+	}
+
+	private static void assertIdentical(
+			final String message,
+			final Spectrogram expected,
+			final Spectrogram actual,
+			final FloatSpectrogram expectedFloat,
+			final FloatSpectrogram actualFloat
+	) {
+		for (int frame = 0; frame < LENGTH; frame++) {
+			for (int bin = 0; bin < WIDTH; bin++) {
+				assertEquals(
+						message + ", double, " + frame + ", " + bin,
+						Double.doubleToRawLongBits(expected.get(frame, bin)),
+						Double.doubleToRawLongBits(actual.get(frame, bin))
+				);
+				assertEquals(
+						message + ", float, " + frame + ", " + bin,
+						Float.floatToRawIntBits(expectedFloat.get(frame, bin)),
+						Float.floatToRawIntBits(actualFloat.get(frame, bin))
+				);
+			}
+		}
+	}
+}
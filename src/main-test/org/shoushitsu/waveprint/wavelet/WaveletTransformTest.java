@@ -2,16 +2,31 @@ package org.shoushitsu.waveprint.wavelet;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.shoushitsu.waveprint.kernels.Kernels;
+import org.shoushitsu.waveprint.kernels.ScalarKernels;
+import org.shoushitsu.waveprint.spectrogram.FloatSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.Spectrogram;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
 
 /**
  * @author Yanus Poluektovich (ypoluektovich@gmail.com)
  */
 public abstract class WaveletTransformTest {
 
+	private static final int ROWS_LOG2 = 7;
+	private static final int COLS_LOG2 = 5;
+
 	protected final WaveletTransform waveletTransform;
 
-	protected WaveletTransformTest(final WaveletTransform waveletTransform) {
+	/** Whether the transform is the standard one, for the reference. */
+	private final boolean myStandard;
+
+	protected WaveletTransformTest(final WaveletTransform waveletTransform, final boolean standard) {
 		this.waveletTransform = waveletTransform;
+		myStandard = standard;
 	}
 
 	@Test
@@ -29,4 +44,126 @@ public abstract class WaveletTransformTest {
 		final double[][] expected = {{6.0}, {2.0}, {1.0}, {-1.0}};
 		Assert.assertArrayEquals(expected, image);
 	}
+
+	@Test
+	public void sameAsColumnByColumn() {
+		final Random random = new Random(3);
+		for (int n = 0; n < 10; n++) {
+			final double[][] expected = new double[1 << ROWS_LOG2][1 << COLS_LOG2];
+			for (final double[] row : expected) {
+				for (int col = 0; col < row.length; col++) {
+					row[col] = random.nextDouble() * 1e5;
+				}
+			}
+			final Spectrogram actual = Spectrogram.copyOf(expected);
+			final FloatSpectrogram actualFloat = FloatSpectrogram.copyOf(actual);
+			final float[][] expectedFloat = new float[expected.length][expected[0].length];
+			for (int row = 0; row < expected.length; row++) {
+				for (int col = 0; col < expected[row].length; col++) {
+					expectedFloat[row][col] = actualFloat.get(row, col);
+				}
+			}
+
+			referenceTransform(expected, expectedFloat, ROWS_LOG2, COLS_LOG2, myStandard);
+			waveletTransform.transform(actual, ROWS_LOG2, COLS_LOG2);
+			waveletTransform.transform(actualFloat, ROWS_LOG2, COLS_LOG2);
+
+			for (int row = 0; row < expected.length; row++) {
+				for (int col = 0; col < expected[row].length; col++) {
+					Assert.assertEquals(
+							"double, " + row + ", " + col,
+							Double.doubleToRawLongBits(expected[row][col]),
+							Double.doubleToRawLongBits(actual.get(row, col))
+					);
+					Assert.assertEquals(
+							"float, " + row + ", " + col,
+							Float.floatToRawIntBits(expectedFloat[row][col]),
+							Float.floatToRawIntBits(actualFloat.get(row, col))
+					);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void transformDoesNotAllocate() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		// vector kernels box their vectors until the JIT compiler gets to
+		// them, which is out of the transform's hands
+		if (!(bean instanceof com.sun.management.ThreadMXBean)
+				|| Kernels.get().getClass() != ScalarKernels.class) {
+			return;
+		}
+		final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+		final long thread = Thread.currentThread().getId();
+		final Spectrogram image = new Spectrogram(1 << ROWS_LOG2, 1 << COLS_LOG2);
+		final FloatSpectrogram floatImage = new FloatSpectrogram(1 << ROWS_LOG2, 1 << COLS_LOG2);
+		// the first transforms allocate the scratch space
+		waveletTransform.transform(image, ROWS_LOG2, COLS_LOG2);
+		waveletTransform.transform(floatImage, ROWS_LOG2, COLS_LOG2);
+
+		final long before = allocations.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < 100; i++) {
+			waveletTransform.transform(image, ROWS_LOG2, COLS_LOG2);
+			waveletTransform.transform(floatImage, ROWS_LOG2, COLS_LOG2);
+		}
+		final long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+		// leave room for the odd allocation by the JVM itself, but not for
+		// an array per row or column
+		Assert.assertTrue("allocated " + allocated + " bytes", allocated < 4096);
+	}
+
+	/**
+	 * The transforms as they used to be: a column at a time, with a new
+	 * array of details at every step.
+	 */
+	private static void referenceTransform(
+			final double[][] image,
+			final float[][] floatImage,
+			int rowsLog2,
+			int colsLog2,
+			final boolean standard
+	) {
+		while (rowsLog2 > 0 || colsLog2 > 0) {
+			if (colsLog2 > 0) {
+				final int halfCols = 1 << (colsLog2 - 1);
+				for (int r = 0; r < 1 << rowsLog2; r++) {
+					final double[] row = image[r];
+					final float[] floatRow = floatImage[r];
+					final double[] details = new double[halfCols];
+					final float[] floatDetails = new float[halfCols];
+					for (int i = 0; i < halfCols; i++) {
+						row[i] = (row[i * 2] + row[i * 2 + 1]) * 0.5;
+						details[i] = row[i] - row[i * 2 + 1];
+						floatRow[i] = (floatRow[i * 2] + floatRow[i * 2 + 1]) * 0.5f;
+						floatDetails[i] = floatRow[i] - floatRow[i * 2 + 1];
+					}
+					System.arraycopy(details, 0, row, halfCols, halfCols);
+					System.arraycopy(floatDetails, 0, floatRow, halfCols, halfCols);
+				}
+				colsLog2 -= 1;
+				if (standard) {
+					continue;
+				}
+			}
+			if (rowsLog2 > 0) {
+				final int halfRows = 1 << (rowsLog2 - 1);
+				for (int col = 0; col < 1 << colsLog2; col++) {
+					final double[] details = new double[halfRows];
+					final float[] floatDetails = new float[halfRows];
+					for (int i = 0; i < halfRows; i++) {
+						image[i][col] = (image[i * 2][col] + image[i * 2 + 1][col]) * 0.5;
+						details[i] = image[i][col] - image[i * 2 + 1][col];
+						floatImage[i][col] = (floatImage[i * 2][col] + floatImage[i * 2 + 1][col]) * 0.5f;
+						floatDetails[i] = floatImage[i][col] - floatImage[i * 2 + 1][col];
+					}
+					for (int i = 0; i < halfRows; i++) {
+						image[halfRows + i][col] = details[i];
+						floatImage[halfRows + i][col] = floatDetails[i];
+					}
+				}
+				rowsLog2 -= 1;
+			}
+		}
+	}
 }
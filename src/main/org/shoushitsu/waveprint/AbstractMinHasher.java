@@ -0,0 +1,100 @@
+package org.shoushitsu.waveprint;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The parts of a {@link MinHasher} that don't depend on the family: the
+ * dimensions, the signature of an array and the batch, which hashes the
+ * sets one by one.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public abstract class AbstractMinHasher implements MinHasher {
+
+	private final int myHashLength;
+
+	private final int myPositionCount;
+
+	/**
+	 * Creates a new hasher.
+	 *
+	 * @param hashLength       the amount of elements in a signature.
+	 * @param positionCount    the amount of bit positions.
+	 */
+	protected AbstractMinHasher(final int hashLength, final int positionCount) {
+		if (hashLength <= 0 || positionCount <= 0) {
+			throw new IllegalArgumentException(String.format(
+					"Expected positive hash length and position count, got %d and %d",
+					hashLength, positionCount
+			));
+		}
+		myHashLength = hashLength;
+		myPositionCount = positionCount;
+	}
+
+	@Override
+	public int[] hash(@Nonnull final int[] bitPositions) {
+		final int[] hash = new int[myHashLength];
+		hash(bitPositions, 0, bitPositions.length, hash, 0);
+		return hash;
+	}
+
+	@Override
+	public void hashAll(
+			@Nonnull final int[] bitPositions,
+			final int setLength,
+			final int setCount,
+			@Nonnull final int[] hashes
+	) {
+		checkBatch(bitPositions, setLength, setCount, hashes);
+		for (int set = 0; set < setCount; set++) {
+			hash(bitPositions, set * setLength, setLength, hashes, set * myHashLength);
+		}
+	}
+
+	/**
+	 * Checks that a batch of sets of bit positions may be hashed.
+	 *
+	 * @param bitPositions    the positions of all sets.
+	 * @param setLength       the amount of positions in a set.
+	 * @param setCount        the amount of sets.
+	 * @param hashes          the array for the signatures.
+	 */
+	protected void checkBatch(
+			@Nonnull final int[] bitPositions,
+			final int setLength,
+			final int setCount,
+			@Nonnull final int[] hashes
+	) {
+		checkSetLength(setLength);
+		if ((long) setLength * setCount > bitPositions.length ||
+				(long) myHashLength * setCount > hashes.length) {
+			throw new IllegalArgumentException(String.format(
+					"Expected %d positions and room for %d hash elements, got %d and %d",
+					(long) setLength * setCount, (long) myHashLength * setCount,
+					bitPositions.length, hashes.length
+			));
+		}
+	}
+
+	/**
+	 * Checks that a set of bit positions may be hashed.
+	 *
+	 * @param length    the amount of positions.
+	 */
+	protected static void checkSetLength(final int length) {
+		if (length <= 0) {
+			throw new IllegalArgumentException("Can't hash an empty set of bit positions");
+		}
+	}
+
+	@Override
+	public int getHashLength() {
+		return myHashLength;
+	}
+
+	@Override
+	public int getPositionCount() {
+		return myPositionCount;
+	}
+}
@@ -0,0 +1,108 @@
+package org.shoushitsu.waveprint;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link MinHasher} that has the values of all its hash functions
+ * precomputed in one position-major table: the values at position
+ * {@code p} are next to each other, at <code>p * getHashLength()</code>. A
+ * single pass over the bit positions thus updates all running minima,
+ * reading one short run of the table per bit, and nothing is allocated but
+ * the output (when it isn't supplied).
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public abstract class AbstractTableMinHasher extends AbstractMinHasher {
+
+	/** Position-major hash values; see the class description. */
+	private final int[] myTable;
+
+	/**
+	 * Creates a new hasher.
+	 *
+	 * @param hashLength       the amount of hash functions.
+	 * @param positionCount    the amount of bit positions.
+	 * @param table            the hash values, as described above; not
+	 *                            copied.
+	 */
+	protected AbstractTableMinHasher(
+			final int hashLength,
+			final int positionCount,
+			@Nonnull final int[] table
+	) {
+		super(hashLength, positionCount);
+		if (table.length != hashLength * positionCount) {
+			throw new IllegalArgumentException(String.format(
+					"Expected a table of %d hash functions over %d positions, got %d values",
+					hashLength, positionCount, table.length
+			));
+		}
+		myTable = table;
+	}
+
+	/**
+	 * The most sets {@link #hashAll} updates together: their minima should
+	 * stay in the L1 cache while the rows of the table stream through it.
+	 */
+	private static final int BATCH_BLOCK = 16;
+
+	@Override
+	public void hash(
+			@Nonnull final int[] bitPositions,
+			final int offset,
+			final int length,
+			@Nonnull final int[] hash,
+			final int hashOffset
+	) {
+		checkSetLength(length);
+		final int hashLength = getHashLength();
+		final int[] table = myTable;
+		// the first position initializes the minima
+		System.arraycopy(table, bitPositions[offset] * hashLength, hash, hashOffset, hashLength);
+		for (int i = offset + 1, end = offset + length; i < end; i++) {
+			final int row = bitPositions[i] * hashLength;
+			// branch free, so that the JIT can vectorize it
+			for (int j = 0; j < hashLength; j++) {
+				hash[hashOffset + j] = Math.min(hash[hashOffset + j], table[row + j]);
+			}
+		}
+	}
+
+	/**
+	 * Hashes the sets a block at a time, walking the blocks' positions in
+	 * step: the first position of every set initializes its minima, then
+	 * the second position of every set updates them, and so on. The minima
+	 * of the block stay in the cache, and the independent rows of different
+	 * sets keep more loads in flight than one set's dependent updates do.
+	 */
+	@Override
+	public void hashAll(
+			@Nonnull final int[] bitPositions,
+			final int setLength,
+			final int setCount,
+			@Nonnull final int[] hashes
+	) {
+		checkBatch(bitPositions, setLength, setCount, hashes);
+		final int hashLength = getHashLength();
+		final int[] table = myTable;
+		for (int first = 0; first < setCount; first += BATCH_BLOCK) {
+			final int end = Math.min(setCount, first + BATCH_BLOCK);
+			for (int set = first; set < end; set++) {
+				System.arraycopy(
+						table, bitPositions[set * setLength] * hashLength,
+						hashes, set * hashLength,
+						hashLength
+				);
+			}
+			for (int i = 1; i < setLength; i++) {
+				for (int set = first; set < end; set++) {
+					final int row = bitPositions[set * setLength + i] * hashLength;
+					final int hashOffset = set * hashLength;
+					for (int j = 0; j < hashLength; j++) {
+						hashes[hashOffset + j] = Math.min(hashes[hashOffset + j], table[row + j]);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package org.shoushitsu.waveprint;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A sample source that reads from an array.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class ArraySampleSource implements SampleSource {
+
+	private final short[] mySamples;
+
+	private int myPosition;
+
+	public ArraySampleSource(@Nonnull final short[] samples) {
+		mySamples = samples;
+	}
+
+	@Override
+	public int read(@Nonnull final short[] buffer, final int offset, final int length) {
+		if (myPosition == mySamples.length) {
+			return -1;
+		}
+		final int count = Math.min(length, mySamples.length - myPosition);
+		System.arraycopy(mySamples, myPosition, buffer, offset, count);
+		myPosition += count;
+		return count;
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,19 @@
+package org.shoushitsu.waveprint;
+
+/**
+ * The precision of the spectrogram, wavelet transform and top wavelet
+ * selection of a {@link Waveprint}.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public enum FingerprintPrecision {
+	/** Everything in {@code double}. */
+	DOUBLE,
+	/**
+	 * Frames are computed in {@code double} and rounded to {@code float};
+	 * the wavelet transform and the selection work in {@code float}. The
+	 * top wavelets, and so the fingerprints, occasionally differ from
+	 * those of {@link #DOUBLE}.
+	 */
+	FLOAT
+}
@@ -1,34 +1,79 @@
 package org.shoushitsu.waveprint;
 
-import msyu.util.collect.IntArrayBuilder;
-
 import javax.annotation.Nonnull;
-import java.util.List;
 
 /**
+ * Computes MinHash signatures of sets of "1" bit positions: element
+ * {@code j} of a signature is the smallest value the {@code j}-th hash
+ * function of the family takes on the set's positions. The values are in
+ * the range of positions, so signatures of all families can be stored and
+ * compared the same way.
+ *
  * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ *
+ * @see PermutationMinHasher
+ * @see SeededMinHasher
  */
-public class MinHasher {
+public interface MinHasher {
+
+	/**
+	 * Computes the signature of a set of bit positions.
+	 *
+	 * @param bitPositions    the positions; must not be empty.
+	 *
+	 * @return a new array of {@link #getHashLength()} elements.
+	 */
+	int[] hash(@Nonnull int[] bitPositions);
+
+	/**
+	 * Computes the signature of a set of bit positions into the given array.
+	 *
+	 * @param bitPositions    the array that holds the positions.
+	 * @param offset          where the positions start in the array.
+	 * @param length          the amount of positions; must not be zero.
+	 * @param hash            the array for the signature.
+	 * @param hashOffset      where the signature starts in {@code hash}.
+	 */
+	void hash(
+			@Nonnull int[] bitPositions,
+			int offset,
+			int length,
+			@Nonnull int[] hash,
+			int hashOffset
+	);
 
-	private final List<Permutation> permutations;
+	/**
+	 * Computes the signatures of several sets of bit positions of the same
+	 * size, such as the top wavelets of consecutive windows, held one after
+	 * another in one array. The signatures are stored the same way.
+	 *
+	 * @param bitPositions    the positions of all sets.
+	 * @param setLength       the amount of positions in a set; must not be
+	 *                           zero.
+	 * @param setCount        the amount of sets.
+	 * @param hashes          the array for the signatures; at least
+	 *                           <code>setCount * getHashLength()</code>
+	 *                           long.
+	 */
+	void hashAll(
+			@Nonnull int[] bitPositions,
+			int setLength,
+			int setCount,
+			@Nonnull int[] hashes
+	);
 
-	public MinHasher(@Nonnull final List<Permutation> permutations) {
-		this.permutations = permutations;
-	}
+	/**
+	 * Get the amount of elements in a signature, which is the amount of
+	 * hash functions.
+	 *
+	 * @return the amount of elements.
+	 */
+	int getHashLength();
 
-	public int[] hash(@Nonnull final int[] bitPositions) {
-		final IntArrayBuilder hashBuilder = new IntArrayBuilder(permutations.size());
-		for (final Permutation permutation : permutations) {
-			final int[] permutedBitPositions = permutation.apply(bitPositions);
-			int min = permutedBitPositions[0];
-			for (int i = 1; i < permutedBitPositions.length; i++) {
-				final int position = permutedBitPositions[i];
-				if (position < min) {
-					min = position;
-				}
-			}
-			hashBuilder.append(min);
-		}
-		return hashBuilder.toIntArray();
-	}
+	/**
+	 * Get the amount of bit positions; positions must be less than this.
+	 *
+	 * @return the amount of positions.
+	 */
+	int getPositionCount();
 }
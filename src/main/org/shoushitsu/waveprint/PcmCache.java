@@ -0,0 +1,424 @@
+package org.shoushitsu.waveprint;
+
+import org.shoushitsu.waveprint.exceptions.sampleextractor.SampleExtractionException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An on-disk cache of decoded tracks.
+ * <p/>
+ * Entries are keyed by a hash of the source file's contents and the sample
+ * rate, so renamed or copied files still hit, and changed files miss. Each
+ * entry is a file with a small header followed by mono 16bit little-endian
+ * samples; it is memory-mapped and read without any decoding.
+ * <p/>
+ * The total size of the entries is bounded. When a new entry pushes it over
+ * the bound, the least recently used entries are deleted. Recency is the
+ * entry file's modification time, which is updated on every hit, so it
+ * survives restarts.
+ * <p/>
+ * The directory is scanned once, when the cache is created; after that,
+ * the cache keeps track of its entries in memory. So a directory must not
+ * be used by several caches at the same time. Temporary files left by an
+ * interrupted run are deleted by the scan.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class PcmCache {
+
+	private static final int MAGIC = 0x5750434d; // "WPCM"
+
+	private static final int VERSION = 1;
+
+	/** Magic, version, sample rate and sample count. */
+	private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+
+	private static final String SUFFIX = ".pcm";
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Path myDirectory;
+
+	private final long myMaxSize;
+
+	private final AtomicLong myHits = new AtomicLong();
+
+	private final AtomicLong myMisses = new AtomicLong();
+
+	/** The sizes of the entries by key, least recently used first. */
+	private final LinkedHashMap<String, Long> myEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long myTotalSize;
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param directory    where to keep the entries. Created if missing.
+	 * @param maxSize      the maximum total size of the entries, in bytes.
+	 *
+	 * @throws IOException if the directory can't be created or listed.
+	 */
+	public PcmCache(@Nonnull final Path directory, final long maxSize) throws IOException {
+		myDirectory = Files.createDirectories(directory);
+		myMaxSize = maxSize;
+
+		final List<String> keys = new ArrayList<>();
+		final Map<String, Long> sizes = new HashMap<>();
+		final Map<String, Long> usageTimes = new HashMap<>();
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(myDirectory)) {
+			for (final Path file : stream) {
+				final String name = file.getFileName().toString();
+				if (name.endsWith(TEMP_SUFFIX)) {
+					Files.deleteIfExists(file);
+				} else if (name.endsWith(SUFFIX)) {
+					final String key = name.substring(0, name.length() - SUFFIX.length());
+					keys.add(key);
+					sizes.put(key, Files.size(file));
+					usageTimes.put(key, Files.getLastModifiedTime(file).toMillis());
+				}
+			}
+		}
+		Collections.sort(keys, new Comparator<String>() {
+			@Override
+			public int compare(final String key1, final String key2) {
+				return usageTimes.get(key1).compareTo(usageTimes.get(key2));
+			}
+		});
+		synchronized (this) {
+			for (final String key : keys) {
+				final long size = sizes.get(key);
+				myEntries.put(key, size);
+				myTotalSize += size;
+			}
+			evict();
+		}
+	}
+
+	public long getHits() {
+		return myHits.get();
+	}
+
+	public long getMisses() {
+		return myMisses.get();
+	}
+
+	/**
+	 * Computes the cache key of a track.
+	 *
+	 * @param source        the source file. It is read in full.
+	 * @param sampleRate    the sample rate of the decoded samples.
+	 *
+	 * @return the key.
+	 *
+	 * @throws IOException if the file can't be read.
+	 */
+	@Nonnull
+	public String getKey(@Nonnull final Path source, final int sampleRate) throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// every JRE is required to have it
+			throw new IllegalStateException(e);
+		}
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		try (final InputStream stream = Files.newInputStream(source)) {
+			int read;
+			while ((read = stream.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		final StringBuilder key = new StringBuilder();
+		for (final byte b : digest.digest()) {
+			key.append(String.format("%02x", b & 0xff));
+		}
+		return key.append('-').append(sampleRate).toString();
+	}
+
+	/**
+	 * Opens a cached track.
+	 *
+	 * @param key            the track's key.
+	 * @param sampleRate     the sample rate of the decoded samples.
+	 * @param sampleLimit    the maximum amount of samples to read.
+	 *
+	 * @return the source of the track's samples, or {@code null} if the
+	 * track isn't cached.
+	 */
+	@Nullable
+	public SampleSource open(
+			@Nonnull final String key,
+			final int sampleRate,
+			final long sampleLimit
+	) {
+		final Path entry = myDirectory.resolve(key + SUFFIX);
+		final ShortBuffer samples;
+		try (final FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+			final MappedByteBuffer mapped =
+					channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			mapped.order(ByteOrder.LITTLE_ENDIAN);
+			if (mapped.remaining() < HEADER_SIZE ||
+					mapped.getInt() != MAGIC ||
+					mapped.getInt() != VERSION ||
+					mapped.getInt() != sampleRate) {
+				throw new IOException("Not a cache entry: " + entry);
+			}
+			final long sampleCount = mapped.getLong();
+			if (sampleCount != mapped.remaining() / 2) {
+				throw new IOException("Truncated cache entry: " + entry);
+			}
+			samples = mapped.asShortBuffer();
+			samples.limit((int) Math.min(sampleCount, sampleLimit));
+			Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			myMisses.incrementAndGet();
+			return null;
+		}
+		synchronized (this) {
+			// moves the entry to the most recently used end
+			myEntries.get(key);
+		}
+		myHits.incrementAndGet();
+		return new MappedSampleSource(samples);
+	}
+
+	/**
+	 * Wraps a source so that the samples read from it are also written into
+	 * the cache. The entry appears when the source is read to the end and
+	 * closed without errors; a partially read track isn't cached.
+	 * <p/>
+	 * Failures to write the entry are not reported, the track just doesn't
+	 * get cached.
+	 *
+	 * @param key           the track's key.
+	 * @param sampleRate    the sample rate of the source.
+	 * @param source        the source of the track's samples.
+	 *
+	 * @return the source to read instead of {@code source}.
+	 */
+	@Nonnull
+	public SampleSource store(
+			@Nonnull final String key,
+			final int sampleRate,
+			@Nonnull final SampleSource source
+	) {
+		return new CachingSampleSource(key, sampleRate, source);
+	}
+
+	/**
+	 * Accounts for a new entry, which may replace an old one with the same
+	 * key, and evicts entries if it pushes the total size over the bound.
+	 */
+	private synchronized void added(@Nonnull final String key, final long size) {
+		final Long oldSize = myEntries.put(key, size);
+		myTotalSize += size - (oldSize == null ? 0 : oldSize);
+		evict();
+	}
+
+	/**
+	 * Deletes the least recently used entries until their total size fits
+	 * the bound.
+	 */
+	private synchronized void evict() {
+		final Iterator<Map.Entry<String, Long>> iterator = myEntries.entrySet().iterator();
+		while (myTotalSize > myMaxSize && iterator.hasNext()) {
+			final Map.Entry<String, Long> entry = iterator.next();
+			try {
+				Files.deleteIfExists(myDirectory.resolve(entry.getKey() + SUFFIX));
+			} catch (IOException e) {
+				// still in use somewhere; skip it
+				continue;
+			}
+			myTotalSize -= entry.getValue();
+			iterator.remove();
+		}
+	}
+
+
+	private static class MappedSampleSource implements SampleSource {
+
+		private final ShortBuffer mySamples;
+
+		private MappedSampleSource(@Nonnull final ShortBuffer samples) {
+			mySamples = samples;
+		}
+
+		@Override
+		public int read(@Nonnull final short[] buffer, final int offset, final int length) {
+			if (!mySamples.hasRemaining()) {
+				return -1;
+			}
+			final int count = Math.min(length, mySamples.remaining());
+			mySamples.get(buffer, offset, count);
+			return count;
+		}
+
+		@Override
+		public void close() {
+			// the mapping goes away with the buffer
+		}
+	}
+
+
+	private class CachingSampleSource implements SampleSource {
+
+		private final String myKey;
+
+		private final int mySampleRate;
+
+		private final SampleSource mySource;
+
+		private final ByteBuffer myBuffer =
+				ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+		/** The samples to write, in {@link #myBuffer}. */
+		private final ShortBuffer mySamples = myBuffer.asShortBuffer();
+
+		/** {@code null} if the entry is not being written. */
+		@Nullable
+		private Path myTempFile;
+
+		@Nullable
+		private FileChannel myChannel;
+
+		private long mySampleCount;
+
+		private boolean myEof;
+
+		private CachingSampleSource(
+				@Nonnull final String key,
+				final int sampleRate,
+				@Nonnull final SampleSource source
+		) {
+			myKey = key;
+			mySampleRate = sampleRate;
+			mySource = source;
+			try {
+				myTempFile = Files.createTempFile(myDirectory, key, TEMP_SUFFIX);
+				myChannel = FileChannel.open(myTempFile, StandardOpenOption.WRITE);
+				myChannel.position(HEADER_SIZE);
+			} catch (IOException e) {
+				abandon();
+			}
+		}
+
+		@Override
+		public int read(@Nonnull final short[] buffer, final int offset, final int length)
+				throws SampleExtractionException {
+			final int read = mySource.read(buffer, offset, length);
+			if (read == -1) {
+				myEof = true;
+			} else if (myChannel != null) {
+				try {
+					for (int written = 0; written < read; ) {
+						if (!mySamples.hasRemaining()) {
+							writeBuffer();
+						}
+						final int count = Math.min(read - written, mySamples.remaining());
+						mySamples.put(buffer, offset + written, count);
+						written += count;
+					}
+					mySampleCount += read;
+				} catch (IOException e) {
+					abandon();
+				}
+			}
+			return read;
+		}
+
+		private void writeBuffer() throws IOException {
+			myBuffer.limit(2 * mySamples.position());
+			while (myBuffer.hasRemaining()) {
+				myChannel.write(myBuffer);
+			}
+			myBuffer.clear();
+			mySamples.clear();
+		}
+
+		@Override
+		public void close() throws SampleExtractionException {
+			boolean sourceClosed = false;
+			try {
+				mySource.close();
+				sourceClosed = true;
+			} finally {
+				if (sourceClosed && myEof && myChannel != null) {
+					commit();
+				} else {
+					abandon();
+				}
+			}
+		}
+
+		private void commit() {
+			final long size;
+			try {
+				writeBuffer();
+				myBuffer.putInt(MAGIC)
+						.putInt(VERSION)
+						.putInt(mySampleRate)
+						.putLong(mySampleCount)
+						.flip();
+				for (long position = 0; myBuffer.hasRemaining(); ) {
+					position += myChannel.write(myBuffer, position);
+				}
+				size = myChannel.size();
+				myChannel.close();
+				myChannel = null;
+				Files.move(
+						myTempFile,
+						myDirectory.resolve(myKey + SUFFIX),
+						StandardCopyOption.REPLACE_EXISTING
+				);
+				myTempFile = null;
+			} catch (IOException e) {
+				abandon();
+				return;
+			}
+			added(myKey, size);
+		}
+
+		private void abandon() {
+			try {
+				if (myChannel != null) {
+					myChannel.close();
+				}
+				if (myTempFile != null) {
+					Files.deleteIfExists(myTempFile);
+				}
+			} catch (IOException e) {
+				// nothing else to do about it
+			}
+			myChannel = null;
+			myTempFile = null;
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package org.shoushitsu.waveprint;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Decodes signed 16bit PCM samples from a byte stream in large blocks.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+class PcmDecoder {
+
+	static final int BLOCK_SIZE = 1 << 16;
+
+	private static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private final InputStream myStream;
+
+	/** Bytes that were read but not decoded yet; always in read mode. */
+	private final ByteBuffer myBuffer;
+
+	private boolean myEof;
+
+	/**
+	 * Creates a decoder.
+	 *
+	 * @param stream    the stream with mono PCM data.
+	 * @param order     byte order of the samples.
+	 */
+	PcmDecoder(@Nonnull final InputStream stream, @Nonnull final ByteOrder order) {
+		myStream = stream;
+		myBuffer = ByteBuffer.allocate(BLOCK_SIZE).order(order);
+		myBuffer.flip();
+	}
+
+	/**
+	 * Decodes the next samples.
+	 *
+	 * @param samples    the array for decoded samples.
+	 * @param offset     where to put the first sample.
+	 * @param length     the maximum amount of samples to decode. Must be
+	 *                      positive.
+	 *
+	 * @return the amount of decoded samples, or {@code -1} if the stream has
+	 * ended. A trailing odd byte, if any, is ignored.
+	 *
+	 * @throws IOException if reading from the stream fails.
+	 */
+	int read(
+			@Nonnull final short[] samples,
+			final int offset,
+			final int length
+	) throws IOException {
+		while (myBuffer.remaining() < 2) {
+			if (myEof || !fill()) {
+				return -1;
+			}
+		}
+		final int count = Math.min(myBuffer.remaining() >> 1, length);
+		// the view shares the buffer's byte order
+		myBuffer.asShortBuffer().get(samples, offset, count);
+		myBuffer.position(myBuffer.position() + (count << 1));
+		return count;
+	}
+
+	private boolean fill() throws IOException {
+		// keep the odd byte, if any, in front of the new data
+		myBuffer.compact();
+		try {
+			final int read = myStream.read(
+					myBuffer.array(),
+					myBuffer.position(),
+					myBuffer.remaining()
+			);
+			if (read == -1) {
+				myEof = true;
+				return false;
+			}
+			myBuffer.position(myBuffer.position() + read);
+			return true;
+		} finally {
+			myBuffer.flip();
+		}
+	}
+
+	/**
+	 * Reads the stream to its end and decodes all of it.
+	 *
+	 * @param stream             the stream with mono PCM data.
+	 * @param order              byte order of the samples.
+	 * @param expectedSamples    how many samples are expected; used to size
+	 *                              the result. Nonpositive if unknown.
+	 *
+	 * @return the decoded samples. A trailing odd byte, if any, is ignored.
+	 *
+	 * @throws IOException if reading from the stream fails.
+	 */
+	static short[] decode(
+			@Nonnull final InputStream stream,
+			@Nonnull final ByteOrder order,
+			final int expectedSamples
+	) throws IOException {
+		final PcmDecoder decoder = new PcmDecoder(stream, order);
+		short[] samples = new short[expectedSamples > 0 ? expectedSamples : DEFAULT_CAPACITY];
+		int sampleCount = 0;
+		while (true) {
+			if (sampleCount == samples.length) {
+				samples = Arrays.copyOf(samples, samples.length << 1);
+			}
+			final int read = decoder.read(samples, sampleCount, samples.length - sampleCount);
+			if (read == -1) {
+				break;
+			}
+			sampleCount += read;
+		}
+		return (sampleCount == samples.length) ?
+				samples :
+				Arrays.copyOf(samples, sampleCount);
+	}
+
+}
@@ -57,6 +57,26 @@ public class Permutation implements Function<int[], int[]> {
 		return builder.toIntArray();
 	}
 
+	/**
+	 * Get the new position of one bit.
+	 *
+	 * @param bitPos    the bit's position.
+	 *
+	 * @return the permuted position.
+	 */
+	public int apply(final int bitPos) {
+		return permutation[bitPos];
+	}
+
+	/**
+	 * Get the amount of positions this permutation permutes.
+	 *
+	 * @return the length.
+	 */
+	public int getLength() {
+		return permutation.length;
+	}
+
 	public void forEachElement(final SequenceAwareFunction<Integer, Void> function) {
 		for (
 				int i = 0, permutationLength = permutation.length;
@@ -0,0 +1,50 @@
+package org.shoushitsu.waveprint;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * A {@link MinHasher} whose hash functions are stored permutations: element
+ * {@code j} of a signature is the smallest position the {@code j}-th
+ * permutation moves the bits to.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class PermutationMinHasher extends AbstractTableMinHasher {
+
+	/**
+	 * Creates a new hasher.
+	 *
+	 * @param permutations    the permutations, one per element of a
+	 *                           signature. All must have the same length.
+	 */
+	public PermutationMinHasher(@Nonnull final List<Permutation> permutations) {
+		super(permutations.size(), getLength(permutations), toTable(permutations));
+	}
+
+	private static int getLength(final List<Permutation> permutations) {
+		if (permutations.isEmpty()) {
+			throw new IllegalArgumentException("At least one permutation is required");
+		}
+		return permutations.get(0).getLength();
+	}
+
+	private static int[] toTable(final List<Permutation> permutations) {
+		final int hashLength = permutations.size();
+		final int positionCount = getLength(permutations);
+		final int[] table = new int[positionCount * hashLength];
+		for (int j = 0; j < hashLength; j++) {
+			final Permutation permutation = permutations.get(j);
+			if (permutation.getLength() != positionCount) {
+				throw new IllegalArgumentException(String.format(
+						"Permutation %d has length %d, expected %d",
+						j, permutation.getLength(), positionCount
+				));
+			}
+			for (int position = 0; position < positionCount; position++) {
+				table[position * hashLength + j] = permutation.apply(position);
+			}
+		}
+		return table;
+	}
+}
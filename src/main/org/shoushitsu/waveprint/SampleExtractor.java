@@ -1,25 +1,24 @@
 package org.shoushitsu.waveprint;
 
-import msyu.util.collect.IntArrayBuilder;
-import msyu.util.collect.Pair;
 import org.shoushitsu.waveprint.exceptions.sampleextractor.AudioConversionResultException;
 import org.shoushitsu.waveprint.exceptions.sampleextractor.AudioConversionStartException;
 import org.shoushitsu.waveprint.exceptions.sampleextractor.AudioConversionWaitException;
 import org.shoushitsu.waveprint.exceptions.sampleextractor.ConvertedFileFormatException;
-import org.shoushitsu.waveprint.exceptions.sampleextractor.ConvertedFileOpenException;
 import org.shoushitsu.waveprint.exceptions.sampleextractor.ConvertedFileReadException;
 import org.shoushitsu.waveprint.exceptions.sampleextractor.SampleExtractionException;
-import org.shoushitsu.waveprint.exceptions.sampleextractor.TempFileCreationException;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -30,105 +29,345 @@ import java.util.List;
  */
 public class SampleExtractor {
 
+	private static final int DIRECT_BLOCK_FRAMES = 1 << 14;
+
 	private final int mySampleRate;
 
+	private final boolean myDirectDecoding;
+
+	@Nullable
+	private final PcmCache myCache;
+
 	public SampleExtractor(final int sampleRate) {
+		this(sampleRate, false);
+	}
+
+	public SampleExtractor(final int sampleRate, final boolean directDecoding) {
+		this(sampleRate, directDecoding, null);
+	}
+
+	/**
+	 * Creates a new sample extractor.
+	 *
+	 * @param sampleRate        the sample rate of extracted samples.
+	 * @param directDecoding    whether to decode the formats that the JRE
+	 *                             supports (PCM in WAV, AIFF and AU) without
+	 *                             launching a converter process. The
+	 *                             samples are close to the converter's but
+	 *                             not identical, so the tools don't use it
+	 *                             for their databases.
+	 * @param cache             if not {@code null}, the cache of decoded
+	 *                             tracks to read from and to fill.
+	 */
+	public SampleExtractor(
+			final int sampleRate,
+			final boolean directDecoding,
+			@Nullable final PcmCache cache
+	) {
 		mySampleRate = sampleRate;
+		myDirectDecoding = directDecoding;
+		myCache = cache;
 	}
 
 	public int getSampleRate() {
 		return mySampleRate;
 	}
 
-	public Pair<int[], Path> extract(@Nonnull final Path source)
+	public short[] extract(@Nonnull final Path source)
 			throws SampleExtractionException {
 		return extract(source, null);
 	}
 
-	public Pair<int[], Path> extract(
+	/**
+	 * Decodes the whole source file into an array. Use {@link #open} if the
+	 * samples can be processed as they come.
+	 * <p/>
+	 * The samples are 16bit; {@link Samples#toInts(short[])} converts them
+	 * for code that still expects {@code int[]}.
+	 *
+	 * @see #open(Path, Integer)
+	 */
+	public short[] extract(
 			@Nonnull final Path source,
 			@Nullable final Integer duration
 	) throws SampleExtractionException {
-		final Path convertedFile = convert(source, duration);
-		try (final InputStream convertedStream = Files.newInputStream(convertedFile)) {
-			return Pair.of(extractFromConverted(convertedStream), convertedFile);
-		} catch (IOException e) {
-			throw new ConvertedFileOpenException(e);
+		try (final SampleSource samples = open(source, duration)) {
+			return readAll(samples);
 		}
 	}
 
-	private Path convert(@Nonnull final Path source, final Integer duration) throws SampleExtractionException {
-		final Path dest;
+	public SampleSource open(@Nonnull final Path source)
+			throws SampleExtractionException {
+		return open(source, null);
+	}
+
+	/**
+	 * Starts decoding the source file into mono samples at this extractor's
+	 * sample rate.
+	 * <p/>
+	 * If direct decoding is enabled and the JRE can read the file, it is
+	 * decoded, downmixed and resampled in-process. Otherwise, a converter
+	 * writes raw PCM into a pipe, and the samples are decoded while it is
+	 * still running, so nothing touches the disk.
+	 * <p/>
+	 * Either way, samples are decoded as they are read from the returned
+	 * source, so the track never has to be held in memory as a whole.
+	 * <p/>
+	 * If there is a cache, a cached track isn't decoded at all, and a track
+	 * that is decoded in full (that is, without a duration limit) is added
+	 * to the cache once the returned source is read to the end and closed.
+	 *
+	 * @param source      the file to decode.
+	 * @param duration    if not {@code null}, the maximum amount of seconds
+	 *                       to decode.
+	 *
+	 * @return the source of decoded samples. It must be closed.
+	 *
+	 * @throws SampleExtractionException if the conversion can't be started.
+	 */
+	public SampleSource open(
+			@Nonnull final Path source,
+			@Nullable final Integer duration
+	) throws SampleExtractionException {
+		if (myCache == null) {
+			return decode(source, duration);
+		}
+		final String key;
 		try {
-			dest = Files.createTempFile(null, ".wav");
+			key = myCache.getKey(source, mySampleRate);
 		} catch (IOException e) {
-			throw new TempFileCreationException(e);
+			// leave it to the decoders, which are better at reporting errors
+			return decode(source, duration);
 		}
+		final SampleSource cached = myCache.open(
+				key,
+				mySampleRate,
+				(duration == null) ? Long.MAX_VALUE : (long) duration * mySampleRate
+		);
+		if (cached != null) {
+			return cached;
+		}
+		final SampleSource decoded = decode(source, duration);
+		return (duration == null) ?
+				myCache.store(key, mySampleRate, decoded) :
+				decoded;
+	}
 
+	private SampleSource decode(
+			@Nonnull final Path source,
+			@Nullable final Integer duration
+	) throws SampleExtractionException {
+		if (myDirectDecoding) {
+			final SampleSource samples = openDirectly(source, duration);
+			if (samples != null) {
+				return samples;
+			}
+		}
+		final Process process = startConversion(source, duration);
+		final ErrorStreamDrainer errorDrainer =
+				new ErrorStreamDrainer(process.getErrorStream());
+		errorDrainer.start();
+		return new ConverterSampleSource(process, errorDrainer);
+	}
+
+	/**
+	 * Reads all the remaining samples of a source into an array.
+	 *
+	 * @param source    the source of samples.
+	 *
+	 * @return the samples.
+	 *
+	 * @throws SampleExtractionException if the source fails.
+	 */
+	public static short[] readAll(@Nonnull final SampleSource source)
+			throws SampleExtractionException {
+		short[] samples = new short[1 << 16];
+		int sampleCount = 0;
+		while (true) {
+			if (sampleCount == samples.length) {
+				samples = Arrays.copyOf(samples, samples.length << 1);
+			}
+			final int read = source.read(samples, sampleCount, samples.length - sampleCount);
+			if (read == -1) {
+				return Arrays.copyOf(samples, sampleCount);
+			}
+			sampleCount += read;
+		}
+	}
+
+	/**
+	 * Opens the file for decoding without a converter process, if the JRE
+	 * supports its format.
+	 *
+	 * @return the source of samples, or {@code null} if the file has to go
+	 * through the converter.
+	 */
+	@Nullable
+	private SampleSource openDirectly(
+			@Nonnull final Path source,
+			@Nullable final Integer duration
+	) {
+		final AudioInputStream sourceStream;
+		try {
+			sourceStream = AudioSystem.getAudioInputStream(source.toFile());
+		} catch (UnsupportedAudioFileException | IOException e) {
+			// leave it to the converter, which is better at reporting errors
+			return null;
+		}
+		final AudioFormat format = sourceStream.getFormat();
+		final int inputRate = Math.round(format.getSampleRate());
+		final int channels = format.getChannels();
+		final AudioFormat pcmFormat = new AudioFormat(
+				AudioFormat.Encoding.PCM_SIGNED,
+				inputRate, 16, channels, channels * 2, inputRate, false
+		);
+		final AudioInputStream pcmStream;
+		if (inputRate != format.getSampleRate() || channels < 1 ||
+				!(inputRate == mySampleRate ||
+						PolyphaseResampler.isSupported(inputRate, mySampleRate))) {
+			pcmStream = null;
+		} else if (pcmFormat.matches(format)) {
+			pcmStream = sourceStream;
+		} else if (AudioSystem.isConversionSupported(pcmFormat, format)) {
+			pcmStream = AudioSystem.getAudioInputStream(pcmFormat, sourceStream);
+		} else {
+			pcmStream = null;
+		}
+		if (pcmStream == null) {
+			try {
+				sourceStream.close();
+			} catch (IOException e) {
+				// we didn't read anything anyway
+			}
+			return null;
+		}
+		final long frameLimit = (duration == null) ?
+				Long.MAX_VALUE :
+				(long) duration * inputRate;
+		return new DirectSampleSource(
+				pcmStream,
+				channels,
+				(inputRate == mySampleRate) ?
+						null :
+						new PolyphaseResampler(inputRate, mySampleRate),
+				frameLimit
+		);
+	}
+
+	private static void downmix(
+			final short[] interleaved,
+			final int channels,
+			final double[] mono,
+			final int frames
+	) {
+		switch (channels) {
+			case 1:
+				for (int i = 0; i < frames; i++) {
+					mono[i] = interleaved[i];
+				}
+				break;
+			case 2:
+				for (int i = 0; i < frames; i++) {
+					mono[i] = (interleaved[i * 2] + interleaved[i * 2 + 1]) * 0.5;
+				}
+				break;
+			default:
+				for (int i = 0; i < frames; i++) {
+					int sum = 0;
+					for (int channel = 0; channel < channels; channel++) {
+						sum += interleaved[i * channels + channel];
+					}
+					mono[i] = (double) sum / channels;
+				}
+				break;
+		}
+	}
+
+	private Process startConversion(
+			@Nonnull final Path source,
+			@Nullable final Integer duration
+	) throws SampleExtractionException {
 		final Process process;
 		try {
 			final List<String> command = new ArrayList<>();
 			command.addAll(Arrays.asList(
 					"ffmpeg",
+					"-nostdin",                               // never wait for console input
+					"-v", "error",                            // only report errors
 					"-i", source.toAbsolutePath().toString(), // input file
 					"-vn",                                    // no video output
+					"-f", "s16le",                            // raw output, no container
 					"-acodec", "pcm_s16le",                   // PCM signed 16bit little-endian
 					"-ac", "1",                               // 1 channel (mono)
-					"-ar", Integer.toString(mySampleRate),    // sample rate
-					"-y"                                      // overwrite destination
+					"-ar", Integer.toString(mySampleRate)     // sample rate
 			));
 			if (duration != null) {
 				command.add("-t");                            // cut off output
 				command.add(String.valueOf(duration));        // after N seconds
 			}
-			command.add(dest.toString());                     // output file
+			command.add("pipe:1");                            // write to stdout
 			process = new ProcessBuilder(command).start();
-			// todo: intercept output?
 		} catch (IOException e) {
 			throw new AudioConversionStartException(e);
 		}
-
-		final int exitCode;
 		try {
-			exitCode = process.waitFor();
-		} catch (InterruptedException e) {
-			// todo: protection against accidental interrupts
-			process.destroy();
-			throw new AudioConversionWaitException(e);
+			process.getOutputStream().close();
+		} catch (IOException e) {
+			// the converter doesn't read stdin anyway
 		}
+		return process;
+	}
 
-		if (exitCode != 0) {
-			throw new AudioConversionResultException(exitCode);
+	/**
+	 * Decodes raw (headerless) mono PCM, signed 16bit little-endian.
+	 *
+	 * @param rawAudio    the stream with PCM data. A trailing odd byte, if
+	 *                       any, is ignored.
+	 *
+	 * @return the decoded samples.
+	 *
+	 * @throws SampleExtractionException if the stream can't be read.
+	 */
+	public short[] extractFromRaw(@Nonnull final InputStream rawAudio) throws SampleExtractionException {
+		try (final InputStream stream = rawAudio) {
+			return PcmDecoder.decode(stream, ByteOrder.LITTLE_ENDIAN, 0);
+		} catch (IOException e) {
+			throw new ConvertedFileReadException(e);
 		}
-
-		return dest;
 	}
 
-	public int[] extractFromConverted(@Nonnull final InputStream convertedAudio) throws SampleExtractionException {
+	/**
+	 * Decodes a mono signed 16bit PCM stream in a container format known to
+	 * {@link AudioSystem} (such as WAV).
+	 *
+	 * @param convertedAudio    the stream with audio data.
+	 *
+	 * @return the decoded samples.
+	 *
+	 * @throws SampleExtractionException if the stream can't be read, or if it
+	 * isn't mono signed 16bit PCM.
+	 */
+	public short[] extractFromConverted(@Nonnull final InputStream convertedAudio) throws SampleExtractionException {
 		try (
 				final InputStream bufferedStream = new BufferedInputStream(convertedAudio);
 				final AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(bufferedStream)
 		) {
-			// todo: remove cast / support long?
-			final int frameLength = (int) audioInputStream.getFrameLength();
-			final IntArrayBuilder samples = new IntArrayBuilder(frameLength);
-
-			// assuming frame size = 2
-			final byte[] buffer = new byte[2];
-			boolean eof = false;
-			while (!eof) {
-				final int read = audioInputStream.read(buffer);
-				if (read == -1) {
-					eof = true;
-				} else {
-					// little endian
-					final int sample = (((int) buffer[0]) & 0xff) |
-							(((int) buffer[1]) << 8);
-					samples.append(sample);
-				}
+			final AudioFormat format = audioInputStream.getFormat();
+			if (!AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding()) ||
+					format.getFrameSize() != 2) {
+				throw new UnsupportedAudioFileException(
+						"Expected mono signed 16bit PCM, got " + format);
 			}
-			// todo: add check for samples.size() != frameLength
-			return samples.toIntArray();
+			// only a size hint; use open() for tracks that don't fit an array
+			final int frameLength = (int) Math.min(
+					audioInputStream.getFrameLength(),
+					Integer.MAX_VALUE
+			);
+			return PcmDecoder.decode(
+					audioInputStream,
+					format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN,
+					frameLength
+			);
 		} catch (UnsupportedAudioFileException e) {
 			throw new ConvertedFileFormatException(e);
 		} catch (IOException e) {
@@ -136,4 +375,236 @@ public class SampleExtractor {
 		}
 	}
 
+
+	/**
+	 * Decodes the converter's output as it arrives.
+	 */
+	private static class ConverterSampleSource implements SampleSource {
+
+		private final Process myProcess;
+
+		private final ErrorStreamDrainer myErrorDrainer;
+
+		private final PcmDecoder myDecoder;
+
+		private boolean myEof;
+
+		private ConverterSampleSource(
+				@Nonnull final Process process,
+				@Nonnull final ErrorStreamDrainer errorDrainer
+		) {
+			myProcess = process;
+			myErrorDrainer = errorDrainer;
+			myDecoder = new PcmDecoder(process.getInputStream(), ByteOrder.LITTLE_ENDIAN);
+		}
+
+		@Override
+		public int read(@Nonnull final short[] buffer, final int offset, final int length)
+				throws SampleExtractionException {
+			try {
+				final int read = myDecoder.read(buffer, offset, length);
+				if (read == -1) {
+					myEof = true;
+				}
+				return read;
+			} catch (IOException e) {
+				throw new ConvertedFileReadException(e);
+			}
+		}
+
+		@Override
+		public void close() throws SampleExtractionException {
+			try {
+				myProcess.getInputStream().close();
+			} catch (IOException e) {
+				// the converter is going away anyway
+			}
+			if (!myEof) {
+				// nobody needs the rest of the output
+				myProcess.destroy();
+			}
+
+			final int exitCode;
+			try {
+				exitCode = myProcess.waitFor();
+				myErrorDrainer.join();
+			} catch (InterruptedException e) {
+				// todo: protection against accidental interrupts
+				myProcess.destroy();
+				throw new AudioConversionWaitException(e);
+			}
+
+			if (myEof && exitCode != 0) {
+				throw new AudioConversionResultException(
+						exitCode,
+						myErrorDrainer.getOutput()
+				);
+			}
+		}
+	}
+
+
+	/**
+	 * Decodes PCM with the JRE, then downmixes and resamples it.
+	 */
+	private static class DirectSampleSource implements SampleSource {
+
+		private final AudioInputStream myStream;
+
+		private final int myChannels;
+
+		@Nullable
+		private final PolyphaseResampler myResampler;
+
+		private final ByteBuffer myBuffer;
+
+		private final short[] myInterleaved;
+
+		private final double[] myMono;
+
+		/** Decoded samples that weren't read yet. */
+		private final short[] myPending;
+		private int myPendingPosition;
+		private int myPendingLimit;
+
+		private long myFramesLeft;
+
+		private boolean myFinished;
+
+		private DirectSampleSource(
+				@Nonnull final AudioInputStream stream,
+				final int channels,
+				@Nullable final PolyphaseResampler resampler,
+				final long frameLimit
+		) {
+			myStream = stream;
+			myChannels = channels;
+			myResampler = resampler;
+			myFramesLeft = frameLimit;
+			myBuffer = ByteBuffer.allocate(DIRECT_BLOCK_FRAMES * channels * 2)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			myInterleaved = new short[DIRECT_BLOCK_FRAMES * channels];
+			myMono = new double[DIRECT_BLOCK_FRAMES];
+			myPending = new short[(resampler == null) ?
+					DIRECT_BLOCK_FRAMES :
+					resampler.getMaxOutputLength(DIRECT_BLOCK_FRAMES)];
+		}
+
+		@Override
+		public int read(@Nonnull final short[] buffer, final int offset, final int length)
+				throws SampleExtractionException {
+			while (myPendingPosition == myPendingLimit) {
+				if (!decodeBlock()) {
+					return -1;
+				}
+			}
+			final int count = Math.min(length, myPendingLimit - myPendingPosition);
+			System.arraycopy(myPending, myPendingPosition, buffer, offset, count);
+			myPendingPosition += count;
+			return count;
+		}
+
+		private boolean decodeBlock() throws SampleExtractionException {
+			if (myFinished) {
+				return false;
+			}
+			myPendingPosition = 0;
+			myPendingLimit = 0;
+
+			final int read;
+			try {
+				read = (myFramesLeft == 0) ?
+						-1 :
+						myStream.read(myBuffer.array(), myBuffer.position(), myBuffer.remaining());
+			} catch (IOException e) {
+				throw new ConvertedFileReadException(e);
+			}
+			if (read == -1) {
+				myFinished = true;
+				if (myResampler != null) {
+					myPendingLimit = myResampler.flush(myPending);
+				}
+				return true;
+			}
+			myBuffer.position(myBuffer.position() + read);
+			myBuffer.flip();
+
+			final int frameSize = myChannels * 2;
+			final int frames = (int) Math.min(myBuffer.remaining() / frameSize, myFramesLeft);
+			myFramesLeft -= frames;
+			myBuffer.asShortBuffer().get(myInterleaved, 0, frames * myChannels);
+			downmix(myInterleaved, myChannels, myMono, frames);
+			myBuffer.position(frames * frameSize);
+			myBuffer.compact();
+
+			if (myResampler == null) {
+				for (int i = 0; i < frames; i++) {
+					myPending[i] = (short) Math.round(myMono[i]);
+				}
+				myPendingLimit = frames;
+			} else {
+				myPendingLimit = myResampler.process(myMono, 0, frames, myPending);
+			}
+			return true;
+		}
+
+		@Override
+		public void close() throws SampleExtractionException {
+			try {
+				myStream.close();
+			} catch (IOException e) {
+				throw new ConvertedFileReadException(e);
+			}
+		}
+	}
+
+
+	/**
+	 * Reads the converter's error output so that the converter never blocks
+	 * on a full pipe. The tail of the output is kept for diagnostics.
+	 */
+	private static class ErrorStreamDrainer extends Thread {
+
+		private static final int KEPT_LENGTH = 4096;
+
+		private final InputStream myStream;
+
+		private final byte[] myTail = new byte[KEPT_LENGTH];
+
+		private int myTailLength;
+
+		private ErrorStreamDrainer(@Nonnull final InputStream stream) {
+			super("ffmpeg stderr drainer");
+			setDaemon(true);
+			myStream = stream;
+		}
+
+		@Override
+		public void run() {
+			final byte[] buffer = new byte[KEPT_LENGTH];
+			try (final InputStream stream = myStream) {
+				int read;
+				while ((read = stream.read(buffer)) != -1) {
+					keep(buffer, read);
+				}
+			} catch (IOException e) {
+				// the process is gone, nothing more to read
+			}
+		}
+
+		private synchronized void keep(final byte[] buffer, final int length) {
+			final int overflow = myTailLength + length - KEPT_LENGTH;
+			if (overflow > 0) {
+				System.arraycopy(myTail, overflow, myTail, 0, myTailLength - overflow);
+				myTailLength -= overflow;
+			}
+			System.arraycopy(buffer, 0, myTail, myTailLength, length);
+			myTailLength += length;
+		}
+
+		private synchronized String getOutput() {
+			return new String(myTail, 0, myTailLength, Charset.defaultCharset()).trim();
+		}
+	}
+
 }
@@ -0,0 +1,120 @@
+package org.shoushitsu.waveprint;
+
+import org.shoushitsu.waveprint.exceptions.sampleextractor.SampleExtractionException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A window that slides over a {@link SampleSource} with a fixed step.
+ * <p/>
+ * The buffer holds the current window plus room for one step. It is a ring
+ * in which every sample is stored twice, at positions <code>i</code> and
+ * <code>i + capacity</code>, so the current window is always a contiguous
+ * range of {@link #getArray() the array} and can be handed to code that
+ * expects plain sample arrays.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class SampleRingBuffer {
+
+	private final int myWindowLength;
+
+	private final int myStep;
+
+	private final int myCapacity;
+
+	private final short[] myArray;
+
+	/** Absolute position of the first sample of the window. */
+	private long myWindowPosition;
+
+	/** Absolute position of the next sample to read from the source. */
+	private long myReadPosition;
+
+	public SampleRingBuffer(final int windowLength, final int step) {
+		if (windowLength < 1 || step < 1) {
+			throw new IllegalArgumentException(String.format(
+					"Window length and step must be positive, got %d and %d",
+					windowLength, step
+			));
+		}
+		myWindowLength = windowLength;
+		myStep = step;
+		myCapacity = windowLength + step;
+		myArray = new short[myCapacity * 2];
+	}
+
+	/**
+	 * Reads the first window from the source.
+	 *
+	 * @param source    the source of samples.
+	 *
+	 * @return {@code true} if the source had enough samples for the window.
+	 *
+	 * @throws SampleExtractionException if the source fails.
+	 */
+	public boolean fill(@Nonnull final SampleSource source)
+			throws SampleExtractionException {
+		myWindowPosition = 0;
+		myReadPosition = 0;
+		return readUpTo(source, myWindowLength);
+	}
+
+	/**
+	 * Moves the window one step further.
+	 *
+	 * @param source    the source of samples.
+	 *
+	 * @return {@code true} if the source had enough samples for the new
+	 * window. If not, the source has ended, and the contents of the window
+	 * are undefined.
+	 *
+	 * @throws SampleExtractionException if the source fails.
+	 */
+	public boolean advance(@Nonnull final SampleSource source)
+			throws SampleExtractionException {
+		myWindowPosition += myStep;
+		return readUpTo(source, myWindowPosition + myWindowLength);
+	}
+
+	private boolean readUpTo(final SampleSource source, final long end)
+			throws SampleExtractionException {
+		while (myReadPosition < end) {
+			final int start = (int) (myReadPosition % myCapacity);
+			final int length = (int) Math.min(end - myReadPosition, myCapacity - start);
+			final int read = source.read(myArray, start, length);
+			if (read == -1) {
+				return false;
+			}
+			System.arraycopy(myArray, start, myArray, start + myCapacity, read);
+			myReadPosition += read;
+		}
+		return true;
+	}
+
+	/**
+	 * Get the array that holds the window.
+	 *
+	 * @return the array. The window's samples are at indexes from
+	 * {@link #getWindowOffset()} (inclusive) to
+	 * {@code getWindowOffset() + windowLength} (exclusive).
+	 */
+	public short[] getArray() {
+		return myArray;
+	}
+
+	public int getWindowOffset() {
+		return (int) (myWindowPosition % myCapacity);
+	}
+
+	/**
+	 * Get the position of the window in the source.
+	 *
+	 * @return the index of the window's first sample, counting from the
+	 * start of the source.
+	 */
+	public long getWindowPosition() {
+		return myWindowPosition;
+	}
+
+}
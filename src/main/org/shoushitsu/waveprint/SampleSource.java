@@ -0,0 +1,42 @@
+package org.shoushitsu.waveprint;
+
+import org.shoushitsu.waveprint.exceptions.sampleextractor.SampleExtractionException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A stream of mono 16bit sound samples, read in chunks.
+ * <p/>
+ * Unlike a sample array, a source doesn't have to hold the whole track in
+ * memory, so there is no limit on the track's length.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public interface SampleSource extends AutoCloseable {
+
+	/**
+	 * Reads the next samples.
+	 *
+	 * @param buffer    the array to put samples into.
+	 * @param offset    where to put the first sample.
+	 * @param length    the maximum amount of samples to read. Must be
+	 *                     positive.
+	 *
+	 * @return the amount of samples read, which is positive, or {@code -1}
+	 * if the source has no more samples.
+	 *
+	 * @throws SampleExtractionException if the samples can't be obtained.
+	 */
+	int read(@Nonnull short[] buffer, int offset, int length)
+			throws SampleExtractionException;
+
+	/**
+	 * Releases the resources held by this source. If the source was read to
+	 * the end, this also reports any failure that was only detected at the
+	 * end.
+	 *
+	 * @throws SampleExtractionException if the source failed.
+	 */
+	@Override
+	void close() throws SampleExtractionException;
+}
@@ -0,0 +1,55 @@
+package org.shoushitsu.waveprint;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Conversions between the 16bit sample arrays used throughout the pipeline
+ * and the {@code int[]} arrays of older callers.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public final class Samples {
+
+	private Samples() {
+	}
+
+	/**
+	 * Narrows samples to 16 bits.
+	 *
+	 * @param samples    the samples.
+	 *
+	 * @return a new array with the samples; values outside of the
+	 * {@code short} range are clamped.
+	 */
+	@Nonnull
+	public static short[] toShorts(@Nonnull final int[] samples) {
+		final short[] result = new short[samples.length];
+		for (int i = 0; i < samples.length; i++) {
+			final int sample = samples[i];
+			if (sample > Short.MAX_VALUE) {
+				result[i] = Short.MAX_VALUE;
+			} else if (sample < Short.MIN_VALUE) {
+				result[i] = Short.MIN_VALUE;
+			} else {
+				result[i] = (short) sample;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Widens samples to {@code int}s.
+	 *
+	 * @param samples    the samples.
+	 *
+	 * @return a new array with the samples.
+	 */
+	@Nonnull
+	public static int[] toInts(@Nonnull final short[] samples) {
+		final int[] result = new int[samples.length];
+		for (int i = 0; i < samples.length; i++) {
+			result[i] = samples[i];
+		}
+		return result;
+	}
+}
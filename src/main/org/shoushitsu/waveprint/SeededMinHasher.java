@@ -0,0 +1,100 @@
+package org.shoushitsu.waveprint;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link MinHasher} whose hash functions are permutations generated from
+ * a single seed, so that only the seed has to be stored.
+ * <p/>
+ * Each permutation is a Fisher-Yates shuffle driven by a SplitMix64
+ * sequence, which is defined here rather than taken from the JDK so that a
+ * seed means the same permutations everywhere. The sequence of permutation
+ * {@code j} starts at the {@code j}-th value of the sequence of the seed.
+ * <p/>
+ * Hashing positions into their own range directly, e.g. by
+ * <code>mix(x) mod positionCount</code>, would be cheaper to set up, but
+ * such functions map different positions to the same value, and the ties
+ * make the signatures of different sets agree more often than their
+ * similarity warrants. Shuffles have no ties, so the signatures are as
+ * good as those of stored random permutations.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class SeededMinHasher extends AbstractTableMinHasher {
+
+	/** The increment of SplitMix64: 2<sup>64</sup> divided by the golden ratio. */
+	static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private final long mySeed;
+
+	/**
+	 * Creates a new hasher.
+	 *
+	 * @param hashLength       the amount of permutations.
+	 * @param positionCount    the length of the permutations.
+	 * @param seed             the seed.
+	 */
+	public SeededMinHasher(final int hashLength, final int positionCount, final long seed) {
+		super(hashLength, positionCount, toTable(hashLength, positionCount, seed));
+		mySeed = seed;
+	}
+
+	private static int[] toTable(final int hashLength, final int positionCount, final long seed) {
+		if (hashLength <= 0 || positionCount <= 0) {
+			throw new IllegalArgumentException(String.format(
+					"Expected positive hash length and position count, got %d and %d",
+					hashLength, positionCount
+			));
+		}
+		final int[] table = new int[positionCount * hashLength];
+		final int[] permutation = new int[positionCount];
+		for (int j = 0; j < hashLength; j++) {
+			generatePermutation(seed, j, permutation);
+			for (int position = 0; position < positionCount; position++) {
+				table[position * hashLength + j] = permutation[position];
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Generates the {@code index}-th permutation of a seed.
+	 *
+	 * @param seed           the seed.
+	 * @param index          the permutation's index.
+	 * @param permutation    the array for the permutation; its length is
+	 *                          the permutation's length.
+	 */
+	static void generatePermutation(final long seed, final int index, @Nonnull final int[] permutation) {
+		long state = mix(seed + (index + 1) * GOLDEN_GAMMA);
+		for (int i = 0; i < permutation.length; i++) {
+			permutation[i] = i;
+		}
+		for (int i = permutation.length - 1; i > 0; i--) {
+			state += GOLDEN_GAMMA;
+			// multiply-shift of the top 32 bits maps onto 0..i uniformly enough
+			final int k = (int) (((mix(state) >>> 32) * (i + 1)) >>> 32);
+			final int tmp = permutation[i];
+			permutation[i] = permutation[k];
+			permutation[k] = tmp;
+		}
+	}
+
+	/**
+	 * The output function of SplitMix64.
+	 */
+	static long mix(final long x) {
+		long z = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Get the seed of the permutations.
+	 *
+	 * @return the seed.
+	 */
+	public long getSeed() {
+		return mySeed;
+	}
+}
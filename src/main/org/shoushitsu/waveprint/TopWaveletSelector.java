@@ -1,49 +1,224 @@
 package org.shoushitsu.waveprint;
 
-import msyu.util.collect.IntArrayBuilder;
-import msyu.util.collect.Pair;
 import msyu.util.functional.Function;
-import msyu.util.java.Comparators;
+import org.shoushitsu.waveprint.spectrogram.FloatSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.Spectrogram;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import javax.annotation.Nonnull;
 
 /**
+ * Selects the coefficients of a wavelet decomposition with the largest
+ * magnitudes. The result is ordered by magnitude, largest first;
+ * coefficients of equal magnitude are ordered by index. Magnitudes are
+ * compared as by {@link Double#compare(double, double)}, so NaNs come
+ * first.
+ * <p/>
+ * The selection keeps the best coefficients seen so far in a bounded heap
+ * of primitive arrays, so nothing but the result is allocated, and most
+ * coefficients are rejected by a single comparison with the heap's worst.
+ * Every thread has its own heap.
+ *
  * @author Yanus Poluektovich (ypoluektovich@gmail.com)
  */
 public class TopWaveletSelector implements Function<double[][], int[]> {
 
 	public final int topWaveletCount;
 
+	private final ThreadLocal<Heap> myHeap = new ThreadLocal<Heap>() {
+		@Override
+		protected Heap initialValue() {
+			return new Heap(topWaveletCount);
+		}
+	};
+
 	public TopWaveletSelector(final int topWaveletCount) {
+		if (topWaveletCount < 0) {
+			throw new IllegalArgumentException(
+					"Top wavelet count must not be negative, got " + topWaveletCount);
+		}
 		this.topWaveletCount = topWaveletCount;
 	}
 
 	@Override
 	public int[] apply(final double[][] waveletDecomposition) {
-		final int rowLength = waveletDecomposition[0].length;
-		final List<Pair<Double, Integer>> waveletCoefficients =
-				new ArrayList<>(waveletDecomposition.length * rowLength);
-		for (int i = 0; i < waveletDecomposition.length; i++) {
-			final double[] freqRow = waveletDecomposition[i];
-			for (int j = 0; j < rowLength; j++) {
-				final double coeff = freqRow[j];
-				waveletCoefficients.add(Pair.of(Math.abs(coeff), i * rowLength + j));
+		return apply(Spectrogram.copyOf(waveletDecomposition));
+	}
+
+	/**
+	 * Selects the coefficients of a flat decomposition with the largest
+	 * magnitudes.
+	 *
+	 * @param waveletDecomposition    the decomposition.
+	 *
+	 * @return indices of the coefficients in the decomposition's array,
+	 * which are the same as <code>row * rowLength + column</code>.
+	 */
+	public int[] apply(@Nonnull final Spectrogram waveletDecomposition) {
+		final int[] result = new int[topWaveletCount];
+		apply(waveletDecomposition, result, 0);
+		return result;
+	}
+
+	/**
+	 * {@link #apply(Spectrogram)} into the given array.
+	 *
+	 * @param waveletDecomposition    the decomposition.
+	 * @param result                  the array for the indices.
+	 * @param resultOffset            where the {@link #topWaveletCount}
+	 *                                   indices start in {@code result}.
+	 */
+	public void apply(
+			@Nonnull final Spectrogram waveletDecomposition,
+			@Nonnull final int[] result,
+			final int resultOffset
+	) {
+		final double[] coefficients = waveletDecomposition.getData();
+		final Heap heap = startSelection(coefficients.length);
+		for (int i = 0; i < coefficients.length; i++) {
+			heap.offer(Math.abs(coefficients[i]), i);
+		}
+		heap.drain(result, resultOffset);
+	}
+
+	/**
+	 * {@link #apply(Spectrogram)} for a single precision decomposition.
+	 * Coefficients of equal magnitude are ordered by index, as in double
+	 * precision.
+	 *
+	 * @param waveletDecomposition    the decomposition.
+	 *
+	 * @return indices of the coefficients in the decomposition's array.
+	 */
+	public int[] apply(@Nonnull final FloatSpectrogram waveletDecomposition) {
+		final int[] result = new int[topWaveletCount];
+		apply(waveletDecomposition, result, 0);
+		return result;
+	}
+
+	/**
+	 * {@link #apply(FloatSpectrogram)} into the given array.
+	 *
+	 * @param waveletDecomposition    the decomposition.
+	 * @param result                  the array for the indices.
+	 * @param resultOffset            where the {@link #topWaveletCount}
+	 *                                   indices start in {@code result}.
+	 */
+	public void apply(
+			@Nonnull final FloatSpectrogram waveletDecomposition,
+			@Nonnull final int[] result,
+			final int resultOffset
+	) {
+		final float[] coefficients = waveletDecomposition.getData();
+		final Heap heap = startSelection(coefficients.length);
+		for (int i = 0; i < coefficients.length; i++) {
+			// widening keeps the order, so floats compare as they would
+			heap.offer(Math.abs(coefficients[i]), i);
+		}
+		heap.drain(result, resultOffset);
+	}
+
+	private Heap startSelection(final int coefficientCount) {
+		if (coefficientCount < topWaveletCount) {
+			throw new IllegalArgumentException(String.format(
+					"Can't select %d top wavelets out of %d",
+					topWaveletCount, coefficientCount
+			));
+		}
+		final Heap heap = myHeap.get();
+		heap.mySize = 0;
+		return heap;
+	}
+
+
+	/**
+	 * A binary heap of coefficients with the worst one at the root. A
+	 * coefficient is worse than another if its magnitude is smaller, or if
+	 * the magnitudes are equal and its index is larger.
+	 */
+	private static class Heap {
+		private final double[] myMagnitudes;
+		private final int[] myIndices;
+		private int mySize;
+
+		private Heap(final int capacity) {
+			myMagnitudes = new double[capacity];
+			myIndices = new int[capacity];
+		}
+
+		/**
+		 * Offers a coefficient. Indices must be offered in ascending order:
+		 * a coefficient that ties with the worst one is then worse, and is
+		 * rejected without looking at the index.
+		 */
+		private void offer(final double magnitude, final int index) {
+			final int capacity = myMagnitudes.length;
+			if (mySize < capacity) {
+				siftUp(mySize++, magnitude, index);
+			} else if (capacity > 0 && Double.compare(magnitude, myMagnitudes[0]) > 0) {
+				siftDown(0, capacity, magnitude, index);
+			}
+		}
+
+		/**
+		 * Takes the coefficients out, best first, into an array.
+		 */
+		private void drain(final int[] result, final int resultOffset) {
+			while (mySize > 0) {
+				final int last = --mySize;
+				result[resultOffset + last] = myIndices[0];
+				if (last > 0) {
+					siftDown(0, last, myMagnitudes[last], myIndices[last]);
+				}
+			}
+		}
+
+		private void siftUp(int position, final double magnitude, final int index) {
+			while (position > 0) {
+				final int parent = (position - 1) >>> 1;
+				if (!isWorse(magnitude, index, myMagnitudes[parent], myIndices[parent])) {
+					break;
+				}
+				myMagnitudes[position] = myMagnitudes[parent];
+				myIndices[position] = myIndices[parent];
+				position = parent;
+			}
+			myMagnitudes[position] = magnitude;
+			myIndices[position] = index;
+		}
+
+		/**
+		 * Puts a coefficient at a position and moves it down the first
+		 * {@code size} elements of the heap to where it belongs.
+		 */
+		private void siftDown(int position, final int size, final double magnitude, final int index) {
+			final int half = size >>> 1;
+			while (position < half) {
+				int child = 2 * position + 1;
+				final int right = child + 1;
+				if (right < size && isWorse(
+						myMagnitudes[right], myIndices[right], myMagnitudes[child], myIndices[child]
+				)) {
+					child = right;
+				}
+				if (!isWorse(myMagnitudes[child], myIndices[child], magnitude, index)) {
+					break;
+				}
+				myMagnitudes[position] = myMagnitudes[child];
+				myIndices[position] = myIndices[child];
+				position = child;
 			}
+			myMagnitudes[position] = magnitude;
+			myIndices[position] = index;
 		}
 
-		Collections.sort(
-				waveletCoefficients,
-				Pair.lexComparator(
-                        Collections.reverseOrder(Comparators.naturalFor(Double.class)),
-						Comparators.naturalFor(Integer.class)
-				)
-		);
-		final IntArrayBuilder builder = new IntArrayBuilder(topWaveletCount);
-		for (int i = 0; i < topWaveletCount; i++) {
-			builder.append(waveletCoefficients.get(i).getSecond());
+		private static boolean isWorse(
+				final double magnitude,
+				final int index,
+				final double otherMagnitude,
+				final int otherIndex
+		) {
+			final int comparison = Double.compare(magnitude, otherMagnitude);
+			return comparison < 0 || (comparison == 0 && index > otherIndex);
 		}
-		return builder.toIntArray();
 	}
 }
@@ -2,14 +2,21 @@ package org.shoushitsu.waveprint;
 
 import msyu.util.collect.Pair;
 import org.shoushitsu.waveprint.db.DataAccessException;
+import org.shoushitsu.waveprint.db.DatabaseSource;
 import org.shoushitsu.waveprint.db.NoDataException;
 import org.shoushitsu.waveprint.db.WaveprintParameters;
-import org.shoushitsu.waveprint.db.hsqldb.FileBasedDatabase;
+import org.shoushitsu.waveprint.exceptions.sampleextractor.SampleExtractionException;
+import org.shoushitsu.waveprint.spectrogram.FloatSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.SlidingSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.Spectrogram;
 import org.shoushitsu.waveprint.spectrogram.SpectrogramBuilder;
+import org.shoushitsu.waveprint.wavelet.SeparableWaveletTransform;
+import org.shoushitsu.waveprint.wavelet.SlidingWaveletTransform;
 import org.shoushitsu.waveprint.wavelet.WaveletTransform;
 
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -27,6 +34,7 @@ public class Waveprint {
 	private final MinHasher myMinHasher;
 	private final int myDbFingerprintStep;
 	private final int myProbeFingerprintStep;
+	private final FingerprintPrecision myPrecision;
 
 	public Waveprint(
 			@Nonnull final SpectrogramBuilder spectrogramBuilder,
@@ -36,6 +44,27 @@ public class Waveprint {
 			final int dbFingerprintStep,
 			final int probeFingerprintStep
 	) {
+		this(
+				spectrogramBuilder,
+				waveletTransform,
+				topWaveletSelector,
+				minHasher,
+				dbFingerprintStep,
+				probeFingerprintStep,
+				FingerprintPrecision.DOUBLE
+		);
+	}
+
+	public Waveprint(
+			@Nonnull final SpectrogramBuilder spectrogramBuilder,
+			@Nonnull final WaveletTransform waveletTransform,
+			@Nonnull final TopWaveletSelector topWaveletSelector,
+			@Nonnull final MinHasher minHasher,
+			final int dbFingerprintStep,
+			final int probeFingerprintStep,
+			@Nonnull final FingerprintPrecision precision
+	) {
+		myPrecision = precision;
 		mySpectrogramBuilder = spectrogramBuilder;
 		myWaveletTransform = waveletTransform;
 		myTopWaveletSelector = topWaveletSelector;
@@ -44,30 +73,94 @@ public class Waveprint {
 		myProbeFingerprintStep = probeFingerprintStep;
 	}
 
+	public List<int[]> fingerprint(final short[] samples) {
+		return fingerprint(samples, myDbFingerprintStep);
+	}
+
+	/**
+	 * Same as {@link #fingerprint(short[])}, for samples held in an
+	 * {@code int} array. The samples are narrowed to 16 bits first.
+	 */
 	public List<int[]> fingerprint(final int[] samples) {
+		return fingerprint(Samples.toShorts(samples));
+	}
+
+	/**
+	 * Computes fingerprints of a track while it is being read.
+	 * <p/>
+	 * Only one spectrogram's worth of samples plus one step are kept in
+	 * memory, so the track can be of any length.
+	 *
+	 * @param samples    the source of the track's samples.
+	 *
+	 * @return the fingerprints, one per {@code fingerprint.step.db} samples.
+	 *
+	 * @throws SampleExtractionException if the source fails.
+	 */
+	public List<int[]> fingerprint(@Nonnull final SampleSource samples)
+			throws SampleExtractionException {
 		return fingerprint(samples, myDbFingerprintStep);
 	}
 
+	/**
+	 * Same as {@link #findBestMatches(short[], DatabaseSource, int)}, for
+	 * samples held in an {@code int} array. The samples are narrowed to 16
+	 * bits first.
+	 */
 	public List<Long> findBestMatches(
 			final int[] samples,
-			final FileBasedDatabase db,
+			final DatabaseSource db,
 			final int count
 	) throws DataAccessException, NoDataException {
-		long startTime = System.currentTimeMillis();
+		return findBestMatches(Samples.toShorts(samples), db, count);
+	}
+
+	public List<Long> findBestMatches(
+			final short[] samples,
+			final DatabaseSource db,
+			final int count
+	) throws DataAccessException, NoDataException {
+		final long startTime = System.currentTimeMillis();
 		final List<int[]> fingerprints =
 				fingerprint(samples, myProbeFingerprintStep);
-		long duration = System.currentTimeMillis() - startTime;
+		reportFingerprinting(fingerprints, startTime);
+		return findBestMatches(fingerprints, db, count);
+	}
+
+	public List<Long> findBestMatches(
+			@Nonnull final SampleSource samples,
+			final DatabaseSource db,
+			final int count
+	) throws DataAccessException, NoDataException, SampleExtractionException {
+		final long startTime = System.currentTimeMillis();
+		final List<int[]> fingerprints =
+				fingerprint(samples, myProbeFingerprintStep);
+		reportFingerprinting(fingerprints, startTime);
+		return findBestMatches(fingerprints, db, count);
+	}
+
+	private static void reportFingerprinting(
+			final List<int[]> fingerprints,
+			final long startTime
+	) {
+		final long duration = System.currentTimeMillis() - startTime;
 		System.out.printf(
 				"Computed %d fingerprints in %d ms, avg %.3f%n",
 				fingerprints.size(),
 				duration,
 				(float) duration / fingerprints.size()
 		);
+	}
 
-		startTime = System.currentTimeMillis();
+	private List<Long> findBestMatches(
+			final List<int[]> fingerprints,
+			final DatabaseSource db,
+			final int count
+	) throws DataAccessException, NoDataException {
+		long startTime = System.currentTimeMillis();
 		final List<Map<Long, Pair<Long, Integer>>> lshMatchesByFpIx =
 				db.getLshMatches(fingerprints);
-		duration = System.currentTimeMillis() - startTime;
+		long duration = System.currentTimeMillis() - startTime;
 		System.out.printf("Got LSH matches in %d ms", duration);
 
 		startTime = System.currentTimeMillis();
@@ -121,30 +214,137 @@ public class Waveprint {
 		return bestTracks;
 	}
 
-	private List<int[]> fingerprint(final int[] samples, final int step) {
+	private List<int[]> fingerprint(final short[] samples, final int step) {
 		final int maxStartPosition = samples.length -
 				mySpectrogramBuilder.getSpectrogramLengthInSamples();
+		final TrackFingerprinter fingerprinter = new TrackFingerprinter();
 		final List<int[]> result = new ArrayList<>();
 		for (int start = 0; start <= maxStartPosition; start += step) {
-//			final long startTime = System.currentTimeMillis();
-			final double[][] spectrogram =
-					mySpectrogramBuilder.getSpectrogram(samples, start);
-//			final long sgTime = System.currentTimeMillis();
-			myWaveletTransform.transform(spectrogram, 7, 5);
-//			final long waveletTime = System.currentTimeMillis();
-			final int[] topWavelets = myTopWaveletSelector.apply(spectrogram);
-//			final long topWaveletsTime = System.currentTimeMillis();
-			final int[] hash = myMinHasher.hash(topWavelets);
-//			final long minhashTime = System.currentTimeMillis();
-//			System.out.printf(
-//					"sg %d wt %d tw %d mh %d%n",
-//					sgTime - startTime,
-//					waveletTime - sgTime,
-//					topWaveletsTime - waveletTime,
-//					minhashTime - topWaveletsTime
-//			);
-			result.add(hash);
+			fingerprinter.addWindow(samples, start, start, result);
 		}
+		fingerprinter.flush(result);
 		return result;
 	}
+
+	private List<int[]> fingerprint(final SampleSource samples, final int step)
+			throws SampleExtractionException {
+		final SampleRingBuffer window = new SampleRingBuffer(
+				mySpectrogramBuilder.getSpectrogramLengthInSamples(),
+				step
+		);
+		final TrackFingerprinter fingerprinter = new TrackFingerprinter();
+		final List<int[]> result = new ArrayList<>();
+		if (window.fill(samples)) {
+			do {
+				fingerprinter.addWindow(
+						window.getArray(),
+						window.getWindowOffset(),
+						window.getWindowPosition(),
+						result
+				);
+			} while (window.advance(samples));
+		}
+		fingerprinter.flush(result);
+		return result;
+	}
+
+	/**
+	 * Fingerprints the windows of one track, in the configured precision.
+	 * The spectrogram is allocated once and reused by all windows. If the
+	 * wavelet transform is separable, the transformed rows of frames are
+	 * shared by the windows too.
+	 * <p>The top wavelets of up to {@value #BATCH_SIZE} windows are collected
+	 * in one array and hashed at once by {@link MinHasher#hashAll}.</p>
+	 */
+	private class TrackFingerprinter {
+		private static final int BATCH_SIZE = 64;
+
+
+		/** {@code null} if the wavelet transform isn't separable. */
+		private final SlidingWaveletTransform myWavelets;
+		/** {@code null} if the wavelet transform is separable. */
+		private final SlidingSpectrogram mySpectrograms;
+		/** {@code null} unless the precision is double. */
+		private final Spectrogram mySpectrogram;
+		/** {@code null} unless the precision is float. */
+		private final FloatSpectrogram myFloatSpectrogram;
+
+		private final int myTopWaveletCount = myTopWaveletSelector.topWaveletCount;
+		/** The top wavelets of the batch's windows, one after another. */
+		private final int[] myTopWavelets = new int[BATCH_SIZE * myTopWaveletCount];
+		private final int[] myHashes = new int[BATCH_SIZE * myMinHasher.getHashLength()];
+		/** The amount of windows in the batch. */
+		private int myWindowCount;
+
+		private TrackFingerprinter() {
+			if (myWaveletTransform instanceof SeparableWaveletTransform) {
+				myWavelets = new SlidingWaveletTransform(
+						mySpectrogramBuilder,
+						(SeparableWaveletTransform) myWaveletTransform,
+						7,
+						5
+				);
+				mySpectrograms = null;
+			} else {
+				myWavelets = null;
+				mySpectrograms = new SlidingSpectrogram(mySpectrogramBuilder);
+			}
+			final int frameCount = mySpectrogramBuilder.getFrameCount();
+			final int binCount = mySpectrogramBuilder.getBinCount();
+			if (myPrecision == FingerprintPrecision.FLOAT) {
+				mySpectrogram = null;
+				myFloatSpectrogram = new FloatSpectrogram(frameCount, binCount);
+			} else {
+				mySpectrogram = new Spectrogram(frameCount, binCount);
+				myFloatSpectrogram = null;
+			}
+		}
+
+		/**
+		 * Adds a window to the batch, fingerprinting the batch if it's full.
+		 */
+		private void addWindow(
+				final short[] samples,
+				final int offset,
+				final long position,
+				final List<int[]> fingerprints
+		) {
+			final int topWaveletOffset = myWindowCount * myTopWaveletCount;
+			if (mySpectrogram != null) {
+				if (myWavelets != null) {
+					myWavelets.transform(samples, offset, position, mySpectrogram);
+				} else {
+					mySpectrograms.getSpectrogram(samples, offset, position, mySpectrogram);
+					myWaveletTransform.transform(mySpectrogram, 7, 5);
+				}
+				myTopWaveletSelector.apply(mySpectrogram, myTopWavelets, topWaveletOffset);
+			} else {
+				if (myWavelets != null) {
+					myWavelets.transform(samples, offset, position, myFloatSpectrogram);
+				} else {
+					mySpectrograms.getSpectrogram(samples, offset, position, myFloatSpectrogram);
+					myWaveletTransform.transform(myFloatSpectrogram, 7, 5);
+				}
+				myTopWaveletSelector.apply(myFloatSpectrogram, myTopWavelets, topWaveletOffset);
+			}
+			if (++myWindowCount == BATCH_SIZE) {
+				flush(fingerprints);
+			}
+		}
+
+		/**
+		 * Fingerprints the windows of the batch, in order, and empties it.
+		 */
+		private void flush(final List<int[]> fingerprints) {
+			if (myWindowCount == 0) {
+				return;
+			}
+			myMinHasher.hashAll(myTopWavelets, myTopWaveletCount, myWindowCount, myHashes);
+			final int hashLength = myMinHasher.getHashLength();
+			for (int i = 0; i < myWindowCount; i++) {
+				fingerprints.add(Arrays.copyOfRange(myHashes, i * hashLength, (i + 1) * hashLength));
+			}
+			myWindowCount = 0;
+		}
+	}
 }
@@ -12,6 +12,25 @@ import java.util.Set;
  * @author Yanus Poluektovich (ypoluektovich@gmail.com)
  */
 public class WaveprintConfig {
+	/** Spectrogram builder that runs a full FFT per frame. */
+	public static final String SPECTROGRAM_BUILDER_FFT = "fft";
+	/** Spectrogram builder that updates frames from the previous ones. */
+	public static final String SPECTROGRAM_BUILDER_INCREMENTAL = "incremental";
+	/** Radix-2 complex FFT. */
+	public static final String SPECTROGRAM_FFT_RADIX2 = "radix2";
+	/** Radix-4 complex FFT. */
+	public static final String SPECTROGRAM_FFT_RADIX4 = "radix4";
+	/** Wavelet transform and top wavelet selection in {@code double}. */
+	public static final String FINGERPRINT_PRECISION_DOUBLE = "double";
+	/** Wavelet transform and top wavelet selection in {@code float}. */
+	public static final String FINGERPRINT_PRECISION_FLOAT = "float";
+	/** MinHash over random permutations stored in the database. */
+	public static final String MINHASH_FAMILY_PERMUTATION = "permutation";
+	/** MinHash over permutations generated from {@code minhash.seed}. */
+	public static final String MINHASH_FAMILY_SEEDED = "seeded";
+	/** One permutation MinHash over a permutation from {@code minhash.seed}. */
+	public static final String MINHASH_FAMILY_ONE_PERMUTATION = "one-permutation";
+
 	private final Map<String, Object> myParams = new HashMap<>();
 
 	public WaveprintConfig(final Properties props) {
@@ -66,6 +85,44 @@ public class WaveprintConfig {
 		return (Integer) myParams.get(WaveprintParameters.SPECTROGRAM_FREQ_HIGH.getStringKey());
 	}
 
+	/**
+	 * Get the spectrogram builder name.
+	 *
+	 * @return {@link #SPECTROGRAM_BUILDER_FFT} (the default, for databases
+	 * created before the parameter existed) or
+	 * {@link #SPECTROGRAM_BUILDER_INCREMENTAL}.
+	 */
+	public String getSpectrogramBuilder() {
+		final Object builder = myParams.get(WaveprintParameters.SPECTROGRAM_BUILDER.getStringKey());
+		return (builder == null) ? SPECTROGRAM_BUILDER_FFT : (String) builder;
+	}
+
+	/**
+	 * Get the name of the complex FFT used by the spectrogram builder.
+	 *
+	 * @return {@link #SPECTROGRAM_FFT_RADIX2} (the default, for databases
+	 * created before the parameter existed) or
+	 * {@link #SPECTROGRAM_FFT_RADIX4}.
+	 */
+	public String getSpectrogramFft() {
+		final Object fft = myParams.get(WaveprintParameters.SPECTROGRAM_FFT.getStringKey());
+		return (fft == null) ? SPECTROGRAM_FFT_RADIX2 : (String) fft;
+	}
+
+	/**
+	 * Get the name of the precision of the wavelet transform and top wavelet
+	 * selection.
+	 *
+	 * @return {@link #FINGERPRINT_PRECISION_DOUBLE} (the default, for
+	 * databases created before the parameter existed) or
+	 * {@link #FINGERPRINT_PRECISION_FLOAT}.
+	 */
+	public String getFingerprintPrecision() {
+		final Object precision =
+				myParams.get(WaveprintParameters.FINGERPRINT_PRECISION.getStringKey());
+		return (precision == null) ? FINGERPRINT_PRECISION_DOUBLE : (String) precision;
+	}
+
 
 	public int getTopWavelets() {
 		return (Integer) myParams.get(WaveprintParameters.TOP_WAVELET_COUNT.getStringKey());
@@ -75,6 +132,37 @@ public class WaveprintConfig {
 		return (Integer) myParams.get(WaveprintParameters.MINHASH_FINGERPRINT_LENGTH.getStringKey());
 	}
 
+	/**
+	 * Get the name of the family of MinHash functions.
+	 *
+	 * @return {@link #MINHASH_FAMILY_PERMUTATION} (the default, for
+	 * databases created before the parameter existed),
+	 * {@link #MINHASH_FAMILY_SEEDED} or
+	 * {@link #MINHASH_FAMILY_ONE_PERMUTATION}.
+	 */
+	public String getMinHashFamily() {
+		final Object family = myParams.get(WaveprintParameters.MINHASH_FAMILY.getStringKey());
+		return (family == null) ? MINHASH_FAMILY_PERMUTATION : (String) family;
+	}
+
+	/**
+	 * Get the seed of the {@link #MINHASH_FAMILY_SEEDED seeded} and
+	 * {@link #MINHASH_FAMILY_ONE_PERMUTATION one permutation} MinHash
+	 * functions.
+	 *
+	 * @return the seed.
+	 *
+	 * @throws IllegalArgumentException if there's no seed.
+	 */
+	public long getMinHashSeed() {
+		final Object seed = myParams.get(WaveprintParameters.MINHASH_SEED.getStringKey());
+		if (seed == null) {
+			throw new IllegalArgumentException(
+					"The MinHash family needs " + WaveprintParameters.MINHASH_SEED.getStringKey());
+		}
+		return (Long) seed;
+	}
+
 	public int getLshBinCount() {
 		return (Integer) myParams.get(WaveprintParameters.LSH_BIN_COUNT.getStringKey());
 	}
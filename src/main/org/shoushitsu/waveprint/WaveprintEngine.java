@@ -0,0 +1,280 @@
+package org.shoushitsu.waveprint;
+
+import org.shoushitsu.waveprint.db.DataAccessException;
+import org.shoushitsu.waveprint.db.Database;
+import org.shoushitsu.waveprint.db.DatabaseSink;
+import org.shoushitsu.waveprint.db.DatabaseSource;
+import org.shoushitsu.waveprint.db.NoDataException;
+import org.shoushitsu.waveprint.exceptions.sampleextractor.SampleExtractionException;
+import org.shoushitsu.waveprint.spectrogram.ComplexFFTAlgorithm;
+import org.shoushitsu.waveprint.spectrogram.ComplexFFTFactory;
+import org.shoushitsu.waveprint.spectrogram.IncrementalStftSpectrogramBuilder;
+import org.shoushitsu.waveprint.spectrogram.LogarithmicFrequencySplitter;
+import org.shoushitsu.waveprint.spectrogram.SimpleFftSpectrogramBuilder;
+import org.shoushitsu.waveprint.spectrogram.SpectrogramBuilder;
+import org.shoushitsu.waveprint.wavelet.HVStandardWaveletTransform;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Fingerprints tracks, adds them to a database and finds them in it, with
+ * the settings of the database.
+ * <p/>
+ * The settings are read, and the spectrogram builder, the wavelet
+ * transform and the MinHash functions (including the permutations stored
+ * in the database, if any) are built, once, when the engine is created.
+ * An engine is meant to live as long as its database is open and to serve
+ * any number of files.
+ * <p/>
+ * The engine is thread-safe: the pipeline keeps its scratch space per
+ * thread, and the database serializes access to itself. The engine doesn't
+ * own the database; close it separately, after the engine is done.
+ * <p/>
+ * An engine over a read-only database, such as an index segment, finds
+ * tracks but can't add them.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class WaveprintEngine {
+
+	private final DatabaseSource myDatabase;
+
+	@Nullable
+	private final DatabaseSink mySink;
+
+	private final WaveprintConfig myConfig;
+
+	private final SampleExtractor mySampleExtractor;
+
+	private final Waveprint myWaveprint;
+
+	/**
+	 * Creates an engine for a database.
+	 *
+	 * @param database    the database.
+	 * @param pcmCache    the cache of decoded tracks, or {@code null} not to
+	 *                       cache them.
+	 *
+	 * @throws DataAccessException if the settings or permutations can't be
+	 * read.
+	 * @throws NoDataException if a required setting is missing.
+	 */
+	public WaveprintEngine(
+			@Nonnull final Database database,
+			@Nullable final PcmCache pcmCache
+	) throws DataAccessException, NoDataException {
+		this(database, database, pcmCache, false);
+	}
+
+	/**
+	 * Creates an engine for a writable database that decodes PCM files
+	 * in-process, for tests that can't rely on the converter.
+	 */
+	WaveprintEngine(
+			@Nonnull final Database database,
+			@Nullable final PcmCache pcmCache,
+			final boolean directDecoding
+	) throws DataAccessException, NoDataException {
+		this(database, database, pcmCache, directDecoding);
+	}
+
+	/**
+	 * Creates an engine for a read-only database.
+	 *
+	 * @param database    the database.
+	 * @param pcmCache    the cache of decoded tracks, or {@code null} not to
+	 *                       cache them.
+	 *
+	 * @throws DataAccessException if the settings or permutations can't be
+	 * read.
+	 * @throws NoDataException if a required setting is missing.
+	 */
+	public WaveprintEngine(
+			@Nonnull final DatabaseSource database,
+			@Nullable final PcmCache pcmCache
+	) throws DataAccessException, NoDataException {
+		this(database, null, pcmCache, false);
+	}
+
+	private WaveprintEngine(
+			@Nonnull final DatabaseSource database,
+			@Nullable final DatabaseSink sink,
+			@Nullable final PcmCache pcmCache,
+			final boolean directDecoding
+	) throws DataAccessException, NoDataException {
+		myDatabase = database;
+		mySink = sink;
+		myConfig = new WaveprintConfig(database.readSettings());
+		mySampleExtractor = new SampleExtractor(
+				myConfig.getSampleRate(),
+				directDecoding,
+				pcmCache
+		);
+		myWaveprint = new Waveprint(
+				getSpectrogramBuilder(myConfig),
+				new HVStandardWaveletTransform(),
+				new TopWaveletSelector(myConfig.getTopWavelets()),
+				getMinHasher(database, myConfig),
+				myConfig.getDbFingerprintStep(),
+				myConfig.getProbeFingerprintStep(),
+				getFingerprintPrecision(myConfig)
+		);
+	}
+
+	/**
+	 * Computes the fingerprints of a track, as they are stored in the
+	 * database.
+	 *
+	 * @param file    the track.
+	 *
+	 * @return the fingerprints.
+	 *
+	 * @throws SampleExtractionException if the track can't be decoded.
+	 */
+	public List<int[]> fingerprint(@Nonnull final Path file) throws SampleExtractionException {
+		try (final SampleSource samples = mySampleExtractor.open(file)) {
+			return myWaveprint.fingerprint(samples);
+		}
+	}
+
+	/**
+	 * Fingerprints a track and adds it to the database, under the file's
+	 * name.
+	 *
+	 * @param file    the track.
+	 *
+	 * @throws SampleExtractionException if the track can't be decoded.
+	 * @throws DataAccessException if the track can't be stored.
+	 * @throws UnsupportedOperationException if the database is read-only.
+	 */
+	public void addTrack(@Nonnull final Path file)
+			throws SampleExtractionException, DataAccessException {
+		if (mySink == null) {
+			throw new UnsupportedOperationException("The database is read-only");
+		}
+		mySink.addTrack(file.toString(), fingerprint(file));
+	}
+
+	/**
+	 * Finds the tracks most similar to (the start of) a track.
+	 *
+	 * @param file          the track.
+	 * @param maxSeconds    how much of the track to use, in seconds.
+	 * @param count         how many tracks to find at most.
+	 *
+	 * @return ids of the found tracks, most similar first.
+	 *
+	 * @throws SampleExtractionException if the track can't be decoded.
+	 * @throws DataAccessException if the database can't be queried.
+	 * @throws NoDataException if a required setting is missing.
+	 */
+	public List<Long> find(@Nonnull final Path file, final int maxSeconds, final int count)
+			throws SampleExtractionException, DataAccessException, NoDataException {
+		try (final SampleSource samples = mySampleExtractor.open(file, maxSeconds)) {
+			return myWaveprint.findBestMatches(samples, myDatabase, count);
+		}
+	}
+
+	/**
+	 * Get the settings of the database.
+	 *
+	 * @return the settings.
+	 */
+	public WaveprintConfig getConfig() {
+		return myConfig;
+	}
+
+	/**
+	 * Get the fingerprinting pipeline.
+	 *
+	 * @return the pipeline.
+	 */
+	public Waveprint getWaveprint() {
+		return myWaveprint;
+	}
+
+	private static MinHasher getMinHasher(
+			final DatabaseSource db,
+			final WaveprintConfig cfg
+	) throws DataAccessException, NoDataException {
+		switch (cfg.getMinHashFamily()) {
+			case WaveprintConfig.MINHASH_FAMILY_PERMUTATION:
+				return new PermutationMinHasher(db.readPermutations());
+			case WaveprintConfig.MINHASH_FAMILY_SEEDED:
+				return new SeededMinHasher(
+						cfg.getMinHashLength(),
+						cfg.getSpectrogramLength() * cfg.getSpectrogramWidth(),
+						cfg.getMinHashSeed()
+				);
+			case WaveprintConfig.MINHASH_FAMILY_ONE_PERMUTATION:
+				return new OnePermutationMinHasher(
+						cfg.getMinHashLength(),
+						cfg.getSpectrogramLength() * cfg.getSpectrogramWidth(),
+						cfg.getMinHashSeed()
+				);
+			default:
+				throw new IllegalArgumentException(
+						"Unknown MinHash family: " + cfg.getMinHashFamily());
+		}
+	}
+
+	private static FingerprintPrecision getFingerprintPrecision(final WaveprintConfig cfg) {
+		switch (cfg.getFingerprintPrecision()) {
+			case WaveprintConfig.FINGERPRINT_PRECISION_DOUBLE:
+				return FingerprintPrecision.DOUBLE;
+			case WaveprintConfig.FINGERPRINT_PRECISION_FLOAT:
+				return FingerprintPrecision.FLOAT;
+			default:
+				throw new IllegalArgumentException(
+						"Unknown fingerprint precision: " + cfg.getFingerprintPrecision());
+		}
+	}
+
+	private static SpectrogramBuilder getSpectrogramBuilder(final WaveprintConfig cfg) {
+		final LogarithmicFrequencySplitter.Factory splitterFactory =
+				new LogarithmicFrequencySplitter.Factory(
+						cfg.getSampleRate(),
+						cfg.getSpectrogramWidth(),
+						cfg.getSpectrogramLowestFrequency(),
+						cfg.getSpectrogramHighestFrequency()
+				);
+		final ComplexFFTFactory fftFactory = getFftFactory(cfg);
+		switch (cfg.getSpectrogramBuilder()) {
+			case WaveprintConfig.SPECTROGRAM_BUILDER_FFT:
+				return new SimpleFftSpectrogramBuilder(
+						cfg.getSpectrogramLength(),
+						cfg.getSpectrogramFrameLengthLog2(),
+						cfg.getSpectrogramFrameStep(),
+						fftFactory,
+						splitterFactory
+				);
+			case WaveprintConfig.SPECTROGRAM_BUILDER_INCREMENTAL:
+				return new IncrementalStftSpectrogramBuilder(
+						cfg.getSpectrogramLength(),
+						cfg.getSpectrogramFrameLengthLog2(),
+						cfg.getSpectrogramFrameStep(),
+						IncrementalStftSpectrogramBuilder.DEFAULT_RESYNC_INTERVAL,
+						fftFactory,
+						splitterFactory
+				);
+			default:
+				throw new IllegalArgumentException(
+						"Unknown spectrogram builder: " + cfg.getSpectrogramBuilder());
+		}
+	}
+
+	private static ComplexFFTFactory getFftFactory(final WaveprintConfig cfg) {
+		switch (cfg.getSpectrogramFft()) {
+			case WaveprintConfig.SPECTROGRAM_FFT_RADIX2:
+				return ComplexFFTAlgorithm.RADIX2;
+			case WaveprintConfig.SPECTROGRAM_FFT_RADIX4:
+				return ComplexFFTAlgorithm.RADIX4;
+			default:
+				throw new IllegalArgumentException(
+						"Unknown spectrogram FFT: " + cfg.getSpectrogramFft());
+		}
+	}
+}
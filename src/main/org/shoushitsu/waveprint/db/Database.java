@@ -0,0 +1,9 @@
+package org.shoushitsu.waveprint.db;
+
+/**
+ * A database that tracks can be both added to and found in.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public interface Database extends DatabaseSource, DatabaseSink {
+}
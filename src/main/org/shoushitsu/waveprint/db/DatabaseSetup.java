@@ -13,4 +13,6 @@ public interface DatabaseSetup {
 
 	void storePermutations(final List<Permutation> permutations)
 			throws DataAccessException;
+
+	boolean migratePermutations() throws DataAccessException, NoDataException;
 }
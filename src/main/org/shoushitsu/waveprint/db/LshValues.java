@@ -0,0 +1,33 @@
+package org.shoushitsu.waveprint.db;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The values fingerprints are put into LSH bins by: bin {@code b} holds
+ * elements {@code 4b} to {@code 4b + 3} of a fingerprint, one per byte.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public final class LshValues {
+
+	/** The amount of fingerprint elements in a bin. */
+	public static final int BIN_LENGTH = 4;
+
+	private LshValues() {}
+
+	/**
+	 * Get the LSH value of a fingerprint in a bin.
+	 *
+	 * @param fingerprint    the fingerprint, as computed, not as stored.
+	 * @param bin            the bin.
+	 *
+	 * @return the value.
+	 */
+	public static long get(@Nonnull final int[] fingerprint, final int bin) {
+		final int start = bin * BIN_LENGTH;
+		return (fingerprint[start] << 24) +
+				(fingerprint[start + 1] << 16) +
+				(fingerprint[start + 2] << 8) +
+				(fingerprint[start + 3]);
+	}
+}
@@ -6,6 +6,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import static msyu.util.functional.ConversionFunctions.integerFromString;
+import static msyu.util.functional.ConversionFunctions.longFromString;
 
 /**
  * @author Yanus Poluektovich (ypoluektovich@gmail.com)
@@ -20,8 +21,13 @@ public enum WaveprintParameters implements WaveprintParameter {
 	SPECTROGRAM_FRAME_STEP("spectrogram.frame.step", integerFromString()),
 	SPECTROGRAM_FREQ_LOW("spectrogram.frequency.lowest", integerFromString()),
 	SPECTROGRAM_FREQ_HIGH("spectrogram.frequency.highest", integerFromString()),
+	SPECTROGRAM_BUILDER("spectrogram.builder", null),
+	SPECTROGRAM_FFT("spectrogram.fft", null),
+	FINGERPRINT_PRECISION("fingerprint.precision", null),
 	TOP_WAVELET_COUNT("wavelets.top", integerFromString()),
 	MINHASH_FINGERPRINT_LENGTH("minhash.length", integerFromString()),
+	MINHASH_FAMILY("minhash.family", null),
+	MINHASH_SEED("minhash.seed", longFromString()),
 	LSH_BIN_COUNT("lsh.bin.count", integerFromString()),
 	LSH_VOTE_THRESHOLD("lsh.vote.threshold", integerFromString());
 
@@ -1,17 +1,17 @@
 package org.shoushitsu.waveprint.db.hsqldb;
 
-import msyu.util.collect.IntArrayBuilder;
 import msyu.util.collect.Pair;
 import msyu.util.string.StringUtils;
 import org.shoushitsu.waveprint.Permutation;
 import org.shoushitsu.waveprint.db.DataAccessException;
-import org.shoushitsu.waveprint.db.DatabaseSink;
-import org.shoushitsu.waveprint.db.DatabaseSource;
+import org.shoushitsu.waveprint.db.Database;
+import org.shoushitsu.waveprint.db.LshValues;
 import org.shoushitsu.waveprint.db.NoDataException;
 import org.shoushitsu.waveprint.db.WaveprintParameter;
 import org.shoushitsu.waveprint.db.WaveprintParameters;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
@@ -39,7 +39,7 @@ import static org.shoushitsu.waveprint.db.WaveprintParameters.SPECTROGRAM_WIDTH;
  * @author Yanus Poluektovich (ypoluektovich@gmail.com)
  */
 // todo: better rollback exception handling
-public class FileBasedDatabase implements DatabaseSource, DatabaseSink {
+public class FileBasedDatabase implements Database {
 
 	private final Object myMonitor = new Object();
 
@@ -50,6 +50,9 @@ public class FileBasedDatabase implements DatabaseSource, DatabaseSink {
 
 	private final PreparedStatement myReadPermutationsStmt;
 
+	/** Whether the permutations are in the one-row-per-element layout. */
+	private final boolean myLegacyPermutations;
+
 	private final PreparedStatement myQueryFingerprintStmt;
 
 	private final PreparedStatement myInsertTrackStmt;
@@ -73,11 +76,14 @@ public class FileBasedDatabase implements DatabaseSource, DatabaseSink {
 				myReadInfoStmt = myConnection.prepareStatement("select value from info where key = ?");
 				myReadAllInfoStmt = myConnection.prepareStatement("select key, value from info");
 
-				myReadPermutationsStmt = myConnection.prepareStatement(
-						"select num, index, value " +
-								"from permutation " +
-								"where num <= ? and index <= ? " +
-								"order by num, index"
+				myLegacyPermutations =
+						PermutationBlobs.hasTable(myConnection, PermutationBlobs.LEGACY_TABLE);
+				myReadPermutationsStmt = myConnection.prepareStatement(myLegacyPermutations ?
+						PermutationBlobs.LEGACY_QUERY :
+						"select num, value " +
+								"from " + PermutationBlobs.TABLE + " " +
+								"where num < ? " +
+								"order by num"
 				);
 
 				myInsertTrackStmt = myConnection.prepareStatement(
@@ -163,23 +169,33 @@ public class FileBasedDatabase implements DatabaseSource, DatabaseSink {
 					Integer.valueOf(readSetting(SPECTROGRAM_LENGTH));
 			final Integer width =
 					Integer.valueOf(readSetting(SPECTROGRAM_WIDTH));
+			final int permLength = length * width;
 
 			try {
-				final List<Permutation> result = new ArrayList<>();
-				final int permLength = length * width;
-				final IntArrayBuilder iab = new IntArrayBuilder();
+				if (myLegacyPermutations) {
+					return PermutationBlobs.readLegacy(myReadPermutationsStmt, count, permLength);
+				}
+				final List<Permutation> result = new ArrayList<>(count);
 				myReadPermutationsStmt.setInt(1, count);
-				myReadPermutationsStmt.setInt(2, permLength);
 				try (final ResultSet rs = myReadPermutationsStmt.executeQuery()) {
 					while (rs.next()) {
-						iab.append(rs.getInt("value"));
-						if (rs.getInt("index") == permLength - 1) {
-							result.add(Permutation.fromIntArray(iab.toIntArray()));
-							iab.clear();
+						final Permutation permutation =
+								PermutationBlobs.fromBytes(rs.getBytes("value"));
+						if (permutation.getLength() != permLength) {
+							throw new NoDataException(String.format(
+									"Permutation %d has length %d, expected %d",
+									rs.getInt("num"), permutation.getLength(), permLength
+							));
 						}
+						result.add(permutation);
 					}
 				}
-				// todo: verification of array and list sizes
+				if (result.size() != count) {
+					throw new NoDataException(String.format(
+							"Found %d MinHash permutations, expected %d",
+							result.size(), count
+					));
+				}
 				return result;
 			} catch (SQLException e) {
 				throw new DataAccessException(
@@ -197,12 +213,11 @@ public class FileBasedDatabase implements DatabaseSource, DatabaseSink {
 			final List<String> queries = new ArrayList<>(binCount);
 			final int probeFpCount = probeFingerprints.size();
 			for (int ixBin = 0; ixBin < binCount; ++ixBin) {
-				final int lshValueStart = ixBin << 2;
 				final Map<Long, List<Integer>> fpIxsByValue = new HashMap<>();
 				final Set<Long> lshValues = new HashSet<>();
 				for (int ixFp = 0; ixFp < probeFpCount; ++ixFp) {
 					final int[] probeFp = probeFingerprints.get(ixFp);
-					final long lshValue = getLshValue(probeFp, lshValueStart);
+					final long lshValue = LshValues.get(probeFp, ixBin);
 					if (!fpIxsByValue.containsKey(lshValue)) {
 						fpIxsByValue.put(lshValue, new ArrayList<Integer>());
 					}
@@ -310,6 +325,27 @@ public class FileBasedDatabase implements DatabaseSource, DatabaseSink {
 	public void addTrack(
 			@Nonnull final String trackName,
 			@Nonnull final List<int[]> fingerprints
+	) throws DataAccessException {
+		addTrack(trackName, fingerprints, null);
+	}
+
+	/**
+	 * Adds a track, like {@link #addTrack(String, List)}, and tells the ids
+	 * it got.
+	 *
+	 * @param trackName         the track's name.
+	 * @param fingerprints      the track's fingerprints.
+	 * @param fingerprintIds    receives the ids of the fingerprints, in
+	 *                             order, if not {@code null}.
+	 *
+	 * @return the track's id.
+	 *
+	 * @throws DataAccessException if the track can't be stored.
+	 */
+	long addTrack(
+			@Nonnull final String trackName,
+			@Nonnull final List<int[]> fingerprints,
+			@Nullable final long[] fingerprintIds
 	) throws DataAccessException {
 		synchronized (myMonitor) {
 			final long trackId = insertTrackRecord(trackName);
@@ -333,8 +369,11 @@ public class FileBasedDatabase implements DatabaseSource, DatabaseSink {
 					while (rs.next()) {
 						final int[] fingerprint = fingerprints.get(i);
 						final long fingerprintId = rs.getLong("id");
+						if (fingerprintIds != null) {
+							fingerprintIds[i] = fingerprintId;
+						}
 						for (int j = 0; j < myInsertLshBinStmts.length; ++j) {
-							final long value = getLshValue(fingerprint, j << 2);
+							final long value = LshValues.get(fingerprint, j);
 							final PreparedStatement stmt = myInsertLshBinStmts[j];
 							stmt.setLong(1, fingerprintId);
 							stmt.setLong(2, value);
@@ -355,14 +394,44 @@ public class FileBasedDatabase implements DatabaseSource, DatabaseSink {
 				}
 				throw new DataAccessException("Error while adding fingerprints", e);
 			}
+			return trackId;
+		}
+	}
+
+	/**
+	 * Get the amount of LSH bins.
+	 *
+	 * @return the amount of bins.
+	 */
+	int getLshBinCount() {
+		return myInsertLshBinStmts.length;
+	}
+
+	/**
+	 * Runs a query and passes each row of the result to a handler.
+	 *
+	 * @param query      the query.
+	 * @param handler    the handler.
+	 *
+	 * @throws DataAccessException if the query fails.
+	 */
+	void scan(@Nonnull final String query, @Nonnull final RowHandler handler)
+			throws DataAccessException {
+		synchronized (myMonitor) {
+			try (final Statement stmt = myConnection.createStatement()) {
+				try (final ResultSet rs = stmt.executeQuery(query)) {
+					while (rs.next()) {
+						handler.handle(rs);
+					}
+				}
+			} catch (SQLException e) {
+				throw new DataAccessException("Failure while running query: " + query, e);
+			}
 		}
 	}
 
-	private long getLshValue(final int[] fingerprint, final int lshValueStart) {
-		return (fingerprint[lshValueStart] << 24) +
-				(fingerprint[lshValueStart + 1] << 16) +
-				(fingerprint[lshValueStart + 2] << 8) +
-				(fingerprint[lshValueStart + 3]);
+	interface RowHandler {
+		void handle(@Nonnull ResultSet row) throws SQLException;
 	}
 
 	private long insertTrackRecord(@Nonnull final String trackName) throws DataAccessException {
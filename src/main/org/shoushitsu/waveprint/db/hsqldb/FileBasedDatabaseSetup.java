@@ -1,20 +1,25 @@
 package org.shoushitsu.waveprint.db.hsqldb;
 
-import msyu.util.functional.SequenceAwareFunction;
-import msyu.util.java.WrappedException;
 import org.shoushitsu.waveprint.Permutation;
 import org.shoushitsu.waveprint.WaveprintConfig;
 import org.shoushitsu.waveprint.db.DataAccessException;
 import org.shoushitsu.waveprint.db.DatabaseSetup;
+import org.shoushitsu.waveprint.db.NoDataException;
+import org.shoushitsu.waveprint.db.WaveprintParameter;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
 import java.util.Map;
 
+import static org.shoushitsu.waveprint.db.WaveprintParameters.MINHASH_FINGERPRINT_LENGTH;
+import static org.shoushitsu.waveprint.db.WaveprintParameters.SPECTROGRAM_LENGTH;
+import static org.shoushitsu.waveprint.db.WaveprintParameters.SPECTROGRAM_WIDTH;
+
 /**
  * @author Yanus Poluektovich (ypoluektovich@gmail.com)
  */
@@ -46,7 +51,11 @@ public class FileBasedDatabaseSetup implements DatabaseSetup {
 				setupTrack(statement);
 				setupFingerprint(config.getMinHashLength(), statement);
 				setupLshBins(config.getLshBinCount(), statement);
-				setupPermutations(statement);
+				setupPermutations(
+						PermutationBlobs.TABLE,
+						config.getSpectrogramLength() * config.getSpectrogramWidth(),
+						statement
+				);
 			} catch (SQLException e) {
 				throw new DataAccessException("Failed to get a statement object", e);
 			}
@@ -80,37 +89,11 @@ public class FileBasedDatabaseSetup implements DatabaseSetup {
 			}
 
 			try (final PreparedStatement insert = connection.prepareStatement(
-					"insert into permutation (num, index, value) values (?, ?, ?)"
+					"insert into " + PermutationBlobs.TABLE + " (num, value) values (?, ?)"
 			)) {
-				for (
-						int i = 0, permutationsSize = permutations.size();
-						i < permutationsSize;
-						++i
-				) {
-					final Permutation permutation = permutations.get(i);
-					insert.setInt(1, i);
-					permutation.forEachElement(new SequenceAwareFunction<Integer, Void>() {
-						@Override
-						public Void apply(final Integer element, final int index) {
-							try {
-								insert.setInt(2, index);
-								insert.setInt(3, element);
-								insert.addBatch();
-							} catch (SQLException e) {
-								throw new WrappedException(e);
-							}
-							return null;
-						}
-					});
-				}
-				insert.executeBatch();
+				insertPermutations(insert, permutations);
 			} catch (SQLException e) {
 				throw new DataAccessException("Failed to store permutations", e);
-			} catch (WrappedException e) {
-				throw new DataAccessException(
-						"Failed to store permutations",
-						e.getCause()
-				);
 			}
 
 			try {
@@ -129,13 +112,144 @@ public class FileBasedDatabaseSetup implements DatabaseSetup {
 		}
 	}
 
-	private void setupPermutations(final Statement statement) throws DataAccessException {
+	/**
+	 * Converts permutations stored one row per element, by versions that
+	 * didn't have the binary layout, into it, and compacts the database. Does
+	 * nothing if the permutations are already in the binary layout.
+	 * <p/>
+	 * Data definition statements commit, so the conversion can't be one
+	 * transaction. Instead, the permutations are written to a staging table,
+	 * which replaces the binary table only when it's full, and the old table
+	 * is dropped last. If the conversion fails, the old table is still there,
+	 * and running it again starts over.
+	 *
+	 * @return {@code true} if the permutations were converted.
+	 *
+	 * @throws DataAccessException if the database can't be converted.
+	 * @throws NoDataException if the settings don't tell the amount or the
+	 * length of the permutations.
+	 */
+	@Override
+	public boolean migratePermutations() throws DataAccessException, NoDataException {
+		try (final Connection connection = DriverManager.getConnection(
+				"jdbc:hsqldb:file:" + database, "SA", ""
+		)) {
+			try {
+				connection.setAutoCommit(false);
+			} catch (SQLException e) {
+				throw new DataAccessException("Failed to enable transactions", e);
+			}
+
+			try {
+				if (!PermutationBlobs.hasTable(connection, PermutationBlobs.LEGACY_TABLE)) {
+					return false;
+				}
+			} catch (SQLException e) {
+				throw new DataAccessException("Failed to read the database's tables", e);
+			}
+
+			final int count = readIntSetting(connection, MINHASH_FINGERPRINT_LENGTH);
+			final int length = readIntSetting(connection, SPECTROGRAM_LENGTH) *
+					readIntSetting(connection, SPECTROGRAM_WIDTH);
+
+			final List<Permutation> permutations;
+			try (final PreparedStatement select =
+						 connection.prepareStatement(PermutationBlobs.LEGACY_QUERY)) {
+				permutations = PermutationBlobs.readLegacy(select, count, length);
+			} catch (SQLException e) {
+				throw new DataAccessException("Failed to read permutations", e);
+			}
+
+			try (final Statement statement = connection.createStatement()) {
+				// left by a conversion that failed
+				dropIfExists(connection, statement, PermutationBlobs.STAGING_TABLE);
+				setupPermutations(PermutationBlobs.STAGING_TABLE, length, statement);
+				try (final PreparedStatement insert = connection.prepareStatement(
+						"insert into " + PermutationBlobs.STAGING_TABLE + " (num, value) values (?, ?)"
+				)) {
+					insertPermutations(insert, permutations);
+				}
+				connection.commit();
+				// left by a conversion that failed before dropping the old table
+				dropIfExists(connection, statement, PermutationBlobs.TABLE);
+				statement.execute(
+						"alter table " + PermutationBlobs.STAGING_TABLE +
+								" rename to " + PermutationBlobs.TABLE
+				);
+				statement.execute("drop table " + PermutationBlobs.LEGACY_TABLE);
+			} catch (SQLException e) {
+				throw new DataAccessException("Failed to convert permutations", e);
+			}
+
+			try {
+				connection.commit();
+			} catch (SQLException e) {
+				throw new DataAccessException("Failed to commit permutation conversion", e);
+			}
+
+			// the dropped rows keep their space in the data file until compaction
+			try (final Statement stmt = connection.createStatement()) {
+				stmt.execute("shutdown compact");
+			} catch (SQLException e) {
+				throw new DataAccessException("Graceful shutdown failed", e);
+			}
+			return true;
+		} catch (SQLException e) {
+			throw new DataAccessException("Failed to open database connection", e);
+		}
+	}
+
+	private static void insertPermutations(
+			final PreparedStatement insert,
+			final List<Permutation> permutations
+	) throws SQLException {
+		for (int i = 0, permutationsSize = permutations.size(); i < permutationsSize; ++i) {
+			insert.setInt(1, i);
+			insert.setBytes(2, PermutationBlobs.toBytes(permutations.get(i)));
+			insert.addBatch();
+		}
+		insert.executeBatch();
+	}
+
+	private static void dropIfExists(
+			final Connection connection,
+			final Statement statement,
+			final String table
+	) throws SQLException {
+		if (PermutationBlobs.hasTable(connection, table)) {
+			statement.execute("drop table " + table);
+		}
+	}
+
+	private static int readIntSetting(
+			final Connection connection,
+			final WaveprintParameter key
+	) throws DataAccessException, NoDataException {
+		try (final PreparedStatement select =
+					 connection.prepareStatement("select value from info where key = ?")) {
+			select.setString(1, key.getStringKey());
+			try (final ResultSet rs = select.executeQuery()) {
+				if (rs.next()) {
+					return Integer.valueOf(rs.getString(1));
+				} else {
+					throw new NoDataException("No info record for key: " + key);
+				}
+			}
+		} catch (SQLException e) {
+			throw new DataAccessException("Failure while reading setting " + key, e);
+		}
+	}
+
+	private void setupPermutations(
+			final String table,
+			final int permutationLength,
+			final Statement statement
+	) throws DataAccessException {
 		try {
 			statement.execute(
-					"create table permutation (" +
-							"num integer not null, " +
-							"index integer not null, " +
-							"value integer not null" +
+					"create table " + table + " (" +
+							"num integer primary key, " +
+							"value varbinary(" + PermutationBlobs.getSize(permutationLength) + ")" +
 					")"
 			);
 		} catch (SQLException e) {
@@ -0,0 +1,274 @@
+package org.shoushitsu.waveprint.db.hsqldb;
+
+import msyu.util.collect.LongIntHashMap;
+import msyu.util.collect.Pair;
+import org.shoushitsu.waveprint.Permutation;
+import org.shoushitsu.waveprint.db.DataAccessException;
+import org.shoushitsu.waveprint.db.Database;
+import org.shoushitsu.waveprint.db.LshValues;
+import org.shoushitsu.waveprint.db.NoDataException;
+import org.shoushitsu.waveprint.db.WaveprintParameter;
+
+import javax.annotation.Nonnull;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.shoushitsu.waveprint.db.WaveprintParameters.LSH_VOTE_THRESHOLD;
+import static org.shoushitsu.waveprint.db.WaveprintParameters.MINHASH_FINGERPRINT_LENGTH;
+
+/**
+ * A {@link FileBasedDatabase} with its LSH bins and fingerprints kept in
+ * memory, so that {@link #getLshMatches(List)} doesn't query the database.
+ * <p/>
+ * The bins and the fingerprints are loaded when the database is opened.
+ * Added tracks are stored in the database and in memory. Settings and
+ * permutations are read from the database.
+ * <p/>
+ * Fingerprints are numbered in the order of their ids. Each bin maps an
+ * LSH value to the last fingerprint that has it, and keeps, for each
+ * fingerprint, the previous one with the same value; the stored
+ * fingerprints are packed into one array. Memory use is thus about
+ * {@code 4 * binCount + fingerprintLength + 16} bytes per fingerprint, plus
+ * the bins' maps.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class InMemoryLshDatabase implements Database {
+
+	/** The end of a chain of fingerprints with the same LSH value. */
+	private static final int NONE = -1;
+
+	private final Object myMonitor = new Object();
+
+	private final FileBasedDatabase myDatabase;
+
+	private final int myFingerprintLength;
+
+	private final int myVoteThreshold;
+
+	private final LongIntHashMap[] myLastByValue;
+
+	/** For each bin and fingerprint, the previous fingerprint with its value. */
+	private final int[][] myPreviousByBin;
+
+	private long[] myFingerprintIds;
+
+	private long[] myTrackIds;
+
+	/** The fingerprints as stored: bytes saturated at 255. */
+	private byte[] myFingerprints;
+
+	private int myFingerprintCount;
+
+	/** The votes of the fingerprints for the current probe; all 0 between probes. */
+	private int[] myVotes;
+
+	/** The fingerprints that got votes for the current probe. */
+	private int[] myCandidates;
+
+	/**
+	 * Loads the LSH bins and the fingerprints of a database. The database is
+	 * closed with this one.
+	 *
+	 * @param database    the database.
+	 *
+	 * @throws DataAccessException if the database can't be read.
+	 * @throws NoDataException if a required setting is missing.
+	 */
+	public InMemoryLshDatabase(@Nonnull final FileBasedDatabase database)
+			throws DataAccessException, NoDataException {
+		myDatabase = database;
+		myFingerprintLength = Integer.parseInt(database.readSetting(MINHASH_FINGERPRINT_LENGTH));
+		myVoteThreshold = Integer.parseInt(database.readSetting(LSH_VOTE_THRESHOLD));
+		final int binCount = database.getLshBinCount();
+
+		final int[] count = new int[1];
+		database.scan("select count(*) from fingerprint", new FileBasedDatabase.RowHandler() {
+			@Override
+			public void handle(@Nonnull final ResultSet row) throws SQLException {
+				count[0] = row.getInt(1);
+			}
+		});
+		final int capacity = Math.max(count[0], 16);
+		myFingerprintIds = new long[capacity];
+		myTrackIds = new long[capacity];
+		myFingerprints = new byte[capacity * myFingerprintLength];
+		myVotes = new int[capacity];
+		myCandidates = new int[capacity];
+		myLastByValue = new LongIntHashMap[binCount];
+		myPreviousByBin = new int[binCount][capacity];
+
+		database.scan(
+				"select id, track_id, value from fingerprint order by id",
+				new FileBasedDatabase.RowHandler() {
+					@Override
+					public void handle(@Nonnull final ResultSet row) throws SQLException {
+						final int fp = myFingerprintCount++;
+						ensureCapacity(myFingerprintCount);
+						myFingerprintIds[fp] = row.getLong("id");
+						myTrackIds[fp] = row.getLong("track_id");
+						final byte[] value = row.getBytes("value");
+						System.arraycopy(
+								value, 0,
+								myFingerprints, fp * myFingerprintLength,
+								Math.min(value.length, myFingerprintLength)
+						);
+					}
+				}
+		);
+
+		for (int bin = 0; bin < binCount; bin++) {
+			final LongIntHashMap lastByValue = new LongIntHashMap(myFingerprintCount, NONE);
+			final int[] previous = myPreviousByBin[bin];
+			database.scan(
+					"select fingerprint_id, value from lsh_bin_" + bin,
+					new FileBasedDatabase.RowHandler() {
+						@Override
+						public void handle(@Nonnull final ResultSet row) throws SQLException {
+							final int fp = Arrays.binarySearch(
+									myFingerprintIds, 0, myFingerprintCount,
+									row.getLong("fingerprint_id")
+							);
+							if (fp >= 0) {
+								previous[fp] = lastByValue.put(row.getLong("value"), fp);
+							}
+						}
+					}
+			);
+			myLastByValue[bin] = lastByValue;
+		}
+	}
+
+	private void ensureCapacity(final int fingerprintCount) {
+		if (fingerprintCount <= myFingerprintIds.length) {
+			return;
+		}
+		final int capacity = Math.max(fingerprintCount, myFingerprintIds.length << 1);
+		myFingerprintIds = Arrays.copyOf(myFingerprintIds, capacity);
+		myTrackIds = Arrays.copyOf(myTrackIds, capacity);
+		myFingerprints = Arrays.copyOf(myFingerprints, capacity * myFingerprintLength);
+		myVotes = Arrays.copyOf(myVotes, capacity);
+		myCandidates = Arrays.copyOf(myCandidates, capacity);
+		for (int bin = 0; bin < myPreviousByBin.length; bin++) {
+			myPreviousByBin[bin] = Arrays.copyOf(myPreviousByBin[bin], capacity);
+		}
+	}
+
+	@Override
+	public String readSetting(final WaveprintParameter key) throws NoDataException, DataAccessException {
+		return myDatabase.readSetting(key);
+	}
+
+	@Override
+	public Properties readSettings() throws DataAccessException {
+		return myDatabase.readSettings();
+	}
+
+	@Override
+	public List<Permutation> readPermutations() throws DataAccessException, NoDataException {
+		return myDatabase.readPermutations();
+	}
+
+	@Override
+	public List<Map<Long, Pair<Long, Integer>>> getLshMatches(final List<int[]> probeFingerprints) {
+		synchronized (myMonitor) {
+			final List<Map<Long, Pair<Long, Integer>>> result =
+					new ArrayList<>(probeFingerprints.size());
+			for (final int[] probe : probeFingerprints) {
+				result.add(getLshMatches(probe));
+			}
+			return result;
+		}
+	}
+
+	private Map<Long, Pair<Long, Integer>> getLshMatches(final int[] probe) {
+		int candidateCount = 0;
+		for (int bin = 0; bin < myLastByValue.length; bin++) {
+			final int[] previous = myPreviousByBin[bin];
+			final long value = LshValues.get(probe, bin);
+			for (int fp = myLastByValue[bin].get(value); fp != NONE; fp = previous[fp]) {
+				if (myVotes[fp]++ == 0) {
+					myCandidates[candidateCount++] = fp;
+				}
+			}
+		}
+
+		final Map<Long, Pair<Long, Integer>> matches = new HashMap<>();
+		for (int i = 0; i < candidateCount; i++) {
+			final int fp = myCandidates[i];
+			if (myVotes[fp] >= myVoteThreshold) {
+				matches.put(
+						myFingerprintIds[fp],
+						Pair.of(myTrackIds[fp], getSimilarity(probe, fp))
+				);
+			}
+			myVotes[fp] = 0;
+		}
+		return matches;
+	}
+
+	private int getSimilarity(final int[] probe, final int fp) {
+		final int offset = fp * myFingerprintLength;
+		final int length = Math.min(probe.length, myFingerprintLength);
+		int similarity = 0;
+		for (int i = 0; i < length; i++) {
+			final int probeElement = probe[i];
+			if ((myFingerprints[offset + i] & 0xff) == (probeElement > 255 ? 255 : probeElement)) {
+				++similarity;
+			}
+		}
+		return similarity;
+	}
+
+	@Override
+	public void addTrack(
+			@Nonnull final String trackName,
+			@Nonnull final List<int[]> fingerprints
+	) throws DataAccessException {
+		synchronized (myMonitor) {
+			final int count = fingerprints.size();
+			final long[] fingerprintIds = new long[count];
+			final long trackId = myDatabase.addTrack(trackName, fingerprints, fingerprintIds);
+			ensureCapacity(myFingerprintCount + count);
+			for (int i = 0; i < count; i++) {
+				final int[] fingerprint = fingerprints.get(i);
+				final int fp = myFingerprintCount++;
+				myFingerprintIds[fp] = fingerprintIds[i];
+				myTrackIds[fp] = trackId;
+				final int offset = fp * myFingerprintLength;
+				for (int j = 0, length = Math.min(fingerprint.length, myFingerprintLength); j < length; j++) {
+					final int element = fingerprint[j];
+					myFingerprints[offset + j] = (byte) (element > 255 ? 255 : element);
+				}
+				for (int bin = 0; bin < myLastByValue.length; bin++) {
+					myPreviousByBin[bin][fp] = myLastByValue[bin].put(
+							LshValues.get(fingerprint, bin),
+							fp
+					);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the amount of fingerprints in memory.
+	 *
+	 * @return the amount.
+	 */
+	public int getFingerprintCount() {
+		synchronized (myMonitor) {
+			return myFingerprintCount;
+		}
+	}
+
+	@Override
+	public void close() throws DataAccessException {
+		myDatabase.close();
+	}
+}
@@ -0,0 +1,102 @@
+package org.shoushitsu.waveprint.db.hsqldb;
+
+import org.shoushitsu.waveprint.Permutation;
+import org.shoushitsu.waveprint.WaveprintConfig;
+import org.shoushitsu.waveprint.db.DataAccessException;
+import org.shoushitsu.waveprint.db.NoDataException;
+import org.shoushitsu.waveprint.db.segment.IndexSegment;
+import org.shoushitsu.waveprint.db.segment.IndexSegmentWriter;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.shoushitsu.waveprint.db.WaveprintParameters.MINHASH_FINGERPRINT_LENGTH;
+
+/**
+ * Writes the contents of a {@link FileBasedDatabase} into an
+ * {@link IndexSegment}.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public final class IndexSegmentExporter {
+
+	private IndexSegmentExporter() {}
+
+	/**
+	 * Exports a database.
+	 *
+	 * @param database    the database.
+	 * @param file        the segment file; replaced if it exists.
+	 *
+	 * @throws DataAccessException if the database can't be read.
+	 * @throws NoDataException if a required setting is missing, or the
+	 * database's MinHash family needs permutations and they are missing.
+	 * @throws IOException if the segment can't be written, or the database
+	 * has more fingerprints than a segment holds.
+	 */
+	public static void export(@Nonnull final FileBasedDatabase database, @Nonnull final Path file)
+			throws DataAccessException, NoDataException, IOException {
+		final Properties settings = database.readSettings();
+		final String family = new WaveprintConfig(settings).getMinHashFamily();
+		// the other families derive their hash functions from a seed setting
+		final List<Permutation> permutations = WaveprintConfig.MINHASH_FAMILY_PERMUTATION.equals(family) ?
+				database.readPermutations() :
+				Collections.<Permutation>emptyList();
+		final long[] fingerprintCount = new long[1];
+		database.scan("select count(*) from fingerprint", new FileBasedDatabase.RowHandler() {
+			@Override
+			public void handle(@Nonnull final ResultSet row) throws SQLException {
+				fingerprintCount[0] = row.getLong(1);
+			}
+		});
+		if (fingerprintCount[0] > IndexSegment.MAX_FINGERPRINT_COUNT) {
+			throw new IOException(String.format(
+					"The database has %d fingerprints, but an index segment holds at most %d",
+					fingerprintCount[0], IndexSegment.MAX_FINGERPRINT_COUNT
+			));
+		}
+		final int binCount = database.getLshBinCount();
+		final IndexSegmentWriter writer = new IndexSegmentWriter(
+				settings,
+				permutations,
+				Integer.parseInt(database.readSetting(MINHASH_FINGERPRINT_LENGTH)),
+				binCount
+		);
+
+		database.scan("select id, name from track order by id", new FileBasedDatabase.RowHandler() {
+			@Override
+			public void handle(@Nonnull final ResultSet row) throws SQLException {
+				writer.addTrack(row.getLong("id"), row.getString("name"));
+			}
+		});
+		database.scan(
+				"select id, track_id, value from fingerprint order by id",
+				new FileBasedDatabase.RowHandler() {
+					@Override
+					public void handle(@Nonnull final ResultSet row) throws SQLException {
+						writer.addFingerprint(row.getLong("id"), row.getLong("track_id"), row.getBytes("value"));
+					}
+				}
+		);
+		for (int bin = 0; bin < binCount; bin++) {
+			final int currentBin = bin;
+			database.scan(
+					"select value, fingerprint_id from lsh_bin_" + bin + " order by value, fingerprint_id",
+					new FileBasedDatabase.RowHandler() {
+						@Override
+						public void handle(@Nonnull final ResultSet row) throws SQLException {
+							writer.addLshEntry(currentBin, row.getLong("value"), row.getLong("fingerprint_id"));
+						}
+					}
+			);
+		}
+
+		writer.write(file);
+	}
+}
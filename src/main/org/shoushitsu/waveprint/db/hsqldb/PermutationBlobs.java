@@ -0,0 +1,135 @@
+package org.shoushitsu.waveprint.db.hsqldb;
+
+import msyu.util.collect.IntArrayBuilder;
+import org.shoushitsu.waveprint.Permutation;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The binary layout of permutations: one row of the
+ * {@value #TABLE} table per permutation, with the elements in one
+ * {@code varbinary} value as big-endian 32-bit integers.
+ * <p/>
+ * Databases created before this layout keep one row of the
+ * {@value #LEGACY_TABLE} table per element; they can still be read, and
+ * {@link FileBasedDatabaseSetup#migratePermutations()} converts them. The
+ * conversion drops the legacy table last, so while it exists it holds the
+ * permutations, whatever else a failed conversion has left.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+final class PermutationBlobs {
+
+	static final String TABLE = "permutation_data";
+
+	static final String LEGACY_TABLE = "permutation";
+
+	/** The table a conversion fills before renaming it to {@link #TABLE}. */
+	static final String STAGING_TABLE = "permutation_data_new";
+
+	/**
+	 * The query of {@link #readLegacy(PreparedStatement, int, int)}; takes
+	 * the amount and the length of the permutations.
+	 */
+	static final String LEGACY_QUERY =
+			"select num, index, value " +
+					"from " + LEGACY_TABLE + " " +
+					"where num <= ? and index <= ? " +
+					"order by num, index";
+
+	private PermutationBlobs() {}
+
+	/**
+	 * Get the size of a permutation's value.
+	 *
+	 * @param length    the permutation's length.
+	 *
+	 * @return the size in bytes.
+	 */
+	static int getSize(final int length) {
+		return length * 4;
+	}
+
+	@Nonnull
+	static byte[] toBytes(@Nonnull final Permutation permutation) {
+		final ByteBuffer buffer = ByteBuffer.allocate(getSize(permutation.getLength()));
+		for (int i = 0, length = permutation.getLength(); i < length; i++) {
+			buffer.putInt(permutation.apply(i));
+		}
+		return buffer.array();
+	}
+
+	@Nonnull
+	static Permutation fromBytes(@Nonnull final byte[] bytes) {
+		final int[] elements = new int[bytes.length / 4];
+		ByteBuffer.wrap(bytes).asIntBuffer().get(elements);
+		return Permutation.fromIntArray(elements);
+	}
+
+	/**
+	 * Reads permutations stored one row per element.
+	 *
+	 * @param statement     the prepared {@link #LEGACY_QUERY}.
+	 * @param count         the amount of permutations.
+	 * @param permLength    the length of a permutation.
+	 *
+	 * @return the permutations.
+	 *
+	 * @throws SQLException if the query fails.
+	 */
+	@Nonnull
+	static List<Permutation> readLegacy(
+			@Nonnull final PreparedStatement statement,
+			final int count,
+			final int permLength
+	) throws SQLException {
+		final List<Permutation> result = new ArrayList<>();
+		final IntArrayBuilder iab = new IntArrayBuilder();
+		statement.setInt(1, count);
+		statement.setInt(2, permLength);
+		try (final ResultSet rs = statement.executeQuery()) {
+			while (rs.next()) {
+				iab.append(rs.getInt("value"));
+				if (rs.getInt("index") == permLength - 1) {
+					result.add(Permutation.fromIntArray(iab.toIntArray()));
+					iab.clear();
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether a table exists.
+	 *
+	 * @param connection    the connection to the database.
+	 * @param table         the table's name.
+	 *
+	 * @return {@code true} if the table exists.
+	 *
+	 * @throws SQLException if the database's metadata can't be read.
+	 */
+	static boolean hasTable(@Nonnull final Connection connection, @Nonnull final String table)
+			throws SQLException {
+		final DatabaseMetaData metaData = connection.getMetaData();
+		// the name is a LIKE pattern, in which "_" matches any character
+		final String escape = metaData.getSearchStringEscape();
+		// unquoted names are stored in upper case
+		final String pattern = table.toUpperCase(Locale.ROOT)
+				.replace(escape, escape + escape)
+				.replace("_", escape + "_")
+				.replace("%", escape + "%");
+		try (final ResultSet rs = metaData.getTables(null, null, pattern, null)) {
+			return rs.next();
+		}
+	}
+}
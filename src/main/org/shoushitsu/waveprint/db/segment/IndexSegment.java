@@ -0,0 +1,332 @@
+package org.shoushitsu.waveprint.db.segment;
+
+import msyu.util.collect.Pair;
+import org.shoushitsu.waveprint.Permutation;
+import org.shoushitsu.waveprint.db.DataAccessException;
+import org.shoushitsu.waveprint.db.DatabaseSource;
+import org.shoushitsu.waveprint.db.LshValues;
+import org.shoushitsu.waveprint.db.NoDataException;
+import org.shoushitsu.waveprint.db.WaveprintParameter;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.shoushitsu.waveprint.db.WaveprintParameters.LSH_VOTE_THRESHOLD;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.BIN_POSTINGS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.BIN_STARTS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.BIN_VALUES;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.FINGERPRINTS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.FINGERPRINT_IDS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.FINGERPRINT_TRACKS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.PERMUTATIONS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.SETTINGS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.TRACK_IDS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.TRACK_NAMES;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.TRACK_NAME_OFFSETS;
+
+/**
+ * A read-only database in an index segment file (see {@link SegmentFormat}),
+ * used through memory-mapped buffers without loading it: opening a segment
+ * only reads its header and settings, and processes that open the same
+ * segment share its pages in the OS cache.
+ * <p/>
+ * A probe fingerprint's value in each bin is looked up by binary search, and
+ * the fingerprints in the posting lists of the values found are voted for,
+ * as in {@link org.shoushitsu.waveprint.db.hsqldb.FileBasedDatabase}.
+ * <p/>
+ * The segment is thread-safe. The mappings stay valid until the segment is
+ * garbage collected; {@link #close()} does nothing.
+ * <p/>
+ * The fingerprints are mapped in as many chunks as they need, but the other
+ * sections must each fit in one mapping, so a segment holds at most
+ * {@link #MAX_FINGERPRINT_COUNT} fingerprints.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class IndexSegment implements DatabaseSource {
+
+	/** The most fingerprints a segment can hold. */
+	public static final int MAX_FINGERPRINT_COUNT =
+			SegmentFormat.getMaxFingerprintCount(SegmentFormat.MAX_MAPPING_SIZE);
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final int myFingerprintLength;
+
+	private final int myFingerprintCount;
+
+	private final int myTrackCount;
+
+	private final int myPermutationCount;
+
+	private final int myPermutationLength;
+
+	private final Properties mySettings;
+
+	private final int myVoteThreshold;
+
+	private final IntBuffer myPermutations;
+
+	private final LongBuffer myTrackIds;
+	private final IntBuffer myTrackNameOffsets;
+	private final ByteBuffer myTrackNames;
+
+	private final LongBuffer myFingerprintIds;
+	private final LongBuffer myFingerprintTracks;
+	/** The fingerprints, {@link #myChunkLength} in each buffer. */
+	private final ByteBuffer[] myFingerprints;
+	private final int myChunkLength;
+
+	private final LongBuffer[] myBinValues;
+	private final IntBuffer[] myBinStarts;
+	private final IntBuffer[] myBinPostings;
+
+	/**
+	 * Opens a segment.
+	 *
+	 * @param file    the segment file.
+	 *
+	 * @throws DataAccessException if the file can't be read or isn't a
+	 * segment.
+	 * @throws NoDataException if the vote threshold setting is missing.
+	 */
+	public IndexSegment(@Nonnull final Path file) throws DataAccessException, NoDataException {
+		this(file, SegmentFormat.MAX_MAPPING_SIZE);
+	}
+
+	/**
+	 * Opens a segment with mappings no larger than the given size, so that
+	 * the chunking of the fingerprints can be tested.
+	 */
+	IndexSegment(@Nonnull final Path file, final int maxMappingSize)
+			throws DataAccessException, NoDataException {
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final ByteBuffer header = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, SegmentFormat.HEADER_SIZE);
+			if (header.getInt(0) != SegmentFormat.MAGIC) {
+				throw new DataAccessException("Not an index segment: " + file, null);
+			}
+			if (header.getInt(4) != SegmentFormat.VERSION) {
+				throw new DataAccessException(
+						"Unsupported index segment version: " + header.getInt(4), null);
+			}
+			myFingerprintLength = header.getInt(8);
+			final int binCount = header.getInt(12);
+			myTrackCount = header.getInt(16);
+			myFingerprintCount = header.getInt(20);
+			myPermutationCount = header.getInt(24);
+			myPermutationLength = header.getInt(28);
+
+			final ByteBuffer directory = channel.map(
+					FileChannel.MapMode.READ_ONLY,
+					SegmentFormat.HEADER_SIZE,
+					16L * SegmentFormat.getSectionCount(binCount)
+			);
+			final ByteBuffer[] sections = new ByteBuffer[SegmentFormat.getSectionCount(binCount)];
+			for (int i = 0; i < sections.length; i++) {
+				if (i == FINGERPRINTS) {
+					continue;
+				}
+				SegmentFormat.checkMappable(i, directory.getLong(16 * i + 8), maxMappingSize);
+				sections[i] = channel.map(
+						FileChannel.MapMode.READ_ONLY,
+						directory.getLong(16 * i),
+						directory.getLong(16 * i + 8)
+				);
+			}
+			myChunkLength = Math.max(1, maxMappingSize / myFingerprintLength);
+			final long chunkSize = (long) myChunkLength * myFingerprintLength;
+			final long fingerprintsOffset = directory.getLong(16 * FINGERPRINTS);
+			final long fingerprintsLength = directory.getLong(16 * FINGERPRINTS + 8);
+			myFingerprints = new ByteBuffer[(int) ((fingerprintsLength + chunkSize - 1) / chunkSize)];
+			for (int i = 0; i < myFingerprints.length; i++) {
+				myFingerprints[i] = channel.map(
+						FileChannel.MapMode.READ_ONLY,
+						fingerprintsOffset + i * chunkSize,
+						Math.min(chunkSize, fingerprintsLength - i * chunkSize)
+				);
+			}
+
+			mySettings = new Properties();
+			final byte[] settings = new byte[sections[SETTINGS].remaining()];
+			sections[SETTINGS].get(settings);
+			mySettings.load(new ByteArrayInputStream(settings));
+
+			myPermutations = sections[PERMUTATIONS].asIntBuffer();
+			myTrackIds = sections[TRACK_IDS].asLongBuffer();
+			myTrackNameOffsets = sections[TRACK_NAME_OFFSETS].asIntBuffer();
+			myTrackNames = sections[TRACK_NAMES];
+			myFingerprintIds = sections[FINGERPRINT_IDS].asLongBuffer();
+			myFingerprintTracks = sections[FINGERPRINT_TRACKS].asLongBuffer();
+			myBinValues = new LongBuffer[binCount];
+			myBinStarts = new IntBuffer[binCount];
+			myBinPostings = new IntBuffer[binCount];
+			for (int bin = 0; bin < binCount; bin++) {
+				myBinValues[bin] = sections[SegmentFormat.getBinSection(bin, BIN_VALUES)].asLongBuffer();
+				myBinStarts[bin] = sections[SegmentFormat.getBinSection(bin, BIN_STARTS)].asIntBuffer();
+				myBinPostings[bin] = sections[SegmentFormat.getBinSection(bin, BIN_POSTINGS)].asIntBuffer();
+			}
+		} catch (IOException e) {
+			throw new DataAccessException("Failed to open index segment " + file, e);
+		}
+		myVoteThreshold = Integer.parseInt(readSetting(LSH_VOTE_THRESHOLD));
+	}
+
+	@Override
+	public String readSetting(final WaveprintParameter key) throws NoDataException {
+		final String value = mySettings.getProperty(key.getStringKey());
+		if (value == null) {
+			throw new NoDataException("No info record for key: " + key);
+		}
+		return value;
+	}
+
+	@Override
+	public Properties readSettings() {
+		final Properties settings = new Properties();
+		settings.putAll(mySettings);
+		return settings;
+	}
+
+	@Override
+	public List<Permutation> readPermutations() throws NoDataException {
+		if (myPermutationCount == 0) {
+			throw new NoDataException("The segment has no MinHash permutations");
+		}
+		final List<Permutation> permutations = new ArrayList<>(myPermutationCount);
+		for (int i = 0; i < myPermutationCount; i++) {
+			final int[] elements = new int[myPermutationLength];
+			for (int j = 0; j < myPermutationLength; j++) {
+				elements[j] = myPermutations.get(i * myPermutationLength + j);
+			}
+			permutations.add(Permutation.fromIntArray(elements));
+		}
+		return permutations;
+	}
+
+	@Override
+	public List<Map<Long, Pair<Long, Integer>>> getLshMatches(final List<int[]> probeFingerprints) {
+		final List<Map<Long, Pair<Long, Integer>>> result = new ArrayList<>(probeFingerprints.size());
+		int[] candidates = new int[64];
+		for (final int[] probe : probeFingerprints) {
+			int candidateCount = 0;
+			for (int bin = 0; bin < myBinValues.length; bin++) {
+				final int value = find(myBinValues[bin], LshValues.get(probe, bin));
+				if (value < 0) {
+					continue;
+				}
+				final IntBuffer postings = myBinPostings[bin];
+				for (int i = myBinStarts[bin].get(value), end = myBinStarts[bin].get(value + 1); i < end; i++) {
+					if (candidateCount == candidates.length) {
+						candidates = Arrays.copyOf(candidates, candidateCount << 1);
+					}
+					candidates[candidateCount++] = postings.get(i);
+				}
+			}
+
+			// each run of equal fingerprint numbers is one fingerprint's votes
+			Arrays.sort(candidates, 0, candidateCount);
+			final Map<Long, Pair<Long, Integer>> matches = new HashMap<>();
+			for (int i = 0; i < candidateCount; ) {
+				final int fingerprint = candidates[i];
+				int votes = 0;
+				while (i < candidateCount && candidates[i] == fingerprint) {
+					++votes;
+					++i;
+				}
+				if (votes >= myVoteThreshold) {
+					matches.put(
+							myFingerprintIds.get(fingerprint),
+							Pair.of(myFingerprintTracks.get(fingerprint), getSimilarity(probe, fingerprint))
+					);
+				}
+			}
+			result.add(matches);
+		}
+		return result;
+	}
+
+	/**
+	 * Finds a value in an ascending buffer.
+	 *
+	 * @return the index of the value, or -1 if it's absent.
+	 */
+	private static int find(final LongBuffer values, final long value) {
+		int low = 0;
+		int high = values.limit() - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final long middleValue = values.get(middle);
+			if (middleValue < value) {
+				low = middle + 1;
+			} else if (middleValue > value) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	private int getSimilarity(final int[] probe, final int fingerprint) {
+		final ByteBuffer fingerprints = myFingerprints[fingerprint / myChunkLength];
+		final int offset = (fingerprint % myChunkLength) * myFingerprintLength;
+		final int length = Math.min(probe.length, myFingerprintLength);
+		int similarity = 0;
+		for (int i = 0; i < length; i++) {
+			final int probeElement = probe[i];
+			if ((fingerprints.get(offset + i) & 0xff) == (probeElement > 255 ? 255 : probeElement)) {
+				++similarity;
+			}
+		}
+		return similarity;
+	}
+
+	/**
+	 * Get the name of a track.
+	 *
+	 * @param trackId    the track's id.
+	 *
+	 * @return the name, or {@code null} if the segment has no such track.
+	 */
+	@Nullable
+	public String getTrackName(final long trackId) {
+		final int track = find(myTrackIds, trackId);
+		if (track < 0) {
+			return null;
+		}
+		final int start = myTrackNameOffsets.get(track);
+		final byte[] name = new byte[myTrackNameOffsets.get(track + 1) - start];
+		for (int i = 0; i < name.length; i++) {
+			name[i] = myTrackNames.get(start + i);
+		}
+		return new String(name, UTF_8);
+	}
+
+	public int getTrackCount() {
+		return myTrackCount;
+	}
+
+	public int getFingerprintCount() {
+		return myFingerprintCount;
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,385 @@
+package org.shoushitsu.waveprint.db.segment;
+
+import msyu.util.collect.IntArrayBuilder;
+import org.shoushitsu.waveprint.Permutation;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.BIN_POSTINGS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.BIN_STARTS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.BIN_VALUES;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.FINGERPRINTS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.FINGERPRINT_IDS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.FINGERPRINT_TRACKS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.PERMUTATIONS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.SETTINGS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.TRACK_IDS;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.TRACK_NAMES;
+import static org.shoushitsu.waveprint.db.segment.SegmentFormat.TRACK_NAME_OFFSETS;
+
+/**
+ * Collects the contents of an index segment and writes it to a file (see
+ * {@link SegmentFormat}).
+ * <p/>
+ * Tracks and fingerprints are added in the order of their ids, and all
+ * fingerprints are added before the LSH entries. The LSH entries are added
+ * bin after bin, in the order of their values, as
+ * {@code order by value, fingerprint_id} returns them.
+ * <p/>
+ * A segment holds at most {@link IndexSegment#MAX_FINGERPRINT_COUNT}
+ * fingerprints. The fingerprints are kept in chunks of about a megabyte,
+ * so that their amount isn't limited by the size of an array.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class IndexSegmentWriter {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final Properties mySettings;
+
+	private final List<Permutation> myPermutations;
+
+	private final int myFingerprintLength;
+
+	private final int myMaxMappingSize;
+
+	private final int myMaxFingerprintCount;
+
+	/** The amount of fingerprints in a chunk of {@link #myFingerprints}. */
+	private final int myChunkLength;
+
+	private long[] myTrackIds = new long[16];
+	private final List<byte[]> myTrackNames = new ArrayList<>();
+
+	private long[] myFingerprintIds = new long[16];
+	private long[] myFingerprintTracks = new long[16];
+	private final List<byte[]> myFingerprints = new ArrayList<>();
+	private int myFingerprintCount;
+
+	private final long[][] myBinValues;
+	private final int[] myBinValueCounts;
+	private final IntArrayBuilder[] myBinStarts;
+	private final IntArrayBuilder[] myBinPostings;
+
+	/** The bin LSH entries are being added to, or -1 before the first one. */
+	private int myCurrentBin = -1;
+
+	/**
+	 * Creates a new writer.
+	 *
+	 * @param settings             the settings of the database.
+	 * @param permutations         the MinHash permutations, if the database
+	 *                                stores them; otherwise empty.
+	 * @param fingerprintLength    the length of a fingerprint.
+	 * @param binCount             the amount of LSH bins.
+	 */
+	public IndexSegmentWriter(
+			@Nonnull final Properties settings,
+			@Nonnull final List<Permutation> permutations,
+			final int fingerprintLength,
+			final int binCount
+	) {
+		this(settings, permutations, fingerprintLength, binCount, SegmentFormat.MAX_MAPPING_SIZE);
+	}
+
+	/**
+	 * Creates a new writer for segments whose sections must fit in smaller
+	 * mappings than a file can be mapped into, so that the limits can be
+	 * tested.
+	 */
+	IndexSegmentWriter(
+			@Nonnull final Properties settings,
+			@Nonnull final List<Permutation> permutations,
+			final int fingerprintLength,
+			final int binCount,
+			final int maxMappingSize
+	) {
+		mySettings = settings;
+		myPermutations = permutations;
+		myFingerprintLength = fingerprintLength;
+		myMaxMappingSize = maxMappingSize;
+		myMaxFingerprintCount = SegmentFormat.getMaxFingerprintCount(maxMappingSize);
+		myChunkLength = Math.max(1, (1 << 20) / fingerprintLength);
+		myBinValues = new long[binCount][16];
+		myBinValueCounts = new int[binCount];
+		myBinStarts = new IntArrayBuilder[binCount];
+		myBinPostings = new IntArrayBuilder[binCount];
+		for (int bin = 0; bin < binCount; bin++) {
+			myBinStarts[bin] = new IntArrayBuilder();
+			myBinPostings[bin] = new IntArrayBuilder();
+		}
+	}
+
+	public void addTrack(final long id, @Nonnull final String name) {
+		final int count = myTrackNames.size();
+		if (count > 0 && id <= myTrackIds[count - 1]) {
+			throw new IllegalArgumentException("Track ids out of order: " + id);
+		}
+		if (count == myTrackIds.length) {
+			myTrackIds = Arrays.copyOf(myTrackIds, count << 1);
+		}
+		myTrackIds[count] = id;
+		myTrackNames.add(name.getBytes(UTF_8));
+	}
+
+	/**
+	 * Adds a fingerprint.
+	 *
+	 * @param id         the fingerprint's id.
+	 * @param trackId    the id of the fingerprint's track.
+	 * @param value      the fingerprint, as stored: one byte per element.
+	 */
+	public void addFingerprint(final long id, final long trackId, @Nonnull final byte[] value) {
+		if (myCurrentBin >= 0) {
+			throw new IllegalStateException("Fingerprints must be added before LSH entries");
+		}
+		if (myFingerprintCount > 0 && id <= myFingerprintIds[myFingerprintCount - 1]) {
+			throw new IllegalArgumentException("Fingerprint ids out of order: " + id);
+		}
+		if (myFingerprintCount == myMaxFingerprintCount) {
+			throw new IllegalStateException(
+					"An index segment holds at most " + myMaxFingerprintCount + " fingerprints");
+		}
+		if (myFingerprintCount == myFingerprintIds.length) {
+			final int capacity = (int) Math.min(2L * myFingerprintCount, myMaxFingerprintCount);
+			myFingerprintIds = Arrays.copyOf(myFingerprintIds, capacity);
+			myFingerprintTracks = Arrays.copyOf(myFingerprintTracks, capacity);
+		}
+		final int inChunk = myFingerprintCount % myChunkLength;
+		if (inChunk == 0) {
+			myFingerprints.add(new byte[myChunkLength * myFingerprintLength]);
+		}
+		myFingerprintIds[myFingerprintCount] = id;
+		myFingerprintTracks[myFingerprintCount] = trackId;
+		System.arraycopy(
+				value, 0,
+				myFingerprints.get(myFingerprints.size() - 1), inChunk * myFingerprintLength,
+				Math.min(value.length, myFingerprintLength)
+		);
+		++myFingerprintCount;
+	}
+
+	/**
+	 * Adds a fingerprint to an LSH bin.
+	 *
+	 * @param bin              the bin.
+	 * @param value            the fingerprint's value in the bin.
+	 * @param fingerprintId    the fingerprint's id; the fingerprint must have
+	 *                            been added.
+	 */
+	public void addLshEntry(final int bin, final long value, final long fingerprintId) {
+		if (bin < myCurrentBin || bin >= myBinValues.length) {
+			throw new IllegalArgumentException("LSH bin out of order: " + bin);
+		}
+		myCurrentBin = bin;
+		final int fingerprint = Arrays.binarySearch(myFingerprintIds, 0, myFingerprintCount, fingerprintId);
+		if (fingerprint < 0) {
+			throw new IllegalArgumentException("Unknown fingerprint: " + fingerprintId);
+		}
+		final int valueCount = myBinValueCounts[bin];
+		if (valueCount == 0 || value != myBinValues[bin][valueCount - 1]) {
+			if (valueCount > 0 && value < myBinValues[bin][valueCount - 1]) {
+				throw new IllegalArgumentException(String.format(
+						"LSH values of bin %d out of order: %d", bin, value
+				));
+			}
+			if (valueCount == myBinValues[bin].length) {
+				myBinValues[bin] = Arrays.copyOf(myBinValues[bin], valueCount << 1);
+			}
+			myBinValues[bin][valueCount] = value;
+			myBinValueCounts[bin] = valueCount + 1;
+			myBinStarts[bin].append(myBinPostings[bin].size());
+		}
+		myBinPostings[bin].append(fingerprint);
+	}
+
+	/**
+	 * Writes the segment.
+	 *
+	 * @param file    the file; replaced if it exists.
+	 *
+	 * @throws IOException if the file can't be written, or a section other
+	 * than the fingerprints doesn't fit in one mapping.
+	 */
+	public void write(@Nonnull final Path file) throws IOException {
+		final int binCount = myBinValues.length;
+		final int trackCount = myTrackNames.size();
+		final int permutationLength = myPermutations.isEmpty() ? 0 : myPermutations.get(0).getLength();
+
+		final ByteArrayOutputStream settings = new ByteArrayOutputStream();
+		mySettings.store(settings, null);
+		long namesLength = 0;
+		for (final byte[] name : myTrackNames) {
+			namesLength += name.length;
+		}
+
+		final long[] lengths = new long[SegmentFormat.getSectionCount(binCount)];
+		lengths[SETTINGS] = settings.size();
+		lengths[PERMUTATIONS] = 4L * myPermutations.size() * permutationLength;
+		lengths[TRACK_IDS] = 8L * trackCount;
+		lengths[TRACK_NAME_OFFSETS] = 4L * (trackCount + 1);
+		lengths[TRACK_NAMES] = namesLength;
+		lengths[FINGERPRINT_IDS] = 8L * myFingerprintCount;
+		lengths[FINGERPRINT_TRACKS] = 8L * myFingerprintCount;
+		lengths[FINGERPRINTS] = (long) myFingerprintLength * myFingerprintCount;
+		for (int bin = 0; bin < binCount; bin++) {
+			lengths[SegmentFormat.getBinSection(bin, BIN_VALUES)] = 8L * myBinValueCounts[bin];
+			lengths[SegmentFormat.getBinSection(bin, BIN_STARTS)] = 4L * (myBinValueCounts[bin] + 1);
+			lengths[SegmentFormat.getBinSection(bin, BIN_POSTINGS)] = 4L * myBinPostings[bin].size();
+		}
+		for (int section = 0; section < lengths.length; section++) {
+			SegmentFormat.checkMappable(section, lengths[section], myMaxMappingSize);
+		}
+		final int[] nameOffsets = new int[trackCount + 1];
+		for (int i = 0; i < trackCount; i++) {
+			nameOffsets[i + 1] = nameOffsets[i] + myTrackNames.get(i).length;
+		}
+
+		try (final FileChannel channel = FileChannel.open(
+				file,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE
+		)) {
+			final Output out = new Output(channel);
+			out.putInt(SegmentFormat.MAGIC);
+			out.putInt(SegmentFormat.VERSION);
+			out.putInt(myFingerprintLength);
+			out.putInt(binCount);
+			out.putInt(trackCount);
+			out.putInt(myFingerprintCount);
+			out.putInt(myPermutations.size());
+			out.putInt(permutationLength);
+			long offset = SegmentFormat.getDataOffset(binCount);
+			for (final long length : lengths) {
+				out.putLong(offset);
+				out.putLong(length);
+				offset = SegmentFormat.align(offset + length);
+			}
+			out.align();
+
+			out.putBytes(settings.toByteArray(), settings.size());
+			out.align();
+			for (final Permutation permutation : myPermutations) {
+				for (int i = 0; i < permutationLength; i++) {
+					out.putInt(permutation.apply(i));
+				}
+			}
+			out.align();
+			out.putLongs(myTrackIds, trackCount);
+			out.align();
+			out.putInts(nameOffsets, nameOffsets.length);
+			out.align();
+			for (final byte[] name : myTrackNames) {
+				out.putBytes(name, name.length);
+			}
+			out.align();
+			out.putLongs(myFingerprintIds, myFingerprintCount);
+			out.align();
+			out.putLongs(myFingerprintTracks, myFingerprintCount);
+			out.align();
+			long remaining = lengths[FINGERPRINTS];
+			for (final byte[] chunk : myFingerprints) {
+				final int count = (int) Math.min(chunk.length, remaining);
+				out.putBytes(chunk, count);
+				remaining -= count;
+			}
+			out.align();
+			for (int bin = 0; bin < binCount; bin++) {
+				out.putLongs(myBinValues[bin], myBinValueCounts[bin]);
+				out.align();
+				final int[] starts = Arrays.copyOf(myBinStarts[bin].toIntArray(), myBinValueCounts[bin] + 1);
+				starts[myBinValueCounts[bin]] = myBinPostings[bin].size();
+				out.putInts(starts, starts.length);
+				out.align();
+				final int[] postings = myBinPostings[bin].toIntArray();
+				out.putInts(postings, postings.length);
+				out.align();
+			}
+			out.flush();
+		}
+	}
+
+	/** Buffers the writes to a channel. */
+	private static final class Output {
+
+		private final FileChannel myChannel;
+
+		private final ByteBuffer myBuffer = ByteBuffer.allocate(1 << 16);
+
+		private long myPosition;
+
+		private Output(final FileChannel channel) {
+			myChannel = channel;
+		}
+
+		private void ensureRemaining(final int size) throws IOException {
+			if (myBuffer.remaining() < size) {
+				flush();
+			}
+		}
+
+		void putInt(final int value) throws IOException {
+			ensureRemaining(4);
+			myBuffer.putInt(value);
+			myPosition += 4;
+		}
+
+		void putLong(final long value) throws IOException {
+			ensureRemaining(8);
+			myBuffer.putLong(value);
+			myPosition += 8;
+		}
+
+		void putInts(final int[] values, final int count) throws IOException {
+			for (int i = 0; i < count; i++) {
+				putInt(values[i]);
+			}
+		}
+
+		void putLongs(final long[] values, final int count) throws IOException {
+			for (int i = 0; i < count; i++) {
+				putLong(values[i]);
+			}
+		}
+
+		void putBytes(final byte[] values, final int count) throws IOException {
+			for (int offset = 0; offset < count; ) {
+				ensureRemaining(1);
+				final int chunk = Math.min(count - offset, myBuffer.remaining());
+				myBuffer.put(values, offset, chunk);
+				offset += chunk;
+				myPosition += chunk;
+			}
+		}
+
+		/** Pads the output to the start of the next section. */
+		void align() throws IOException {
+			while (myPosition != SegmentFormat.align(myPosition)) {
+				ensureRemaining(1);
+				myBuffer.put((byte) 0);
+				++myPosition;
+			}
+		}
+
+		void flush() throws IOException {
+			myBuffer.flip();
+			while (myBuffer.hasRemaining()) {
+				myChannel.write(myBuffer);
+			}
+			myBuffer.clear();
+		}
+	}
+}
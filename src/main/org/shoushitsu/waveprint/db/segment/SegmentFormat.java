@@ -0,0 +1,123 @@
+package org.shoushitsu.waveprint.db.segment;
+
+import java.io.IOException;
+
+/**
+ * The layout of an index segment file. All numbers are big-endian.
+ * <p/>
+ * The header has these {@code int}s, in order: {@link #MAGIC},
+ * {@link #VERSION}, the fingerprint length, the amount of LSH bins, of
+ * tracks, of fingerprints and of permutations, and the permutation length.
+ * It is followed by the section directory: an offset and a length in bytes
+ * ({@code long}s) for each section. The sections are, in order:
+ * <ul>
+ *     <li>the settings, in the {@link java.util.Properties} file format;</li>
+ *     <li>the permutations, one after another, as {@code int}s;</li>
+ *     <li>the track ids, ascending, as {@code long}s;</li>
+ *     <li>the offsets of the track names, one more than there are tracks, as
+ *     {@code int}s;</li>
+ *     <li>the track names, in UTF-8, one after another;</li>
+ *     <li>the fingerprint ids, ascending, as {@code long}s;</li>
+ *     <li>the track ids of the fingerprints, as {@code long}s;</li>
+ *     <li>the fingerprints as stored, one after another, each as long as
+ *     the fingerprint length;</li>
+ *     <li>for each LSH bin, three sections: the distinct values of the bin,
+ *     ascending, as {@code long}s; the start of the posting list of each
+ *     value, one more than there are values, as {@code int}s; and the
+ *     posting lists, as {@code int} numbers of fingerprints in the
+ *     fingerprint sections, ascending within a list.</li>
+ * </ul>
+ * Sections start at multiples of 8 bytes, and each is mapped on its own, so
+ * that none needs to be smaller than the whole file would. A mapping can't
+ * be larger than {@link #MAX_MAPPING_SIZE}, so the fingerprints section is
+ * mapped in chunks of whole fingerprints, and every other section must fit
+ * in one mapping.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+final class SegmentFormat {
+
+	static final int MAGIC = 0x57505347; // "WPSG"
+
+	static final int VERSION = 1;
+
+	/** The size of the header before the section directory. */
+	static final int HEADER_SIZE = 8 * 4;
+
+	static final int SETTINGS = 0;
+	static final int PERMUTATIONS = 1;
+	static final int TRACK_IDS = 2;
+	static final int TRACK_NAME_OFFSETS = 3;
+	static final int TRACK_NAMES = 4;
+	static final int FINGERPRINT_IDS = 5;
+	static final int FINGERPRINT_TRACKS = 6;
+	static final int FINGERPRINTS = 7;
+
+	/** The first section of the LSH bins. */
+	static final int BINS = 8;
+
+	static final int BIN_VALUES = 0;
+	static final int BIN_STARTS = 1;
+	static final int BIN_POSTINGS = 2;
+
+	static final int SECTIONS_PER_BIN = 3;
+
+	/** The size of the largest buffer a file can be mapped into. */
+	static final int MAX_MAPPING_SIZE = Integer.MAX_VALUE;
+
+	private SegmentFormat() {}
+
+	static int getSectionCount(final int binCount) {
+		return BINS + SECTIONS_PER_BIN * binCount;
+	}
+
+	static int getBinSection(final int bin, final int part) {
+		return BINS + SECTIONS_PER_BIN * bin + part;
+	}
+
+	/**
+	 * Get the offset of the first section.
+	 *
+	 * @param binCount    the amount of LSH bins.
+	 *
+	 * @return the offset, in bytes.
+	 */
+	static long getDataOffset(final int binCount) {
+		return align(HEADER_SIZE + 16L * getSectionCount(binCount));
+	}
+
+	static long align(final long offset) {
+		return (offset + 7) & ~7L;
+	}
+
+	/**
+	 * Get the amount of fingerprints a segment may hold, so that the ids of
+	 * its fingerprints fit in one mapping.
+	 *
+	 * @param maxMappingSize    the size of the largest mapping.
+	 *
+	 * @return the amount of fingerprints.
+	 */
+	static int getMaxFingerprintCount(final int maxMappingSize) {
+		return maxMappingSize / 8;
+	}
+
+	/**
+	 * Checks that a section fits in one mapping.
+	 *
+	 * @param section           the section.
+	 * @param length            the section's length, in bytes.
+	 * @param maxMappingSize    the size of the largest mapping.
+	 *
+	 * @throws IOException if the section is too long.
+	 */
+	static void checkMappable(final int section, final long length, final int maxMappingSize)
+			throws IOException {
+		if (section != FINGERPRINTS && length > maxMappingSize) {
+			throw new IOException(String.format(
+					"Index segment section %d is %d bytes long, more than the %d bytes that can be mapped",
+					section, length, maxMappingSize
+			));
+		}
+	}
+}
@@ -7,4 +7,9 @@ public class AudioConversionResultException extends SampleExtractionException {
 	public AudioConversionResultException(final int exitCode) {
 		super("Converter exited with nonnull code: " + exitCode);
 	}
+
+	public AudioConversionResultException(final int exitCode, final String errorOutput) {
+		super("Converter exited with nonnull code: " + exitCode +
+				(errorOutput.isEmpty() ? "" : "; its error output was:\n" + errorOutput));
+	}
 }
@@ -0,0 +1,17 @@
+package org.shoushitsu.waveprint.kernels;
+
+/**
+ * Chooses the kernels for this JVM. This is the Java 7 version, which only
+ * has the scalar ones; the multi-release jar replaces it on newer JVMs.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+final class KernelSelector {
+
+	private KernelSelector() {
+	}
+
+	static NumericKernels select() {
+		return new ScalarKernels();
+	}
+}
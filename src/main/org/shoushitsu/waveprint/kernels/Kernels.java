@@ -0,0 +1,41 @@
+package org.shoushitsu.waveprint.kernels;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Access to the numeric kernels chosen at startup.
+ * <p/>
+ * On Java 7 and 8, and whenever the vector API is unavailable, these are
+ * {@link ScalarKernels}. On Java 17 and later, if the JVM is started with
+ * <code>--add-modules jdk.incubator.vector</code>, the multi-release jar
+ * provides kernels built on the vector API. Setting the system property
+ * {@value #PROPERTY} to {@value #SCALAR} forces the scalar kernels.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public final class Kernels {
+
+	/** The system property that overrides the choice of kernels. */
+	public static final String PROPERTY = "waveprint.kernels";
+
+	/** The value of {@link #PROPERTY} that forces the scalar kernels. */
+	public static final String SCALAR = "scalar";
+
+	private static final NumericKernels ourKernels =
+			SCALAR.equals(System.getProperty(PROPERTY)) ?
+					new ScalarKernels() :
+					KernelSelector.select();
+
+	private Kernels() {
+	}
+
+	/**
+	 * Get the kernels for this JVM.
+	 *
+	 * @return the kernels.
+	 */
+	@Nonnull
+	public static NumericKernels get() {
+		return ourKernels;
+	}
+}
@@ -0,0 +1,118 @@
+package org.shoushitsu.waveprint.kernels;
+
+/**
+ * The innermost loops of the numeric code: FFT butterflies over interleaved
+ * batches of frames, amplitudes of complex numbers and one step of the Haar
+ * wavelet decomposition (in double and single precision).
+ * <p/>
+ * Every implementation must produce exactly the same results as
+ * {@link ScalarKernels}, bit for bit. Lanewise additions, multiplications
+ * and square roots are rounded the same way in vectors as in scalar code,
+ * so implementations only need to keep the order of operations (and not
+ * fuse multiplications with additions).
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ * @see Kernels#get()
+ */
+public interface NumericKernels {
+
+	/**
+	 * Radix-2 butterflies of one twiddle factor over elements
+	 * {@code from} (inclusive) to {@code to} (exclusive) of the rows:<pre>
+	 * E' = E + T O, O' = E - T O</pre>
+	 */
+	void radix2Butterflies(
+			double[] reE, double[] imE,
+			double[] reO, double[] imO,
+			int from, int to,
+			double reT, double imT
+	);
+
+	/**
+	 * Radix-4 butterflies where all twiddle factors are 1; see
+	 * {@link #radix4Butterflies(double[], double[], double[], double[], double[], double[], double[], double[], int, int, double, double, double, double, double, double)}.
+	 */
+	void radix4Butterflies(
+			double[] re0, double[] im0,
+			double[] re1, double[] im1,
+			double[] re2, double[] im2,
+			double[] re3, double[] im3,
+			int from, int to
+	);
+
+	/**
+	 * Radix-4 butterflies over elements {@code from} (inclusive) to
+	 * {@code to} (exclusive) of the rows:<pre>
+	 * x0 = A, x1 = W2 B, x2 = W1 C, x3 = W3 D,
+	 * A' = (x0 + x1) +   (x2 + x3),
+	 * B' = (x0 - x1) - i (x2 - x3),
+	 * C' = (x0 + x1) -   (x2 + x3),
+	 * D' = (x0 - x1) + i (x2 - x3)</pre>
+	 */
+	void radix4Butterflies(
+			double[] re0, double[] im0,
+			double[] re1, double[] im1,
+			double[] re2, double[] im2,
+			double[] re3, double[] im3,
+			int from, int to,
+			double reW1, double imW1,
+			double reW2, double imW2,
+			double reW3, double imW3
+	);
+
+	/**
+	 * Computes amplitudes of complex numbers: <code>out[i] = sqrt(re[i]<sup>2</sup> +
+	 * im[i]<sup>2</sup>)</code>. The output may be one of the inputs, at
+	 * the same offset.
+	 */
+	void amplitudes(
+			double[] re, int reOffset,
+			double[] im, int imOffset,
+			double[] out, int outOffset,
+			int length
+	);
+
+	/**
+	 * One step of the Haar decomposition of pairs of elements of a part of
+	 * an array that starts at {@code offset}, from pair {@code from}
+	 * (inclusive) to pair {@code to} (exclusive). The average of pair
+	 * {@code i} replaces element {@code i} of the part, and the difference
+	 * between the average and the second element of the pair goes into
+	 * {@code details[i]}. Pairs must be processed in order, as the averages
+	 * overwrite elements of the earlier pairs.
+	 */
+	void haarStep(double[] data, int offset, int from, int to, double[] details);
+
+	/**
+	 * {@link #haarStep(double[], int, int, int, double[])} in single
+	 * precision.
+	 */
+	void haarStep(float[] data, int offset, int from, int to, float[] details);
+
+	/**
+	 * One step of the Haar decomposition of pairs of parts of an array,
+	 * e.g. of two rows of a flat image: the average of
+	 * {@code data[firstOffset + i]} and {@code data[secondOffset + i]}
+	 * replaces {@code data[averageOffset + i]}, and the difference between
+	 * the average and the second element goes into
+	 * {@code details[detailsOffset + i]}, for {@code i} from 0 (inclusive)
+	 * to {@code length} (exclusive). The averages may replace the first
+	 * part, at the same offset; otherwise, the parts must not overlap.
+	 */
+	void haarPairs(
+			double[] data, int firstOffset, int secondOffset, int averageOffset,
+			double[] details, int detailsOffset,
+			int length
+	);
+
+	/**
+	 * {@link #haarPairs(double[], int, int, int, double[], int, int)} in
+	 * single precision.
+	 */
+	void haarPairs(
+			float[] data, int firstOffset, int secondOffset, int averageOffset,
+			float[] details, int detailsOffset,
+			int length
+	);
+
+}
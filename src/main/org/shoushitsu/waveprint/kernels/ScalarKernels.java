@@ -0,0 +1,188 @@
+package org.shoushitsu.waveprint.kernels;
+
+/**
+ * The reference kernels, in plain Java.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class ScalarKernels implements NumericKernels {
+
+	@Override
+	public void radix2Butterflies(
+			final double[] reE, final double[] imE,
+			final double[] reO, final double[] imO,
+			final int from, final int to,
+			final double reT, final double imT
+	) {
+		for (int f = from; f < to; f++) {
+			final double reEk = reE[f];
+			final double imEk = imE[f];
+			final double reOk = reO[f];
+			final double imOk = imO[f];
+
+			final double reTOk = reT * reOk - imT * imOk;
+			final double imTOk = imT * reOk + reT * imOk;
+
+			reE[f] = reEk + reTOk;
+			imE[f] = imEk + imTOk;
+			reO[f] = reEk - reTOk;
+			imO[f] = imEk - imTOk;
+		}
+	}
+
+	@Override
+	public void radix4Butterflies(
+			final double[] re0, final double[] im0,
+			final double[] re1, final double[] im1,
+			final double[] re2, final double[] im2,
+			final double[] re3, final double[] im3,
+			final int from, final int to
+	) {
+		for (int f = from; f < to; f++) {
+			final double reSum01 = re0[f] + re1[f];
+			final double imSum01 = im0[f] + im1[f];
+			final double reDiff01 = re0[f] - re1[f];
+			final double imDiff01 = im0[f] - im1[f];
+			final double reSum23 = re2[f] + re3[f];
+			final double imSum23 = im2[f] + im3[f];
+			final double reDiff23 = re2[f] - re3[f];
+			final double imDiff23 = im2[f] - im3[f];
+			re0[f] = reSum01 + reSum23;
+			im0[f] = imSum01 + imSum23;
+			re1[f] = reDiff01 + imDiff23;
+			im1[f] = imDiff01 - reDiff23;
+			re2[f] = reSum01 - reSum23;
+			im2[f] = imSum01 - imSum23;
+			re3[f] = reDiff01 - imDiff23;
+			im3[f] = imDiff01 + reDiff23;
+		}
+	}
+
+	@Override
+	public void radix4Butterflies(
+			final double[] re0, final double[] im0,
+			final double[] re1, final double[] im1,
+			final double[] re2, final double[] im2,
+			final double[] re3, final double[] im3,
+			final int from, final int to,
+			final double reW1, final double imW1,
+			final double reW2, final double imW2,
+			final double reW3, final double imW3
+	) {
+		for (int f = from; f < to; f++) {
+			final double re0f = re0[f];
+			final double im0f = im0[f];
+			final double re1f = reW2 * re1[f] - imW2 * im1[f];
+			final double im1f = imW2 * re1[f] + reW2 * im1[f];
+			final double re2f = reW1 * re2[f] - imW1 * im2[f];
+			final double im2f = imW1 * re2[f] + reW1 * im2[f];
+			final double re3f = reW3 * re3[f] - imW3 * im3[f];
+			final double im3f = imW3 * re3[f] + reW3 * im3[f];
+
+			final double reSum01 = re0f + re1f;
+			final double imSum01 = im0f + im1f;
+			final double reDiff01 = re0f - re1f;
+			final double imDiff01 = im0f - im1f;
+			final double reSum23 = re2f + re3f;
+			final double imSum23 = im2f + im3f;
+			final double reDiff23 = re2f - re3f;
+			final double imDiff23 = im2f - im3f;
+
+			re0[f] = reSum01 + reSum23;
+			im0[f] = imSum01 + imSum23;
+			re1[f] = reDiff01 + imDiff23;
+			im1[f] = imDiff01 - reDiff23;
+			re2[f] = reSum01 - reSum23;
+			im2[f] = imSum01 - imSum23;
+			re3[f] = reDiff01 - imDiff23;
+			im3[f] = imDiff01 + reDiff23;
+		}
+	}
+
+	@Override
+	public void amplitudes(
+			final double[] re, final int reOffset,
+			final double[] im, final int imOffset,
+			final double[] out, final int outOffset,
+			final int length
+	) {
+		for (int i = 0; i < length; i++) {
+			final double reAmp = re[reOffset + i];
+			final double imAmp = im[imOffset + i];
+			out[outOffset + i] = Math.sqrt(reAmp * reAmp + imAmp * imAmp);
+		}
+	}
+
+	@Override
+	public void haarStep(
+			final double[] data,
+			final int offset,
+			final int from,
+			final int to,
+			final double[] details
+	) {
+		for (int i = from; i < to; i++) {
+			final double second = data[offset + i * 2 + 1];
+			final double average = (data[offset + i * 2] + second) * 0.5;
+			data[offset + i] = average;
+			details[i] = average - second;
+		}
+	}
+
+	@Override
+	public void haarStep(
+			final float[] data,
+			final int offset,
+			final int from,
+			final int to,
+			final float[] details
+	) {
+		for (int i = from; i < to; i++) {
+			final float second = data[offset + i * 2 + 1];
+			final float average = (data[offset + i * 2] + second) * 0.5f;
+			data[offset + i] = average;
+			details[i] = average - second;
+		}
+	}
+
+	@Override
+	public void haarPairs(
+			final double[] data,
+			final int firstOffset,
+			final int secondOffset,
+			final int averageOffset,
+			final double[] details,
+			final int detailsOffset,
+			final int length
+	) {
+		for (int i = 0; i < length; i++) {
+			final double second = data[secondOffset + i];
+			final double average = (data[firstOffset + i] + second) * 0.5;
+			data[averageOffset + i] = average;
+			details[detailsOffset + i] = average - second;
+		}
+	}
+
+	@Override
+	public void haarPairs(
+			final float[] data,
+			final int firstOffset,
+			final int secondOffset,
+			final int averageOffset,
+			final float[] details,
+			final int detailsOffset,
+			final int length
+	) {
+		for (int i = 0; i < length; i++) {
+			final float second = data[secondOffset + i];
+			final float average = (data[firstOffset + i] + second) * 0.5f;
+			data[averageOffset + i] = average;
+			details[detailsOffset + i] = average - second;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "scalar";
+	}
+}
@@ -0,0 +1,340 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+import org.shoushitsu.waveprint.kernels.Kernels;
+import org.shoushitsu.waveprint.kernels.NumericKernels;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The common part of spectrogram builders that run a real FFT over each
+ * frame and split the amplitudes into frequency bins.
+ * <p/>
+ * Samples are accepted both as 16bit and as {@code int} arrays; the former
+ * is what the rest of the pipeline uses, the latter is kept for older
+ * callers. The frame is widened into the FFT buffer either way, so the
+ * result doesn't depend on the array type.
+ * <p/>
+ * Frames are computed in a {@link FftWorkspace}; unless the caller passes
+ * its own, each thread gets one.
+ * <p/>
+ * Runs of consecutive frames, including whole spectrograms, are transformed
+ * in batches of {@link #BATCH_SIZE} interleaved frames by
+ * {@link BatchRealFFT}, if the FFT is one of {@link ComplexFFTAlgorithm}.
+ * The results are the same as those of transforming frames one by one.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public abstract class AbstractFftSpectrogramBuilder implements SpectrogramBuilder {
+
+	/** How many frames are transformed at once by {@link #getFrames}. */
+	public static final int BATCH_SIZE = 32;
+
+	/**
+	 * Runs of fewer frames than this are transformed frame by frame. A
+	 * batch transform runs its loops over rows for any amount of frames,
+	 * and over a few frames that costs more than it saves; at the example
+	 * configuration, frame by frame wins below about 16 frames.
+	 */
+	private static final int MIN_BATCH_FRAMES = 16;
+
+	private final int myLength;
+	private final int myFrameLengthLog2;
+	private final int myFrameLength;
+	private final int myStep;
+	private final RealFFT myFFT;
+	private final FrequencySplitter myFrequencySplitter;
+	private final NumericKernels myKernels = Kernels.get();
+
+	/** {@code null} if the FFT can't be batched. */
+	private final ComplexFFTAlgorithm myBatchAlgorithm;
+
+	private final ThreadLocal<FftWorkspace> myWorkspace = new ThreadLocal<FftWorkspace>() {
+		@Override
+		protected FftWorkspace initialValue() {
+			return newWorkspace();
+		}
+	};
+
+	private final ThreadLocal<Batch> myBatch = new ThreadLocal<Batch>() {
+		@Override
+		protected Batch initialValue() {
+			return new Batch(new BatchRealFFT(myFrameLengthLog2, BATCH_SIZE, myBatchAlgorithm));
+		}
+	};
+
+	protected AbstractFftSpectrogramBuilder(
+			final int length,
+			final int frameLengthLog2,
+			final int step,
+			final FrequencySplitterFactory frequencySplitterFactory
+	) {
+		this(length, frameLengthLog2, step, ComplexFFTAlgorithm.RADIX2, frequencySplitterFactory);
+	}
+
+	protected AbstractFftSpectrogramBuilder(
+			final int length,
+			final int frameLengthLog2,
+			final int step,
+			final ComplexFFTFactory fftFactory,
+			final FrequencySplitterFactory frequencySplitterFactory
+	) {
+		myLength = length;
+		myFrameLengthLog2 = frameLengthLog2;
+		myFrameLength = 1 << frameLengthLog2;
+		myStep = step;
+
+		myFFT = new RealFFT(frameLengthLog2, fftFactory);
+		myBatchAlgorithm = (fftFactory instanceof ComplexFFTAlgorithm) ?
+				(ComplexFFTAlgorithm) fftFactory :
+				null;
+		myFrequencySplitter =
+				frequencySplitterFactory.newSplitter(myFrameLength >> 1);
+	}
+
+	/**
+	 * Creates a workspace suitable for this builder's frames.
+	 *
+	 * @return the new workspace.
+	 */
+	public FftWorkspace newWorkspace() {
+		return new FftWorkspace(myFrameLengthLog2);
+	}
+
+	@Override
+	public double[][] getSpectrogram(
+			@Nonnull final short[] samples,
+			final int start
+	) {
+		final double[][] spectrogram = new double[myLength][getBinCount()];
+		getFrames(samples, start, myLength, spectrogram);
+		return spectrogram;
+	}
+
+	@Override
+	public void getSpectrogram(
+			@Nonnull final short[] samples,
+			final int start,
+			@Nonnull final Spectrogram spectrogram
+	) {
+		final int binCount = getBinCount();
+		spectrogram.checkDimensions(myLength, binCount);
+		final double[] data = spectrogram.getData();
+		if (myBatchAlgorithm == null) {
+			final FftWorkspace workspace = myWorkspace.get();
+			for (int sgTime = 0; sgTime < myLength; sgTime++) {
+				copyFrame(samples, start + sgTime * myStep, workspace);
+				computeBins(workspace, data, sgTime * binCount);
+			}
+			return;
+		}
+		final Batch batch = myBatch.get();
+		for (int first = 0; first < myLength; first += BATCH_SIZE) {
+			final int count = Math.min(BATCH_SIZE, myLength - first);
+			if (count < MIN_BATCH_FRAMES) {
+				final FftWorkspace workspace = myWorkspace.get();
+				for (int f = first; f < first + count; f++) {
+					copyFrame(samples, start + f * myStep, workspace);
+					computeBins(workspace, data, f * binCount);
+				}
+				continue;
+			}
+			computeBatch(samples, start + first * myStep, count, batch);
+			for (int f = 0; f < count; f++) {
+				gatherBins(batch, f, data, (first + f) * binCount);
+			}
+		}
+	}
+
+	@Override
+	public double[][] getSpectrogram(
+			@Nonnull final int[] samples,
+			final int start
+	) {
+		final FftWorkspace workspace = myWorkspace.get();
+		final double[] re = workspace.getFrame();
+		final double[][] spectrogram = new double[myLength][];
+		for (int sgTime = 0; sgTime < myLength; sgTime++) {
+			final int frameStart = start + sgTime * myStep;
+			for (int i = 0; i < myFrameLength; ++i) {
+				re[i] = samples[frameStart + i];
+			}
+			spectrogram[sgTime] = new double[getBinCount()];
+			computeBins(workspace, spectrogram[sgTime], 0);
+		}
+		return spectrogram;
+	}
+
+	@Override
+	public double[] getFrame(@Nonnull final short[] samples, final int frameStart) {
+		final double[] bins = new double[getBinCount()];
+		getFrame(samples, frameStart, bins);
+		return bins;
+	}
+
+	@Override
+	public void getFrame(
+			@Nonnull final short[] samples,
+			final int frameStart,
+			@Nonnull final double[] bins
+	) {
+		getFrame(samples, frameStart, bins, myWorkspace.get());
+	}
+
+	/**
+	 * Computes one frame of a spectrogram in the given workspace.
+	 *
+	 * @param samples       the array with 16bit sound samples.
+	 * @param frameStart    where to start getting samples for the frame.
+	 * @param bins          the array for the frame's frequency bins.
+	 * @param workspace     the workspace, as created by
+	 *                         {@link #newWorkspace()}.
+	 */
+	public void getFrame(
+			@Nonnull final short[] samples,
+			final int frameStart,
+			@Nonnull final double[] bins,
+			@Nonnull final FftWorkspace workspace
+	) {
+		copyFrame(samples, frameStart, workspace);
+		computeBins(workspace, bins, 0);
+	}
+
+	@Override
+	public void getFrames(
+			@Nonnull final short[] samples,
+			final int firstFrameStart,
+			final int frameCount,
+			@Nonnull final double[][] bins
+	) {
+		if (myBatchAlgorithm == null) {
+			final FftWorkspace workspace = myWorkspace.get();
+			for (int i = 0; i < frameCount; i++) {
+				getFrame(samples, firstFrameStart + i * myStep, bins[i], workspace);
+			}
+			return;
+		}
+		final Batch batch = myBatch.get();
+		for (int first = 0; first < frameCount; first += BATCH_SIZE) {
+			final int count = Math.min(BATCH_SIZE, frameCount - first);
+			if (count < MIN_BATCH_FRAMES) {
+				final FftWorkspace workspace = myWorkspace.get();
+				for (int f = first; f < first + count; f++) {
+					getFrame(samples, firstFrameStart + f * myStep, bins[f], workspace);
+				}
+				continue;
+			}
+			computeBatch(samples, firstFrameStart + first * myStep, count, batch);
+			for (int f = 0; f < count; f++) {
+				gatherBins(batch, f, bins[first + f], 0);
+			}
+		}
+	}
+
+	/**
+	 * Transforms a batch of frames and computes their amplitudes, which are
+	 * left interleaved in the first half of the batch's frame rows. If
+	 * there are fewer frames than the batch size, only they are transformed,
+	 * and the rest of the batch holds whatever was there before.
+	 */
+	private void computeBatch(
+			final short[] samples,
+			final int firstFrameStart,
+			final int count,
+			final Batch batch
+	) {
+		final double[][] frames = batch.myFrames;
+		for (int i = 0; i < myFrameLength; ++i) {
+			final double[] row = frames[i];
+			for (int f = 0; f < count; f++) {
+				row[f] = samples[firstFrameStart + f * myStep + i];
+			}
+		}
+		batch.myFFT.transform(frames, count);
+
+		final int frameLengthDiv2 = myFrameLength >> 1;
+		for (int i = 0; i < frameLengthDiv2; i++) {
+			final double[] reRow = frames[i];
+			myKernels.amplitudes(reRow, 0, frames[frameLengthDiv2 + i], 0, reRow, 0, count);
+		}
+	}
+
+	private void gatherBins(
+			final Batch batch,
+			final int frame,
+			final double[] bins,
+			final int binsOffset
+	) {
+		final double[][] frames = batch.myFrames;
+		final double[] amplitudes = batch.myAmplitudes;
+		for (int i = 0; i < amplitudes.length; i++) {
+			amplitudes[i] = frames[i][frame];
+		}
+		myFrequencySplitter.apply(amplitudes, bins, binsOffset);
+	}
+
+	/**
+	 * Copies a frame's samples into the workspace's FFT buffer.
+	 */
+	private void copyFrame(final short[] samples, final int frameStart, final FftWorkspace workspace) {
+		// System.arraycopy is inapplicable as the array types are different
+		final double[] re = workspace.getFrame();
+		for (int i = 0; i < myFrameLength; ++i) {
+			re[i] = samples[frameStart + i];
+		}
+	}
+
+	/**
+	 * Computes the frequency bins of the frame in the workspace into the
+	 * given array, starting at the given offset.
+	 */
+	private void computeBins(final FftWorkspace workspace, final double[] bins, final int binsOffset) {
+		final double[] re = workspace.getFrame();
+		myFFT.transform(re, workspace);
+
+		// compute amplitudes
+		final int frameLengthDiv2 = myFrameLength >> 1;
+		final double[] amplitudes = workspace.getAmplitudes();
+		myKernels.amplitudes(re, 0, re, frameLengthDiv2, amplitudes, 0, frameLengthDiv2);
+
+		myFrequencySplitter.apply(amplitudes, bins, binsOffset);
+	}
+
+	@Override
+	public int getBinCount() {
+		return myFrequencySplitter.getBinCount();
+	}
+
+	@Override
+	public int getFrameCount() {
+		return myLength;
+	}
+
+	@Override
+	public int getFrameStep() {
+		return myStep;
+	}
+
+	@Override
+	public int getSpectrogramLengthInSamples() {
+		return myStep * (myLength - 1) + myFrameLength;
+	}
+
+
+	/**
+	 * The batched transform of a thread, and its buffers.
+	 */
+	private static class Batch {
+		private final BatchRealFFT myFFT;
+		/** Interleaved frames, then their transforms and amplitudes. */
+		private final double[][] myFrames;
+		/** Amplitudes of one frame. */
+		private final double[] myAmplitudes;
+
+		private Batch(final BatchRealFFT fft) {
+			myFFT = fft;
+			final int frameLength = 1 << fft.getLengthLog2();
+			myFrames = new double[frameLength][fft.getBatchSize()];
+			myAmplitudes = new double[frameLength >> 1];
+		}
+	}
+}
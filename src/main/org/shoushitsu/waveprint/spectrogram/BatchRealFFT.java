@@ -0,0 +1,136 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Fourier Transform of a batch of frames of real data at once.
+ * <p/>
+ * The frames are interleaved the way {@link InterleavedComplexFFT} expects
+ * them: sample <code>n</code> of frame <code>f</code> is at
+ * <code>[n][f]</code>. The transform is that of {@link RealFFT},
+ * applied to every frame, and the result of each frame is interleaved the
+ * same way. All loops over elements have an inner loop over frames.
+ * <p/>
+ * Instances hold scratch arrays, so they may only be used by one thread at
+ * a time.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+class BatchRealFFT {
+	private final int myLengthLog2;
+	private final int myLengthDiv2;
+	private final int myBatchSize;
+	private final InterleavedComplexFFT myComplexFFT;
+	private final double[] myCos;
+	private final double[] mySin;
+	private final double[][] myPackedRe;
+	private final double[][] myPackedIm;
+
+	/**
+	 * Creates a batched transform.
+	 *
+	 * @param lengthLog2    base-2 logarithm of frame length.
+	 * @param batchSize     how many frames are transformed at once.
+	 * @param algorithm     the algorithm of the half-length complex FFT.
+	 */
+	BatchRealFFT(
+			final int lengthLog2,
+			final int batchSize,
+			@Nonnull final ComplexFFTAlgorithm algorithm
+	) {
+		myLengthLog2 = lengthLog2;
+		myLengthDiv2 = 1 << (lengthLog2 - 1);
+		myBatchSize = batchSize;
+		myComplexFFT = algorithm.newInterleavedFFT(lengthLog2 - 1, batchSize);
+		final PrecomputedFftData fullLengthData = PrecomputedFftData.forLengthLog2(lengthLog2);
+		myCos = fullLengthData.getCosines()[lengthLog2 - 1];
+		mySin = fullLengthData.getSines()[lengthLog2 - 1];
+		myPackedRe = new double[myLengthDiv2][batchSize];
+		myPackedIm = new double[myLengthDiv2][batchSize];
+	}
+
+	int getLengthLog2() {
+		return myLengthLog2;
+	}
+
+	int getBatchSize() {
+		return myBatchSize;
+	}
+
+	/**
+	 * Computes the normalized Fourier Transforms of all frames in place.
+	 *
+	 * @param frames    the interleaved frames; see
+	 *                     {@link RealFFT#transform(double[])} for the layout
+	 *                     of each frame's result.
+	 */
+	void transform(@Nonnull final double[][] frames) {
+		transform(frames, myBatchSize);
+	}
+
+	/**
+	 * Computes the normalized Fourier Transforms of the first frames in
+	 * place; the rest of the batch is left as it is.
+	 *
+	 * @param frames    the interleaved frames.
+	 * @param count     how many frames to transform, at most the batch
+	 *                     size.
+	 */
+	void transform(@Nonnull final double[][] frames, final int count) {
+		if (count < 0 || count > myBatchSize) {
+			throw new IllegalArgumentException(String.format(
+					"Frame count must be between 0 and %d, got %d",
+					myBatchSize, count
+			));
+		}
+		final int batch = count;
+		final int lengthDiv2 = myLengthDiv2;
+		if (frames.length != 2 * lengthDiv2) {
+			throw new IllegalArgumentException(String.format(
+					"Expected interleaved frames of %d samples, got %d",
+					2 * lengthDiv2, frames.length
+			));
+		}
+
+		// pack: z[n] = re[2n] + i re[2n+1]
+		// (the rows are copied, as the complex FFT reorders them)
+		final double[][] zRe = myPackedRe;
+		final double[][] zIm = myPackedIm;
+		for (int n = 0; n < lengthDiv2; n++) {
+			System.arraycopy(frames[2 * n], 0, zRe[n], 0, batch);
+			System.arraycopy(frames[2 * n + 1], 0, zIm[n], 0, batch);
+		}
+		myComplexFFT.transform(zRe, zIm, batch);
+
+		// untangle, as in RealFFT
+		System.arraycopy(zRe[0], 0, frames[0], 0, batch);
+		Arrays.fill(frames[lengthDiv2], 0, batch, 0);
+		for (int k = 1; k < lengthDiv2; k++) {
+			final double wRe = myCos[k];
+			final double wIm = mySin[k];
+			final double[] aReRow = zRe[k];
+			final double[] aImRow = zIm[k];
+			final double[] bReRow = zRe[lengthDiv2 - k];
+			final double[] bImRow = zIm[lengthDiv2 - k];
+			final double[] reRow = frames[k];
+			final double[] imRow = frames[lengthDiv2 + k];
+			for (int f = 0; f < batch; f++) {
+				final double aRe = aReRow[f];
+				final double aIm = aImRow[f];
+				// Z*[N/2-k]
+				final double bRe = bReRow[f];
+				final double bIm = -bImRow[f];
+
+				final double eRe = (aRe + bRe) * 0.5;
+				final double eIm = (aIm + bIm) * 0.5;
+				final double oRe = (aIm - bIm) * 0.5;
+				final double oIm = (bRe - aRe) * 0.5;
+
+				reRow[f] = eRe + (wRe * oRe - wIm * oIm);
+				imRow[f] = -(eIm + (wRe * oIm + wIm * oRe));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+/**
+ * The complex FFT implementations that spectrogram builders can use. They
+ * compute the same transform; the results differ only by rounding.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public enum ComplexFFTAlgorithm implements ComplexFFTFactory {
+	/** Radix-2 butterflies, one level at a time. */
+	RADIX2 {
+		@Override
+		public ComplexFFT newFFT(final int lengthLog2) {
+			return new SimpleComplexFFT(lengthLog2);
+		}
+
+		@Override
+		InterleavedComplexFFT newInterleavedFFT(final int lengthLog2, final int batchSize) {
+			return new InterleavedComplexFFT(lengthLog2, batchSize, false);
+		}
+	},
+	/** Radix-4 butterflies, two levels at a time, with sequential access. */
+	RADIX4 {
+		@Override
+		public ComplexFFT newFFT(final int lengthLog2) {
+			return new Radix4ComplexFFT(lengthLog2);
+		}
+
+		@Override
+		InterleavedComplexFFT newInterleavedFFT(final int lengthLog2, final int batchSize) {
+			return new InterleavedComplexFFT(lengthLog2, batchSize, true);
+		}
+	};
+
+	/**
+	 * Creates a transform of interleaved batches of frames that computes
+	 * the same as {@link #newFFT(int)} does for each frame.
+	 *
+	 * @param lengthLog2    base-2 logarithm of frame length.
+	 * @param batchSize     how many frames are transformed at once.
+	 *
+	 * @return the batched transform.
+	 */
+	abstract InterleavedComplexFFT newInterleavedFFT(final int lengthLog2, final int batchSize);
+}
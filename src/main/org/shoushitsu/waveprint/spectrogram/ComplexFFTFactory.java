@@ -0,0 +1,8 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+/**
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public interface ComplexFFTFactory {
+	ComplexFFT newFFT(final int lengthLog2);
+}
@@ -0,0 +1,61 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+/**
+ * Scratch arrays for computing spectrogram frames of one length.
+ * <p/>
+ * A workspace lets the frame computation run without allocating anything.
+ * It may only be used by one thread at a time; builders keep one per thread
+ * unless the caller passes its own.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public final class FftWorkspace {
+
+	private final int myFrameLengthLog2;
+
+	/** The frame's samples, then its transform. */
+	private final double[] myFrame;
+
+	/** Real parts of the half-length complex transform. */
+	private final double[] myPackedRe;
+
+	/** Imaginary parts of the half-length complex transform. */
+	private final double[] myPackedIm;
+
+	private final double[] myAmplitudes;
+
+	public FftWorkspace(final int frameLengthLog2) {
+		if (frameLengthLog2 < 1) {
+			throw new IllegalArgumentException(
+					"Frame length must be at least 2, but 2^" + frameLengthLog2 +
+							" was specified"
+			);
+		}
+		myFrameLengthLog2 = frameLengthLog2;
+		final int frameLength = 1 << frameLengthLog2;
+		myFrame = new double[frameLength];
+		myPackedRe = new double[frameLength >> 1];
+		myPackedIm = new double[frameLength >> 1];
+		myAmplitudes = new double[frameLength >> 1];
+	}
+
+	public int getFrameLengthLog2() {
+		return myFrameLengthLog2;
+	}
+
+	double[] getFrame() {
+		return myFrame;
+	}
+
+	double[] getPackedRe() {
+		return myPackedRe;
+	}
+
+	double[] getPackedIm() {
+		return myPackedIm;
+	}
+
+	double[] getAmplitudes() {
+		return myAmplitudes;
+	}
+}
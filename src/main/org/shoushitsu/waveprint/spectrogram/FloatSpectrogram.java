@@ -0,0 +1,144 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link Spectrogram} of single precision values, for the single
+ * precision fingerprint pipeline. The layout is the same: bin {@code b} of
+ * frame {@code f} is at index <code>f * getBinCount() + b</code> of
+ * {@link #getData()}.
+ * <p/>
+ * Only the ranks of the largest wavelet coefficients make it into a
+ * fingerprint, and those rarely depend on the low bits. With half as many
+ * bytes per value, the wavelet transform and the selection move half as
+ * much memory, and vectors hold twice as many values.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public final class FloatSpectrogram {
+
+	private final int myFrameCount;
+	private final int myBinCount;
+	private final float[] myData;
+
+	/**
+	 * Creates a spectrogram filled with zeros.
+	 *
+	 * @param frameCount    the amount of frames (rows).
+	 * @param binCount      the amount of bins in a frame (columns).
+	 */
+	public FloatSpectrogram(final int frameCount, final int binCount) {
+		if (frameCount < 0 || binCount < 0) {
+			throw new IllegalArgumentException(String.format(
+					"Spectrogram dimensions must not be negative, got %d x %d",
+					frameCount, binCount
+			));
+		}
+		myFrameCount = frameCount;
+		myBinCount = binCount;
+		myData = new float[frameCount * binCount];
+	}
+
+	/**
+	 * Copies a double precision spectrogram, rounding the values to the
+	 * nearest {@code float}.
+	 *
+	 * @param spectrogram    the spectrogram.
+	 *
+	 * @return a new spectrogram with the rounded values.
+	 */
+	@Nonnull
+	public static FloatSpectrogram copyOf(@Nonnull final Spectrogram spectrogram) {
+		final FloatSpectrogram result =
+				new FloatSpectrogram(spectrogram.getFrameCount(), spectrogram.getBinCount());
+		final double[] source = spectrogram.getData();
+		for (int i = 0; i < source.length; i++) {
+			result.myData[i] = (float) source[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Replaces the bins of a frame, rounding them to the nearest
+	 * {@code float}.
+	 *
+	 * @param frame    the frame's index.
+	 * @param bins     the new bins; only the first {@link #getBinCount()}
+	 *                    are used.
+	 */
+	public void setFrame(final int frame, @Nonnull final double[] bins) {
+		if (bins.length < myBinCount) {
+			throw new IllegalArgumentException(String.format(
+					"Frame %d has %d bins, expected %d",
+					frame, bins.length, myBinCount
+			));
+		}
+		final int offset = getOffset(frame);
+		for (int bin = 0; bin < myBinCount; bin++) {
+			myData[offset + bin] = (float) bins[bin];
+		}
+	}
+
+	/**
+	 * Checks that the spectrogram has the given dimensions, for the
+	 * builders that fill it.
+	 */
+	void checkDimensions(final int frameCount, final int binCount) {
+		if (frameCount != myFrameCount || binCount != myBinCount) {
+			throw new IllegalArgumentException(String.format(
+					"Expected a spectrogram of %d x %d, got %d x %d",
+					frameCount, binCount, myFrameCount, myBinCount
+			));
+		}
+	}
+
+	public float get(final int frame, final int bin) {
+		return myData[frame * myBinCount + bin];
+	}
+
+	public void set(final int frame, final int bin, final float value) {
+		myData[frame * myBinCount + bin] = value;
+	}
+
+	/**
+	 * Get the index of a frame's first bin in {@link #getData()}.
+	 *
+	 * @param frame    the frame's index.
+	 *
+	 * @return the index.
+	 */
+	public int getOffset(final int frame) {
+		return frame * myBinCount;
+	}
+
+	/**
+	 * Get the array with the values. Changes to it are changes to the
+	 * spectrogram.
+	 *
+	 * @return the array.
+	 */
+	@Nonnull
+	public float[] getData() {
+		return myData;
+	}
+
+	/**
+	 * Get the amount of frames (rows).
+	 *
+	 * @return the amount of frames.
+	 */
+	public int getFrameCount() {
+		return myFrameCount;
+	}
+
+	/**
+	 * Get the amount of bins in a frame (columns), which is also the
+	 * distance between the same bin of adjacent frames in
+	 * {@link #getData()}.
+	 *
+	 * @return the amount of bins.
+	 */
+	public int getBinCount() {
+		return myBinCount;
+	}
+}
@@ -8,4 +8,25 @@ import msyu.util.functional.Function;
 public interface FrequencySplitter extends Function<double[], double[]> {
 	@Override
 	double[] apply(final double[] amplitudes);
+
+	/**
+	 * Splits amplitudes into bins without allocating memory.
+	 *
+	 * @param amplitudes    the amplitudes.
+	 * @param bins          the array for the bins; must have room for
+	 *                         {@link #getBinCount()} values.
+	 */
+	void apply(final double[] amplitudes, final double[] bins);
+
+	/**
+	 * Splits amplitudes into a part of an array, such as a frame of a
+	 * {@link Spectrogram}.
+	 *
+	 * @param amplitudes    the amplitudes.
+	 * @param bins          the array for the bins.
+	 * @param offset        where in {@code bins} the first bin goes.
+	 */
+	void apply(final double[] amplitudes, final double[] bins, final int offset);
+
+	int getBinCount();
 }
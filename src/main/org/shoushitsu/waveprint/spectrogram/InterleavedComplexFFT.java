@@ -0,0 +1,207 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+import org.shoushitsu.waveprint.exceptions.fft.LengthMismatchException;
+import org.shoushitsu.waveprint.kernels.Kernels;
+import org.shoushitsu.waveprint.kernels.NumericKernels;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Complex FFT of a batch of frames of the same length at once.
+ * <p/>
+ * The frames are interleaved: element <code>n</code> of frame
+ * <code>f</code> is at <code>[n][f]</code>. Every butterfly then applies to
+ * all frames in one sequential inner loop with the same twiddle factor, and
+ * the bit reverse sort just swaps rows.
+ * <p/>
+ * Each row is a separate array, rather than a part of one big array, so
+ * that the inner loops work on the same index of several arrays. Those are
+ * the loops that the JIT compiler vectorizes; it doesn't if the same array
+ * is accessed at two offsets. The butterflies themselves are
+ * {@link NumericKernels}, which may use the vector API explicitly.
+ * <p/>
+ * Each frame goes through exactly the same arithmetic as in
+ * {@link SimpleComplexFFT} or {@link Radix4ComplexFFT}, so the results are
+ * identical to those of transforming the frames one by one.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+class InterleavedComplexFFT {
+
+	private final int myLengthLog2;
+	private final int myBatchSize;
+	private final boolean myRadix4;
+	private final PrecomputedFftData myPrecomputedFftData;
+
+	/** Twiddle factors of radix-4 stages; {@code null} for radix-2. */
+	private final double[][] myRadix4Twiddles;
+
+	private final NumericKernels myKernels = Kernels.get();
+
+	/**
+	 * Creates a batched transform.
+	 *
+	 * @param lengthLog2    base-2 logarithm of frame length.
+	 * @param batchSize     how many frames are transformed at once.
+	 * @param radix4        whether to compute the same as
+	 *                         {@link Radix4ComplexFFT} rather than
+	 *                         {@link SimpleComplexFFT}.
+	 */
+	InterleavedComplexFFT(final int lengthLog2, final int batchSize, final boolean radix4) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive, got " + batchSize);
+		}
+		myLengthLog2 = lengthLog2;
+		myBatchSize = batchSize;
+		myRadix4 = radix4;
+		myPrecomputedFftData = PrecomputedFftData.forLengthLog2(lengthLog2);
+		myRadix4Twiddles = radix4 ? Radix4ComplexFFT.computeTwiddles(lengthLog2) : null;
+	}
+
+	int getBatchSize() {
+		return myBatchSize;
+	}
+
+	/**
+	 * Computes the normalized Fourier Transforms of all frames in place.
+	 * The bit reverse sort reorders the rows of the outer arrays.
+	 *
+	 * @param re    real parts of the interleaved frames.
+	 * @param im    imaginary parts of the interleaved frames.
+	 */
+	void transform(@Nonnull final double[][] re, @Nonnull final double[][] im) {
+		transform(re, im, myBatchSize);
+	}
+
+	/**
+	 * Computes the normalized Fourier Transforms of the first frames in
+	 * place, leaving the rest of the batch as it is (apart from the order
+	 * of rows). The cost is proportional to the amount of frames, so a
+	 * partial batch is as cheap as transforming its frames one by one.
+	 *
+	 * @param re       real parts of the interleaved frames.
+	 * @param im       imaginary parts of the interleaved frames.
+	 * @param count    how many frames to transform, at most the batch size.
+	 */
+	void transform(@Nonnull final double[][] re, @Nonnull final double[][] im, final int count) {
+		if (count < 0 || count > myBatchSize) {
+			throw new IllegalArgumentException(String.format(
+					"Frame count must be between 0 and %d, got %d",
+					myBatchSize, count
+			));
+		}
+		final int length = 1 << myLengthLog2;
+		if (re.length != length) {
+			throw new LengthMismatchException(true, re.length, length);
+		}
+		if (im.length != length) {
+			throw new LengthMismatchException(false, im.length, length);
+		}
+
+		bitReverseSort(re, im, length);
+		if (myRadix4) {
+			radix4Stages(re, im, length, count);
+		} else {
+			radix2Stages(re, im, length, count);
+		}
+
+		// normalize
+		final int batch = count;
+		for (int i = 0; i < length; i++) {
+			final double[] reRow = re[i];
+			final double[] imRow = im[i];
+			for (int f = 0; f < batch; f++) {
+				reRow[f] /= length;
+				imRow[f] /= length;
+			}
+		}
+	}
+
+	private void bitReverseSort(final double[][] re, final double[][] im, final int length) {
+		final int[] permutation = myPrecomputedFftData.getBitReversalPermutation();
+		for (int i = 0; i < length; i++) {
+			final int j = permutation[i];
+			if (i < j) {
+				final double[] tRe = re[i];
+				re[i] = re[j];
+				re[j] = tRe;
+				final double[] tIm = im[i];
+				im[i] = im[j];
+				im[j] = tIm;
+			}
+		}
+	}
+
+	private void radix2Stages(final double[][] re, final double[][] im, final int length, final int batch) {
+		final double[][] cos = myPrecomputedFftData.getCosines();
+		final double[][] sin = myPrecomputedFftData.getSines();
+		for (int l = 1; l <= myLengthLog2; ++l) {
+			final int curLength = 1 << l;
+			final int prevLength = curLength >> 1;
+			for (int group = 0; group < length; group += curLength) {
+				for (int k = 0; k < prevLength; ++k) {
+					myKernels.radix2Butterflies(
+							re[group + k], im[group + k],
+							re[group + k + prevLength], im[group + k + prevLength],
+							0, batch,
+							cos[l - 1][k], sin[l - 1][k]
+					);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The stages of {@link Radix4ComplexFFT}, with an inner loop over frames.
+	 */
+	private void radix4Stages(final double[][] re, final double[][] im, final int length, final int batch) {
+		int quarterLength = 1;
+		if ((myLengthLog2 & 1) != 0) {
+			for (int i = 0; i < length; i += 2) {
+				final double[] re0 = re[i];
+				final double[] im0 = im[i];
+				final double[] re1 = re[i + 1];
+				final double[] im1 = im[i + 1];
+				for (int f = 0; f < batch; f++) {
+					final double re0f = re0[f];
+					final double im0f = im0[f];
+					final double re1f = re1[f];
+					final double im1f = im1[f];
+					re0[f] = re0f + re1f;
+					im0[f] = im0f + im1f;
+					re1[f] = re0f - re1f;
+					im1[f] = im0f - im1f;
+				}
+			}
+			quarterLength = 2;
+		}
+		for (final double[] twiddles : myRadix4Twiddles) {
+			final int curLength = quarterLength << 2;
+			for (int group = 0; group < length; group += curLength) {
+				for (int k = 0; k < quarterLength; ++k) {
+					final int i0 = group + k;
+					final int i1 = i0 + quarterLength;
+					final int i2 = i1 + quarterLength;
+					final int i3 = i2 + quarterLength;
+					if (quarterLength == 1) {
+						myKernels.radix4Butterflies(
+								re[i0], im[i0], re[i1], im[i1], re[i2], im[i2], re[i3], im[i3],
+								0, batch
+						);
+					} else {
+						final int t = 6 * k;
+						myKernels.radix4Butterflies(
+								re[i0], im[i0], re[i1], im[i1], re[i2], im[i2], re[i3], im[i3],
+								0, batch,
+								twiddles[t], twiddles[t + 1],
+								twiddles[t + 2], twiddles[t + 3],
+								twiddles[t + 4], twiddles[t + 5]
+						);
+					}
+				}
+			}
+			quarterLength = curLength;
+		}
+	}
+
+}
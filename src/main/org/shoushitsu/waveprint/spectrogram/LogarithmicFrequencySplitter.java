@@ -53,6 +53,17 @@ public class LogarithmicFrequencySplitter implements FrequencySplitter {
 	@Override
 	public double[] apply(final double[] amplitudes) {
 		final double[] bins = new double[myBinCount];
+		apply(amplitudes, bins);
+		return bins;
+	}
+
+	@Override
+	public void apply(final double[] amplitudes, final double[] bins) {
+		apply(amplitudes, bins, 0);
+	}
+
+	@Override
+	public void apply(final double[] amplitudes, final double[] bins, final int offset) {
 		for (int ixBin = 0; ixBin < myBinCount; ++ixBin) {
 			double amplitudeSum = 0;
 			final int ixAmpLow = myBinRanges[ixBin * 2];
@@ -60,9 +71,13 @@ public class LogarithmicFrequencySplitter implements FrequencySplitter {
 			for (int j = ixAmpLow; j < ixAmpHigh; ++j) {
 				amplitudeSum += amplitudes[j];
 			}
-			bins[ixBin] = amplitudeSum;
+			bins[offset + ixBin] = amplitudeSum;
 		}
-		return bins;
+	}
+
+	@Override
+	public int getBinCount() {
+		return myBinCount;
 	}
 
 
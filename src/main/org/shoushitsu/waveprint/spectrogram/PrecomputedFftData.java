@@ -13,10 +13,17 @@ import msyu.util.collect.Pair;
  *     <li>{@link #getCosines() some values} of the
  *     {@link Math#cos(double) cosine} function.</li>
  * </ul>
+ * <p/>
+ * The data depends only on the frame length, so FFT implementations share
+ * one instance per length, obtained with {@link #forLengthLog2(int)}.
  *
  * @author Yanus Poluektovich (ypoluektovich@gmail.com)
  */
 class PrecomputedFftData {
+	/** Shared instances, indexed by base-2 logarithm of frame length. */
+	private static final PrecomputedFftData[] ourInstances =
+			new PrecomputedFftData[Integer.SIZE - 1];
+
 	private final int myLengthLog2;
 	private final int[] myBitReversalPermutation;
 	private final double[][] mySines;
@@ -45,6 +52,29 @@ class PrecomputedFftData {
 		myCosines = sinesAndCosines.getSecond();
 	}
 
+	/**
+	 * Get the shared data for FFT with the specified base-2 logarithm of
+	 * frame length, computing it on first use.
+	 *
+	 * @param lengthLog2    base-2 logarithm of the FFT frame.
+	 *                         Must not be negative.
+	 *
+	 * @return the data.
+	 */
+	static synchronized PrecomputedFftData forLengthLog2(final int lengthLog2) {
+		if (lengthLog2 < 0 || lengthLog2 >= ourInstances.length) {
+			throw new IllegalArgumentException(
+					"Base-2 logarithm of FFT window length must be between 0 and " +
+							(ourInstances.length - 1) + ", but " + lengthLog2 +
+							" was specified"
+			);
+		}
+		if (ourInstances[lengthLog2] == null) {
+			ourInstances[lengthLog2] = new PrecomputedFftData(lengthLog2);
+		}
+		return ourInstances[lengthLog2];
+	}
+
 	/**
 	 * Get the base-2 logarithm of FFT frame length for which this object's
 	 * contents were computed.
@@ -0,0 +1,211 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+import org.shoushitsu.waveprint.exceptions.fft.LengthMismatchException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A decimation-in-time FFT that recombines two levels at a time with radix-4
+ * butterflies (radix-2<sup>2</sup>).
+ * <p/>
+ * After the bit reverse sort, each stage takes groups of four neighbouring
+ * transforms of length q and combines them into one of length 4q:<pre>
+ * x0 = A[k], x1 = W<sup>2k</sup> B[k], x2 = W<sup>k</sup> C[k], x3 = W<sup>3k</sup> D[k],
+ * X[k]      = (x0 + x1) +   (x2 + x3),
+ * X[k + q]  = (x0 - x1) - i (x2 - x3),
+ * X[k + 2q] = (x0 + x1) -   (x2 + x3),
+ * X[k + 3q] = (x0 - x1) + i (x2 - x3), where
+ * W = exp(-2 pi i / 4q).</pre>
+ * That is three complex multiplications per four elements, instead of four
+ * in two radix-2 levels, and half as many passes over the arrays. If the
+ * length is an odd power of two, a radix-2 level without twiddle factors
+ * goes first.
+ * <p/>
+ * Unlike {@link SimpleComplexFFT}, each stage walks through the arrays
+ * sequentially: the outer loop is over groups and the inner one over
+ * elements of a group. The twiddle factors of each stage are stored
+ * interleaved in the order they are used.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+class Radix4ComplexFFT implements ComplexFFT {
+
+	private final int myLengthLog2;
+	private final int[] myBitReversalPermutation;
+
+	/**
+	 * Twiddle factors of radix-4 stages, indexed first by stage, then by
+	 * 6k + j, where j is 0..5 for the real and imaginary parts of
+	 * W<sup>k</sup>, W<sup>2k</sup> and W<sup>3k</sup>.
+	 */
+	private final double[][] myTwiddles;
+
+	Radix4ComplexFFT(final int lengthLog2) {
+		myLengthLog2 = lengthLog2;
+		myBitReversalPermutation =
+				PrecomputedFftData.forLengthLog2(lengthLog2).getBitReversalPermutation();
+		myTwiddles = computeTwiddles(lengthLog2);
+	}
+
+	/**
+	 * Computes the twiddle factors of radix-4 stages for the given length.
+	 *
+	 * @param lengthLog2    base-2 logarithm of the FFT frame.
+	 *
+	 * @return the twiddle factors; see {@link #myTwiddles}.
+	 */
+	static double[][] computeTwiddles(final int lengthLog2) {
+		final int stages = lengthLog2 >> 1;
+		final double[][] result = new double[stages][];
+		int quarterLength = 1 << (lengthLog2 & 1);
+		for (int stage = 0; stage < stages; ++stage) {
+			final double[] twiddles = new double[6 * quarterLength];
+			final int curLength = quarterLength << 2;
+			for (int k = 0; k < quarterLength; ++k) {
+				for (int m = 1; m <= 3; ++m) {
+					final double arg = -2.0 * Math.PI * m * k / curLength;
+					twiddles[6 * k + 2 * (m - 1)] = Math.cos(arg);
+					twiddles[6 * k + 2 * (m - 1) + 1] = Math.sin(arg);
+				}
+			}
+			result[stage] = twiddles;
+			quarterLength = curLength;
+		}
+		return result;
+	}
+
+	@Override
+	public void transform(
+			@Nonnull final double[] re,
+			@Nonnull final double[] im
+	) {
+		final int length = 1 << myLengthLog2;
+		if (re.length != length) {
+			throw new LengthMismatchException(true, re.length, length);
+		}
+		if (im.length != length) {
+			throw new LengthMismatchException(false, im.length, length);
+		}
+
+		SimpleComplexFFT.bitReverseSort(re, im, length, myBitReversalPermutation);
+
+		int quarterLength = 1;
+		if ((myLengthLog2 & 1) != 0) {
+			radix2Stage(re, im, length);
+			quarterLength = 2;
+		}
+		for (final double[] twiddles : myTwiddles) {
+			if (quarterLength == 1) {
+				radix4FirstStage(re, im, length);
+			} else {
+				radix4Stage(re, im, length, quarterLength, twiddles);
+			}
+			quarterLength <<= 2;
+		}
+
+		// normalize
+		for (int i = 0; i < length; i++) {
+			re[i] /= length;
+			im[i] /= length;
+		}
+	}
+
+	/**
+	 * Combines pairs of elements; all twiddle factors are 1.
+	 */
+	private static void radix2Stage(final double[] re, final double[] im, final int length) {
+		for (int i = 0; i < length; i += 2) {
+			final double re0 = re[i];
+			final double im0 = im[i];
+			final double re1 = re[i + 1];
+			final double im1 = im[i + 1];
+			re[i] = re0 + re1;
+			im[i] = im0 + im1;
+			re[i + 1] = re0 - re1;
+			im[i + 1] = im0 - im1;
+		}
+	}
+
+	/**
+	 * Combines groups of four elements; all twiddle factors are 1.
+	 */
+	private static void radix4FirstStage(final double[] re, final double[] im, final int length) {
+		for (int i = 0; i < length; i += 4) {
+			final double reSum01 = re[i] + re[i + 1];
+			final double imSum01 = im[i] + im[i + 1];
+			final double reDiff01 = re[i] - re[i + 1];
+			final double imDiff01 = im[i] - im[i + 1];
+			final double reSum23 = re[i + 2] + re[i + 3];
+			final double imSum23 = im[i + 2] + im[i + 3];
+			final double reDiff23 = re[i + 2] - re[i + 3];
+			final double imDiff23 = im[i + 2] - im[i + 3];
+			re[i] = reSum01 + reSum23;
+			im[i] = imSum01 + imSum23;
+			re[i + 1] = reDiff01 + imDiff23;
+			im[i + 1] = imDiff01 - reDiff23;
+			re[i + 2] = reSum01 - reSum23;
+			im[i + 2] = imSum01 - imSum23;
+			re[i + 3] = reDiff01 - imDiff23;
+			im[i + 3] = imDiff01 + reDiff23;
+		}
+	}
+
+	/**
+	 * Combines groups of four transforms of the given length.
+	 */
+	private static void radix4Stage(
+			final double[] re,
+			final double[] im,
+			final int length,
+			final int quarterLength,
+			final double[] twiddles
+	) {
+		final int curLength = quarterLength << 2;
+		for (int group = 0; group < length; group += curLength) {
+			for (int k = 0; k < quarterLength; ++k) {
+				final int i0 = group + k;
+				final int i1 = i0 + quarterLength;
+				final int i2 = i1 + quarterLength;
+				final int i3 = i2 + quarterLength;
+				final int t = 6 * k;
+				final double reW1 = twiddles[t];
+				final double imW1 = twiddles[t + 1];
+				final double reW2 = twiddles[t + 2];
+				final double imW2 = twiddles[t + 3];
+				final double reW3 = twiddles[t + 4];
+				final double imW3 = twiddles[t + 5];
+
+				final double re0 = re[i0];
+				final double im0 = im[i0];
+				// B and D get W^2k from the first level, C and D get W^k from the second
+				final double re1 = reW2 * re[i1] - imW2 * im[i1];
+				final double im1 = imW2 * re[i1] + reW2 * im[i1];
+				final double re2 = reW1 * re[i2] - imW1 * im[i2];
+				final double im2 = imW1 * re[i2] + reW1 * im[i2];
+				final double re3 = reW3 * re[i3] - imW3 * im[i3];
+				final double im3 = imW3 * re[i3] + reW3 * im[i3];
+
+				final double reSum01 = re0 + re1;
+				final double imSum01 = im0 + im1;
+				final double reDiff01 = re0 - re1;
+				final double imDiff01 = im0 - im1;
+				final double reSum23 = re2 + re3;
+				final double imSum23 = im2 + im3;
+				final double reDiff23 = re2 - re3;
+				final double imDiff23 = im2 - im3;
+
+				re[i0] = reSum01 + reSum23;
+				im[i0] = imSum01 + imSum23;
+				// -i (x2 - x3)
+				re[i1] = reDiff01 + imDiff23;
+				im[i1] = imDiff01 - reDiff23;
+				re[i2] = reSum01 - reSum23;
+				im[i2] = imSum01 - imSum23;
+				// +i (x2 - x3)
+				re[i3] = reDiff01 - imDiff23;
+				im[i3] = imDiff01 + reDiff23;
+			}
+		}
+	}
+
+}
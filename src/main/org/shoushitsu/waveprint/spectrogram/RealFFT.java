@@ -3,27 +3,106 @@ package org.shoushitsu.waveprint.spectrogram;
 import javax.annotation.Nonnull;
 
 /**
+ * Fourier Transform of real data.
+ * <p/>
+ * The N real samples are packed into N/2 complex ones (even samples are the
+ * real parts, odd samples are the imaginary parts), which are transformed
+ * with a complex FFT of half the length. The spectrum of the real data is
+ * then untangled from the result: if Z is the transform of the packed data,
+ * then <pre>
+ * X[k] = E[k] + W<sup>k</sup> O[k], where
+ * E[k] = (Z[k] + Z*[N/2-k]) / 2,
+ * O[k] = (Z[k] - Z*[N/2-k]) / 2i,
+ * W = exp(-2 pi i / N)</pre>
+ * are the transforms of even and odd samples.
+ *
  * @author Yanus Poluektovich (ypoluektovich@gmail.com)
  */
 class RealFFT {
+	private final int lengthLog2;
 	private final int lengthDiv2;
 	private final ComplexFFT complexFFT;
+	private final double[] cos;
+	private final double[] sin;
 
 	RealFFT(final int lengthLog2) {
+		this(lengthLog2, ComplexFFTAlgorithm.RADIX2);
+	}
+
+	/**
+	 * Creates a transform of real data.
+	 *
+	 * @param lengthLog2    base-2 logarithm of the data length.
+	 * @param fftFactory    the factory of the half-length complex FFT.
+	 */
+	RealFFT(final int lengthLog2, @Nonnull final ComplexFFTFactory fftFactory) {
+		this.lengthLog2 = lengthLog2;
 		lengthDiv2 = 1 << (lengthLog2 - 1);
-		complexFFT = new SimpleComplexFFT(lengthLog2);
+		complexFFT = fftFactory.newFFT(lengthLog2 - 1);
+		final PrecomputedFftData fullLengthData = PrecomputedFftData.forLengthLog2(lengthLog2);
+		cos = fullLengthData.getCosines()[lengthLog2 - 1];
+		sin = fullLengthData.getSines()[lengthLog2 - 1];
 	}
 
+	/**
+	 * Computes the normalized Fourier Transform of real data in place.
+	 *
+	 * @param re    the data. Replaced with the doubled cosine coefficients
+	 *                 of frequencies from 0 to N/2 - 1 in the first half
+	 *                 (the first one, which isn't doubled, also includes the
+	 *                 N/2 frequency), and the doubled sine coefficients of
+	 *                 the same frequencies in the second half (the first one
+	 *                 is always 0).
+	 */
 	void transform(@Nonnull final double[] re) {
-		final double[] im = new double[re.length];
-		complexFFT.transform(re, im);
+		transform(re, new FftWorkspace(lengthLog2));
+	}
+
+	/**
+	 * Computes the normalized Fourier Transform of real data in place,
+	 * without allocating memory.
+	 *
+	 * @param re           the data; see {@link #transform(double[])}.
+	 * @param workspace    the scratch arrays for this transform's length.
+	 *                        Only the packed arrays are used, so the data
+	 *                        may be the workspace's frame array.
+	 */
+	void transform(@Nonnull final double[] re, @Nonnull final FftWorkspace workspace) {
+		if (workspace.getFrameLengthLog2() != lengthLog2) {
+			throw new IllegalArgumentException(String.format(
+					"Workspace is for length 2^%d, but the transform is for 2^%d",
+					workspace.getFrameLengthLog2(), lengthLog2
+			));
+		}
+		// pack: z[n] = re[2n] + i re[2n+1]
+		final double[] zRe = workspace.getPackedRe();
+		final double[] zIm = workspace.getPackedIm();
+		for (int n = 0; n < lengthDiv2; n++) {
+			zRe[n] = re[2 * n];
+			zIm[n] = re[2 * n + 1];
+		}
+		complexFFT.transform(zRe, zIm);
 
-		// copy sin coefficients to source array and re-normalize
-		re[0] += re[lengthDiv2];
+		// untangle; the half-length transform is normalized by N/2, so the
+		// doubled coefficients of X / N are just E + W^k O
+		re[0] = zRe[0];
 		re[lengthDiv2] = 0;
-		for (int i = 1; i < lengthDiv2; i++) {
-			re[i] *= 2;
-			re[lengthDiv2 + i] = -2.0 * im[i];
+		for (int k = 1; k < lengthDiv2; k++) {
+			final double aRe = zRe[k];
+			final double aIm = zIm[k];
+			// Z*[N/2-k]
+			final double bRe = zRe[lengthDiv2 - k];
+			final double bIm = -zIm[lengthDiv2 - k];
+
+			final double eRe = (aRe + bRe) * 0.5;
+			final double eIm = (aIm + bIm) * 0.5;
+			final double oRe = (aIm - bIm) * 0.5;
+			final double oIm = (bRe - aRe) * 0.5;
+
+			final double wRe = cos[k];
+			final double wIm = sin[k];
+			re[k] = eRe + (wRe * oRe - wIm * oIm);
+			re[lengthDiv2 + k] = -(eIm + (wRe * oIm + wIm * oRe));
 		}
 	}
 
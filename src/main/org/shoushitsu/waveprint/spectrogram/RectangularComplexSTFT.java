@@ -12,7 +12,13 @@ import static java.util.Arrays.copyOf;
  * An implementation of STFT that uses (and is optimized for) rectangular
  * window function.
  * <p/>
- * TODO: add description of the optimization
+ * Only the first frame is transformed with a full FFT. Each next frame y
+ * starts one step after the previous frame x, so y cyclically shifted back
+ * by one step (y*) differs from x only in the first step elements. The
+ * transform of (x - y*) is computed with {@link ZeroTailComplexFFT}, which
+ * only does the last log2(step) levels of butterflies; subtracting it from
+ * the transform of x gives that of y*, and the shift theorem turns that into
+ * the transform of y.
  *
  * @author Yanus Poluektovich (ypoluektovich@gmail.com)
  */
@@ -83,47 +89,62 @@ public class RectangularComplexSTFT implements ComplexSTFT {
 		final double[] reDiff = new double[myFrameLength];
 		final double[] imDiff = new double[myFrameLength];
 
-		// *X contain previous frame's results, these are for current frame
-		final double[] reY = new double[myFrameLength];
-		final double[] imY = new double[myFrameLength];
-
 		for (int frame = 1; frame < myFrameCount; ++frame) {
 			// where the previous frame started
 			final int startX = (frame - 1) * myStep;
 
-			// fill in and transform (x - y*)
-			for (int n = 0; n < myFrameLength; ++n) {
+			// fill in (x - y*); it is zero past the first myStep elements
+			for (int n = 0; n < myStep; ++n) {
 				reDiff[n] = re[startX + n] - re[star(startX, n)];
 				imDiff[n] = im[startX + n] - im[star(startX, n)];
 			}
-			mySubsequentFft.transform(reDiff, imDiff);
-
-			// F(x - y*) --> F(y)
-			for (int n = 0; n < myFrameLength; ++n) {
-				// F(y*)
-				final double reFYStar = reX[n] - reDiff[n];
-				final double imFYStar = imX[n] - imDiff[n];
-
-				// F(y[n]) = F(y*[n]) * starToY[n]
-				final double reStarToY = myReStarToY[n];
-				final double imStarToY = myImStarToY[n];
-				reY[n] = reFYStar * reStarToY - imFYStar * imStarToY;
-				imY[n] = imFYStar * reStarToY + reFYStar * imStarToY;
-			}
+			advance(reX, imX, reDiff, imDiff);
 
 			result.add(Pair.of(
-					copyOf(reY, myFrameLength),
-					copyOf(imY, myFrameLength)
+					copyOf(reX, myFrameLength),
+					copyOf(imX, myFrameLength)
 			));
-
-			// save current results as previous
-			System.arraycopy(reY, 0, reX, 0, myFrameLength);
-			System.arraycopy(imY, 0, imX, 0, myFrameLength);
 		}
 
 		return result;
 	}
 
+	/**
+	 * Turns the Fourier Transform of a frame (x) into that of the next frame
+	 * (y), which starts one step later.
+	 *
+	 * @param reX       real parts of the transform of x. Replaced with those
+	 *                     of y.
+	 * @param imX       imaginary parts of the transform of x. Replaced with
+	 *                     those of y.
+	 * @param reDiff    real parts of (x - y*), where y* is y cyclically
+	 *                     shifted by one step: only the first step elements,
+	 *                     the rest are known to be zero and aren't read.
+	 *                     Overwritten.
+	 * @param imDiff    imaginary parts of (x - y*), same as above.
+	 */
+	void advance(
+			@Nonnull final double[] reX,
+			@Nonnull final double[] imX,
+			@Nonnull final double[] reDiff,
+			@Nonnull final double[] imDiff
+	) {
+		mySubsequentFft.transform(reDiff, imDiff);
+
+		// F(x - y*) --> F(y)
+		for (int n = 0; n < myFrameLength; ++n) {
+			// F(y*)
+			final double reFYStar = reX[n] - reDiff[n];
+			final double imFYStar = imX[n] - imDiff[n];
+
+			// F(y[n]) = F(y*[n]) * starToY[n]
+			final double reStarToY = myReStarToY[n];
+			final double imStarToY = myImStarToY[n];
+			reX[n] = reFYStar * reStarToY - imFYStar * imStarToY;
+			imX[n] = imFYStar * reStarToY + reFYStar * imStarToY;
+		}
+	}
+
 	/**
 	 * Checks {@link #transform(double[], double[])} arguments for validity.
 	 * The only check performed is that of the arrays' length.
@@ -14,7 +14,7 @@ class SimpleComplexFFT implements ComplexFFT {
 
 	SimpleComplexFFT(final int lengthLog2) {
 		myLengthLog2 = lengthLog2;
-		myPrecomputedFftData = new PrecomputedFftData(lengthLog2);
+		myPrecomputedFftData = PrecomputedFftData.forLengthLog2(lengthLog2);
 	}
 
 	@Override
@@ -73,16 +73,37 @@ class SimpleComplexFFT implements ComplexFFT {
 			final double[] im,
 			final int length
 	) {
-		final double[] tRe = new double[length];
-		final double[] tIm = new double[length];
 		final int[] permutation =
 				myPrecomputedFftData.getBitReversalPermutation();
+		bitReverseSort(re, im, length, permutation);
+	}
+
+	/**
+	 * Applies a bit reversal permutation in place. The permutation is its
+	 * own inverse, so it is a set of swaps of pairs of elements.
+	 *
+	 * @param re             real parts
+	 * @param im             imaginary parts
+	 * @param length         how many elements to permute
+	 * @param permutation    the bit reversal permutation for the length
+	 */
+	static void bitReverseSort(
+			final double[] re,
+			final double[] im,
+			final int length,
+			final int[] permutation
+	) {
 		for (int i = 0; i < length; i++) {
-			tRe[i] = re[permutation[i]];
-			tIm[i] = im[permutation[i]];
+			final int j = permutation[i];
+			if (i < j) {
+				final double tRe = re[i];
+				re[i] = re[j];
+				re[j] = tRe;
+				final double tIm = im[i];
+				im[i] = im[j];
+				im[j] = tIm;
+			}
 		}
-		System.arraycopy(tRe, 0, re, 0, length);
-		System.arraycopy(tIm, 0, im, 0, length);
 	}
 
 }
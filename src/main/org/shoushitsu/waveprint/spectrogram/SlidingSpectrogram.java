@@ -0,0 +1,244 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Builds spectrograms of windows that slide over one track, computing each
+ * frame only once.
+ * <p/>
+ * Windows that start less than a spectrogram apart share frames, as long as
+ * the distance between them is a multiple of the
+ * {@link SpectrogramBuilder#getFrameStep() frame step}. The frames of the
+ * last window are kept, indexed by their position in the track, and the
+ * next window takes the ones it shares from there. The frames it doesn't
+ * share are computed with one
+ * {@link SpectrogramBuilder#getFrames(short[], int, int, double[][])} call.
+ * <p/>
+ * Not thread-safe; use one instance per track.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class SlidingSpectrogram {
+
+	private final SpectrogramBuilder myBuilder;
+
+	private final int myFrameCount;
+
+	private final int myFrameStep;
+
+	/** Frames of the last window; frame at position p is in slot (p / step) % count. */
+	private final double[][] myFrames;
+
+	/** Positions of the frames in {@link #myFrames}; -1 for empty slots. */
+	private final long[] myFramePositions;
+
+	/** The slots of a run of frames that are computed together. */
+	private final double[][] myRun;
+
+	private long myComputedFrames;
+
+	public SlidingSpectrogram(@Nonnull final SpectrogramBuilder builder) {
+		myBuilder = builder;
+		myFrameCount = builder.getFrameCount();
+		myFrameStep = builder.getFrameStep();
+		myFrames = new double[myFrameCount][builder.getBinCount()];
+		myFramePositions = new long[myFrameCount];
+		myRun = new double[myFrameCount][];
+		Arrays.fill(myFramePositions, -1);
+	}
+
+	/**
+	 * Computes the spectrogram of a window. The result is the same as that
+	 * of {@link SpectrogramBuilder#getSpectrogram(short[], int)
+	 * getSpectrogram(samples, offset)}.
+	 *
+	 * @param samples     the array that holds the window's samples.
+	 * @param offset      where the window starts in the array.
+	 * @param position    where the window starts in the track. The samples
+	 *                       at the same position must be the same in every
+	 *                       call.
+	 *
+	 * @return a new array with the spectrogram, which the caller may modify.
+	 */
+	public double[][] getSpectrogram(
+			@Nonnull final short[] samples,
+			final int offset,
+			final long position
+	) {
+		return getSpectrogram(
+				samples,
+				offset,
+				position,
+				new double[myFrameCount][myBuilder.getBinCount()]
+		);
+	}
+
+	/**
+	 * Computes the spectrogram of a window into an existing array, so that
+	 * the windows of a track can be fingerprinted without allocations.
+	 *
+	 * @param samples        the array that holds the window's samples.
+	 * @param offset         where the window starts in the array.
+	 * @param position       where the window starts in the track.
+	 * @param spectrogram    the array for the spectrogram, of
+	 *                          {@link SpectrogramBuilder#getFrameCount()}
+	 *                          frames of
+	 *                          {@link SpectrogramBuilder#getBinCount()}
+	 *                          bins. Its contents are overwritten.
+	 *
+	 * @return {@code spectrogram}.
+	 *
+	 * @see #getSpectrogram(short[], int, long)
+	 */
+	public double[][] getSpectrogram(
+			@Nonnull final short[] samples,
+			final int offset,
+			final long position,
+			@Nonnull final double[][] spectrogram
+	) {
+		updateFrames(samples, offset, position);
+		for (int sgTime = 0; sgTime < myFrameCount; sgTime++) {
+			final double[] frame = myFrames[getSlot(position + (long) sgTime * myFrameStep)];
+			// copied, as later stages transform spectrograms in place
+			System.arraycopy(frame, 0, spectrogram[sgTime], 0, frame.length);
+		}
+		return spectrogram;
+	}
+
+	/**
+	 * Computes the spectrogram of a window into a flat spectrogram.
+	 *
+	 * @param samples        the array that holds the window's samples.
+	 * @param offset         where the window starts in the array.
+	 * @param position       where the window starts in the track.
+	 * @param spectrogram    the spectrogram, of
+	 *                          {@link SpectrogramBuilder#getFrameCount()}
+	 *                          frames of
+	 *                          {@link SpectrogramBuilder#getBinCount()}
+	 *                          bins. Its contents are overwritten.
+	 *
+	 * @return {@code spectrogram}.
+	 *
+	 * @see #getSpectrogram(short[], int, long)
+	 */
+	public Spectrogram getSpectrogram(
+			@Nonnull final short[] samples,
+			final int offset,
+			final long position,
+			@Nonnull final Spectrogram spectrogram
+	) {
+		spectrogram.checkDimensions(myFrameCount, myBuilder.getBinCount());
+		updateFrames(samples, offset, position);
+		for (int sgTime = 0; sgTime < myFrameCount; sgTime++) {
+			spectrogram.setFrame(sgTime, myFrames[getSlot(position + (long) sgTime * myFrameStep)]);
+		}
+		return spectrogram;
+	}
+
+	/**
+	 * Computes the spectrogram of a window into a single precision
+	 * spectrogram. The frames are computed in double precision, as for the
+	 * other overloads, and rounded as they are copied.
+	 *
+	 * @param samples        the array that holds the window's samples.
+	 * @param offset         where the window starts in the array.
+	 * @param position       where the window starts in the track.
+	 * @param spectrogram    the spectrogram, of
+	 *                          {@link SpectrogramBuilder#getFrameCount()}
+	 *                          frames of
+	 *                          {@link SpectrogramBuilder#getBinCount()}
+	 *                          bins. Its contents are overwritten.
+	 *
+	 * @return {@code spectrogram}.
+	 */
+	public FloatSpectrogram getSpectrogram(
+			@Nonnull final short[] samples,
+			final int offset,
+			final long position,
+			@Nonnull final FloatSpectrogram spectrogram
+	) {
+		spectrogram.checkDimensions(myFrameCount, myBuilder.getBinCount());
+		updateFrames(samples, offset, position);
+		for (int sgTime = 0; sgTime < myFrameCount; sgTime++) {
+			spectrogram.setFrame(sgTime, myFrames[getSlot(position + (long) sgTime * myFrameStep)]);
+		}
+		return spectrogram;
+	}
+
+	/**
+	 * Gets the frames of a window without copying them, for stages that
+	 * keep their own copies of what they derive from the frames.
+	 *
+	 * @param samples     the array that holds the window's samples.
+	 * @param offset      where the window starts in the array.
+	 * @param position    where the window starts in the track.
+	 * @param frames      the array for the frames, at least
+	 *                       {@link SpectrogramBuilder#getFrameCount()} long.
+	 *                       It gets the cached frames themselves, which must
+	 *                       not be modified and change on the next call.
+	 *
+	 * @return {@code frames}.
+	 */
+	public double[][] getFrames(
+			@Nonnull final short[] samples,
+			final int offset,
+			final long position,
+			@Nonnull final double[][] frames
+	) {
+		updateFrames(samples, offset, position);
+		for (int sgTime = 0; sgTime < myFrameCount; sgTime++) {
+			frames[sgTime] = myFrames[getSlot(position + (long) sgTime * myFrameStep)];
+		}
+		return frames;
+	}
+
+	/**
+	 * Makes sure that the cache holds all frames of a window, computing the
+	 * runs of missing ones.
+	 */
+	private void updateFrames(
+			final short[] samples,
+			final int offset,
+			final long position
+	) {
+		int sgTime = 0;
+		while (sgTime < myFrameCount) {
+			// compute the run of missing frames that starts here, if any
+			int runEnd = sgTime;
+			while (runEnd < myFrameCount) {
+				final long framePosition = position + (long) runEnd * myFrameStep;
+				final int slot = getSlot(framePosition);
+				if (myFramePositions[slot] == framePosition) {
+					break;
+				}
+				myRun[runEnd - sgTime] = myFrames[slot];
+				myFramePositions[slot] = framePosition;
+				runEnd++;
+			}
+			if (runEnd > sgTime) {
+				myBuilder.getFrames(samples, offset + sgTime * myFrameStep, runEnd - sgTime, myRun);
+				myComputedFrames += runEnd - sgTime;
+			} else {
+				runEnd++;
+			}
+			sgTime = runEnd;
+		}
+	}
+
+	/**
+	 * Get the slot of the frame at the given position.
+	 */
+	private int getSlot(final long framePosition) {
+		return (int) ((framePosition / myFrameStep) % myFrameCount);
+	}
+
+	/**
+	 * Get the amount of frames computed so far.
+	 *
+	 * @return the amount of frames.
+	 */
+	public long getComputedFrames() {
+		return myComputedFrames;
+	}
+}
@@ -0,0 +1,165 @@
+package org.shoushitsu.waveprint.spectrogram;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A spectrogram stored in one array, frame after frame.
+ * <p/>
+ * Bin {@code b} of frame {@code f} is at index
+ * <code>f * getBinCount() + b</code> of {@link #getData()}. Walking a frame
+ * is thus sequential, and walking a bin across frames is a strided walk
+ * through the same array rather than a jump to another array on every
+ * step, as it is with {@code double[][]}.
+ * <p/>
+ * The later stages treat the spectrogram as an image: frames are rows and
+ * bins are columns.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public final class Spectrogram {
+
+	private final int myFrameCount;
+	private final int myBinCount;
+	private final double[] myData;
+
+	/**
+	 * Creates a spectrogram filled with zeros.
+	 *
+	 * @param frameCount    the amount of frames (rows).
+	 * @param binCount      the amount of bins in a frame (columns).
+	 */
+	public Spectrogram(final int frameCount, final int binCount) {
+		if (frameCount < 0 || binCount < 0) {
+			throw new IllegalArgumentException(String.format(
+					"Spectrogram dimensions must not be negative, got %d x %d",
+					frameCount, binCount
+			));
+		}
+		myFrameCount = frameCount;
+		myBinCount = binCount;
+		myData = new double[frameCount * binCount];
+	}
+
+	/**
+	 * Copies a spectrogram held as an array of frames. All frames must be
+	 * as long as the first one.
+	 *
+	 * @param frames    the frames.
+	 *
+	 * @return a new spectrogram with the same values.
+	 */
+	@Nonnull
+	public static Spectrogram copyOf(@Nonnull final double[][] frames) {
+		final Spectrogram result =
+				new Spectrogram(frames.length, (frames.length == 0) ? 0 : frames[0].length);
+		for (int frame = 0; frame < frames.length; frame++) {
+			result.setFrame(frame, frames[frame]);
+		}
+		return result;
+	}
+
+	/**
+	 * Copies the values into an array of frames.
+	 *
+	 * @param frames    the frames; there must be {@link #getFrameCount()}
+	 *                     of them, each at least {@link #getBinCount()}
+	 *                     long.
+	 */
+	public void copyTo(@Nonnull final double[][] frames) {
+		for (int frame = 0; frame < myFrameCount; frame++) {
+			System.arraycopy(myData, frame * myBinCount, frames[frame], 0, myBinCount);
+		}
+	}
+
+	/**
+	 * Copies the values into a new array of frames.
+	 *
+	 * @return the frames.
+	 */
+	@Nonnull
+	public double[][] toArray() {
+		final double[][] frames = new double[myFrameCount][myBinCount];
+		copyTo(frames);
+		return frames;
+	}
+
+	/**
+	 * Replaces the bins of a frame.
+	 *
+	 * @param frame    the frame's index.
+	 * @param bins     the new bins; only the first {@link #getBinCount()}
+	 *                    are used.
+	 */
+	public void setFrame(final int frame, @Nonnull final double[] bins) {
+		if (bins.length < myBinCount) {
+			throw new IllegalArgumentException(String.format(
+					"Frame %d has %d bins, expected %d",
+					frame, bins.length, myBinCount
+			));
+		}
+		System.arraycopy(bins, 0, myData, getOffset(frame), myBinCount);
+	}
+
+	/**
+	 * Checks that the spectrogram has the given dimensions, for the
+	 * builders that fill it.
+	 */
+	void checkDimensions(final int frameCount, final int binCount) {
+		if (frameCount != myFrameCount || binCount != myBinCount) {
+			throw new IllegalArgumentException(String.format(
+					"Expected a spectrogram of %d x %d, got %d x %d",
+					frameCount, binCount, myFrameCount, myBinCount
+			));
+		}
+	}
+
+	public double get(final int frame, final int bin) {
+		return myData[frame * myBinCount + bin];
+	}
+
+	public void set(final int frame, final int bin, final double value) {
+		myData[frame * myBinCount + bin] = value;
+	}
+
+	/**
+	 * Get the index of a frame's first bin in {@link #getData()}.
+	 *
+	 * @param frame    the frame's index.
+	 *
+	 * @return the index.
+	 */
+	public int getOffset(final int frame) {
+		return frame * myBinCount;
+	}
+
+	/**
+	 * Get the array with the values. Changes to it are changes to the
+	 * spectrogram.
+	 *
+	 * @return the array.
+	 */
+	@Nonnull
+	public double[] getData() {
+		return myData;
+	}
+
+	/**
+	 * Get the amount of frames (rows).
+	 *
+	 * @return the amount of frames.
+	 */
+	public int getFrameCount() {
+		return myFrameCount;
+	}
+
+	/**
+	 * Get the amount of bins in a frame (columns), which is also the
+	 * distance between the same bin of adjacent frames in
+	 * {@link #getData()}.
+	 *
+	 * @return the amount of bins.
+	 */
+	public int getBinCount() {
+		return myBinCount;
+	}
+}
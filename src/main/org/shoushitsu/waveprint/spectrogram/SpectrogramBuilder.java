@@ -11,14 +11,109 @@ public interface SpectrogramBuilder {
 	/**
 	 * Computes a spectrogram from the given samples.
 	 *
-	 * @param samples    the array with sound samples.
+	 * @param samples    the array with 16bit sound samples.
 	 * @param start      where to start getting samples for the spectrogram.
 	 *
 	 * @return an array with the spectrogram. First index is time (measured in
 	 * samples, second index is frequency bin.
 	 */
+	double[][] getSpectrogram(@Nonnull short[] samples, int start);
+
+	/**
+	 * Computes a spectrogram from samples held in an {@code int} array.
+	 * The result is the same as that of
+	 * {@link #getSpectrogram(short[], int)} for the same sample values.
+	 *
+	 * @param samples    the array with sound samples.
+	 * @param start      where to start getting samples for the spectrogram.
+	 *
+	 * @return an array with the spectrogram.
+	 */
 	double[][] getSpectrogram(@Nonnull int[] samples, int start);
 
+	/**
+	 * Computes a spectrogram into an existing flat spectrogram. The values
+	 * are the same as those of {@link #getSpectrogram(short[], int)}.
+	 *
+	 * @param samples        the array with 16bit sound samples.
+	 * @param start          where to start getting samples for the
+	 *                          spectrogram.
+	 * @param spectrogram    the spectrogram to fill; must have
+	 *                          {@link #getFrameCount()} frames of
+	 *                          {@link #getBinCount()} bins.
+	 */
+	void getSpectrogram(@Nonnull short[] samples, int start, @Nonnull Spectrogram spectrogram);
+
+	/**
+	 * Computes one frame (time slice) of a spectrogram.
+	 * <p/>
+	 * Frame number {@code k} of the spectrogram starting at {@code start} is
+	 * equal to {@code getFrame(samples, start + k * getFrameStep())}.
+	 *
+	 * @param samples       the array with 16bit sound samples.
+	 * @param frameStart    where to start getting samples for the frame.
+	 *
+	 * @return a new array with the frame's frequency bins.
+	 */
+	double[] getFrame(@Nonnull short[] samples, int frameStart);
+
+	/**
+	 * Computes one frame of a spectrogram into the given array. Unlike
+	 * {@link #getFrame(short[], int)}, this doesn't allocate memory once
+	 * the calling thread has computed its first frame.
+	 *
+	 * @param samples       the array with 16bit sound samples.
+	 * @param frameStart    where to start getting samples for the frame.
+	 * @param bins          the array for the frame's frequency bins; must
+	 *                         have room for {@link #getBinCount()} values.
+	 */
+	void getFrame(@Nonnull short[] samples, int frameStart, @Nonnull double[] bins);
+
+	/**
+	 * Computes consecutive frames of a spectrogram into the given arrays.
+	 * The result is the same as that of
+	 * {@link #getFrame(short[], int, double[]) getFrame} for each frame,
+	 * but implementations may compute the frames together, which is
+	 * faster.
+	 *
+	 * @param samples            the array with 16bit sound samples.
+	 * @param firstFrameStart    where to start getting samples for the
+	 *                              first frame. Frame {@code i} starts
+	 *                              {@code i * getFrameStep()} samples later.
+	 * @param frameCount         how many frames to compute. This isn't
+	 *                              limited by {@link #getFrameCount()}, so a
+	 *                              whole track can be done at once.
+	 * @param bins               the arrays for the frames' frequency bins;
+	 *                              the first {@code frameCount} are filled.
+	 */
+	void getFrames(
+			@Nonnull short[] samples,
+			int firstFrameStart,
+			int frameCount,
+			@Nonnull double[][] bins
+	);
+
+	/**
+	 * Get the amount of frequency bins in a frame.
+	 *
+	 * @return the amount of bins.
+	 */
+	int getBinCount();
+
+	/**
+	 * Get the amount of frames in one spectrogram.
+	 *
+	 * @return the amount of frames.
+	 */
+	int getFrameCount();
+
+	/**
+	 * Get the distance between the starts of adjacent frames.
+	 *
+	 * @return the distance, in samples.
+	 */
+	int getFrameStep();
+
 	/**
 	 * Get the amount of samples that one spectrogram uses.
 	 *
@@ -3,6 +3,7 @@ package org.shoushitsu.waveprint.spectrogram;
 import org.shoushitsu.waveprint.exceptions.fft.LengthMismatchException;
 
 import javax.annotation.Nonnull;
+import java.util.Arrays;
 
 /**
  * Efficiently computes a Fast Fourier Transform of a periodic wave that has
@@ -14,11 +15,14 @@ import javax.annotation.Nonnull;
  * answer will be 0.
  *
  * Consider computations at level <code>l</code>, where two FFTs of length
- * 2<sup>l-1</sup> are recombined into an FFT of length 2<sup>l</sup>. If
- * <code>l < n-m</code>, some of the frames are dependent only on zero-filled
- * frames from previous level. Namely, on level <code>l</code>, in each
- * consecutive group of 2<sup>n-m-l</sup> frames, only the first one can contain
- * non-zero elements.
+ * 2<sup>l-1</sup> are recombined into an FFT of length 2<sup>l</sup>. After
+ * the bit reverse sort, the non-zero elements are 2<sup>n-m</sup> positions
+ * apart, so on levels <code>l <= n-m</code> every frame is recombined from one
+ * frame that holds a single non-zero element at its start and one frame of
+ * zeros. Such a recombination just copies that element over the whole frame.
+ * So the first <code>n-m</code> levels are replaced with filling each frame of
+ * 2<sup>n-m</sup> elements with its element, and only the last <code>m</code>
+ * levels are computed with butterflies.
  *
  * @author Yanus Poluektovich (ypoluektovich@gmail.com)
  */
@@ -27,11 +31,13 @@ class ZeroTailComplexFFT implements ComplexFFT {
 	private final int myLengthLog2;
 	private final int myNonzeroLog2;
 	private final PrecomputedFftData myPrecomputedFftData;
+	private final PrecomputedFftData myNonzeroPrecomputedFftData;
 
 	ZeroTailComplexFFT(final int lengthLog2, final int nonzeroLog2) {
 		myLengthLog2 = lengthLog2;
 		myNonzeroLog2 = nonzeroLog2;
-		myPrecomputedFftData = new PrecomputedFftData(lengthLog2);
+		myPrecomputedFftData = PrecomputedFftData.forLengthLog2(lengthLog2);
+		myNonzeroPrecomputedFftData = PrecomputedFftData.forLengthLog2(nonzeroLog2);
 	}
 
 	@Override
@@ -44,148 +50,85 @@ class ZeroTailComplexFFT implements ComplexFFT {
 			throw new LengthMismatchException(false, re.length, length);
 		}
 
-		/*
-		 Since we're computing in place,
-		 decomposition is implemented as a permutation.
-		*/
-		bitReverseSort(re, im);
+		// Decomposition and the levels that only copy elements.
+		spreadNonzeros(re, im);
 
 		// Recombination stage. Apply butterflies ad nauseum.
-		for (int l = 1; l <= myLengthLog2; ++l) {
+		final double[][] cos = myPrecomputedFftData.getCosines();
+		final double[][] sin = myPrecomputedFftData.getSines();
+		for (int l = myLengthLog2 - myNonzeroLog2 + 1; l <= myLengthLog2; ++l) {
 			/*
 			 On level l we recombine frames of 2^l
 			 from pairs of frames of 2^(l-1)
 			*/
-			recombine(re, im, length, l);
-		}
+			final int curLength = 1 << l;
+			final int prevLength = curLength >> 1;
+			for (int k = 0; k < prevLength; ++k) {
+				final double reTk = cos[l - 1][k];
+				final double imTk = sin[l - 1][k];
+				for (int curK = k; curK < length; curK += curLength) {
+					final int curK2 = curK + prevLength;
 
-		// Normalize coefficients.
-		for (int i = 0; i < length; i++) {
-			re[i] /= length;
-			im[i] /= length;
-		}
-	}
+					final double reEk = re[curK];
+					final double imEk = im[curK];
 
-	/**
-	 * Recombines frames of length 2<sup>l</sup> from pairs of FFTs of length
-	 * 2<sup>l-1</sup>.
-	 *
-	 * @param re        real parts
-	 * @param im        imaginary parts
-	 * @param length    length of full FFT
-	 * @param l         current recombination level
-	 */
-	private void recombine(
-			final double[] re,
-			final double[] im,
-			final int length,
-			final int l
-	) {
-		/*
-		 Only frames with indexes that produce 0 after being &'d with this mask
-		 (essentially, first frames in 2^?) can contain non-zeros and therefore
-		 have to be fully evaluated.
-		*/
-		final int dirtyWindowMask;
-		if (l < (myLengthLog2 - myNonzeroLog2)) {
-			dirtyWindowMask = (1 << (myLengthLog2 - myNonzeroLog2 - l)) - 1;
-		} else {
-			// at sufficiently high levels there are no non-dirty frames
-			dirtyWindowMask = 0;
-		}
+					final double reOk = re[curK2];
+					final double imOk = im[curK2];
+
+					final double reTOk = reTk * reOk - imTk * imOk;
+					final double imTOk = imTk * reOk + reTk * imOk;
+
+					re[curK] = reEk + reTOk;
+					im[curK] = imEk + imTOk;
 
-		// length of FFT frame on previous level
-		final int prevLength = 1 << (l - 1);
-		// iterate over indexes of elements in a frame
-		for (int k = 0; k < prevLength; ++k) {
-			// iterate over indexes of frames
-			for (int ixK = 0, windowCount = length >> l;
-				 ixK < windowCount;
-				 ++ixK
-			) {
-				/*
-				 If the condition is false, it means that the frame is
-				 recombined from two zero-filled frames. Since everything is
-				 computed in place, we don't even have to assign zeros, they
-				 are already there after the bit reverse sort.
-				 */
-				if ((ixK & dirtyWindowMask) == 0) {
-					butterfly(re, im, l - 1, k, ixK);
+					re[curK2] = reEk - reTOk;
+					im[curK2] = imEk - imTOk;
 				}
 			}
 		}
-	}
 
-	/**
-	 * Applies the butterfly diagram, computing one pair of coefficients.
-	 *
-	 * @param re           real parts
-	 * @param im           imaginary parts
-	 * @param lMinusOne    level (and binary logarithm of length) of source FFTs
-	 * @param k            index of coefficients in the source FFTs
-	 * @param ixK          index of target FFT frame
-	 */
-	private void butterfly(
-			final double[] re,
-			final double[] im,
-			final int lMinusOne,
-			final int k,
-			final int ixK
-	) {
-		final int prevLength = 1 << lMinusOne;
-		final int curLength = prevLength << 1;
-
-		final double reTk = myPrecomputedFftData.getCosines()[lMinusOne][k];
-		final double imTk = myPrecomputedFftData.getSines()[lMinusOne][k];
-
-		// index of k'th element of frame ixK
-		final int curK = k + ixK * curLength;
-		// index of (k + half_of_frame)'th element of frame ixK
-		final int curK2 = curK + prevLength;
-
-		final double reEk = re[curK];
-		final double imEk = im[curK];
-
-		final double reOk = re[curK2];
-		final double imOk = im[curK2];
-
-		final double reTOk = reTk * reOk - imTk * imOk;
-		final double imTOk = imTk * reOk + reTk * imOk;
-
-		re[curK] = reEk + reTOk;
-		im[curK] = imEk + imTOk;
-
-		re[curK2] = reEk - reTOk;
-		im[curK2] = imEk - imTOk;
+		// Normalize coefficients.
+		for (int i = 0; i < length; i++) {
+			re[i] /= length;
+			im[i] /= length;
+		}
 	}
 
 	/**
-	 * Applies precomputed bit reverse sort to the arrays of coefficients.
+	 * Applies bit reverse sort to the arrays of coefficients, and then
+	 * copies each non-zero element over its frame of 2<sup>n-m</sup>
+	 * elements. Elements past the non-zero head are not read.
+	 * <p/>
+	 * Frame <code>j</code> gets the element from position
+	 * <code>bitrev<sub>n</sub>(j 2<sup>n-m</sup>) =
+	 * bitrev<sub>m</sub>(j)</code>, so the head is bit-reverse sorted as
+	 * an array of 2<sup>m</sup> elements, and then spread from the last frame
+	 * to the first. Frame <code>j</code> starts at or after position
+	 * <code>j</code>, so spreading it only overwrites elements that were
+	 * already spread.
 	 *
 	 * @param re    real parts
 	 * @param im    imaginary parts
 	 *
 	 * @see PrecomputedFftData#getBitReversalPermutation()
 	 */
-	private void bitReverseSort(final double[] re, final double[] im) {
-		final int length = 1 << myLengthLog2;
+	private void spreadNonzeros(final double[] re, final double[] im) {
 		final int nonzeroLength = 1 << myNonzeroLog2;
-		final double[] tRe = new double[length];
-		final double[] tIm = new double[length];
-		final int[] permutation =
-				myPrecomputedFftData.getBitReversalPermutation();
-		for (int i = 0; i < length; i++) {
-			final int ixFrom = permutation[i];
-			if (ixFrom < nonzeroLength) {
-				tRe[i] = re[ixFrom];
-				tIm[i] = im[ixFrom];
-			} else {
-				tRe[i] = 0;
-				tIm[i] = 0;
-			}
+		final int sparseLevels = myLengthLog2 - myNonzeroLog2;
+		final int frameLength = 1 << sparseLevels;
+		SimpleComplexFFT.bitReverseSort(
+				re,
+				im,
+				nonzeroLength,
+				myNonzeroPrecomputedFftData.getBitReversalPermutation()
+		);
+		for (int frame = nonzeroLength - 1; frame >= 0; frame--) {
+			final int frameStart = frame << sparseLevels;
+			final double reValue = re[frame];
+			final double imValue = im[frame];
+			Arrays.fill(re, frameStart, frameStart + frameLength, reValue);
+			Arrays.fill(im, frameStart, frameStart + frameLength, imValue);
 		}
-		System.arraycopy(tRe, 0, re, 0, length);
-		System.arraycopy(tIm, 0, im, 0, length);
 	}
 
 }
@@ -1,29 +1,205 @@
 package org.shoushitsu.waveprint.wavelet;
 
+import org.shoushitsu.waveprint.kernels.Kernels;
+import org.shoushitsu.waveprint.kernels.NumericKernels;
+import org.shoushitsu.waveprint.spectrogram.FloatSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.Spectrogram;
+
+import javax.annotation.Nonnull;
+
 /**
+ * The common part of wavelet transforms of flat images. Rows are
+ * decomposed in place; columns are decomposed a pair of rows at a time, so
+ * the image is read sequentially rather than one column after another.
+ * Images held as arrays of rows are copied into a flat image and back.
+ * Single precision images go through the same steps in {@code float}.
+ * <p/>
+ * The details of a step are collected in scratch space that every thread
+ * allocates once, so transforms allocate nothing.
+ *
  * @author Yanus Poluektovich (ypoluektovich@gmail.com)
  */
 public abstract class AbstractWaveletTransform implements WaveletTransform {
-	protected void decomposeCol(final double[][] image, final int rowsLog2, final int col) {
+
+	private final NumericKernels myKernels = Kernels.get();
+
+	private final ThreadLocal<Scratch> myScratch = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	@Override
+	public void transform(@Nonnull final double[][] image, final int rowsLog2, final int colsLog2) {
+		final Spectrogram flat = Spectrogram.copyOf(image);
+		transform(flat, rowsLog2, colsLog2);
+		flat.copyTo(image);
+	}
+
+	/**
+	 * Decomposes the first {@code 2^colsLog2} elements of each of the first
+	 * {@code rows} rows one step.
+	 */
+	protected void decomposeRows(final Spectrogram image, final int rows, final int colsLog2) {
+		final int halfCols = 1 << (colsLog2 - 1);
+		final double[] data = image.getData();
+		final double[] details = myScratch.get().getDoubles(halfCols);
+		for (int row = 0; row < rows; row++) {
+			final int offset = image.getOffset(row);
+			myKernels.haarStep(data, offset, 0, halfCols, details);
+			System.arraycopy(details, 0, data, offset + halfCols, halfCols);
+		}
+	}
+
+	/**
+	 * Decomposes the first {@code 2^colsLog2} elements of each of the first
+	 * {@code rows} rows completely, a row at a time, so that each row stays
+	 * in cache for all its steps.
+	 */
+	protected void decomposeRowsFully(final Spectrogram image, final int rows, final int colsLog2) {
+		if (colsLog2 == 0) {
+			return;
+		}
+		final double[] data = image.getData();
+		final double[] details = myScratch.get().getDoubles(1 << (colsLog2 - 1));
+		for (int row = 0; row < rows; row++) {
+			decomposeRowFully(data, image.getOffset(row), colsLog2, details);
+		}
+	}
+
+	/**
+	 * Decomposes the first {@code 2^colsLog2} elements of a row that starts
+	 * at {@code offset} completely.
+	 */
+	protected void decomposeRowFully(final double[] data, final int offset, final int colsLog2) {
+		if (colsLog2 > 0) {
+			decomposeRowFully(data, offset, colsLog2, myScratch.get().getDoubles(1 << (colsLog2 - 1)));
+		}
+	}
+
+	private void decomposeRowFully(
+			final double[] data,
+			final int offset,
+			final int colsLog2,
+			final double[] details
+	) {
+		for (int halfCols = 1 << (colsLog2 - 1); halfCols > 0; halfCols >>= 1) {
+			myKernels.haarStep(data, offset, 0, halfCols, details);
+			System.arraycopy(details, 0, data, offset + halfCols, halfCols);
+		}
+	}
+
+	/**
+	 * Decomposes the first {@code 2^rowsLog2} elements of each of the first
+	 * {@code cols} columns one step. Row {@code i} gets the averages of rows
+	 * {@code 2i} and {@code 2i + 1}, which have already been read by then,
+	 * and the details wait in the scratch space until all pairs are done.
+	 */
+	protected void decomposeCols(final Spectrogram image, final int rowsLog2, final int cols) {
 		final int halfRows = 1 << (rowsLog2 - 1);
-		final double[] details = new double[halfRows];
+		final double[] data = image.getData();
+		final double[] details = myScratch.get().getDoubles(halfRows * cols);
 		for (int i = 0; i < halfRows; i++) {
-			image[i][col] = (image[i * 2][col] + image[i * 2 + 1][col]) * 0.5;
-			details[i] = image[i][col] - image[i * 2 + 1][col];
+			myKernels.haarPairs(
+					data, image.getOffset(2 * i), image.getOffset(2 * i + 1), image.getOffset(i),
+					details, i * cols,
+					cols
+			);
 		}
-		// can't use System.arraycopy here
+		// the rows of details are short (a single column in the standard
+		// transform), so plain loops beat a System.arraycopy call per row
+		int d = 0;
 		for (int i = 0; i < halfRows; i++) {
-			image[halfRows + i][col] = details[i];
+			final int offset = image.getOffset(halfRows + i);
+			for (int col = 0; col < cols; col++) {
+				data[offset + col] = details[d++];
+			}
 		}
 	}
 
-	protected void decomposeRow(final double[][] image, final int row, final int colsLog2) {
+	protected void decomposeRows(final FloatSpectrogram image, final int rows, final int colsLog2) {
 		final int halfCols = 1 << (colsLog2 - 1);
-		final double[] details = new double[halfCols];
-		for (int i = 0; i < halfCols; i++) {
-			image[row][i] = (image[row][i * 2] + image[row][i * 2 + 1]) * 0.5;
-			details[i] = image[row][i] - image[row][i * 2 + 1];
+		final float[] data = image.getData();
+		final float[] details = myScratch.get().getFloats(halfCols);
+		for (int row = 0; row < rows; row++) {
+			final int offset = image.getOffset(row);
+			myKernels.haarStep(data, offset, 0, halfCols, details);
+			System.arraycopy(details, 0, data, offset + halfCols, halfCols);
+		}
+	}
+
+	protected void decomposeRowsFully(final FloatSpectrogram image, final int rows, final int colsLog2) {
+		if (colsLog2 == 0) {
+			return;
+		}
+		final float[] data = image.getData();
+		final float[] details = myScratch.get().getFloats(1 << (colsLog2 - 1));
+		for (int row = 0; row < rows; row++) {
+			decomposeRowFully(data, image.getOffset(row), colsLog2, details);
+		}
+	}
+
+	protected void decomposeRowFully(final float[] data, final int offset, final int colsLog2) {
+		if (colsLog2 > 0) {
+			decomposeRowFully(data, offset, colsLog2, myScratch.get().getFloats(1 << (colsLog2 - 1)));
+		}
+	}
+
+	private void decomposeRowFully(
+			final float[] data,
+			final int offset,
+			final int colsLog2,
+			final float[] details
+	) {
+		for (int halfCols = 1 << (colsLog2 - 1); halfCols > 0; halfCols >>= 1) {
+			myKernels.haarStep(data, offset, 0, halfCols, details);
+			System.arraycopy(details, 0, data, offset + halfCols, halfCols);
+		}
+	}
+
+	protected void decomposeCols(final FloatSpectrogram image, final int rowsLog2, final int cols) {
+		final int halfRows = 1 << (rowsLog2 - 1);
+		final float[] data = image.getData();
+		final float[] details = myScratch.get().getFloats(halfRows * cols);
+		for (int i = 0; i < halfRows; i++) {
+			myKernels.haarPairs(
+					data, image.getOffset(2 * i), image.getOffset(2 * i + 1), image.getOffset(i),
+					details, i * cols,
+					cols
+			);
+		}
+		// the rows of details are short (a single column in the standard
+		// transform), so plain loops beat a System.arraycopy call per row
+		int d = 0;
+		for (int i = 0; i < halfRows; i++) {
+			final int offset = image.getOffset(halfRows + i);
+			for (int col = 0; col < cols; col++) {
+				data[offset + col] = details[d++];
+			}
+		}
+	}
+
+
+	/**
+	 * The details of a step, in arrays that only grow.
+	 */
+	private static class Scratch {
+		private double[] myDoubles = new double[0];
+		private float[] myFloats = new float[0];
+
+		private double[] getDoubles(final int length) {
+			if (myDoubles.length < length) {
+				myDoubles = new double[length];
+			}
+			return myDoubles;
+		}
+
+		private float[] getFloats(final int length) {
+			if (myFloats.length < length) {
+				myFloats = new float[length];
+			}
+			return myFloats;
 		}
-		System.arraycopy(details, 0, image[row], halfCols, halfCols);
 	}
 }
@@ -1,5 +1,8 @@
 package org.shoushitsu.waveprint.wavelet;
 
+import org.shoushitsu.waveprint.spectrogram.FloatSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.Spectrogram;
+
 import javax.annotation.Nonnull;
 
 /**
@@ -8,20 +11,28 @@ import javax.annotation.Nonnull;
 public class HVNonstandardWaveletTransform extends AbstractWaveletTransform {
 
 	@Override
-	public void transform(@Nonnull final double[][] image, int rowsLog2, int colsLog2) {
+	public void transform(@Nonnull final Spectrogram image, int rowsLog2, int colsLog2) {
+		while (rowsLog2 > 0 || colsLog2 > 0) {
+			if (colsLog2 > 0) {
+				decomposeRows(image, 1 << rowsLog2, colsLog2);
+				colsLog2 -= 1;
+			}
+			if (rowsLog2 > 0) {
+				decomposeCols(image, rowsLog2, 1 << colsLog2);
+				rowsLog2 -= 1;
+			}
+		}
+	}
+
+	@Override
+	public void transform(@Nonnull final FloatSpectrogram image, int rowsLog2, int colsLog2) {
 		while (rowsLog2 > 0 || colsLog2 > 0) {
 			if (colsLog2 > 0) {
-				final int rows = 1 << rowsLog2;
-				for (int row = 0; row < rows; row++) {
-					decomposeRow(image, row, colsLog2);
-				}
+				decomposeRows(image, 1 << rowsLog2, colsLog2);
 				colsLog2 -= 1;
 			}
 			if (rowsLog2 > 0) {
-				final int cols = 1 << colsLog2;
-				for (int col = 0; col < cols; col++) {
-					decomposeCol(image, rowsLog2, col);
-				}
+				decomposeCols(image, rowsLog2, 1 << colsLog2);
 				rowsLog2 -= 1;
 			}
 		}
@@ -1,26 +1,51 @@
 package org.shoushitsu.waveprint.wavelet;
 
+import org.shoushitsu.waveprint.spectrogram.FloatSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.Spectrogram;
+
 import javax.annotation.Nonnull;
 
 /**
  * @author Yanus Poluektovich (ypoluektovich@gmail.com)
  */
-public class HVStandardWaveletTransform extends AbstractWaveletTransform {
+public class HVStandardWaveletTransform extends AbstractWaveletTransform
+		implements SeparableWaveletTransform {
+
+	@Override
+	public void transform(@Nonnull final Spectrogram image, final int rowsLog2, final int colsLog2) {
+		decomposeRowsFully(image, 1 << rowsLog2, colsLog2);
+		transformColumns(image, rowsLog2, colsLog2);
+	}
+
+	@Override
+	public void transform(@Nonnull final FloatSpectrogram image, final int rowsLog2, final int colsLog2) {
+		decomposeRowsFully(image, 1 << rowsLog2, colsLog2);
+		transformColumns(image, rowsLog2, colsLog2);
+	}
+
+	@Override
+	public void transformRow(@Nonnull final double[] data, final int offset, final int colsLog2) {
+		decomposeRowFully(data, offset, colsLog2);
+	}
 
 	@Override
-	public void transform(@Nonnull final double[][] image, int rowsLog2, int colsLog2) {
-		while (colsLog2 > 0) {
-			final int rows = 1 << rowsLog2;
-			for (int row = 0; row < rows; row++) {
-				decomposeRow(image, row, colsLog2);
-			}
-			colsLog2 -= 1;
+	public void transformRow(@Nonnull final float[] data, final int offset, final int colsLog2) {
+		decomposeRowFully(data, offset, colsLog2);
+	}
+
+	@Override
+	public void transformColumns(@Nonnull final Spectrogram image, int rowsLog2, final int colsLog2) {
+		// the rows are done, so only their first column is left
+		while (rowsLog2 > 0) {
+			decomposeCols(image, rowsLog2, 1);
+			rowsLog2 -= 1;
 		}
+	}
+
+	@Override
+	public void transformColumns(@Nonnull final FloatSpectrogram image, int rowsLog2, final int colsLog2) {
 		while (rowsLog2 > 0) {
-			final int cols = 1 << colsLog2;
-			for (int col = 0; col < cols; col++) {
-				decomposeCol(image, rowsLog2, col);
-			}
+			decomposeCols(image, rowsLog2, 1);
 			rowsLog2 -= 1;
 		}
 	}
@@ -0,0 +1,45 @@
+package org.shoushitsu.waveprint.wavelet;
+
+import org.shoushitsu.waveprint.spectrogram.FloatSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.Spectrogram;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A wavelet transform that first transforms every row on its own, and only
+ * then works across rows. A transformed row depends on nothing but the row,
+ * i.e. on one frame of the spectrogram, so windows that share frames can
+ * share transformed rows too; see {@link SlidingWaveletTransform}.
+ * <p/>
+ * {@link #transformRow(double[], int, int)} of each of the first
+ * <code>2<sup>rowsLog2</sup></code> rows followed by
+ * {@link #transformColumns(Spectrogram, int, int)} is the same as
+ * {@link #transform(Spectrogram, int, int)}, bit for bit.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public interface SeparableWaveletTransform extends WaveletTransform {
+
+	/**
+	 * Transforms the first <code>2<sup>colsLog2</sup></code> elements of a
+	 * row that starts at {@code offset} in place.
+	 */
+	void transformRow(@Nonnull double[] data, int offset, int colsLog2);
+
+	/**
+	 * {@link #transformRow(double[], int, int)} in single precision.
+	 */
+	void transformRow(@Nonnull float[] data, int offset, int colsLog2);
+
+	/**
+	 * Completes the transform of an image whose first
+	 * <code>2<sup>rowsLog2</sup></code> rows have already been transformed
+	 * with {@link #transformRow(double[], int, int)}.
+	 */
+	void transformColumns(@Nonnull Spectrogram image, int rowsLog2, int colsLog2);
+
+	/**
+	 * {@link #transformColumns(Spectrogram, int, int)} in single precision.
+	 */
+	void transformColumns(@Nonnull FloatSpectrogram image, int rowsLog2, int colsLog2);
+}
@@ -0,0 +1,224 @@
+package org.shoushitsu.waveprint.wavelet;
+
+import org.shoushitsu.waveprint.spectrogram.FloatSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.SlidingSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.Spectrogram;
+import org.shoushitsu.waveprint.spectrogram.SpectrogramBuilder;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Wavelet transforms of spectrograms of windows that slide over one track,
+ * transforming each frame's row only once.
+ * <p/>
+ * The rows of a {@link SeparableWaveletTransform} are transformed one by
+ * one, and each depends only on its frame. The frames come from a
+ * {@link SlidingSpectrogram}; the transformed rows are kept the same way it
+ * keeps frames, indexed by their position in the track, and the next window
+ * takes the ones it shares from there. Only the pass across rows runs for
+ * every window.
+ * <p/>
+ * The result is the same as that of transforming the spectrogram of the
+ * window, bit for bit.
+ * <p/>
+ * Not thread-safe; use one instance per track.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class SlidingWaveletTransform {
+
+	private final SlidingSpectrogram mySpectrograms;
+
+	private final SeparableWaveletTransform myTransform;
+
+	private final int myRowsLog2;
+
+	private final int myColsLog2;
+
+	private final int myFrameCount;
+
+	private final int myFrameStep;
+
+	private final int myBinCount;
+
+	/** The frames of the current window, as given by {@link #mySpectrograms}. */
+	private final double[][] myWindowFrames;
+
+	/** Transformed rows; row at position p is in slot (p / step) % count. */
+	private double[][] myRows;
+
+	/** Positions of the rows in {@link #myRows}; -1 for empty slots. */
+	private long[] myRowPositions;
+
+	/** {@link #myRows} in single precision. */
+	private float[][] myFloatRows;
+
+	/** Positions of the rows in {@link #myFloatRows}; -1 for empty slots. */
+	private long[] myFloatRowPositions;
+
+	private long myTransformedRows;
+
+	/**
+	 * Creates a new sliding transform.
+	 *
+	 * @param builder      the builder of the spectrograms.
+	 * @param transform    the wavelet transform.
+	 * @param rowsLog2     the amount of rows (frames) to transform, as in
+	 *                        {@link WaveletTransform#transform(Spectrogram, int, int)}.
+	 * @param colsLog2     the amount of columns (bins) to transform.
+	 */
+	public SlidingWaveletTransform(
+			@Nonnull final SpectrogramBuilder builder,
+			@Nonnull final SeparableWaveletTransform transform,
+			final int rowsLog2,
+			final int colsLog2
+	) {
+		mySpectrograms = new SlidingSpectrogram(builder);
+		myTransform = transform;
+		myFrameCount = builder.getFrameCount();
+		myFrameStep = builder.getFrameStep();
+		myBinCount = builder.getBinCount();
+		if ((1 << rowsLog2) > myFrameCount || (1 << colsLog2) > myBinCount) {
+			throw new IllegalArgumentException(String.format(
+					"Can't transform %d x %d of a spectrogram of %d x %d",
+					1 << rowsLog2, 1 << colsLog2, myFrameCount, myBinCount
+			));
+		}
+		myRowsLog2 = rowsLog2;
+		myColsLog2 = colsLog2;
+		myWindowFrames = new double[myFrameCount][];
+	}
+
+	/**
+	 * Computes the wavelet transform of the spectrogram of a window.
+	 *
+	 * @param samples     the array that holds the window's samples.
+	 * @param offset      where the window starts in the array.
+	 * @param position    where the window starts in the track. The samples
+	 *                       at the same position must be the same in every
+	 *                       call.
+	 * @param image       the spectrogram for the result, of the builder's
+	 *                       dimensions. Its contents are overwritten.
+	 *
+	 * @return {@code image}.
+	 */
+	public Spectrogram transform(
+			@Nonnull final short[] samples,
+			final int offset,
+			final long position,
+			@Nonnull final Spectrogram image
+	) {
+		checkDimensions(image.getFrameCount(), image.getBinCount());
+		if (myRows == null) {
+			myRows = new double[myFrameCount][myBinCount];
+			myRowPositions = newPositions();
+		}
+		mySpectrograms.getFrames(samples, offset, position, myWindowFrames);
+		final int rows = 1 << myRowsLog2;
+		for (int sgTime = 0; sgTime < myFrameCount; sgTime++) {
+			if (sgTime >= rows) {
+				// past the transformed part, frames stay as they are
+				image.setFrame(sgTime, myWindowFrames[sgTime]);
+				continue;
+			}
+			final long framePosition = position + (long) sgTime * myFrameStep;
+			final int slot = getSlot(framePosition);
+			final double[] row = myRows[slot];
+			if (myRowPositions[slot] != framePosition) {
+				System.arraycopy(myWindowFrames[sgTime], 0, row, 0, myBinCount);
+				myTransform.transformRow(row, 0, myColsLog2);
+				myRowPositions[slot] = framePosition;
+				myTransformedRows++;
+			}
+			image.setFrame(sgTime, row);
+		}
+		myTransform.transformColumns(image, myRowsLog2, myColsLog2);
+		return image;
+	}
+
+	/**
+	 * {@link #transform(short[], int, long, Spectrogram)} in single
+	 * precision. The frames are rounded before their rows are transformed,
+	 * as {@link SlidingSpectrogram} rounds them for a
+	 * {@link FloatSpectrogram}.
+	 */
+	public FloatSpectrogram transform(
+			@Nonnull final short[] samples,
+			final int offset,
+			final long position,
+			@Nonnull final FloatSpectrogram image
+	) {
+		checkDimensions(image.getFrameCount(), image.getBinCount());
+		if (myFloatRows == null) {
+			myFloatRows = new float[myFrameCount][myBinCount];
+			myFloatRowPositions = newPositions();
+		}
+		mySpectrograms.getFrames(samples, offset, position, myWindowFrames);
+		final float[] data = image.getData();
+		final int rows = 1 << myRowsLog2;
+		for (int sgTime = 0; sgTime < myFrameCount; sgTime++) {
+			if (sgTime >= rows) {
+				image.setFrame(sgTime, myWindowFrames[sgTime]);
+				continue;
+			}
+			final long framePosition = position + (long) sgTime * myFrameStep;
+			final int slot = getSlot(framePosition);
+			final float[] row = myFloatRows[slot];
+			if (myFloatRowPositions[slot] != framePosition) {
+				final double[] frame = myWindowFrames[sgTime];
+				for (int bin = 0; bin < myBinCount; bin++) {
+					row[bin] = (float) frame[bin];
+				}
+				myTransform.transformRow(row, 0, myColsLog2);
+				myFloatRowPositions[slot] = framePosition;
+				myTransformedRows++;
+			}
+			System.arraycopy(row, 0, data, image.getOffset(sgTime), myBinCount);
+		}
+		myTransform.transformColumns(image, myRowsLog2, myColsLog2);
+		return image;
+	}
+
+	private void checkDimensions(final int frameCount, final int binCount) {
+		if (frameCount != myFrameCount || binCount != myBinCount) {
+			throw new IllegalArgumentException(String.format(
+					"Expected a spectrogram of %d x %d, got %d x %d",
+					myFrameCount, myBinCount, frameCount, binCount
+			));
+		}
+	}
+
+	private long[] newPositions() {
+		final long[] positions = new long[myFrameCount];
+		Arrays.fill(positions, -1);
+		return positions;
+	}
+
+	/**
+	 * Get the slot of the row of the frame at the given position.
+	 */
+	private int getSlot(final long framePosition) {
+		return (int) ((framePosition / myFrameStep) % myFrameCount);
+	}
+
+	/**
+	 * Get the amount of frames computed so far.
+	 *
+	 * @return the amount of frames.
+	 *
+	 * @see SlidingSpectrogram#getComputedFrames()
+	 */
+	public long getComputedFrames() {
+		return mySpectrograms.getComputedFrames();
+	}
+
+	/**
+	 * Get the amount of rows transformed so far.
+	 *
+	 * @return the amount of rows.
+	 */
+	public long getTransformedRows() {
+		return myTransformedRows;
+	}
+}
@@ -1,10 +1,29 @@
 package org.shoushitsu.waveprint.wavelet;
 
+import org.shoushitsu.waveprint.spectrogram.FloatSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.Spectrogram;
+
 import javax.annotation.Nonnull;
 
 /**
  * @author Yanus Poluektovich (ypoluektovich@gmail.com)
  */
 public interface WaveletTransform {
+	/**
+	 * Transforms an image held as an array of rows in place. The result is
+	 * the same as that of {@link #transform(Spectrogram, int, int)}.
+	 */
 	void transform(@Nonnull double[][] image, int rowsLog2, int colsLog2);
+
+	/**
+	 * Transforms the top left <code>2<sup>rowsLog2</sup></code> by
+	 * <code>2<sup>colsLog2</sup></code> corner of a flat image in place.
+	 * Frames of the spectrogram are rows, bins are columns.
+	 */
+	void transform(@Nonnull Spectrogram image, int rowsLog2, int colsLog2);
+
+	/**
+	 * {@link #transform(Spectrogram, int, int)} in single precision.
+	 */
+	void transform(@Nonnull FloatSpectrogram image, int rowsLog2, int colsLog2);
 }
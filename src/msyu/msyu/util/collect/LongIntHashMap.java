@@ -0,0 +1,145 @@
+package msyu.util.collect;
+
+import java.util.Arrays;
+
+/**
+ * A map from {@code long} keys to {@code int} values, with open addressing
+ * and linear probing, that doesn't box either. Absent keys map to a value
+ * chosen when the map is created.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class LongIntHashMap {
+
+	/** Marks the free slots; the entry with this key is kept aside. */
+	private static final long FREE_KEY = 0;
+
+	private static final long HASH_MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+	private final int myMissingValue;
+
+	private long[] myKeys;
+	private int[] myValues;
+
+	/** {@code 64 - log2(capacity)}, to take the high bits of the hash. */
+	private int myShift;
+
+	private int mySize;
+
+	private boolean myHasFreeKey;
+	private int myFreeKeyValue;
+
+	public LongIntHashMap(final int missingValue) {
+		this(16, missingValue);
+	}
+
+	public LongIntHashMap(final int expectedSize, final int missingValue) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("Negative expected size: " + expectedSize);
+		}
+		myMissingValue = missingValue;
+		// keep the load factor at most 1/2
+		int capacity = 2;
+		while (capacity < expectedSize * 2L) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	private void allocate(final int capacity) {
+		myKeys = new long[capacity];
+		myValues = new int[capacity];
+		myShift = 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	private int slot(final long key) {
+		return (int) ((key * HASH_MULTIPLIER) >>> myShift);
+	}
+
+	public int get(final long key) {
+		if (key == FREE_KEY) {
+			return myHasFreeKey ? myFreeKeyValue : myMissingValue;
+		}
+		final int mask = myKeys.length - 1;
+		for (int i = slot(key); ; i = (i + 1) & mask) {
+			final long k = myKeys[i];
+			if (k == key) {
+				return myValues[i];
+			}
+			if (k == FREE_KEY) {
+				return myMissingValue;
+			}
+		}
+	}
+
+	/**
+	 * Maps a key to a value.
+	 *
+	 * @param key      the key.
+	 * @param value    the value.
+	 *
+	 * @return the previous value of the key, or the missing value if it was
+	 * absent.
+	 */
+	public int put(final long key, final int value) {
+		if (key == FREE_KEY) {
+			final int previous = myHasFreeKey ? myFreeKeyValue : myMissingValue;
+			if (!myHasFreeKey) {
+				myHasFreeKey = true;
+				++mySize;
+			}
+			myFreeKeyValue = value;
+			return previous;
+		}
+		final int mask = myKeys.length - 1;
+		for (int i = slot(key); ; i = (i + 1) & mask) {
+			final long k = myKeys[i];
+			if (k == key) {
+				final int previous = myValues[i];
+				myValues[i] = value;
+				return previous;
+			}
+			if (k == FREE_KEY) {
+				myKeys[i] = key;
+				myValues[i] = value;
+				if (++mySize * 2 > myKeys.length) {
+					rehash(myKeys.length << 1);
+				}
+				return myMissingValue;
+			}
+		}
+	}
+
+	private void rehash(final int capacity) {
+		final long[] keys = myKeys;
+		final int[] values = myValues;
+		allocate(capacity);
+		final int mask = capacity - 1;
+		for (int j = 0; j < keys.length; j++) {
+			final long key = keys[j];
+			if (key != FREE_KEY) {
+				int i = slot(key);
+				while (myKeys[i] != FREE_KEY) {
+					i = (i + 1) & mask;
+				}
+				myKeys[i] = key;
+				myValues[i] = values[j];
+			}
+		}
+	}
+
+	public int size() {
+		return mySize;
+	}
+
+	public int getMissingValue() {
+		return myMissingValue;
+	}
+
+	public LongIntHashMap clear() {
+		Arrays.fill(myKeys, FREE_KEY);
+		myHasFreeKey = false;
+		mySize = 0;
+		return this;
+	}
+}
@@ -14,4 +14,13 @@ public class ConversionFunctions {
 			}
 		};
 	}
+
+	public static Function<String, Long> longFromString() {
+		return new Function<String, Long>() {
+			@Override
+			public Long apply(final String arg) {
+				return Long.valueOf(arg);
+			}
+		};
+	}
 }
@@ -0,0 +1,1284 @@
+package org.shoushitsu.waveprint;
+
+import msyu.util.collect.IntArrayBuilder;
+import msyu.util.collect.Pair;
+import msyu.util.java.Comparators;
+import org.shoushitsu.waveprint.db.DatabaseSource;
+import org.shoushitsu.waveprint.db.WaveprintParameters;
+import org.shoushitsu.waveprint.db.hsqldb.FileBasedDatabase;
+import org.shoushitsu.waveprint.db.hsqldb.FileBasedDatabaseSetup;
+import org.shoushitsu.waveprint.db.hsqldb.InMemoryLshDatabase;
+import org.shoushitsu.waveprint.db.hsqldb.IndexSegmentExporter;
+import org.shoushitsu.waveprint.db.segment.IndexSegment;
+import org.shoushitsu.waveprint.exceptions.sampleextractor.SampleExtractionException;
+import org.shoushitsu.waveprint.kernels.Kernels;
+import org.shoushitsu.waveprint.kernels.NumericKernels;
+import org.shoushitsu.waveprint.kernels.ScalarKernels;
+import org.shoushitsu.waveprint.spectrogram.AbstractFftSpectrogramBuilder;
+import org.shoushitsu.waveprint.spectrogram.ComplexFFTAlgorithm;
+import org.shoushitsu.waveprint.spectrogram.ComplexFFTFactory;
+import org.shoushitsu.waveprint.spectrogram.FloatSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.IncrementalStftSpectrogramBuilder;
+import org.shoushitsu.waveprint.spectrogram.LogarithmicFrequencySplitter;
+import org.shoushitsu.waveprint.spectrogram.SimpleFftSpectrogramBuilder;
+import org.shoushitsu.waveprint.spectrogram.SlidingSpectrogram;
+import org.shoushitsu.waveprint.spectrogram.Spectrogram;
+import org.shoushitsu.waveprint.spectrogram.SpectrogramBuilder;
+import org.shoushitsu.waveprint.wavelet.HVNonstandardWaveletTransform;
+import org.shoushitsu.waveprint.wavelet.HVStandardWaveletTransform;
+import org.shoushitsu.waveprint.wavelet.SlidingWaveletTransform;
+import org.shoushitsu.waveprint.wavelet.WaveletTransform;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Rough timings of the hot spots, for comparing implementations against each
+ * other on the same machine.
+ *
+ * @author Yanus Poluektovich (ypoluektovich@gmail.com)
+ */
+public class BenchmarkTool {
+
+	public static final String DECODE = "decode";
+	private static final String DECODE_USAGE = String.format(
+			"\t%s <seconds of audio> <iterations>",
+			DECODE
+	);
+
+	public static final String EXTRACT = "extract";
+	private static final String EXTRACT_USAGE = String.format(
+			"\t%s <audio file> <iterations>",
+			EXTRACT
+	);
+
+	public static final String INGEST = "ingest";
+	private static final String INGEST_USAGE = String.format(
+			"\t%s <audio file> <iterations>",
+			INGEST
+	);
+
+	public static final String SPECTROGRAMS = "spectrograms";
+	private static final String SPECTROGRAMS_USAGE = String.format(
+			"\t%s <seconds of audio> <window step> <iterations>",
+			SPECTROGRAMS
+	);
+
+	public static final String FRAMES = "frames";
+	private static final String FRAMES_USAGE = String.format(
+			"\t%s <frame count> <iterations>",
+			FRAMES
+	);
+
+	public static final String KERNELS = "kernels";
+	private static final String KERNELS_USAGE = String.format(
+			"\t%s <iterations>",
+			KERNELS
+	);
+
+	public static final String LAYOUTS = "layouts";
+	private static final String LAYOUTS_USAGE = String.format(
+			"\t%s <spectrogram count> <iterations>",
+			LAYOUTS
+	);
+
+	public static final String WAVELETS = "wavelets";
+	private static final String WAVELETS_USAGE = String.format(
+			"\t%s <seconds of random samples> <window step> <iterations>",
+			WAVELETS
+	);
+
+	public static final String TOP = "top";
+	private static final String TOP_USAGE = String.format(
+			"\t%s <decomposition count> <iterations>",
+			TOP
+	);
+
+	public static final String MINHASH = "minhash";
+	private static final String MINHASH_USAGE = String.format(
+			"\t%s <set count> <iterations>",
+			MINHASH
+	);
+
+	public static final String LSH = "lsh";
+	private static final String LSH_USAGE = String.format(
+			"\t%s <pairs per similarity>",
+			LSH
+	);
+
+	public static final String QUERY = "query";
+	private static final String QUERY_USAGE = String.format(
+			"\t%s <track count> <fingerprints per track> <probe fingerprints> <iterations>",
+			QUERY
+	);
+
+	// the example configuration
+	private static final int SAMPLE_RATE = 5520;
+	private static final int DB_STEP = 5120;
+	private static final int SPECTROGRAM_LENGTH = 128;
+	private static final int FRAME_LENGTH_LOG2 = 11;
+	private static final int FRAME_STEP = 64;
+	private static final int SPECTROGRAM_WIDTH = 32;
+	private static final int LOWEST_FREQUENCY = 318;
+	private static final int HIGHEST_FREQUENCY = 2000;
+	private static final int TOP_WAVELETS = 200;
+	private static final int MINHASH_LENGTH = 80;
+	private static final int LSH_BIN_COUNT = 20;
+	private static final int LSH_VOTE_THRESHOLD = 12;
+
+	public static void main(final String[] args) throws Exception {
+		if (args.length == 0) {
+			System.out.println("Usage:");
+			System.out.println(DECODE_USAGE);
+			System.out.println(EXTRACT_USAGE);
+			System.out.println(INGEST_USAGE);
+			System.out.println(SPECTROGRAMS_USAGE);
+			System.out.println(FRAMES_USAGE);
+			System.out.println(KERNELS_USAGE);
+			System.out.println(LAYOUTS_USAGE);
+			System.out.println(WAVELETS_USAGE);
+			System.out.println(TOP_USAGE);
+			System.out.println(MINHASH_USAGE);
+			System.out.println(LSH_USAGE);
+			System.out.println(QUERY_USAGE);
+			return;
+		}
+		switch (args[0]) {
+			case DECODE:
+				if (args.length != 3) {
+					System.out.println("Usage:\n" + DECODE_USAGE);
+				} else {
+					benchmarkDecode(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+				}
+				break;
+			case EXTRACT:
+				if (args.length != 3) {
+					System.out.println("Usage:\n" + EXTRACT_USAGE);
+				} else {
+					benchmarkExtract(Paths.get(args[1]), Integer.parseInt(args[2]));
+				}
+				break;
+			case INGEST:
+				if (args.length != 3) {
+					System.out.println("Usage:\n" + INGEST_USAGE);
+				} else {
+					benchmarkIngest(Paths.get(args[1]), Integer.parseInt(args[2]));
+				}
+				break;
+			case SPECTROGRAMS:
+				if (args.length != 4) {
+					System.out.println("Usage:\n" + SPECTROGRAMS_USAGE);
+				} else {
+					benchmarkSpectrograms(
+							Integer.parseInt(args[1]),
+							Integer.parseInt(args[2]),
+							Integer.parseInt(args[3])
+					);
+				}
+				break;
+			case FRAMES:
+				if (args.length != 3) {
+					System.out.println("Usage:\n" + FRAMES_USAGE);
+				} else {
+					benchmarkFrames(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+				}
+				break;
+			case KERNELS:
+				if (args.length != 2) {
+					System.out.println("Usage:\n" + KERNELS_USAGE);
+				} else {
+					benchmarkKernels(Integer.parseInt(args[1]));
+				}
+				break;
+			case LAYOUTS:
+				if (args.length != 3) {
+					System.out.println("Usage:\n" + LAYOUTS_USAGE);
+				} else {
+					benchmarkLayouts(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+				}
+				break;
+			case TOP:
+				if (args.length != 3) {
+					System.out.println("Usage:\n" + TOP_USAGE);
+				} else {
+					benchmarkTop(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+				}
+				break;
+			case MINHASH:
+				if (args.length != 3) {
+					System.out.println("Usage:\n" + MINHASH_USAGE);
+				} else {
+					benchmarkMinhash(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+				}
+				break;
+			case LSH:
+				if (args.length != 2) {
+					System.out.println("Usage:\n" + LSH_USAGE);
+				} else {
+					benchmarkLsh(Integer.parseInt(args[1]));
+				}
+				break;
+			case QUERY:
+				if (args.length != 5) {
+					System.out.println("Usage:\n" + QUERY_USAGE);
+				} else {
+					benchmarkQuery(
+							Integer.parseInt(args[1]),
+							Integer.parseInt(args[2]),
+							Integer.parseInt(args[3]),
+							Integer.parseInt(args[4])
+					);
+				}
+				break;
+			case WAVELETS:
+				if (args.length != 4) {
+					System.out.println("Usage:\n" + WAVELETS_USAGE);
+				} else {
+					benchmarkWavelets(
+							Integer.parseInt(args[1]),
+							Integer.parseInt(args[2]),
+							Integer.parseInt(args[3])
+					);
+				}
+				break;
+			default:
+				System.out.println("Unknown command: " + args[0]);
+				break;
+		}
+	}
+
+	private static void benchmarkDecode(final int seconds, final int iterations)
+			throws IOException, UnsupportedAudioFileException, SampleExtractionException {
+		final byte[] wav = randomWav(seconds * SAMPLE_RATE);
+		final SampleExtractor extractor = new SampleExtractor(SAMPLE_RATE);
+
+		long checksum = 0;
+		for (int i = 0; i < iterations; i++) {
+			long startTime = System.nanoTime();
+			final int[] perSample = decodePerSample(new ByteArrayInputStream(wav));
+			final long perSampleTime = System.nanoTime() - startTime;
+
+			startTime = System.nanoTime();
+			final short[] bulk = extractor.extractFromConverted(new ByteArrayInputStream(wav));
+			final long bulkTime = System.nanoTime() - startTime;
+
+			checksum += perSample[perSample.length - 1] + bulk[bulk.length - 1];
+			System.out.printf(
+					"per-sample %7.2f ms, bulk %7.2f ms%n",
+					perSampleTime / 1e6,
+					bulkTime / 1e6
+			);
+		}
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	/**
+	 * Decodes a file in-process, with the converter, and through a cache
+	 * (in a temporary directory), which misses on the first iteration only.
+	 * Then compares the samples decoded in-process with the converter's.
+	 */
+	private static void benchmarkExtract(final Path file, final int iterations)
+			throws IOException {
+		final SampleExtractor direct = new SampleExtractor(SAMPLE_RATE, true);
+		final SampleExtractor converter = new SampleExtractor(SAMPLE_RATE, false);
+		final Path cacheDirectory = Files.createTempDirectory("waveprint-pcm-cache");
+		final PcmCache cache = new PcmCache(cacheDirectory, Long.MAX_VALUE);
+		final SampleExtractor cached = new SampleExtractor(SAMPLE_RATE, true, cache);
+		try {
+			for (int i = 0; i < iterations; i++) {
+				System.out.printf(
+						"direct %s, converter %s, cached %s%n",
+						timeExtraction(direct, file),
+						timeExtraction(converter, file),
+						timeExtraction(cached, file)
+				);
+			}
+			System.out.printf("cache: %d hits, %d misses%n", cache.getHits(), cache.getMisses());
+			System.out.println(compareExtraction(direct, converter, file));
+		} finally {
+			try (final DirectoryStream<Path> entries = Files.newDirectoryStream(cacheDirectory)) {
+				for (final Path entry : entries) {
+					Files.delete(entry);
+				}
+			}
+			Files.delete(cacheDirectory);
+		}
+	}
+
+	private static String compareExtraction(
+			final SampleExtractor direct,
+			final SampleExtractor converter,
+			final Path file
+	) {
+		final short[] directSamples;
+		final short[] converterSamples;
+		try {
+			directSamples = direct.extract(file);
+			converterSamples = converter.extract(file);
+		} catch (SampleExtractionException e) {
+			return "comparison failed: " + e.getMessage();
+		}
+		final int length = Math.min(directSamples.length, converterSamples.length);
+		int maxDifference = 0;
+		double squaredDifferences = 0;
+		for (int i = 0; i < length; i++) {
+			final int difference = Math.abs(directSamples[i] - converterSamples[i]);
+			maxDifference = Math.max(maxDifference, difference);
+			squaredDifferences += (double) difference * difference;
+		}
+		return String.format(
+				"direct vs converter: %d vs %d samples, max difference %.3f%%, rms %.3f%% of full scale",
+				directSamples.length,
+				converterSamples.length,
+				100.0 * maxDifference / Short.MAX_VALUE,
+				length == 0 ? 0 : 100.0 * Math.sqrt(squaredDifferences / length) / Short.MAX_VALUE
+		);
+	}
+
+	private static String timeExtraction(final SampleExtractor extractor, final Path file) {
+		final long startTime = System.nanoTime();
+		try {
+			final int sampleCount = extractor.extract(file).length;
+			return String.format(
+					"%7.2f ms (%d samples)",
+					(System.nanoTime() - startTime) / 1e6,
+					sampleCount
+			);
+		} catch (SampleExtractionException e) {
+			return "failed: " + e.getMessage();
+		}
+	}
+
+	/**
+	 * Builds the spectrograms of a whole track, from 16bit samples and from
+	 * the same samples widened to {@code int}s.
+	 */
+	private static void benchmarkIngest(final Path file, final int iterations)
+			throws SampleExtractionException {
+		final short[] samples = new SampleExtractor(SAMPLE_RATE).extract(file);
+		final int[] wideSamples = Samples.toInts(samples);
+		System.out.printf(
+				"%d samples: %.2f MB as short[], %.2f MB as int[]%n",
+				samples.length,
+				samples.length * 2 / 1e6,
+				wideSamples.length * 4 / 1e6
+		);
+
+		final SpectrogramBuilder builder = newSpectrogramBuilder();
+		final int maxStart = samples.length - builder.getSpectrogramLengthInSamples();
+
+		double checksum = 0;
+		for (int i = 0; i < iterations; i++) {
+			long startTime = System.nanoTime();
+			for (int start = 0; start <= maxStart; start += DB_STEP) {
+				checksum += builder.getSpectrogram(samples, start)[0][0];
+			}
+			final long shortTime = System.nanoTime() - startTime;
+
+			startTime = System.nanoTime();
+			for (int start = 0; start <= maxStart; start += DB_STEP) {
+				checksum += builder.getSpectrogram(wideSamples, start)[0][0];
+			}
+			final long intTime = System.nanoTime() - startTime;
+
+			System.out.printf(
+					"short[] %7.2f ms, int[] %7.2f ms%n",
+					shortTime / 1e6,
+					intTime / 1e6
+			);
+		}
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	/**
+	 * Builds the spectrograms of all windows of a track, one by one and with
+	 * frames shared between overlapping windows.
+	 */
+	private static void benchmarkSpectrograms(
+			final int seconds,
+			final int windowStep,
+			final int iterations
+	) {
+		final short[] samples = randomSamples(seconds * SAMPLE_RATE);
+		final SpectrogramBuilder builder = newSpectrogramBuilder();
+		final int maxStart = samples.length - builder.getSpectrogramLengthInSamples();
+
+		double checksum = 0;
+		for (int i = 0; i < iterations; i++) {
+			long startTime = System.nanoTime();
+			for (int start = 0; start <= maxStart; start += windowStep) {
+				checksum += builder.getSpectrogram(samples, start)[0][0];
+			}
+			final long separateTime = System.nanoTime() - startTime;
+
+			final long startBytes = getAllocatedBytes();
+			startTime = System.nanoTime();
+			final SlidingSpectrogram sliding = new SlidingSpectrogram(builder);
+			final double[][] spectrogram =
+					new double[builder.getFrameCount()][builder.getBinCount()];
+			for (int start = 0; start <= maxStart; start += windowStep) {
+				checksum += sliding.getSpectrogram(samples, start, start, spectrogram)[0][0];
+			}
+			final long slidingTime = System.nanoTime() - startTime;
+			final long slidingBytes = getAllocatedBytes() - startBytes;
+
+			System.out.printf(
+					"separate %8.2f ms, sliding %7.2f ms (%d frames, %d KiB allocated)%n",
+					separateTime / 1e6,
+					slidingTime / 1e6,
+					sliding.getComputedFrames(),
+					slidingBytes >> 10
+			);
+		}
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	/**
+	 * Computes consecutive frames with a full FFT each (radix-2 and radix-4,
+	 * one by one and in batches) and with the incremental STFT.
+	 */
+	private static void benchmarkFrames(final int frameCount, final int iterations) {
+		final short[] samples = randomSamples(FRAME_STEP * frameCount + (1 << FRAME_LENGTH_LOG2));
+		final String[] names = {"radix-2 FFT", "radix-4 FFT", "batched radix-4 FFT", "incremental"};
+		final SpectrogramBuilder[] builders = {
+				newSpectrogramBuilder(ComplexFFTAlgorithm.RADIX2),
+				newSpectrogramBuilder(ComplexFFTAlgorithm.RADIX4),
+				null,
+				new IncrementalStftSpectrogramBuilder(
+						SPECTROGRAM_LENGTH,
+						FRAME_LENGTH_LOG2,
+						FRAME_STEP,
+						newFrequencySplitterFactory()
+				)
+		};
+
+		final double[] bins = new double[builders[0].getBinCount()];
+		final double[][] frames = new double[frameCount][builders[0].getBinCount()];
+		System.out.println("kernels: " + Kernels.get());
+		double checksum = 0;
+		for (int i = 0; i < iterations; i++) {
+			final StringBuilder line = new StringBuilder();
+			for (int b = 0; b < builders.length; b++) {
+				final long startBytes = getAllocatedBytes();
+				final long startTime = System.nanoTime();
+				if (builders[b] == null) {
+					builders[1].getFrames(samples, 0, frameCount, frames);
+					checksum += frames[frameCount - 1][0];
+				} else {
+					for (int frame = 0; frame < frameCount; frame++) {
+						builders[b].getFrame(samples, frame * FRAME_STEP, bins);
+						checksum += bins[0];
+					}
+				}
+				final long time = System.nanoTime() - startTime;
+				final long bytes = getAllocatedBytes() - startBytes;
+				line.append(String.format(
+						"%s%s %6.2f us/frame (%d B/frame)",
+						(b == 0) ? "" : ", ",
+						names[b],
+						time / 1e3 / frameCount,
+						bytes / frameCount
+				));
+			}
+			System.out.println(line);
+		}
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	/**
+	 * Runs the numeric kernels chosen for this JVM and the scalar ones over
+	 * rows as long as the spectrogram builders' batches: the butterflies of
+	 * a whole radix-4 FFT of a frame and the amplitudes of its half, and the
+	 * Haar steps of a spectrogram row.
+	 */
+	private static void benchmarkKernels(final int iterations) {
+		final NumericKernels[] kernels = {new ScalarKernels(), Kernels.get()};
+		final int batch = AbstractFftSpectrogramBuilder.BATCH_SIZE;
+		final int frameLength = 1 << FRAME_LENGTH_LOG2;
+		final int rounds = 200;
+		final Random random = new Random(0);
+		final double[][] rows = new double[2 * frameLength][batch];
+		final double[][] amplitudes = new double[frameLength][batch];
+		final double[] data = new double[SPECTROGRAM_WIDTH * rounds];
+		final double[] details = new double[data.length / 2];
+		double checksum = 0;
+		for (int i = 0; i < iterations; i++) {
+			final StringBuilder line = new StringBuilder();
+			for (int k = 0; k < kernels.length; k++) {
+				final NumericKernels kernel = kernels[k];
+				for (final double[] row : rows) {
+					for (int f = 0; f < batch; f++) {
+						row[f] = random.nextGaussian();
+					}
+				}
+
+				long startTime = System.nanoTime();
+				for (int round = 0; round < rounds; round++) {
+					// as many butterflies as a radix-4 FFT of a frame has
+					for (int b = 0; b < frameLength; b += 4) {
+						kernel.radix4Butterflies(
+								rows[b], rows[b + frameLength], rows[b + 1], rows[b + 1 + frameLength],
+								rows[b + 2], rows[b + 2 + frameLength], rows[b + 3], rows[b + 3 + frameLength],
+								0, batch,
+								0.6, -0.8, -0.28, -0.96, -0.936, 0.352
+						);
+					}
+					for (int b = 0; b < frameLength; b += 4) {
+						for (int r = b; r < b + 4; r++) {
+							final double[] row = rows[r];
+							for (int f = 0; f < batch; f++) {
+								row[f] *= 0.5;
+							}
+						}
+					}
+				}
+				final long fftTime = System.nanoTime() - startTime;
+
+				startTime = System.nanoTime();
+				for (int round = 0; round < rounds; round++) {
+					for (int r = 0; r < frameLength; r++) {
+						kernel.amplitudes(rows[r], 0, rows[r + frameLength], 0, amplitudes[r], 0, batch);
+					}
+				}
+				final long amplitudesTime = System.nanoTime() - startTime;
+
+				for (int j = 0; j < data.length; j++) {
+					data[j] = j;
+				}
+				startTime = System.nanoTime();
+				for (int round = 0; round < rounds; round++) {
+					for (int width = data.length / 2; width >= 1; width /= 2) {
+						kernel.haarStep(data, 0, 0, width, details);
+					}
+				}
+				final long haarTime = System.nanoTime() - startTime;
+
+				checksum += amplitudes[0][0] + data[0];
+				line.append(String.format(
+						"%s%s: butterflies %6.2f us, amplitudes %6.2f us, haar %6.2f us",
+						(k == 0) ? "" : "; ",
+						kernel,
+						fftTime / 1e3 / rounds,
+						amplitudesTime / 1e3 / rounds,
+						haarTime / 1e3 / rounds
+				));
+			}
+			System.out.println(line);
+		}
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	/**
+	 * Runs the wavelet transform and the top wavelet selection over
+	 * spectrograms held as arrays of frames, the way they used to be, as
+	 * flat {@link Spectrogram}s and as {@link FloatSpectrogram}s.
+	 */
+	private static void benchmarkLayouts(final int spectrogramCount, final int iterations) {
+		final int rowsLog2 = Integer.numberOfTrailingZeros(SPECTROGRAM_LENGTH);
+		final int colsLog2 = Integer.numberOfTrailingZeros(SPECTROGRAM_WIDTH);
+		final String[] names = {"standard", "nonstandard"};
+		final WaveletTransform[] transforms = {
+				new HVStandardWaveletTransform(),
+				new HVNonstandardWaveletTransform()
+		};
+		final TopWaveletSelector selector = new TopWaveletSelector(TOP_WAVELETS);
+		final Random random = new Random(0);
+		final double[][][] sources = new double[spectrogramCount][SPECTROGRAM_LENGTH][SPECTROGRAM_WIDTH];
+		for (final double[][] source : sources) {
+			for (final double[] frame : source) {
+				for (int bin = 0; bin < frame.length; bin++) {
+					frame[bin] = random.nextDouble() * 1e5;
+				}
+			}
+		}
+		final double[][] nested = new double[SPECTROGRAM_LENGTH][SPECTROGRAM_WIDTH];
+		final Spectrogram flat = new Spectrogram(SPECTROGRAM_LENGTH, SPECTROGRAM_WIDTH);
+		final FloatSpectrogram flatFloat = new FloatSpectrogram(SPECTROGRAM_LENGTH, SPECTROGRAM_WIDTH);
+		long checksum = 0;
+		long floatChecksum = 0;
+		for (int i = 0; i < iterations; i++) {
+			final StringBuilder line = new StringBuilder();
+			long topTime = 0;
+			long flatTopTime = 0;
+			long floatTopTime = 0;
+			for (int t = 0; t < transforms.length; t++) {
+				long waveletTime = 0;
+				for (final double[][] source : sources) {
+					for (int frame = 0; frame < SPECTROGRAM_LENGTH; frame++) {
+						System.arraycopy(source[frame], 0, nested[frame], 0, SPECTROGRAM_WIDTH);
+					}
+					final long startTime = System.nanoTime();
+					transformNested(nested, rowsLog2, colsLog2, t == 0);
+					final long waveletEnd = System.nanoTime();
+					checksum += selectTopNested(nested)[0];
+					topTime += System.nanoTime() - waveletEnd;
+					waveletTime += waveletEnd - startTime;
+				}
+				long flatWaveletTime = 0;
+				for (final double[][] source : sources) {
+					for (int frame = 0; frame < SPECTROGRAM_LENGTH; frame++) {
+						flat.setFrame(frame, source[frame]);
+					}
+					final long startTime = System.nanoTime();
+					transforms[t].transform(flat, rowsLog2, colsLog2);
+					final long waveletEnd = System.nanoTime();
+					checksum -= selector.apply(flat)[0];
+					flatTopTime += System.nanoTime() - waveletEnd;
+					flatWaveletTime += waveletEnd - startTime;
+				}
+				long floatWaveletTime = 0;
+				for (final double[][] source : sources) {
+					for (int frame = 0; frame < SPECTROGRAM_LENGTH; frame++) {
+						flatFloat.setFrame(frame, source[frame]);
+					}
+					final long startTime = System.nanoTime();
+					transforms[t].transform(flatFloat, rowsLog2, colsLog2);
+					final long waveletEnd = System.nanoTime();
+					floatChecksum += selector.apply(flatFloat)[0];
+					floatTopTime += System.nanoTime() - waveletEnd;
+					floatWaveletTime += waveletEnd - startTime;
+				}
+				line.append(String.format(
+						"%s wavelets %6.2f us (double[][]) / %6.2f us (flat) / %6.2f us (float), ",
+						names[t],
+						waveletTime / 1e3 / spectrogramCount,
+						flatWaveletTime / 1e3 / spectrogramCount,
+						floatWaveletTime / 1e3 / spectrogramCount
+				));
+			}
+			line.append(String.format(
+					"top %6.2f us / %6.2f us / %6.2f us",
+					topTime / 1e3 / spectrogramCount / transforms.length,
+					flatTopTime / 1e3 / spectrogramCount / transforms.length,
+					floatTopTime / 1e3 / spectrogramCount / transforms.length
+			));
+			System.out.println(line);
+		}
+		// the layouts must agree, so this is 0
+		System.out.println("(checksum " + checksum + ", float " + floatChecksum + ")");
+	}
+
+	/**
+	 * Runs the spectrogram and standard wavelet transform stages of
+	 * fingerprinting over windows of a track, transforming each window's
+	 * spectrogram and with a {@link SlidingWaveletTransform}.
+	 */
+	private static void benchmarkWavelets(
+			final int seconds,
+			final int windowStep,
+			final int iterations
+	) {
+		final short[] samples = randomSamples(seconds * SAMPLE_RATE);
+		final SpectrogramBuilder builder = newSpectrogramBuilder();
+		final HVStandardWaveletTransform transform = new HVStandardWaveletTransform();
+		final int rowsLog2 = Integer.numberOfTrailingZeros(SPECTROGRAM_LENGTH);
+		final int colsLog2 = Integer.numberOfTrailingZeros(SPECTROGRAM_WIDTH);
+		final int maxStart = samples.length - builder.getSpectrogramLengthInSamples();
+		final Spectrogram spectrogram = new Spectrogram(SPECTROGRAM_LENGTH, SPECTROGRAM_WIDTH);
+
+		long checksum = 0;
+		for (int i = 0; i < iterations; i++) {
+			long startTime = System.nanoTime();
+			final SlidingSpectrogram spectrograms = new SlidingSpectrogram(builder);
+			for (int start = 0; start <= maxStart; start += windowStep) {
+				spectrograms.getSpectrogram(samples, start, start, spectrogram);
+				transform.transform(spectrogram, rowsLog2, colsLog2);
+				checksum += Double.doubleToRawLongBits(spectrogram.get(0, 0));
+			}
+			final long separateTime = System.nanoTime() - startTime;
+
+			startTime = System.nanoTime();
+			final SlidingWaveletTransform wavelets =
+					new SlidingWaveletTransform(builder, transform, rowsLog2, colsLog2);
+			for (int start = 0; start <= maxStart; start += windowStep) {
+				wavelets.transform(samples, start, start, spectrogram);
+				checksum -= Double.doubleToRawLongBits(spectrogram.get(0, 0));
+			}
+			final long slidingTime = System.nanoTime() - startTime;
+
+			System.out.printf(
+					"per window %8.2f ms, sliding %8.2f ms (%d rows transformed)%n",
+					separateTime / 1e6,
+					slidingTime / 1e6,
+					wavelets.getTransformedRows()
+			);
+		}
+		// the results must agree, so this is 0
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	/**
+	 * Runs the top wavelet selection over wavelet decompositions of random
+	 * spectrograms, with a few counts around the example one, and compares
+	 * it with sorting all coefficients, as the selector used to.
+	 */
+	private static void benchmarkTop(final int decompositionCount, final int iterations) {
+		final int[] counts = {50, 100, TOP_WAVELETS, 400, 800};
+		final WaveletTransform transform = new HVStandardWaveletTransform();
+		final Random random = new Random(0);
+		final Spectrogram[] decompositions = new Spectrogram[decompositionCount];
+		for (int d = 0; d < decompositionCount; d++) {
+			decompositions[d] = new Spectrogram(SPECTROGRAM_LENGTH, SPECTROGRAM_WIDTH);
+			final double[] data = decompositions[d].getData();
+			for (int i = 0; i < data.length; i++) {
+				data[i] = random.nextDouble() * 1e5;
+			}
+			transform.transform(
+					decompositions[d],
+					Integer.numberOfTrailingZeros(SPECTROGRAM_LENGTH),
+					Integer.numberOfTrailingZeros(SPECTROGRAM_WIDTH)
+			);
+		}
+		long checksum = 0;
+		for (int i = 0; i < iterations; i++) {
+			final StringBuilder line = new StringBuilder();
+			for (final int count : counts) {
+				final TopWaveletSelector selector = new TopWaveletSelector(count);
+				long startBytes = getAllocatedBytes();
+				long startTime = System.nanoTime();
+				for (final Spectrogram decomposition : decompositions) {
+					checksum += selectTopSorted(decomposition, count)[count - 1];
+				}
+				final long sortTime = System.nanoTime() - startTime;
+				final long sortBytes = getAllocatedBytes() - startBytes;
+
+				startBytes = getAllocatedBytes();
+				startTime = System.nanoTime();
+				for (final Spectrogram decomposition : decompositions) {
+					checksum -= selector.apply(decomposition)[count - 1];
+				}
+				final long heapTime = System.nanoTime() - startTime;
+				final long heapBytes = getAllocatedBytes() - startBytes;
+
+				line.append(String.format(
+						"%stop %d: %7.2f us (%d KiB) sorted / %6.2f us (%d B) heap",
+						(line.length() == 0) ? "" : ", ",
+						count,
+						sortTime / 1e3 / decompositionCount,
+						sortBytes / decompositionCount >> 10,
+						heapTime / 1e3 / decompositionCount,
+						heapBytes / decompositionCount
+				));
+			}
+			System.out.println(line);
+		}
+		// the selections must agree, so this is 0
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	/**
+	 * Hashes random sets of top wavelet positions: with the permutations
+	 * applied one by one, as {@link MinHasher} used to, with the table into a
+	 * new array, into a reused buffer and in one batch, and with
+	 * {@link OnePermutationMinHasher} in one batch.
+	 */
+	private static void benchmarkMinhash(final int setCount, final int iterations) {
+		final int positionCount = SPECTROGRAM_LENGTH * SPECTROGRAM_WIDTH;
+		final List<Permutation> permutations =
+				MinhashTool.generatePermutations(MINHASH_LENGTH, positionCount);
+		final MinHasher hasher = new PermutationMinHasher(permutations);
+		final MinHasher onePermutation =
+				new OnePermutationMinHasher(MINHASH_LENGTH, positionCount, 0);
+		final Random random = new Random(0);
+		final int[] bitPositions = new int[setCount * TOP_WAVELETS];
+		for (int i = 0; i < bitPositions.length; i++) {
+			bitPositions[i] = random.nextInt(positionCount);
+		}
+		final int[][] sets = new int[setCount][];
+		for (int set = 0; set < setCount; set++) {
+			sets[set] = Arrays.copyOfRange(bitPositions, set * TOP_WAVELETS, (set + 1) * TOP_WAVELETS);
+		}
+		final int[] hashes = new int[setCount * MINHASH_LENGTH];
+
+		long checksum = 0;
+		for (int i = 0; i < iterations; i++) {
+			long startBytes = getAllocatedBytes();
+			long startTime = System.nanoTime();
+			for (final int[] set : sets) {
+				for (final Permutation permutation : permutations) {
+					final int[] permuted = permutation.apply(set);
+					int min = permuted[0];
+					for (int j = 1; j < permuted.length; j++) {
+						if (permuted[j] < min) {
+							min = permuted[j];
+						}
+					}
+					checksum += min;
+				}
+			}
+			final long permutedTime = System.nanoTime() - startTime;
+			final long permutedBytes = getAllocatedBytes() - startBytes;
+
+			startBytes = getAllocatedBytes();
+			startTime = System.nanoTime();
+			for (final int[] set : sets) {
+				for (final int min : hasher.hash(set)) {
+					checksum -= min;
+				}
+			}
+			final long tableTime = System.nanoTime() - startTime;
+			final long tableBytes = getAllocatedBytes() - startBytes;
+
+			startBytes = getAllocatedBytes();
+			startTime = System.nanoTime();
+			for (int set = 0; set < setCount; set++) {
+				hasher.hash(bitPositions, set * TOP_WAVELETS, TOP_WAVELETS, hashes, set * MINHASH_LENGTH);
+			}
+			final long bufferTime = System.nanoTime() - startTime;
+			final long bufferBytes = getAllocatedBytes() - startBytes;
+			for (final int min : hashes) {
+				checksum += min;
+			}
+			for (final int[] set : sets) {
+				for (final int min : hasher.hash(set)) {
+					checksum -= min;
+				}
+			}
+
+			startBytes = getAllocatedBytes();
+			startTime = System.nanoTime();
+			hasher.hashAll(bitPositions, TOP_WAVELETS, setCount, hashes);
+			final long batchTime = System.nanoTime() - startTime;
+			final long batchBytes = getAllocatedBytes() - startBytes;
+			for (final int min : hashes) {
+				checksum += min;
+			}
+			for (final int[] set : sets) {
+				for (final int min : hasher.hash(set)) {
+					checksum -= min;
+				}
+			}
+
+			startBytes = getAllocatedBytes();
+			startTime = System.nanoTime();
+			onePermutation.hashAll(bitPositions, TOP_WAVELETS, setCount, hashes);
+			final long onePermutationTime = System.nanoTime() - startTime;
+			final long onePermutationBytes = getAllocatedBytes() - startBytes;
+			for (int set = 0; set < setCount; set++) {
+				// a different family, so only check that the batch is the same
+				final int[] hash = onePermutation.hash(sets[set]);
+				for (int j = 0; j < MINHASH_LENGTH; j++) {
+					checksum += hash[j] - hashes[set * MINHASH_LENGTH + j];
+				}
+			}
+
+			System.out.printf(
+					"per permutation %6.2f us (%d B), table %5.2f us (%d B), buffer %5.2f us (%d B), " +
+							"batch %5.2f us (%d B), one permutation batch %5.2f us (%d B) per set%n",
+					permutedTime / 1e3 / setCount, permutedBytes / setCount,
+					tableTime / 1e3 / setCount, tableBytes / setCount,
+					bufferTime / 1e3 / setCount, bufferBytes / setCount,
+					batchTime / 1e3 / setCount, batchBytes / setCount,
+					onePermutationTime / 1e3 / setCount, onePermutationBytes / setCount
+			);
+		}
+		// all three must agree, so this is 0
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	/**
+	 * Estimates the LSH recall of the MinHash families: the fraction of
+	 * pairs of sets of top wavelet positions with a given Jaccard similarity
+	 * whose signatures agree in enough LSH bins for the pair to be a
+	 * candidate match, as in the database.
+	 */
+	private static void benchmarkLsh(final int pairs) {
+		final int positionCount = SPECTROGRAM_LENGTH * SPECTROGRAM_WIDTH;
+		final MinHasher[] hashers = {
+				new SeededMinHasher(MINHASH_LENGTH, positionCount, 0),
+				new OnePermutationMinHasher(MINHASH_LENGTH, positionCount, 0)
+		};
+		final String[] names = {"classic", "one permutation"};
+		final Random random = new Random(0);
+		final int[] positions = new int[positionCount];
+		for (final double similarity : new double[]{0.3, 0.5, 0.7, 0.8, 0.85, 0.9, 0.95}) {
+			// |A & B| / |A | B| for two sets of TOP_WAVELETS
+			final int shared = (int) Math.round(2 * TOP_WAVELETS * similarity / (1 + similarity));
+			final int unionLength = 2 * TOP_WAVELETS - shared;
+			final int[] candidates = new int[hashers.length];
+			final double[] agreement = new double[hashers.length];
+			for (int pair = 0; pair < pairs; pair++) {
+				for (int i = 0; i < positionCount; i++) {
+					positions[i] = i;
+				}
+				for (int i = 0; i < unionLength; i++) {
+					final int k = i + random.nextInt(positionCount - i);
+					final int tmp = positions[i];
+					positions[i] = positions[k];
+					positions[k] = tmp;
+				}
+				final int[] a = Arrays.copyOfRange(positions, 0, TOP_WAVELETS);
+				final int[] b = Arrays.copyOfRange(positions, TOP_WAVELETS - shared, unionLength);
+				for (int h = 0; h < hashers.length; h++) {
+					final int[] hashA = hashers[h].hash(a);
+					final int[] hashB = hashers[h].hash(b);
+					int votes = 0;
+					int equal = 0;
+					final int binLength = MINHASH_LENGTH / LSH_BIN_COUNT;
+					for (int bin = 0; bin < LSH_BIN_COUNT; bin++) {
+						boolean binEqual = true;
+						for (int j = bin * binLength; j < (bin + 1) * binLength; j++) {
+							if (hashA[j] == hashB[j]) {
+								equal++;
+							} else {
+								binEqual = false;
+							}
+						}
+						if (binEqual) {
+							votes++;
+						}
+					}
+					if (votes >= LSH_VOTE_THRESHOLD) {
+						candidates[h]++;
+					}
+					agreement[h] += (double) equal / MINHASH_LENGTH / pairs;
+				}
+			}
+			final StringBuilder line = new StringBuilder(
+					String.format("similarity %.3f:", (double) shared / unionLength));
+			for (int h = 0; h < hashers.length; h++) {
+				line.append(String.format(
+						" %s agreement %.3f, recall %.4f;",
+						names[h], agreement[h], (double) candidates[h] / pairs
+				));
+			}
+			System.out.println(line);
+		}
+	}
+
+	/**
+	 * Times {@link DatabaseSource#getLshMatches(List)} of
+	 * {@link FileBasedDatabase}, {@link InMemoryLshDatabase} and
+	 * {@link IndexSegment} on a temporary database of signatures of random
+	 * sets of top wavelet positions. Each probe is the signature of a stored
+	 * set with a tenth of its positions replaced.
+	 */
+	private static void benchmarkQuery(
+			final int trackCount,
+			final int fingerprintsPerTrack,
+			final int probeCount,
+			final int iterations
+	) throws Exception {
+		final int positionCount = SPECTROGRAM_LENGTH * SPECTROGRAM_WIDTH;
+		final MinHasher hasher = new SeededMinHasher(MINHASH_LENGTH, positionCount, 0);
+		final Random random = new Random(0);
+		final Path directory = Files.createTempDirectory("waveprint-query-benchmark");
+		final String database = directory.resolve("db").toString();
+		try {
+			final Properties props = new Properties();
+			props.setProperty(WaveprintParameters.SPECTROGRAM_LENGTH.getStringKey(), String.valueOf(SPECTROGRAM_LENGTH));
+			props.setProperty(WaveprintParameters.SPECTROGRAM_WIDTH.getStringKey(), String.valueOf(SPECTROGRAM_WIDTH));
+			props.setProperty(WaveprintParameters.MINHASH_FINGERPRINT_LENGTH.getStringKey(), String.valueOf(MINHASH_LENGTH));
+			props.setProperty(WaveprintParameters.LSH_BIN_COUNT.getStringKey(), String.valueOf(LSH_BIN_COUNT));
+			props.setProperty(WaveprintParameters.LSH_VOTE_THRESHOLD.getStringKey(), String.valueOf(LSH_VOTE_THRESHOLD));
+			new FileBasedDatabaseSetup(database).setUp(new WaveprintConfig(props));
+
+			final List<int[]> probes = new ArrayList<>(probeCount);
+			final int probeEvery = Math.max(1, trackCount * fingerprintsPerTrack / probeCount);
+			long startTime = System.nanoTime();
+			try (final FileBasedDatabase db = new FileBasedDatabase(database)) {
+				int stored = 0;
+				for (int track = 0; track < trackCount; track++) {
+					final List<int[]> fingerprints = new ArrayList<>(fingerprintsPerTrack);
+					for (int i = 0; i < fingerprintsPerTrack; i++) {
+						final int[] set = randomPositions(random, positionCount, TOP_WAVELETS);
+						fingerprints.add(hasher.hash(set));
+						if (stored++ % probeEvery == 0 && probes.size() < probeCount) {
+							for (int j = 0; j < TOP_WAVELETS / 10; j++) {
+								set[random.nextInt(TOP_WAVELETS)] = random.nextInt(positionCount);
+							}
+							probes.add(hasher.hash(set));
+						}
+					}
+					db.addTrack("track" + track, fingerprints);
+				}
+			}
+			System.out.format(
+					"Stored %d fingerprints in %.1f s%n",
+					trackCount * fingerprintsPerTrack, (System.nanoTime() - startTime) / 1e9
+			);
+
+			try (final FileBasedDatabase db = new FileBasedDatabase(database)) {
+				for (int iteration = 0; iteration < iterations; iteration++) {
+					startTime = System.nanoTime();
+					final int matches = countMatches(db.getLshMatches(probes));
+					System.out.format(
+							"sql: %d probes in %.2f ms, %d matches%n",
+							probes.size(), (System.nanoTime() - startTime) / 1e6, matches
+					);
+				}
+			}
+
+			startTime = System.nanoTime();
+			final FileBasedDatabase fileBased = new FileBasedDatabase(database);
+			System.out.format("opened the database in %.1f ms%n", (System.nanoTime() - startTime) / 1e6);
+			startTime = System.nanoTime();
+			try (final InMemoryLshDatabase db = new InMemoryLshDatabase(fileBased)) {
+				System.out.format("in-memory: loaded in %.1f ms%n", (System.nanoTime() - startTime) / 1e6);
+				for (int iteration = 0; iteration < iterations; iteration++) {
+					startTime = System.nanoTime();
+					final int matches = countMatches(db.getLshMatches(probes));
+					System.out.format(
+							"in-memory: %d probes in %.2f ms, %d matches%n",
+							probes.size(), (System.nanoTime() - startTime) / 1e6, matches
+					);
+				}
+			}
+
+			final Path segmentFile = directory.resolve("index.segment");
+			startTime = System.nanoTime();
+			try (final FileBasedDatabase db = new FileBasedDatabase(database)) {
+				IndexSegmentExporter.export(db, segmentFile);
+			}
+			System.out.format(
+					"segment: exported %d bytes in %.1f s%n",
+					Files.size(segmentFile), (System.nanoTime() - startTime) / 1e9
+			);
+			startTime = System.nanoTime();
+			try (final IndexSegment segment = new IndexSegment(segmentFile)) {
+				System.out.format("segment: opened in %.2f ms%n", (System.nanoTime() - startTime) / 1e6);
+				for (int iteration = 0; iteration < iterations; iteration++) {
+					startTime = System.nanoTime();
+					final int matches = countMatches(segment.getLshMatches(probes));
+					System.out.format(
+							"segment: %d probes in %.2f ms, %d matches%n",
+							probes.size(), (System.nanoTime() - startTime) / 1e6, matches
+					);
+				}
+			}
+		} finally {
+			try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+				for (final Path file : files) {
+					if (Files.isDirectory(file)) {
+						try (final DirectoryStream<Path> nested = Files.newDirectoryStream(file)) {
+							for (final Path nestedFile : nested) {
+								Files.delete(nestedFile);
+							}
+						}
+					}
+					Files.delete(file);
+				}
+			}
+			Files.delete(directory);
+		}
+	}
+
+	private static int[] randomPositions(final Random random, final int positionCount, final int length) {
+		final int[] positions = new int[length];
+		for (int i = 0; i < length; i++) {
+			positions[i] = random.nextInt(positionCount);
+		}
+		return positions;
+	}
+
+	private static int countMatches(final List<Map<Long, Pair<Long, Integer>>> matches) {
+		int count = 0;
+		for (final Map<Long, Pair<Long, Integer>> fpMatches : matches) {
+			count += fpMatches.size();
+		}
+		return count;
+	}
+
+	/**
+	 * The original {@link TopWaveletSelector}: sorts all coefficients.
+	 */
+	private static int[] selectTopSorted(final Spectrogram waveletDecomposition, final int count) {
+		final double[] coefficients = waveletDecomposition.getData();
+		final List<Pair<Double, Integer>> waveletCoefficients =
+				new ArrayList<>(coefficients.length);
+		for (int i = 0; i < coefficients.length; i++) {
+			waveletCoefficients.add(Pair.of(Math.abs(coefficients[i]), i));
+		}
+		Collections.sort(
+				waveletCoefficients,
+				Pair.lexComparator(
+						Collections.reverseOrder(Comparators.naturalFor(Double.class)),
+						Comparators.naturalFor(Integer.class)
+				)
+		);
+		final int[] result = new int[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = waveletCoefficients.get(i).getSecond();
+		}
+		return result;
+	}
+
+	/**
+	 * The original {@link HVStandardWaveletTransform} and
+	 * {@link HVNonstandardWaveletTransform} over an array of rows.
+	 */
+	private static void transformNested(
+			final double[][] image,
+			int rowsLog2,
+			int colsLog2,
+			final boolean standard
+	) {
+		while (rowsLog2 > 0 || colsLog2 > 0) {
+			if (colsLog2 > 0) {
+				for (int row = 0; row < 1 << rowsLog2; row++) {
+					decomposeNestedRow(image[row], colsLog2);
+				}
+				colsLog2 -= 1;
+				if (standard) {
+					continue;
+				}
+			}
+			if (rowsLog2 > 0) {
+				for (int col = 0; col < 1 << colsLog2; col++) {
+					decomposeNestedCol(image, rowsLog2, col);
+				}
+				rowsLog2 -= 1;
+			}
+		}
+	}
+
+	private static void decomposeNestedRow(final double[] row, final int colsLog2) {
+		final int halfCols = 1 << (colsLog2 - 1);
+		final double[] details = new double[halfCols];
+		for (int i = 0; i < halfCols; i++) {
+			row[i] = (row[i * 2] + row[i * 2 + 1]) * 0.5;
+			details[i] = row[i] - row[i * 2 + 1];
+		}
+		System.arraycopy(details, 0, row, halfCols, halfCols);
+	}
+
+	private static void decomposeNestedCol(final double[][] image, final int rowsLog2, final int col) {
+		final int halfRows = 1 << (rowsLog2 - 1);
+		final double[] details = new double[halfRows];
+		for (int i = 0; i < halfRows; i++) {
+			image[i][col] = (image[i * 2][col] + image[i * 2 + 1][col]) * 0.5;
+			details[i] = image[i][col] - image[i * 2 + 1][col];
+		}
+		for (int i = 0; i < halfRows; i++) {
+			image[halfRows + i][col] = details[i];
+		}
+	}
+
+	/**
+	 * The original {@link TopWaveletSelector} over an array of rows.
+	 */
+	private static int[] selectTopNested(final double[][] waveletDecomposition) {
+		final int rowLength = waveletDecomposition[0].length;
+		final List<Pair<Double, Integer>> waveletCoefficients =
+				new ArrayList<>(waveletDecomposition.length * rowLength);
+		for (int i = 0; i < waveletDecomposition.length; i++) {
+			final double[] freqRow = waveletDecomposition[i];
+			for (int j = 0; j < rowLength; j++) {
+				waveletCoefficients.add(Pair.of(Math.abs(freqRow[j]), i * rowLength + j));
+			}
+		}
+		Collections.sort(
+				waveletCoefficients,
+				Pair.lexComparator(
+						Collections.reverseOrder(Comparators.naturalFor(Double.class)),
+						Comparators.naturalFor(Integer.class)
+				)
+		);
+		final int[] result = new int[TOP_WAVELETS];
+		for (int i = 0; i < TOP_WAVELETS; i++) {
+			result[i] = waveletCoefficients.get(i).getSecond();
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the amount of memory allocated by the current thread so far, or
+	 * -1 if the JVM can't tell.
+	 */
+	private static long getAllocatedBytes() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	private static short[] randomSamples(final int length) {
+		final short[] samples = new short[length];
+		final Random random = new Random(0);
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] = (short) random.nextInt(1 << 16);
+		}
+		return samples;
+	}
+
+	private static LogarithmicFrequencySplitter.Factory newFrequencySplitterFactory() {
+		return new LogarithmicFrequencySplitter.Factory(
+				SAMPLE_RATE,
+				SPECTROGRAM_WIDTH,
+				LOWEST_FREQUENCY,
+				HIGHEST_FREQUENCY
+		);
+	}
+
+	private static SpectrogramBuilder newSpectrogramBuilder() {
+		return newSpectrogramBuilder(ComplexFFTAlgorithm.RADIX2);
+	}
+
+	private static SpectrogramBuilder newSpectrogramBuilder(final ComplexFFTFactory fftFactory) {
+		return new SimpleFftSpectrogramBuilder(
+				SPECTROGRAM_LENGTH,
+				FRAME_LENGTH_LOG2,
+				FRAME_STEP,
+				fftFactory,
+				newFrequencySplitterFactory()
+		);
+	}
+
+	private static byte[] randomWav(final int sampleCount) throws IOException {
+		final byte[] pcm = new byte[sampleCount * 2];
+		new Random(0).nextBytes(pcm);
+		final AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+		final ByteArrayOutputStream wav = new ByteArrayOutputStream(pcm.length + 64);
+		AudioSystem.write(
+				new AudioInputStream(new ByteArrayInputStream(pcm), format, sampleCount),
+				AudioFileFormat.Type.WAVE,
+				wav
+		);
+		return wav.toByteArray();
+	}
+
+	/**
+	 * The original decoding loop of
+	 * {@link SampleExtractor#extractFromConverted(InputStream)}, a sample at
+	 * a time.
+	 */
+	private static int[] decodePerSample(final InputStream wav)
+			throws IOException, UnsupportedAudioFileException {
+		try (
+				final InputStream bufferedStream = new BufferedInputStream(wav);
+				final AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(bufferedStream)
+		) {
+			final IntArrayBuilder samples =
+					new IntArrayBuilder((int) audioInputStream.getFrameLength());
+			final byte[] buffer = new byte[2];
+			while (audioInputStream.read(buffer) != -1) {
+				samples.append((((int) buffer[0]) & 0xff) | (((int) buffer[1]) << 8));
+			}
+			return samples.toIntArray();
+		}
+	}
+
+}
@@ -7,11 +7,14 @@ import org.shoushitsu.waveprint.db.NoDataException;
 import org.shoushitsu.waveprint.db.WaveprintParameters;
 import org.shoushitsu.waveprint.db.hsqldb.FileBasedDatabase;
 import org.shoushitsu.waveprint.db.hsqldb.FileBasedDatabaseSetup;
+import org.shoushitsu.waveprint.db.hsqldb.IndexSegmentExporter;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.SecureRandom;
 import java.util.List;
 import java.util.Properties;
 
@@ -26,6 +29,18 @@ public class DatabaseTool {
 			DBSETUP
 	);
 
+	public static final String MIGRATE = "migrate";
+	private static final String MIGRATE_USAGE = String.format(
+			"\t%s <database location>",
+			MIGRATE
+	);
+
+	public static final String EXPORT_SEGMENT = "export-segment";
+	private static final String EXPORT_SEGMENT_USAGE = String.format(
+			"\t%s <database location> <segment file>",
+			EXPORT_SEGMENT
+	);
+
 	public static void setup(final String path, final WaveprintConfig config) {
 		try {
 			new FileBasedDatabaseSetup(path).setUp(config);
@@ -34,6 +49,22 @@ public class DatabaseTool {
 		}
 	}
 
+	/**
+	 * Adds a random seed to the settings of a database that uses a seeded
+	 * MinHash family but doesn't name the seed.
+	 */
+	private static void pickMinhashSeed(final Properties props) {
+		final String seedKey = WaveprintParameters.MINHASH_SEED.getStringKey();
+		final String family = props.getProperty(WaveprintParameters.MINHASH_FAMILY.getStringKey());
+		final boolean seeded = WaveprintConfig.MINHASH_FAMILY_SEEDED.equals(family) ||
+				WaveprintConfig.MINHASH_FAMILY_ONE_PERMUTATION.equals(family);
+		if (seeded && props.getProperty(seedKey) == null) {
+			final long seed = new SecureRandom().nextLong();
+			props.setProperty(seedKey, String.valueOf(seed));
+			System.out.format("Picked %s=%d%n", seedKey, seed);
+		}
+	}
+
 	public static Pair<Integer, Integer> getMinhashParams(final String path) throws DataAccessException, NoDataException {
 		try (final DatabaseSource ds = new FileBasedDatabase(path)) {
 			final Integer minhashLength = Integer.valueOf(
@@ -60,10 +91,39 @@ public class DatabaseTool {
 		}
 	}
 
+	public static void migrate(final String path) {
+		try {
+			if (new FileBasedDatabaseSetup(path).migratePermutations()) {
+				System.out.println("Converted the permutations to the binary layout");
+			} else {
+				System.out.println("Nothing to convert");
+			}
+		} catch (DataAccessException | NoDataException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public static void exportSegment(final String path, final Path segment) {
+		try (final FileBasedDatabase db = new FileBasedDatabase(path)) {
+			final long startTime = System.currentTimeMillis();
+			IndexSegmentExporter.export(db, segment);
+			System.out.format(
+					"Exported to %s (%d bytes) in %d ms%n",
+					segment,
+					Files.size(segment),
+					System.currentTimeMillis() - startTime
+			);
+		} catch (DataAccessException | NoDataException | IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	public static void main(final String[] args) {
 		if (args.length == 0) {
 			System.out.println("Usage:");
 			System.out.println(DBSETUP_USAGE);
+			System.out.println(MIGRATE_USAGE);
+			System.out.println(EXPORT_SEGMENT_USAGE);
 			return;
 		}
 		switch (args[0]) {
@@ -85,9 +145,32 @@ public class DatabaseTool {
 						e.printStackTrace();
 						return;
 					}
+					pickMinhashSeed(props);
 					setup(args[1], new WaveprintConfig(props));
 				}
 				break;
+			case MIGRATE:
+				if (args.length != 2) {
+					System.out.format(
+							"Wrong number of arguments: expected 2, got %d%n" ,
+							args.length
+					);
+					System.out.println("Usage:\n" + MIGRATE_USAGE);
+				} else {
+					migrate(args[1]);
+				}
+				break;
+			case EXPORT_SEGMENT:
+				if (args.length != 3) {
+					System.out.format(
+							"Wrong number of arguments: expected 3, got %d%n" ,
+							args.length
+					);
+					System.out.println("Usage:\n" + EXPORT_SEGMENT_USAGE);
+				} else {
+					exportSegment(args[1], Paths.get(args[2]));
+				}
+				break;
 			default:
 				System.out.println("Unknown command: " + args[0]);
 				break;
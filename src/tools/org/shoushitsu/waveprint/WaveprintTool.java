@@ -2,12 +2,13 @@ package org.shoushitsu.waveprint;
 
 import msyu.util.collect.Pair;
 import org.shoushitsu.waveprint.db.DataAccessException;
+import org.shoushitsu.waveprint.db.Database;
+import org.shoushitsu.waveprint.db.DatabaseSource;
 import org.shoushitsu.waveprint.db.NoDataException;
 import org.shoushitsu.waveprint.db.hsqldb.FileBasedDatabase;
+import org.shoushitsu.waveprint.db.hsqldb.InMemoryLshDatabase;
+import org.shoushitsu.waveprint.db.segment.IndexSegment;
 import org.shoushitsu.waveprint.exceptions.sampleextractor.SampleExtractionException;
-import org.shoushitsu.waveprint.spectrogram.LogarithmicFrequencySplitter;
-import org.shoushitsu.waveprint.spectrogram.SimpleFftSpectrogramBuilder;
-import org.shoushitsu.waveprint.wavelet.HVStandardWaveletTransform;
 
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
@@ -32,22 +33,60 @@ public class WaveprintTool {
 
 	public static final String FIND = "find";
 	private static final String FIND_USAGE = String.format(
-			"\t%s <db location> <file to search for>...",
+			"\t%s <db location or index segment file> <file to search for>...",
 			FIND
 	);
 
+	/**
+	 * If set, decoded tracks are cached in this directory.
+	 */
+	public static final String PCM_CACHE_DIR_PROPERTY = "waveprint.pcm-cache.dir";
+
+	/**
+	 * The size bound of the decoded track cache, in megabytes.
+	 */
+	public static final String PCM_CACHE_SIZE_PROPERTY = "waveprint.pcm-cache.size-mb";
+
+	private static final long DEFAULT_PCM_CACHE_SIZE_MB = 4096;
+
+	/**
+	 * If {@code true}, the LSH bins and the fingerprints are loaded into
+	 * memory when the database is opened, and queried there.
+	 */
+	public static final String IN_MEMORY_LSH_PROPERTY = "waveprint.lsh.in-memory";
+
+	private static PcmCache ourPcmCache;
+
 	public static void main(final String[] args) throws IOException {
 		if (args.length < 3) {
 			System.out.println("Usage:");
 			System.out.println(ADD_USAGE);
 			System.out.println(FIND_USAGE);
+			System.out.printf(
+					"Set -D%s=<directory> [-D%s=<megabytes>] to cache decoded tracks%n",
+					PCM_CACHE_DIR_PROPERTY,
+					PCM_CACHE_SIZE_PROPERTY
+			);
+			System.out.printf(
+					"Set -D%s=true to query the LSH bins in memory%n",
+					IN_MEMORY_LSH_PROPERTY
+			);
+		}
+
+		final String cacheDir = System.getProperty(PCM_CACHE_DIR_PROPERTY);
+		if (cacheDir != null) {
+			ourPcmCache = new PcmCache(
+					Paths.get(cacheDir),
+					Long.getLong(PCM_CACHE_SIZE_PROPERTY, DEFAULT_PCM_CACHE_SIZE_MB) << 20
+			);
 		}
 
 		final String dbLocation = args[1];
 		switch (args[0]) {
 			case ADD:
 //				final ExecutorService executor = Executors.newFixedThreadPool(1);
-				try (final FileBasedDatabase db = new FileBasedDatabase(dbLocation)) {
+				try (final Database db = openDatabase(dbLocation)) {
+					final WaveprintEngine engine = new WaveprintEngine(db, ourPcmCache);
 					for (int i = 2; i < args.length; i++) {
 						final String root = args[i];
 						Files.walkFileTree(
@@ -61,8 +100,8 @@ public class WaveprintTool {
 //											public void run() {
 												try {
 													System.out.format("%4d Adding: %s\n", counter.incrementAndGet(), file);
-													addToDatabase(db, file);
-												} catch (DataAccessException | NoDataException | SampleExtractionException e) {
+													addToDatabase(engine, file);
+												} catch (DataAccessException | SampleExtractionException e) {
 													e.printStackTrace();
 												}
 //											}
@@ -79,7 +118,8 @@ public class WaveprintTool {
 				}
 				break;
 			case FIND:
-				try (final FileBasedDatabase db = new FileBasedDatabase(dbLocation)) {
+				try (final DatabaseSource db = openSource(dbLocation)) {
+					final WaveprintEngine engine = new WaveprintEngine(db, ourPcmCache);
 					for (int i = 2; i < args.length; i++) {
 						final Path root = Paths.get(args[i]);
 						Files.walkFileTree(
@@ -92,7 +132,7 @@ public class WaveprintTool {
 										} else {
 											System.out.println("Searching for: " + file);
 											try {
-												System.out.println(find(db, file));
+												System.out.println(find(engine, file));
 											} catch (SampleExtractionException e) {
 												e.printStackTrace();
 											} catch (DataAccessException | NoDataException e) {
@@ -113,65 +153,66 @@ public class WaveprintTool {
 				System.out.println("Unknown command: " + args[0]);
 				break;
 		}
+
+		if (ourPcmCache != null) {
+			System.out.format(
+					"Decoded track cache: %d hits, %d misses%n",
+					ourPcmCache.getHits(),
+					ourPcmCache.getMisses()
+			);
+		}
 	}
 
-	public static Pair<Long, String> find(final FileBasedDatabase db, final Path file)
-			throws DataAccessException, NoDataException, SampleExtractionException {
-		final WaveprintConfig cfg = new WaveprintConfig(db.readSettings());
-		final SampleExtractor sampleExtractor = getSampleExtractor(cfg);
-		final Waveprint waveprint = getWaveprint(db, cfg);
+	/**
+	 * Opens an index segment if the location is a file, and the database at
+	 * the location otherwise.
+	 */
+	private static DatabaseSource openSource(final String location)
+			throws DataAccessException, NoDataException {
+		final Path path = Paths.get(location);
+		if (Files.isRegularFile(path)) {
+			return new IndexSegment(path);
+		}
+		return openDatabase(location);
+	}
 
-		long startTime = System.currentTimeMillis();
-		final int[] samples = sampleExtractor.extract(file, 60).getFirst();
-		System.out.format("Extracted samples in %d ms%n", (System.currentTimeMillis() - startTime));
+	private static Database openDatabase(final String location)
+			throws DataAccessException, NoDataException {
+		final FileBasedDatabase db = new FileBasedDatabase(location);
+		if (!Boolean.getBoolean(IN_MEMORY_LSH_PROPERTY)) {
+			return db;
+		}
+		try {
+			final long startTime = System.currentTimeMillis();
+			final InMemoryLshDatabase inMemory = new InMemoryLshDatabase(db);
+			System.out.format(
+					"Loaded %d fingerprints in %d ms%n",
+					inMemory.getFingerprintCount(),
+					System.currentTimeMillis() - startTime
+			);
+			return inMemory;
+		} catch (DataAccessException | NoDataException | RuntimeException e) {
+			try {
+				db.close();
+			} catch (DataAccessException e1) {
+				e.addSuppressed(e1);
+			}
+			throw e;
+		}
+	}
 
-		startTime = System.currentTimeMillis();
-		final List<Long> bestMatches = waveprint.findBestMatches(samples, db, 5);
+	public static Pair<Long, String> find(final WaveprintEngine engine, final Path file)
+			throws DataAccessException, NoDataException, SampleExtractionException {
+		final long startTime = System.currentTimeMillis();
+		final List<Long> bestMatches = engine.find(file, 60, 5);
 		final Long trackId = (bestMatches.size() > 0) ? bestMatches.get(0) : null;
 		System.out.format("Found matches in %d ms%n", System.currentTimeMillis() - startTime);
 
 		return Pair.of(trackId, "(not queried yet)");
 	}
 
-	public static void addToDatabase(final FileBasedDatabase db, final Path file)
-			throws DataAccessException, NoDataException, SampleExtractionException {
-		final WaveprintConfig cfg = new WaveprintConfig(db.readSettings());
-		final SampleExtractor sampleExtractor = getSampleExtractor(cfg);
-		final Waveprint waveprint = getWaveprint(db, cfg);
-
-		final int[] samples = sampleExtractor.extract(file).getFirst();
-		final List<int[]> fingerprint = waveprint.fingerprint(samples);
-
-		db.addTrack(file.toString(), fingerprint);
-	}
-
-	private static Waveprint getWaveprint(
-			final FileBasedDatabase db,
-			final WaveprintConfig cfg
-	) throws DataAccessException, NoDataException {
-		final List<Permutation> permutations = db.readPermutations();
-
-		return new Waveprint(
-				new SimpleFftSpectrogramBuilder(
-						cfg.getSpectrogramLength(),
-						cfg.getSpectrogramFrameLengthLog2(),
-						cfg.getSpectrogramFrameStep(),
-						new LogarithmicFrequencySplitter.Factory(
-								cfg.getSampleRate(),
-								cfg.getSpectrogramWidth(),
-								cfg.getSpectrogramLowestFrequency(),
-								cfg.getSpectrogramHighestFrequency()
-						)
-				),
-				new HVStandardWaveletTransform(),
-				new TopWaveletSelector(cfg.getTopWavelets()),
-				new MinHasher(permutations),
-				cfg.getDbFingerprintStep(),
-				cfg.getProbeFingerprintStep()
-		);
-	}
-
-	private static SampleExtractor getSampleExtractor(final WaveprintConfig cfg) {
-		return new SampleExtractor(cfg.getSampleRate());
+	public static void addToDatabase(final WaveprintEngine engine, final Path file)
+			throws DataAccessException, SampleExtractionException {
+		engine.addTrack(file);
 	}
 }